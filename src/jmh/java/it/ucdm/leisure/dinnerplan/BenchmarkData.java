@@ -0,0 +1,148 @@
+package it.ucdm.leisure.dinnerplan;
+
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.proposal.Proposal;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRating;
+import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
+import it.ucdm.leisure.dinnerplan.features.user.Role;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic catalogs and events for the benchmarks. Everything is derived from
+ * a seed, so two runs (or two commits) measure exactly the same data.
+ */
+public final class BenchmarkData {
+
+    public static final long SEED = 42;
+
+    // Places and people spread over roughly 100 km around Milan
+    private static final double CENTER_LATITUDE = 45.46;
+    private static final double CENTER_LONGITUDE = 9.19;
+    private static final double SPREAD_DEG = 0.9;
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2026, 6, 1, 20, 0);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * {@code count} proposals over about {@code count / 2} distinct places, as
+     * popular places get proposed for several events. One in ten has no
+     * coordinates yet; each has up to two diets, five ratings and three events.
+     */
+    public static List<Proposal> proposals(int count, long seed) {
+        Random random = new Random(seed);
+        DinnerEvent linkedEvent = DinnerEvent.builder().id(1L).build();
+        List<Proposal> proposals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int place = random.nextInt(Math.max(1, count / 2));
+            boolean located = random.nextInt(10) != 0;
+            Proposal proposal = Proposal.builder()
+                    .id((long) i + 1)
+                    .location("Trattoria " + place)
+                    .address("Via Roma " + place + ", Milano")
+                    .latitude(located ? CENTER_LATITUDE + (random.nextDouble() - 0.5) * SPREAD_DEG : null)
+                    .longitude(located ? CENTER_LONGITUDE + (random.nextDouble() - 0.5) * SPREAD_DEG : null)
+                    .description("Synthetic proposal " + i)
+                    .dietaryPreferences(diets(random))
+                    .dinnerEvents(new ArrayList<>())
+                    .dates(new ArrayList<>())
+                    .build();
+
+            Set<ProposalRating> ratings = new HashSet<>();
+            for (int r = random.nextInt(6); r > 0; r--) {
+                ratings.add(ProposalRating.builder().proposal(proposal).isLiked(random.nextInt(3) != 0).build());
+            }
+            proposal.setRatings(ratings);
+            for (int e = random.nextInt(4); e > 0; e--) {
+                proposal.getDinnerEvents().add(linkedEvent);
+            }
+            proposals.add(proposal);
+        }
+        return proposals;
+    }
+
+    /**
+     * An open event with {@code participants} participants besides the
+     * organizer; one in ten users has no known address.
+     */
+    public static DinnerEvent event(int participants, long seed) {
+        Random random = new Random(seed);
+        List<User> users = new ArrayList<>(participants);
+        for (int i = 0; i < participants; i++) {
+            users.add(user(i + 2, random));
+        }
+        return DinnerEvent.builder()
+                .id(1L)
+                .title("Benchmark dinner")
+                .organizer(user(1, random))
+                .participants(users)
+                .deadline(BASE_DATE)
+                .status(DinnerEvent.EventStatus.OPEN)
+                .build();
+    }
+
+    /**
+     * {@code count} events for a calendar feed; half of them are decided and
+     * carry the selected date and place.
+     */
+    public static List<DinnerEvent> calendarEvents(int count, long seed) {
+        Random random = new Random(seed);
+        List<Proposal> places = proposals(Math.max(1, count / 4), seed);
+        List<DinnerEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime deadline = BASE_DATE.plusDays(random.nextInt(365)).plusMinutes(random.nextInt(600));
+            DinnerEvent event = DinnerEvent.builder()
+                    .id((long) i + 1)
+                    .title("Dinner " + i)
+                    .description(random.nextBoolean() ? "Bring a friend" : null)
+                    .deadline(deadline)
+                    .status(DinnerEvent.EventStatus.OPEN)
+                    .build();
+            if (i % 2 == 0) {
+                Proposal place = places.get(random.nextInt(places.size()));
+                event.setStatus(DinnerEvent.EventStatus.DECIDED);
+                event.setSelectedProposalDate(ProposalDate.builder()
+                        .id((long) i + 1)
+                        .date(deadline.plusDays(3))
+                        .proposal(place)
+                        .dinnerEvent(event)
+                        .build());
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static User user(long id, Random random) {
+        boolean located = random.nextInt(10) != 0;
+        DietaryPreference[] diets = DietaryPreference.values();
+        return User.builder()
+                .id(id)
+                .username("user" + id)
+                .role(Role.PARTICIPANT)
+                .latitude(located ? CENTER_LATITUDE + (random.nextDouble() - 0.5) * SPREAD_DEG : null)
+                .longitude(located ? CENTER_LONGITUDE + (random.nextDouble() - 0.5) * SPREAD_DEG : null)
+                // Most people eat anything
+                .dietaryPreference(random.nextInt(3) != 0 ? DietaryPreference.OMNIVORE
+                        : diets[random.nextInt(diets.length)])
+                .build();
+    }
+
+    private static Set<DietaryPreference> diets(Random random) {
+        DietaryPreference[] diets = DietaryPreference.values();
+        Set<DietaryPreference> offered = EnumSet.noneOf(DietaryPreference.class);
+        for (int d = random.nextInt(3); d > 0; d--) {
+            offered.add(diets[random.nextInt(diets.length)]);
+        }
+        return offered;
+    }
+}
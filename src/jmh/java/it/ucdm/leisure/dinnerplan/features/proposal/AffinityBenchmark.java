@@ -0,0 +1,68 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+import it.ucdm.leisure.dinnerplan.BenchmarkData;
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.AffinityScoreDTO;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Scoring a whole catalog against one event, in one batch (as the event view
+ * and central proposal do) and one proposal at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AffinityBenchmark {
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int proposals;
+
+    @Param({ "2", "50", "500" })
+    public int participants;
+
+    private AffinityService affinityService;
+    private List<Proposal> catalog;
+    private DinnerEvent event;
+
+    @Setup
+    public void setUp() {
+        affinityService = new AffinityService();
+        ReflectionTestUtils.setField(affinityService, "distanceWeight", 0.40);
+        ReflectionTestUtils.setField(affinityService, "dietWeight", 0.40);
+        ReflectionTestUtils.setField(affinityService, "popularityWeight", 0.20);
+        ReflectionTestUtils.setField(affinityService, "maxDistanceKm", 50.0);
+        catalog = BenchmarkData.proposals(proposals, BenchmarkData.SEED);
+        event = BenchmarkData.event(participants, BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public List<AffinityScoreDTO> calculateAffinities() {
+        return affinityService.calculateAffinities(catalog, event);
+    }
+
+    @Benchmark
+    public void calculateAffinityEach(Blackhole blackhole) {
+        for (Proposal proposal : catalog) {
+            blackhole.consume(affinityService.calculateAffinity(proposal, event));
+        }
+    }
+}
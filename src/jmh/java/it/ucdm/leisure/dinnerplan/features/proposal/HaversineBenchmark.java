@@ -0,0 +1,62 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+import it.ucdm.leisure.dinnerplan.BenchmarkData;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Distances from one user to every proposal of a catalog, as the event page
+ * and the dashboard suggestions compute them through
+ * {@link ProposalSpatialIndex#haversineKm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HaversineBenchmark {
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int proposals;
+
+    private double userLatitude;
+    private double userLongitude;
+    private double[] latitudes;
+    private double[] longitudes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkData.SEED);
+        userLatitude = 45.46 + (random.nextDouble() - 0.5) * 0.9;
+        userLongitude = 9.19 + (random.nextDouble() - 0.5) * 0.9;
+        latitudes = new double[proposals];
+        longitudes = new double[proposals];
+        for (int i = 0; i < proposals; i++) {
+            latitudes[i] = 45.46 + (random.nextDouble() - 0.5) * 0.9;
+            longitudes[i] = 9.19 + (random.nextDouble() - 0.5) * 0.9;
+        }
+    }
+
+    @Benchmark
+    public double haversineKm() {
+        double total = 0;
+        for (int i = 0; i < latitudes.length; i++) {
+            total += ProposalSpatialIndex.haversineKm(userLatitude, userLongitude, latitudes[i], longitudes[i]);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,63 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+import static org.mockito.Mockito.*;
+
+import it.ucdm.leisure.dinnerplan.BenchmarkData;
+import it.ucdm.leisure.dinnerplan.features.event.EventViewService;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO;
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The dashboard suggestion catalog: a read served from the published snapshot,
+ * and a read right after an invalidation, which aggregates every proposal by
+ * place and encodes each suggestion again. The repository is a mock returning
+ * the synthetic catalog, so only the in-memory work is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProposalCatalogBenchmark {
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int proposals;
+
+    private ProposalCatalogService proposalCatalogService;
+
+    @Setup
+    public void setUp() {
+        ProposalRepository proposalRepository = mock(ProposalRepository.class);
+        when(proposalRepository.findAll()).thenReturn(BenchmarkData.proposals(proposals, BenchmarkData.SEED));
+        proposalCatalogService = new ProposalCatalogService(proposalRepository, mock(BroadcastCoalescer.class),
+                mock(EventViewService.class));
+        proposalCatalogService.getProposalSuggestions();
+    }
+
+    @Benchmark
+    public List<ProposalSuggestionDTO> getProposalSuggestions() {
+        return proposalCatalogService.getProposalSuggestions();
+    }
+
+    @Benchmark
+    public List<ProposalSuggestionDTO> getProposalSuggestionsAfterInvalidate() {
+        proposalCatalogService.invalidate();
+        return proposalCatalogService.getProposalSuggestions();
+    }
+}
@@ -0,0 +1,48 @@
+package it.ucdm.leisure.dinnerplan.service;
+
+import it.ucdm.leisure.dinnerplan.BenchmarkData;
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ICS export of a single event and of a user's whole calendar feed; half of
+ * the events are decided and include the chosen place.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalendarBenchmark {
+
+    @Param({ "1", "100", "1000" })
+    public int events;
+
+    private final CalendarService calendarService = new CalendarService();
+    private List<DinnerEvent> feed;
+
+    @Setup
+    public void setUp() {
+        feed = BenchmarkData.calendarEvents(events, BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public String generateIcsContent() {
+        return calendarService.generateIcsContent(feed);
+    }
+}
@@ -0,0 +1,50 @@
+package it.ucdm.leisure.dinnerplan.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mobile detection, run on every page render.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserAgentBenchmark {
+
+    @Param({ "desktop", "iphone", "android" })
+    public String client;
+
+    private final UserAgentUtils userAgentUtils = new UserAgentUtils();
+    private String userAgent;
+
+    @Setup
+    public void setUp() {
+        userAgent = switch (client) {
+            case "iphone" -> "Mozilla/5.0 (iPhone; CPU iPhone OS 18_5 like Mac OS X) AppleWebKit/605.1.15 "
+                    + "(KHTML, like Gecko) Version/18.5 Mobile/15E148 Safari/604.1";
+            case "android" -> "Mozilla/5.0 (Linux; Android 15; Pixel 9) AppleWebKit/537.36 "
+                    + "(KHTML, like Gecko) Chrome/138.0.0.0 Mobile Safari/537.36";
+            default -> "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+                    + "(KHTML, like Gecko) Chrome/138.0.0.0 Safari/537.36";
+        };
+    }
+
+    @Benchmark
+    public boolean isMobile() {
+        return userAgentUtils.isMobile(userAgent);
+    }
+}
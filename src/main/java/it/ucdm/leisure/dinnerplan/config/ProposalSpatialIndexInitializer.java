@@ -0,0 +1,29 @@
+package it.ucdm.leisure.dinnerplan.config;
+
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalSpatialIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ProposalSpatialIndexInitializer implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProposalSpatialIndexInitializer.class);
+
+    private final ProposalRepository proposalRepository;
+    private final ProposalSpatialIndex proposalSpatialIndex;
+
+    public ProposalSpatialIndexInitializer(ProposalRepository proposalRepository,
+            ProposalSpatialIndex proposalSpatialIndex) {
+        this.proposalRepository = proposalRepository;
+        this.proposalSpatialIndex = proposalSpatialIndex;
+    }
+
+    @Override
+    public void run(String... args) {
+        proposalSpatialIndex.rebuild(proposalRepository.findByLatitudeIsNotNullAndLongitudeIsNotNull());
+        logger.info("Proposal spatial index built with {} entries", proposalSpatialIndex.size());
+    }
+}
@@ -5,13 +5,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.Authenticator;
 import java.net.InetSocketAddress;
 import java.net.PasswordAuthentication;
-import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.time.Duration;
 
 @Configuration
 public class RestTemplateConfig {
@@ -30,18 +32,31 @@ public class RestTemplateConfig {
     @Value("${proxy.password:}")
     private String proxyPassword;
 
+    @Value("${http.client.connect-timeout-ms:5000}")
+    private long connectTimeoutMs = 5000;
+
+    @Value("${http.client.read-timeout-ms:10000}")
+    private long readTimeoutMs = 10000;
+
+    /**
+     * Shared outbound client. The JDK client keeps connections alive and
+     * pools them per host, negotiates HTTP/2 where the server supports it,
+     * and is closed with the application context.
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    public HttpClient outboundHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs));
 
         if (proxyHost != null && !proxyHost.isBlank() && proxyPort > 0) {
             logger.info("Configuring Proxy: {}:{}", proxyHost, proxyPort);
-            Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(proxyHost, proxyPort));
-            requestFactory.setProxy(proxy);
+            builder.proxy(ProxySelector.of(new InetSocketAddress(proxyHost, proxyPort)));
 
             if (proxyUsername != null && !proxyUsername.isBlank() && proxyPassword != null && !proxyPassword.isBlank()) {
                 logger.info("Configuring Proxy Authentication for user: {}", proxyUsername);
-                Authenticator.setDefault(new Authenticator() {
+                builder.authenticator(new Authenticator() {
                     @Override
                     protected PasswordAuthentication getPasswordAuthentication() {
                         if (getRequestorType() == RequestorType.PROXY) {
@@ -55,6 +70,13 @@ public class RestTemplateConfig {
             logger.info("No Proxy configured");
         }
 
+        return builder.build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(HttpClient outboundHttpClient) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(outboundHttpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
         return new RestTemplate(requestFactory);
     }
 }
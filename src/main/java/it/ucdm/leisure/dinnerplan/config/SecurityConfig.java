@@ -45,6 +45,10 @@ public class SecurityConfig {
                                                 .requestMatchers("/login", "/register", "/manual", "/css/**", "/js/**",
                                                                 "/error")
                                                 .permitAll()
+                                                // Operational metrics are for admins, like /admin
+                                                .requestMatchers("/actuator/health", "/actuator/health/**")
+                                                .authenticated()
+                                                .requestMatchers("/actuator/**").hasRole("ADMIN")
                                                 .anyRequest().authenticated())
                                 .formLogin(form -> form
                                                 .loginPage("/login")
@@ -0,0 +1,31 @@
+package it.ucdm.leisure.dinnerplan.config;
+
+import it.ucdm.leisure.dinnerplan.features.event.VoteEngine;
+import it.ucdm.leisure.dinnerplan.features.event.VoteTally;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class VoteEngineInitializer implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteEngineInitializer.class);
+
+    private final VoteEngine voteEngine;
+    private final VoteTally voteTally;
+
+    public VoteEngineInitializer(VoteEngine voteEngine, VoteTally voteTally) {
+        this.voteEngine = voteEngine;
+        this.voteTally = voteTally;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!voteEngine.isEnabled()) {
+            return;
+        }
+        voteEngine.reload();
+        logger.info("Vote tally loaded for {} open events", voteTally.trackedCount());
+    }
+}
@@ -1,18 +1,66 @@
 package it.ucdm.leisure.dinnerplan.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+/**
+ * STOMP over {@code /ws}. With {@code app.websocket.broker=simple} (the
+ * default) messages only reach sessions on this node. With {@code relay} they
+ * go through an external STOMP broker (Artemis, RabbitMQ, ...), so several
+ * nodes behind a load balancer share topics; user destinations that cannot be
+ * resolved locally are broadcast to the other nodes, which also share their
+ * user registries through the broker.
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final String broker;
+    private final String relayHost;
+    private final int relayPort;
+    private final String relayClientLogin;
+    private final String relayClientPasscode;
+    private final String relaySystemLogin;
+    private final String relaySystemPasscode;
+
+    public WebSocketConfig(@Value("${app.websocket.broker:simple}") String broker,
+            @Value("${app.websocket.relay.host:localhost}") String relayHost,
+            @Value("${app.websocket.relay.port:61613}") int relayPort,
+            @Value("${app.websocket.relay.client-login:guest}") String relayClientLogin,
+            @Value("${app.websocket.relay.client-passcode:guest}") String relayClientPasscode,
+            @Value("${app.websocket.relay.system-login:guest}") String relaySystemLogin,
+            @Value("${app.websocket.relay.system-passcode:guest}") String relaySystemPasscode) {
+        if (!"simple".equals(broker) && !"relay".equals(broker)) {
+            throw new IllegalArgumentException("app.websocket.broker must be 'simple' or 'relay', was: " + broker);
+        }
+        this.broker = broker;
+        this.relayHost = relayHost;
+        this.relayPort = relayPort;
+        this.relayClientLogin = relayClientLogin;
+        this.relayClientPasscode = relayClientPasscode;
+        this.relaySystemLogin = relaySystemLogin;
+        this.relaySystemPasscode = relaySystemPasscode;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        if ("relay".equals(broker)) {
+            config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayClientLogin)
+                    .setClientPasscode(relayClientPasscode)
+                    .setSystemLogin(relaySystemLogin)
+                    .setSystemPasscode(relaySystemPasscode)
+                    .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                    .setUserRegistryBroadcast("/topic/simp-user-registry");
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
     }
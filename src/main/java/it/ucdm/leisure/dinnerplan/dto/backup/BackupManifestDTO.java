@@ -0,0 +1,29 @@
+package it.ucdm.leisure.dinnerplan.dto.backup;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Describes a backup archive. A full backup holds every row as of
+ * {@code snapshotId}; a differential one holds the aggregates changed between
+ * {@code baseSnapshotId} and {@code snapshotId}, plus the ids of the events and
+ * users deleted in between.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BackupManifestDTO {
+    public static final String TYPE_FULL = "full";
+    public static final String TYPE_DIFF = "diff";
+
+    private String type;
+    private Long baseSnapshotId;
+    private Long snapshotId;
+    private List<Long> deletedEventIds;
+    private List<Long> deletedUserIds;
+}
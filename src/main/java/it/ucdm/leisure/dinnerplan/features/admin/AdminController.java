@@ -1,6 +1,5 @@
 package it.ucdm.leisure.dinnerplan.features.admin;
 
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -12,11 +11,15 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 @Controller
 @RequestMapping("/admin")
@@ -34,33 +37,49 @@ public class AdminController {
         return "admin/dashboard";
     }
 
+    /**
+     * Full backup, or with {@code since} only the changes after that snapshot.
+     * The file name carries the snapshot id the next differential export
+     * continues from.
+     */
     @GetMapping("/export")
     @SuppressWarnings("null")
-    public ResponseEntity<ByteArrayResource> exportData() throws IOException {
-        byte[] data = adminDataService.exportData();
-        ByteArrayResource resource = new ByteArrayResource(data);
-
+    public ResponseEntity<StreamingResponseBody> exportData(@RequestParam(required = false) Long since) {
+        long snapshotId = adminDataService.snapshot(since);
         String filename = "dinner-plan-backup-"
-                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmm")) + ".zip";
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmm"))
+                + (since != null ? "-diff-" + since + "-" + snapshotId : "-" + snapshotId) + ".zip";
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .contentLength(data.length)
-                .body(resource);
+                .body(out -> adminDataService.exportData(out, since, snapshotId));
     }
 
     @PostMapping("/import")
-    public String importData(@RequestParam("file") MultipartFile file, RedirectAttributes redirectAttributes)
-            throws IOException {
+    public String importData(@RequestParam("file") MultipartFile file,
+            @RequestParam(value = "diffs", required = false) List<MultipartFile> diffs,
+            RedirectAttributes redirectAttributes) throws IOException {
         if (file.isEmpty()) {
             redirectAttributes.addFlashAttribute("error", "Please select a file to import.");
             return "redirect:/admin/dashboard";
         }
 
-        adminDataService.importData(file.getInputStream());
+        // Browsers send one empty part when no file is chosen
+        List<InputStream> diffStreams = new ArrayList<>();
+        if (diffs != null) {
+            for (MultipartFile diff : diffs) {
+                if (!diff.isEmpty()) {
+                    diffStreams.add(diff.getInputStream());
+                }
+            }
+        }
+
+        BackupImporter.Stats stats = adminDataService.importData(file.getInputStream(), diffStreams);
         redirectAttributes.addFlashAttribute("success",
-                "Database imported successfully. All previous data has been overwritten.");
+                "Database imported successfully (" + stats.rows() + " rows, " + stats.rowsPerSecond()
+                        + " rows/s, " + diffStreams.size() + " differential backups applied)."
+                        + " All previous data has been overwritten.");
         return "redirect:/admin/dashboard";
     }
 }
@@ -1,31 +1,54 @@
 package it.ucdm.leisure.dinnerplan.features.admin;
 
 import it.ucdm.leisure.dinnerplan.dto.backup.*;
+import it.ucdm.leisure.dinnerplan.features.event.DeadlineScheduler;
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEventMessage;
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEventMessageRepository;
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEventRepository;
+import it.ucdm.leisure.dinnerplan.features.event.EventViewService;
+import it.ucdm.leisure.dinnerplan.features.event.VoteEngine;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournalEntry.Aggregate;
 import it.ucdm.leisure.dinnerplan.features.proposal.*;
 import it.ucdm.leisure.dinnerplan.features.user.User;
 import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import tools.jackson.core.type.TypeReference;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 @Service
 public class AdminDataService {
 
+    private static final Logger logger = LoggerFactory.getLogger(AdminDataService.class);
+
+    /** Rows fetched and written per keyset page during export. */
+    static final int EXPORT_PAGE_SIZE = 500;
+
+    static final String MANIFEST = "manifest.json";
+
     private final UserRepository userRepository;
     private final DinnerEventRepository dinnerEventRepository;
     private final ProposalRepository proposalRepository;
@@ -34,6 +57,14 @@ public class AdminDataService {
     private final VoteRepository voteRepository;
     private final DinnerEventMessageRepository messageRepository;
     private final BackupMapper backupMapper;
+    private final ProposalCatalogService proposalCatalogService;
+    private final EventViewService eventViewService;
+    private final ProposalSpatialIndex proposalSpatialIndex;
+    private final BackupImporter backupImporter;
+    private final ChangeJournal changeJournal;
+    private final DeadlineScheduler deadlineScheduler;
+    private final VoteEngine voteEngine;
+    private final EntityManager entityManager;
     private final ObjectMapper objectMapper;
 
     public AdminDataService(UserRepository userRepository,
@@ -43,7 +74,15 @@ public class AdminDataService {
             ProposalRatingRepository proposalRatingRepository,
             VoteRepository voteRepository,
             DinnerEventMessageRepository messageRepository,
-            BackupMapper backupMapper) {
+            BackupMapper backupMapper,
+            ProposalCatalogService proposalCatalogService,
+            EventViewService eventViewService,
+            ProposalSpatialIndex proposalSpatialIndex,
+            BackupImporter backupImporter,
+            ChangeJournal changeJournal,
+            DeadlineScheduler deadlineScheduler,
+            VoteEngine voteEngine,
+            EntityManager entityManager) {
         this.userRepository = userRepository;
         this.dinnerEventRepository = dinnerEventRepository;
         this.proposalRepository = proposalRepository;
@@ -52,277 +91,317 @@ public class AdminDataService {
         this.voteRepository = voteRepository;
         this.messageRepository = messageRepository;
         this.backupMapper = backupMapper;
+        this.proposalCatalogService = proposalCatalogService;
+        this.eventViewService = eventViewService;
+        this.proposalSpatialIndex = proposalSpatialIndex;
+        this.backupImporter = backupImporter;
+        this.changeJournal = changeJournal;
+        this.deadlineScheduler = deadlineScheduler;
+        this.voteEngine = voteEngine;
+        this.entityManager = entityManager;
         this.objectMapper = JsonMapper.builder()
                 .disable(tools.jackson.core.StreamWriteFeature.AUTO_CLOSE_TARGET)
                 .build();
     }
 
-    @Transactional(readOnly = true)
-    public byte[] exportData() throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-
-            writeEntry(zos, "users.json",
-                    userRepository.findAll().stream().map(backupMapper::toBackupDTO).collect(Collectors.toList()));
-            writeEntry(zos, "events.json",
-                    dinnerEventRepository.findAll().stream().map(backupMapper::toBackupDTO)
-                            .collect(Collectors.toList()));
-            writeEntry(zos, "proposals.json",
-                    proposalRepository.findAll().stream().map(backupMapper::toBackupDTO).collect(Collectors.toList()));
-            writeEntry(zos, "proposal_dates.json",
-                    proposalDateRepository.findAll().stream().map(backupMapper::toBackupDTO)
-                            .collect(Collectors.toList()));
-            writeEntry(zos, "ratings.json",
-                    proposalRatingRepository.findAll().stream().map(backupMapper::toBackupDTO)
-                            .collect(Collectors.toList()));
-            writeEntry(zos, "votes.json",
-                    voteRepository.findAll().stream().map(backupMapper::toBackupDTO).collect(Collectors.toList()));
-            writeEntry(zos, "messages.json",
-                    messageRepository.findAll().stream().map(backupMapper::toBackupDTO).collect(Collectors.toList()));
+    /**
+     * Snapshot id for a new export, taken before any data is read. A
+     * differential export {@code since} an earlier snapshot must start at one
+     * that exists and was taken after the last import, whose rows are not in
+     * the journal. Votes still held by the {@link VoteEngine} are written
+     * first, so the snapshot covers them.
+     */
+    public long snapshot(Long since) {
+        voteEngine.flush();
+        long snapshotId = changeJournal.snapshot();
+        if (since != null && (since < 0 || since > snapshotId)) {
+            throw new IllegalArgumentException("Unknown snapshot id " + since);
         }
-        return baos.toByteArray();
-    }
-
-    @Transactional
-    @SuppressWarnings("unchecked")
-    public void importData(InputStream inputStream) throws IOException {
-        Map<String, List<?>> dataMap = new HashMap<>();
-
-        try (ZipInputStream zis = new ZipInputStream(inputStream)) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                String name = entry.getName();
-                InputStream nonClosingZis = new java.io.FilterInputStream(zis) {
-                    @Override
-                    public void close() throws IOException {
-                        // Do nothing to keep ZipInputStream open for next entry
-                    }
-                };
-
-                if (name.equals("users.json")) {
-                    dataMap.put(name, objectMapper.readValue(nonClosingZis, new TypeReference<List<UserBackupDTO>>() {
-                    }));
-                } else if (name.equals("events.json")) {
-                    dataMap.put(name,
-                            objectMapper.readValue(nonClosingZis, new TypeReference<List<DinnerEventBackupDTO>>() {
-                            }));
-                } else if (name.equals("proposals.json")) {
-                    dataMap.put(name,
-                            objectMapper.readValue(nonClosingZis, new TypeReference<List<ProposalBackupDTO>>() {
-                            }));
-                } else if (name.equals("proposal_dates.json")) {
-                    dataMap.put(name,
-                            objectMapper.readValue(nonClosingZis, new TypeReference<List<ProposalDateBackupDTO>>() {
-                            }));
-                } else if (name.equals("ratings.json")) {
-                    dataMap.put(name,
-                            objectMapper.readValue(nonClosingZis, new TypeReference<List<ProposalRatingBackupDTO>>() {
-                            }));
-                } else if (name.equals("votes.json")) {
-                    dataMap.put(name, objectMapper.readValue(nonClosingZis, new TypeReference<List<VoteBackupDTO>>() {
-                    }));
-                } else if (name.equals("messages.json")) {
-                    dataMap.put(name,
-                            objectMapper.readValue(nonClosingZis,
-                                    new TypeReference<List<DinnerEventMessageBackupDTO>>() {
-                                    }));
-                }
-            }
+        if (since != null && since < changeJournal.lastImport()) {
+            throw new IllegalArgumentException("Snapshot " + since + " was taken before the last import;"
+                    + " a full backup is needed");
         }
+        return snapshotId;
+    }
 
-        // DELETE ALL DATA
-        voteRepository.deleteAll();
-        proposalRatingRepository.deleteAll();
-        messageRepository.deleteAll();
-        // Clear relationships first
-        List<DinnerEvent> allEvents = dinnerEventRepository.findAll();
-        for (DinnerEvent event : allEvents) {
-            event.setSelectedProposalDate(null);
-            event.getParticipants().clear(); // Clear many-to-many users
-            // NEW: Clear many-to-many proposals
-            event.getProposals().clear();
+    /**
+     * Writes the backup ZIP to {@code out} as it is produced. Each table is
+     * read in keyset pages and streamed row by row, and the persistence
+     * context is cleared after every page, so memory use does not grow with
+     * the size of the database.
+     * <p>
+     * With {@code since} set, only the users, events and proposals changed
+     * after that snapshot are written, see {@link #exportChanges}.
+     */
+    @Transactional(readOnly = true)
+    public void exportData(OutputStream out, Long since, long snapshotId) throws IOException {
+        ZipOutputStream zos = new ZipOutputStream(out);
+        if (since != null) {
+            exportChanges(zos, since, snapshotId);
+        } else {
+            exportAll(zos, snapshotId);
         }
-        dinnerEventRepository.saveAll(allEvents);
+        // Writes the central directory; the caller owns and closes the stream itself
+        zos.finish();
+    }
 
-        proposalDateRepository.deleteAll();
-        proposalRepository.deleteAll();
-        dinnerEventRepository.deleteAll();
-        userRepository.deleteAll();
+    private void exportAll(ZipOutputStream zos, long snapshotId) throws IOException {
+        writeTable(zos, "users.json", userRepository::findByIdGreaterThanOrderByIdAsc,
+                User::getId, backupMapper::toBackupDTO);
+        writeTable(zos, "events.json", dinnerEventRepository::findByIdGreaterThanOrderByIdAsc,
+                DinnerEvent::getId, backupMapper::toBackupDTO);
+        writeTable(zos, "proposals.json", proposalRepository::findByIdGreaterThanOrderByIdAsc,
+                Proposal::getId, backupMapper::toBackupDTO);
+        writeTable(zos, "proposal_dates.json", proposalDateRepository::findByIdGreaterThanOrderByIdAsc,
+                ProposalDate::getId, backupMapper::toBackupDTO);
+        writeTable(zos, "ratings.json", proposalRatingRepository::findByIdGreaterThanOrderByIdAsc,
+                ProposalRating::getId, backupMapper::toBackupDTO);
+        writeTable(zos, "votes.json", voteRepository::findByIdGreaterThanOrderByIdAsc,
+                Vote::getId, backupMapper::toBackupDTO);
+        writeTable(zos, "messages.json", messageRepository::findByIdGreaterThanOrderByIdAsc,
+                DinnerEventMessage::getId, backupMapper::toBackupDTO);
+        writeManifest(zos, BackupManifestDTO.builder()
+                .type(BackupManifestDTO.TYPE_FULL)
+                .snapshotId(snapshotId)
+                .build());
+    }
 
-        // FLUSH to ensure deletes are executed before inserts
-        voteRepository.flush();
-        proposalRatingRepository.flush();
-        messageRepository.flush();
-        proposalDateRepository.flush();
-        proposalRepository.flush();
-        dinnerEventRepository.flush();
-        userRepository.flush();
+    /**
+     * Writes the aggregates the change journal lists between the two
+     * snapshots: an event with its dates, votes and messages, a proposal with
+     * its ratings. The users and proposals these rows point to go along, so
+     * the archive applies cleanly on the backup it continues. Changed events
+     * and users that no longer exist are listed as deleted.
+     */
+    private void exportChanges(ZipOutputStream zos, long since, long snapshotId) throws IOException {
+        List<Long> changedUserIds = changeJournal.changedSince(Aggregate.USER, since, snapshotId);
+        List<Long> changedEventIds = changeJournal.changedSince(Aggregate.EVENT, since, snapshotId);
+        Set<Long> userIds = new TreeSet<>(changedUserIds);
+        Set<Long> proposalIds = new TreeSet<>(changeJournal.changedSince(Aggregate.PROPOSAL, since, snapshotId));
 
-        // RESTORE DATA
-        // Phase 1: Users
-        Map<Long, User> userMap = new HashMap<>(); // Old ID -> New Entity
-        List<UserBackupDTO> userDTOs = (List<UserBackupDTO>) dataMap.getOrDefault("users.json",
-                Collections.emptyList());
-        for (UserBackupDTO dto : userDTOs) {
-            User user = new User();
-            user.setUsername(dto.getUsername());
-            user.setEmail(dto.getEmail());
-            user.setPassword(dto.getPassword());
-            user.setRole(dto.getRole());
-            user.setAddress(dto.getAddress());
-            user.setLatitude(dto.getLatitude());
-            user.setLongitude(dto.getLongitude());
-            user.setDietaryPreference(dto.getDietaryPreference());
-            user = userRepository.save(user);
-            userMap.put(dto.getId(), user);
-        }
+        Set<Long> existingEventIds = new TreeSet<>();
+        writeRows(zos, "events.json", changedEventIds, dinnerEventRepository::findAllById, event -> {
+            existingEventIds.add(event.getId());
+            userIds.add(event.getOrganizer().getId());
+            event.getParticipants().forEach(user -> userIds.add(user.getId()));
+            event.getProposals().forEach(proposal -> proposalIds.add(proposal.getId()));
+        }, backupMapper::toBackupDTO);
+        List<Long> eventIds = List.copyOf(existingEventIds);
+        writeRows(zos, "proposal_dates.json", eventIds, proposalDateRepository::findByDinnerEvent_IdInOrderByIdAsc,
+                date -> proposalIds.add(date.getProposal().getId()), backupMapper::toBackupDTO);
+        writeRows(zos, "votes.json", eventIds, voteRepository::findByProposalDate_DinnerEvent_IdInOrderByIdAsc,
+                vote -> userIds.add(vote.getUser().getId()), backupMapper::toBackupDTO);
+        writeRows(zos, "messages.json", eventIds, messageRepository::findByEvent_IdInOrderByIdAsc,
+                message -> userIds.add(message.getSender().getId()), backupMapper::toBackupDTO);
 
-        // Phase 2: Events (Basic)
-        Map<Long, DinnerEvent> eventMap = new HashMap<>();
-        List<DinnerEventBackupDTO> eventDTOs = (List<DinnerEventBackupDTO>) dataMap.getOrDefault("events.json",
-                Collections.emptyList());
-        for (DinnerEventBackupDTO dto : eventDTOs) {
-            DinnerEvent event = new DinnerEvent();
-            event.setTitle(dto.getTitle());
-            event.setDescription(dto.getDescription());
-            event.setDeadline(dto.getDeadline());
-            event.setStatus(dto.getStatus());
-            event.setOrganizer(userMap.get(dto.getOrganizerId()));
+        List<Long> proposals = List.copyOf(proposalIds);
+        writeRows(zos, "proposals.json", proposals, proposalRepository::findAllById,
+                proposal -> { }, backupMapper::toBackupDTO);
+        writeRows(zos, "ratings.json", proposals, proposalRatingRepository::findByProposal_IdInOrderByIdAsc,
+                rating -> userIds.add(rating.getUser().getId()), backupMapper::toBackupDTO);
 
-            // Participants
-            List<User> participants = new ArrayList<>();
-            if (dto.getParticipantIds() != null) {
-                for (Long pId : dto.getParticipantIds()) {
-                    if (userMap.containsKey(pId)) {
-                        participants.add(userMap.get(pId));
-                    }
-                }
-            }
-            event.setParticipants(participants);
-
-            // Proposals (ManyToMany) - Initialize empty, specific links come from Proposal
-            // side or reverse update
-            event.setProposals(new ArrayList<>());
+        Set<Long> existingUserIds = new HashSet<>();
+        writeRows(zos, "users.json", List.copyOf(userIds), userRepository::findAllById,
+                user -> existingUserIds.add(user.getId()), backupMapper::toBackupDTO);
 
-            event = dinnerEventRepository.save(event);
-            eventMap.put(dto.getId(), event);
-        }
+        writeManifest(zos, BackupManifestDTO.builder()
+                .type(BackupManifestDTO.TYPE_DIFF)
+                .baseSnapshotId(since)
+                .snapshotId(snapshotId)
+                .deletedEventIds(changedEventIds.stream().filter(id -> !existingEventIds.contains(id)).toList())
+                .deletedUserIds(changedUserIds.stream().filter(id -> !existingUserIds.contains(id)).toList())
+                .build());
+    }
 
-        // Phase 3: Proposals
-        Map<Long, Proposal> proposalMap = new HashMap<>();
-        List<ProposalBackupDTO> proposalDTOs = (List<ProposalBackupDTO>) dataMap.getOrDefault("proposals.json",
-                Collections.emptyList());
-        for (ProposalBackupDTO dto : proposalDTOs) {
-            Proposal proposal = new Proposal();
-            proposal.setLocation(dto.getLocation());
-            proposal.setAddress(dto.getAddress());
-            proposal.setLatitude(dto.getLatitude());
-            proposal.setLongitude(dto.getLongitude());
-            proposal.setDescription(dto.getDescription());
-            proposal.setEmail(dto.getEmail());
-            proposal.setPhoneNumber(dto.getPhoneNumber());
-            proposal.setWebsite(dto.getWebsite());
-            proposal.setDietaryPreferences(dto.getDietaryPreferences());
+    @Transactional
+    public BackupImporter.Stats importData(InputStream inputStream) throws IOException {
+        return importData(inputStream, List.of());
+    }
 
-            // Link to Events (ManyToMany)
-            List<DinnerEvent> events = new ArrayList<>();
-            if (dto.getDinnerEventIds() != null) {
-                for (Long eventId : dto.getDinnerEventIds()) {
-                    DinnerEvent ev = eventMap.get(eventId);
-                    if (ev != null) {
-                        events.add(ev);
-                        // Also update the other side for consistency in validation, although DB handles
-                        // it via JoinTable if persisted correctly
-                        // But since Proposal is the inverse side (mappedBy=proposals in Proposal),
-                        // DinnerEvent owns it.
-                        // Wait, DinnerEvent owns it (@JoinTable on DinnerEvent). So we should add
-                        // proposal to the event's collection.
+    /**
+     * Replaces all data with the contents of a full backup archive followed by
+     * a chain of differential ones, written in JDBC batches by
+     * {@link BackupImporter}. Each differential archive must continue from the
+     * snapshot of the archive before it.
+     * <p>
+     * The uploads are spooled to temporary files so the entries can be read in
+     * dependency order whatever their order in the archive. Each entry is
+     * parsed one record at a time and handed straight to the importer, so only
+     * the id maps grow with the size of the backup.
+     */
+    @Transactional
+    public BackupImporter.Stats importData(InputStream base, List<InputStream> diffs) throws IOException {
+        List<Path> archives = new ArrayList<>();
+        try {
+            archives.add(spool(base));
+            for (InputStream diff : diffs) {
+                archives.add(spool(diff));
+            }
+            // Pending changes first; the import below goes around the persistence context
+            voteEngine.beginImport();
+            entityManager.flush();
+            BackupImporter.Session session = backupImporter.begin();
+            Long snapshotId = null;
+            for (int i = 0; i < archives.size(); i++) {
+                try (ZipFile zip = new ZipFile(archives.get(i).toFile())) {
+                    BackupManifestDTO manifest = readManifest(zip);
+                    boolean diff = manifest != null && BackupManifestDTO.TYPE_DIFF.equals(manifest.getType());
+                    if (i == 0) {
+                        if (diff) {
+                            throw new IllegalArgumentException("The base archive is a differential backup");
+                        }
+                        readRecords(zip, session);
+                    } else {
+                        if (!diff) {
+                            throw new IllegalArgumentException("Archive " + (i + 1) + " is not a differential backup");
+                        }
+                        if (snapshotId == null || !snapshotId.equals(manifest.getBaseSnapshotId())) {
+                            throw new IllegalArgumentException("Archive " + (i + 1) + " continues snapshot "
+                                    + manifest.getBaseSnapshotId() + ", not " + snapshotId);
+                        }
+                        session.beginDiff(orEmpty(manifest.getDeletedEventIds()));
+                        readRecords(zip, session);
+                        session.endDiff(orEmpty(manifest.getDeletedUserIds()));
                     }
+                    snapshotId = manifest != null ? manifest.getSnapshotId() : null;
                 }
             }
-            // Logic adjust: Proposal is mappedBy="proposals" (inverse). DinnerEvent is
-            // owner.
-            // We save Proposal. Then we update DinnerEvents to include this proposal.
+            BackupImporter.Stats stats = session.finish();
+            changeJournal.importCompleted();
+            importFinished();
 
-            proposal = proposalRepository.save(proposal);
-            proposalMap.put(dto.getId(), proposal);
-
-            // Update Owner side (DinnerEvent)
-            for (DinnerEvent ev : events) {
-                // Determine if we need to re-fetch to avoid stale state?
-                // We have references to managed entities in eventMap, but let's be safe.
-                ev.getProposals().add(proposal);
-                dinnerEventRepository.save(ev); // Persist the relationship in JoinTable
+            logger.info("Imported {} rows from {} archives in {} ms ({} rows/s)", stats.rows(), archives.size(),
+                    stats.elapsedMillis(), stats.rowsPerSecond());
+            return stats;
+        } finally {
+            for (Path archive : archives) {
+                Files.deleteIfExists(archive);
             }
         }
+    }
 
-        // Phase 4: Proposal Dates
-        Map<Long, ProposalDate> dateMap = new HashMap<>();
-        List<ProposalDateBackupDTO> dateDTOs = (List<ProposalDateBackupDTO>) dataMap.getOrDefault("proposal_dates.json",
-                Collections.emptyList());
-        for (ProposalDateBackupDTO dto : dateDTOs) {
-            ProposalDate date = new ProposalDate();
-            date.setDate(dto.getDate());
-            date.setProposal(proposalMap.get(dto.getProposalId()));
-            date.setDinnerEvent(eventMap.get(dto.getDinnerEventId())); // Set the specific event context
-            date = proposalDateRepository.save(date);
-            dateMap.put(dto.getId(), date);
+    private static Path spool(InputStream in) throws IOException {
+        Path archive = Files.createTempFile("dinner-plan-import", ".zip");
+        try {
+            Files.copy(in, archive, StandardCopyOption.REPLACE_EXISTING);
+            return archive;
+        } catch (IOException e) {
+            Files.deleteIfExists(archive);
+            throw e;
         }
+    }
+
+    private void readRecords(ZipFile zip, BackupImporter.Session session) throws IOException {
+        readEntry(zip, "users.json", UserBackupDTO.class, session::addUser);
+        readEntry(zip, "events.json", DinnerEventBackupDTO.class, session::addEvent);
+        readEntry(zip, "proposals.json", ProposalBackupDTO.class, session::addProposal);
+        readEntry(zip, "proposal_dates.json", ProposalDateBackupDTO.class, session::addProposalDate);
+        readEntry(zip, "ratings.json", ProposalRatingBackupDTO.class, session::addRating);
+        readEntry(zip, "votes.json", VoteBackupDTO.class, session::addVote);
+        readEntry(zip, "messages.json", DinnerEventMessageBackupDTO.class, session::addMessage);
+    }
 
-        // Phase 5: Ratings, Votes, Messages
-        List<ProposalRatingBackupDTO> ratingDTOs = (List<ProposalRatingBackupDTO>) dataMap.getOrDefault("ratings.json",
-                Collections.emptyList());
-        for (ProposalRatingBackupDTO dto : ratingDTOs) {
-            ProposalRating rating = new ProposalRating();
-            rating.setLiked(dto.isLiked());
-            rating.setUser(userMap.get(dto.getUserId()));
-            rating.setProposal(proposalMap.get(dto.getProposalId()));
-            proposalRatingRepository.save(rating);
+    /**
+     * The archive's manifest; {@code null} for backups made before manifests
+     * existed, which are full ones.
+     */
+    private BackupManifestDTO readManifest(ZipFile zip) throws IOException {
+        ZipEntry entry = zip.getEntry(MANIFEST);
+        if (entry == null) {
+            return null;
         }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return objectMapper.readValue(in, BackupManifestDTO.class);
+        }
+    }
+
+    private static List<Long> orEmpty(List<Long> ids) {
+        return ids != null ? ids : List.of();
+    }
 
-        List<VoteBackupDTO> voteDTOs = (List<VoteBackupDTO>) dataMap.getOrDefault("votes.json",
-                Collections.emptyList());
-        for (VoteBackupDTO dto : voteDTOs) {
-            Vote vote = new Vote();
-            vote.setUser(userMap.get(dto.getUserId()));
-            vote.setProposalDate(dateMap.get(dto.getProposalDateId()));
-            voteRepository.save(vote);
+    private <T> void readEntry(ZipFile zip, String filename, Class<T> type, Consumer<T> consumer)
+            throws IOException {
+        ZipEntry entry = zip.getEntry(filename);
+        if (entry == null) {
+            return;
+        }
+        try (InputStream in = zip.getInputStream(entry); JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException(filename + " does not contain a JSON array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(objectMapper.readValue(parser, type));
+            }
         }
+    }
 
-        List<DinnerEventMessageBackupDTO> messageDTOs = (List<DinnerEventMessageBackupDTO>) dataMap
-                .getOrDefault("messages.json", Collections.emptyList());
-        for (DinnerEventMessageBackupDTO dto : messageDTOs) {
-            DinnerEventMessage message = new DinnerEventMessage();
-            message.setContent(dto.getContent());
-            message.setTimestamp(dto.getTimestamp());
-            message.setSender(userMap.get(dto.getSenderId()));
-            message.setEvent(eventMap.get(dto.getEventId()));
-            messageRepository.save(message);
+    /**
+     * Everything cached from the replaced data is dropped. The JDBC writes bypass
+     * the entity listeners, so the spatial index is rebuilt from the database,
+     * and the imported events are queued for their deadlines.
+     */
+    private void importFinished() {
+        entityManager.clear();
+        proposalCatalogService.invalidate();
+        eventViewService.invalidateAll();
+        org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
+                new org.springframework.transaction.support.TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        proposalSpatialIndex.rebuild(proposalRepository.findByLatitudeIsNotNullAndLongitudeIsNotNull());
+                        deadlineScheduler.reload();
+                    }
+                });
+    }
+
+    private <T> void writeTable(ZipOutputStream zos, String filename, BiFunction<Long, Limit, List<T>> page,
+            Function<T, Long> idOf, Function<T, ?> toBackupDTO) throws IOException {
+        zos.putNextEntry(new ZipEntry(filename));
+        try (JsonGenerator generator = objectMapper.createGenerator(zos)) {
+            generator.writeStartArray();
+            Long lastId = 0L;
+            List<T> rows;
+            do {
+                rows = page.apply(lastId, Limit.of(EXPORT_PAGE_SIZE));
+                for (T row : rows) {
+                    generator.writePOJO(toBackupDTO.apply(row));
+                }
+                if (!rows.isEmpty()) {
+                    lastId = idOf.apply(rows.get(rows.size() - 1));
+                }
+                generator.flush();
+                entityManager.clear();
+            } while (rows.size() == EXPORT_PAGE_SIZE);
+            generator.writeEndArray();
         }
+        zos.closeEntry();
+    }
 
-        // Phase 6: Link Selected Dates
-        for (DinnerEventBackupDTO dto : eventDTOs) {
-            if (dto.getSelectedProposalDateId() != null && dateMap.containsKey(dto.getSelectedProposalDateId())) {
-                DinnerEvent event = eventMap.get(dto.getId()); // Get the latest ref from map (though we saved it
-                                                               // multiple times)
-                // Re-fetch might be safer if we saved it in Phase 3 loop?
-                // Since eventMap values are references, and we called
-                // dinnerEventRepository.save(ev) in loop,
-                // the reference in map should be updated if save returns the same instance, or
-                // we might differ.
-                // Best to re-fetch or trust Hibernate L1 cache.
-                // Let's rely on eventMap having valid IDs.
-                event.setSelectedProposalDate(dateMap.get(dto.getSelectedProposalDateId()));
-                dinnerEventRepository.save(event);
+    /**
+     * Writes the rows loaded for {@code ids}, {@link #EXPORT_PAGE_SIZE} ids at
+     * a time, showing each to {@code visit} first.
+     */
+    private <T> void writeRows(ZipOutputStream zos, String filename, List<Long> ids,
+            Function<List<Long>, List<T>> load, Consumer<T> visit, Function<T, ?> toBackupDTO) throws IOException {
+        zos.putNextEntry(new ZipEntry(filename));
+        try (JsonGenerator generator = objectMapper.createGenerator(zos)) {
+            generator.writeStartArray();
+            for (int from = 0; from < ids.size(); from += EXPORT_PAGE_SIZE) {
+                for (T row : load.apply(ids.subList(from, Math.min(from + EXPORT_PAGE_SIZE, ids.size())))) {
+                    visit.accept(row);
+                    generator.writePOJO(toBackupDTO.apply(row));
+                }
+                generator.flush();
+                entityManager.clear();
             }
+            generator.writeEndArray();
         }
+        zos.closeEntry();
     }
 
-    private void writeEntry(ZipOutputStream zos, String filename, Object data) throws IOException {
-        ZipEntry entry = new ZipEntry(filename);
-        zos.putNextEntry(entry);
-        objectMapper.writeValue(zos, data);
+    private void writeManifest(ZipOutputStream zos, BackupManifestDTO manifest) throws IOException {
+        zos.putNextEntry(new ZipEntry(MANIFEST));
+        objectMapper.writeValue(zos, manifest);
         zos.closeEntry();
     }
-
 }
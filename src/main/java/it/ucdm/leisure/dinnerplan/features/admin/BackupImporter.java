@@ -0,0 +1,403 @@
+package it.ucdm.leisure.dinnerplan.features.admin;
+
+import it.ucdm.leisure.dinnerplan.dto.backup.*;
+import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
+import it.ucdm.leisure.dinnerplan.utils.LongLongHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Bulk restore of backup records through batched JDBC.
+ * <p>
+ * The entities use {@code IDENTITY} keys, which stop Hibernate from batching
+ * inserts. The importer therefore assigns the new ids itself, numbering each
+ * table from 1 after clearing it, and moves the identity counters past them at
+ * the end. Old-to-new ids are remapped through primitive {@link LongLongHashMap}s.
+ * Rows are buffered per table and sent {@code app.backup.import.batch-size} at
+ * a time; sending a table's batch first sends whatever its parent tables have
+ * buffered, so foreign keys are satisfied.
+ * <p>
+ * Differential archives are applied on the same session after the full base,
+ * so their ids are resolved through the same maps. Users, events and proposals
+ * restored earlier are updated in place; the rows belonging to them are
+ * deleted and inserted again from the archive.
+ * <p>
+ * Renumbered events get ids that were handed out before, so they are written
+ * with a version above any the replaced events had; an ETag issued for the old
+ * data can then never match the imported one.
+ * <p>
+ * Everything runs on the caller's transaction.
+ */
+@Component
+public class BackupImporter {
+
+    private static final String[] TABLES_CHILDREN_FIRST = {
+            "votes", "proposal_ratings", "dinner_event_messages", "event_participants", "event_proposals",
+            "proposal_dates", "proposal_dietary_preferences", "proposals", "dinner_events", "users" };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public BackupImporter(JdbcTemplate jdbcTemplate,
+            @Value("${app.backup.import.batch-size:500}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("app.backup.import.batch-size must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Throughput of a finished import.
+     */
+    public record Stats(long rows, long elapsedMillis) {
+        public long rowsPerSecond() {
+            return elapsedMillis > 0 ? rows * 1000 / elapsedMillis : rows;
+        }
+    }
+
+    /**
+     * Empties every backed-up table with one statement each and starts a new import.
+     */
+    public Session begin() {
+        long startNanos = System.nanoTime();
+        Long lastVersion = jdbcTemplate.queryForObject("SELECT MAX(version) FROM dinner_events", Long.class);
+        // The selected date points back into proposal_dates, which is emptied before dinner_events
+        jdbcTemplate.update("UPDATE dinner_events SET selected_proposal_date_id = NULL");
+        for (String table : TABLES_CHILDREN_FIRST) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+        return new Session(startNanos, lastVersion != null ? lastVersion + 1 : 0L);
+    }
+
+    /**
+     * One import in progress. Records must be added in dependency order: users,
+     * events, proposals, dates, then ratings, votes and messages. Rows whose
+     * required references are not in the import are rejected. Each differential
+     * archive is added between {@link #beginDiff} and {@link #endDiff}.
+     */
+    public final class Session {
+
+        private final long startNanos;
+        private final long eventVersion;
+        private long rows;
+
+        private final LongLongHashMap userIds = new LongLongHashMap(1024);
+        private final LongLongHashMap eventIds = new LongLongHashMap(1024);
+        private final LongLongHashMap proposalIds = new LongLongHashMap(1024);
+        private final LongLongHashMap dateIds = new LongLongHashMap(1024);
+        // New event id -> old selected date id; dates come after events, so resolved in finish()
+        private final LongLongHashMap selectedDates = new LongLongHashMap();
+
+        private long lastRatingId;
+        private long lastVoteId;
+        private long lastMessageId;
+        private boolean diff;
+
+        // In foreign-key order; flushing one flushes all before it
+        private final Batch users = new Batch("users",
+                "id", "username", "email", "password", "role", "address", "latitude", "longitude",
+                "dietary_preference");
+        private final Batch events = new Batch("dinner_events",
+                "id", "title", "description", "organizer_id", "deadline", "status", "version");
+        private final Batch participants = new Batch("event_participants", "event_id", "user_id");
+        private final Batch proposals = new Batch("proposals",
+                "id", "location", "address", "latitude", "longitude", "description", "email", "phone_number",
+                "website");
+        private final Batch dietaryPreferences = new Batch("proposal_dietary_preferences",
+                "proposal_id", "dietary_preference");
+        private final Batch eventProposals = new Batch("event_proposals", "event_id", "proposal_id");
+        private final Batch dates = new Batch("proposal_dates", "id", "date", "proposal_id", "dinner_event_id");
+        private final Batch ratings = new Batch("proposal_ratings", "id", "user_id", "proposal_id", "is_liked");
+        private final Batch votes = new Batch("votes", "id", "user_id", "proposal_date_id");
+        private final Batch messages = new Batch("dinner_event_messages",
+                "id", "event_id", "sender_id", "content", "timestamp");
+
+        private final List<Batch> batches = List.of(users, events, participants, proposals, dietaryPreferences,
+                eventProposals, dates, ratings, votes, messages);
+
+        private Session(long startNanos, long eventVersion) {
+            this.startNanos = startNanos;
+            this.eventVersion = eventVersion;
+        }
+
+        /**
+         * Starts a differential archive. The events it deleted are removed with
+         * everything belonging to them.
+         */
+        public void beginDiff(Collection<Long> deletedEventIds) {
+            flush();
+            diff = true;
+            for (Long oldId : deletedEventIds) {
+                long id = oldId != null ? eventIds.get(oldId) : LongLongHashMap.MISSING;
+                if (id != LongLongHashMap.MISSING) {
+                    clearEvent(id);
+                    jdbcTemplate.update("DELETE FROM event_proposals WHERE event_id = ?", id);
+                    jdbcTemplate.update("DELETE FROM dinner_events WHERE id = ?", id);
+                }
+            }
+        }
+
+        /**
+         * Ends a differential archive by removing the users it deleted. Their
+         * votes, ratings and messages are already gone with the events and
+         * proposals they belonged to.
+         */
+        public void endDiff(Collection<Long> deletedUserIds) {
+            flush();
+            for (Long oldId : deletedUserIds) {
+                long id = oldId != null ? userIds.get(oldId) : LongLongHashMap.MISSING;
+                if (id != LongLongHashMap.MISSING) {
+                    jdbcTemplate.update("DELETE FROM users WHERE id = ?", id);
+                }
+            }
+            diff = false;
+        }
+
+        public void addUser(UserBackupDTO dto) {
+            store(users, userIds, dto.getId(), "user", id -> { }, dto.getUsername(), dto.getEmail(),
+                    dto.getPassword(), name(dto.getRole()), dto.getAddress(), dto.getLatitude(), dto.getLongitude(),
+                    dto.getDietaryPreference() != null ? dto.getDietaryPreference().name() : "OMNIVORE");
+        }
+
+        public void addEvent(DinnerEventBackupDTO dto) {
+            long id = store(events, eventIds, dto.getId(), "event", this::clearEvent, dto.getTitle(),
+                    dto.getDescription(), required(userIds, dto.getOrganizerId(), "user"),
+                    timestamp(dto.getDeadline()), name(dto.getStatus()), eventVersion);
+            if (dto.getParticipantIds() != null) {
+                for (Long participantId : dto.getParticipantIds()) {
+                    long userId = participantId != null ? userIds.get(participantId) : LongLongHashMap.MISSING;
+                    if (userId != LongLongHashMap.MISSING) {
+                        add(participants, id, userId);
+                    }
+                }
+            }
+            if (dto.getSelectedProposalDateId() != null) {
+                selectedDates.put(id, dto.getSelectedProposalDateId());
+            } else if (selectedDates.containsKey(id)) {
+                selectedDates.put(id, LongLongHashMap.MISSING);
+            }
+        }
+
+        public void addProposal(ProposalBackupDTO dto) {
+            long id = store(proposals, proposalIds, dto.getId(), "proposal", this::clearProposal, dto.getLocation(),
+                    dto.getAddress(), dto.getLatitude(), dto.getLongitude(), dto.getDescription(), dto.getEmail(),
+                    dto.getPhoneNumber(), dto.getWebsite());
+            if (dto.getDietaryPreferences() != null) {
+                for (DietaryPreference preference : dto.getDietaryPreferences()) {
+                    add(dietaryPreferences, id, preference.name());
+                }
+            }
+            if (dto.getDinnerEventIds() != null) {
+                for (Long eventId : dto.getDinnerEventIds()) {
+                    long newEventId = eventId != null ? eventIds.get(eventId) : LongLongHashMap.MISSING;
+                    if (newEventId != LongLongHashMap.MISSING) {
+                        add(eventProposals, newEventId, id);
+                    }
+                }
+            }
+        }
+
+        public void addProposalDate(ProposalDateBackupDTO dto) {
+            long id = assign(dateIds, dto.getId(), "proposal date");
+            add(dates, id, timestamp(dto.getDate()), required(proposalIds, dto.getProposalId(), "proposal"),
+                    required(eventIds, dto.getDinnerEventId(), "event"));
+        }
+
+        public void addRating(ProposalRatingBackupDTO dto) {
+            add(ratings, ++lastRatingId, required(userIds, dto.getUserId(), "user"),
+                    required(proposalIds, dto.getProposalId(), "proposal"), dto.isLiked());
+        }
+
+        public void addVote(VoteBackupDTO dto) {
+            add(votes, ++lastVoteId, required(userIds, dto.getUserId(), "user"),
+                    required(dateIds, dto.getProposalDateId(), "proposal date"));
+        }
+
+        public void addMessage(DinnerEventMessageBackupDTO dto) {
+            add(messages, ++lastMessageId, required(eventIds, dto.getEventId(), "event"),
+                    required(userIds, dto.getSenderId(), "user"), dto.getContent(), timestamp(dto.getTimestamp()));
+        }
+
+        /**
+         * Writes what is still buffered, links the selected dates and moves the
+         * identity counters past the assigned ids.
+         */
+        public Stats finish() {
+            flush();
+
+            List<Object[]> selections = new ArrayList<>();
+            selectedDates.forEach((eventId, oldDateId) -> {
+                long dateId = oldDateId != LongLongHashMap.MISSING ? dateIds.get(oldDateId) : LongLongHashMap.MISSING;
+                if (dateId != LongLongHashMap.MISSING) {
+                    selections.add(new Object[] { dateId, eventId });
+                }
+            });
+            for (int from = 0; from < selections.size(); from += batchSize) {
+                jdbcTemplate.batchUpdate("UPDATE dinner_events SET selected_proposal_date_id = ? WHERE id = ?",
+                        selections.subList(from, Math.min(from + batchSize, selections.size())));
+            }
+
+            restartIdentity("users", userIds.size());
+            restartIdentity("dinner_events", eventIds.size());
+            restartIdentity("proposals", proposalIds.size());
+            restartIdentity("proposal_dates", dateIds.size());
+            restartIdentity("proposal_ratings", lastRatingId);
+            restartIdentity("votes", lastVoteId);
+            restartIdentity("dinner_event_messages", lastMessageId);
+
+            return new Stats(rows, (System.nanoTime() - startNanos) / 1_000_000);
+        }
+
+        /**
+         * Writes a row with an id of its own. In a differential archive a row
+         * restored earlier is updated instead, after {@code clear} has removed
+         * the rows belonging to it.
+         */
+        private long store(Batch batch, LongLongHashMap ids, Long oldId, String kind, LongConsumer clear,
+                Object... columns) {
+            boolean replace = diff && oldId != null && ids.containsKey(oldId);
+            long id = assign(ids, oldId, kind);
+            Object[] values = new Object[columns.length + 1];
+            values[0] = id;
+            System.arraycopy(columns, 0, values, 1, columns.length);
+            if (replace) {
+                flush();
+                clear.accept(id);
+                batch.update(values);
+                rows++;
+            } else {
+                add(batch, values);
+            }
+            return id;
+        }
+
+        /**
+         * Removes the dates, votes, messages and participants of an event. Its
+         * proposal links are owned by the proposals.
+         */
+        private void clearEvent(long id) {
+            jdbcTemplate.update("UPDATE dinner_events SET selected_proposal_date_id = NULL WHERE id = ?", id);
+            jdbcTemplate.update("DELETE FROM votes WHERE proposal_date_id IN"
+                    + " (SELECT id FROM proposal_dates WHERE dinner_event_id = ?)", id);
+            jdbcTemplate.update("DELETE FROM proposal_dates WHERE dinner_event_id = ?", id);
+            jdbcTemplate.update("DELETE FROM dinner_event_messages WHERE event_id = ?", id);
+            jdbcTemplate.update("DELETE FROM event_participants WHERE event_id = ?", id);
+            if (selectedDates.containsKey(id)) {
+                selectedDates.put(id, LongLongHashMap.MISSING);
+            }
+        }
+
+        private void clearProposal(long id) {
+            jdbcTemplate.update("DELETE FROM proposal_dietary_preferences WHERE proposal_id = ?", id);
+            jdbcTemplate.update("DELETE FROM event_proposals WHERE proposal_id = ?", id);
+            jdbcTemplate.update("DELETE FROM proposal_ratings WHERE proposal_id = ?", id);
+        }
+
+        /**
+         * New id for a backup id. A differential archive brings back the dates
+         * of the events it replaces under the ids they had.
+         */
+        private long assign(LongLongHashMap ids, Long oldId, String kind) {
+            if (oldId == null) {
+                throw new IllegalArgumentException("Backup contains a " + kind + " without id");
+            }
+            if (ids.containsKey(oldId)) {
+                if (diff) {
+                    return ids.get(oldId);
+                }
+                throw new IllegalArgumentException("Backup contains " + kind + " id " + oldId + " twice");
+            }
+            long id = ids.size() + 1L;
+            ids.put(oldId, id);
+            return id;
+        }
+
+        private void add(Batch batch, Object... values) {
+            batch.add(values);
+            rows++;
+        }
+
+        private void flush() {
+            for (Batch batch : batches) {
+                batch.flush();
+            }
+        }
+
+        private void restartIdentity(String table, long lastId) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (lastId + 1));
+        }
+
+        private final class Batch {
+
+            private final String sql;
+            private final String updateSql;
+            private final List<Object[]> pending = new ArrayList<>();
+
+            private Batch(String table, String... columns) {
+                this.sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ("
+                        + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+                this.updateSql = "UPDATE " + table + " SET "
+                        + String.join(" = ?, ", List.of(columns).subList(1, columns.length)) + " = ? WHERE "
+                        + columns[0] + " = ?";
+            }
+
+            void add(Object[] values) {
+                pending.add(values);
+                if (pending.size() >= batchSize) {
+                    flush();
+                }
+            }
+
+            void flush() {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                for (Batch parent : batches) {
+                    if (parent == this) {
+                        break;
+                    }
+                    parent.flush();
+                }
+                jdbcTemplate.batchUpdate(sql, pending);
+                pending.clear();
+            }
+
+            /**
+             * Overwrites the row keyed by the first value; only used for tables
+             * with an id of their own.
+             */
+            void update(Object[] values) {
+                Object[] parameters = new Object[values.length];
+                System.arraycopy(values, 1, parameters, 0, values.length - 1);
+                parameters[values.length - 1] = values[0];
+                jdbcTemplate.update(updateSql, parameters);
+            }
+        }
+    }
+
+    private static long required(LongLongHashMap ids, Long oldId, String kind) {
+        long id = oldId != null ? ids.get(oldId) : LongLongHashMap.MISSING;
+        if (id == LongLongHashMap.MISSING) {
+            throw new IllegalArgumentException("Backup references unknown " + kind + " id " + oldId);
+        }
+        return id;
+    }
+
+    private static Timestamp timestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+
+    private static String name(Enum<?> value) {
+        return value != null ? value.name() : null;
+    }
+}
@@ -0,0 +1,207 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatMessageDTO;
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatPageDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Chat history of the events, paged with a keyset on (timestamp, id) so that
+ * loading older messages costs the same however far back the page is.
+ * <p>
+ * The last {@code app.chat.recent-size} messages of the events whose chat was
+ * read recently are kept in memory, so an event page shows its chat without a
+ * query. A buffer is loaded on the first read and then receives the messages
+ * committed on this node; the buffers of at most {@code app.chat.cached-events}
+ * events are kept, the least recently read are dropped first.
+ * <p>
+ * Writing a message moves the event's {@link DinnerEvent#getVersion() version},
+ * and each buffer records the version it is known to be complete for. A
+ * message that skips a version, or a read for a newer version, reloads the
+ * buffer, so messages committed on other nodes are not missed.
+ */
+@Component
+public class ChatHistory {
+
+    private static final DateTimeFormatter CHAT_TIME = DateTimeFormatter.ofPattern("dd MMM HH:mm");
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final DinnerEventMessageRepository dinnerEventMessageRepository;
+    private final int recentSize;
+    private final Map<Long, Recent> events;
+
+    /**
+     * Position of a message in its event's history.
+     */
+    private record Cursor(LocalDateTime timestamp, Long id) {
+
+        static final Comparator<Cursor> ORDER = Comparator.comparing(Cursor::timestamp).thenComparing(Cursor::id);
+
+        static Cursor of(DinnerEventMessage message) {
+            return new Cursor(message.getTimestamp(), message.getId());
+        }
+
+        static Cursor parse(String value) {
+            int separator = value != null ? value.lastIndexOf('_') : -1;
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid chat cursor");
+            }
+            try {
+                return new Cursor(LocalDateTime.parse(value.substring(0, separator)),
+                        Long.valueOf(value.substring(separator + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid chat cursor", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + "_" + id;
+        }
+    }
+
+    // The last messages of an event in history order; guarded by its own monitor
+    private static final class Recent {
+        private final TreeMap<Cursor, ChatMessageDTO> messages = new TreeMap<>(Cursor.ORDER);
+        private boolean loaded;
+        private boolean olderExist;
+        private long version;
+    }
+
+    public ChatHistory(DinnerEventMessageRepository dinnerEventMessageRepository,
+            @Value("${app.chat.recent-size:50}") int recentSize,
+            @Value("${app.chat.cached-events:1000}") int cachedEvents) {
+        this.dinnerEventMessageRepository = dinnerEventMessageRepository;
+        this.recentSize = Math.max(1, recentSize);
+        // Access order, so that the eldest entry is the event read least recently
+        this.events = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Recent> eldest) {
+                return size() > cachedEvents;
+            }
+        };
+    }
+
+    static ChatMessageDTO toDTO(DinnerEventMessage message) {
+        return toDTO(message, message.getSender().getUsername());
+    }
+
+    // For a message whose sender is only a reference
+    static ChatMessageDTO toDTO(DinnerEventMessage message, String sender) {
+        return new ChatMessageDTO(message.getId(), sender, message.getContent(),
+                message.getTimestamp().format(CHAT_TIME), Cursor.of(message).toString());
+    }
+
+    public int recentSize() {
+        return recentSize;
+    }
+
+    /**
+     * The last messages of the event as of at least {@code version}, from
+     * memory once they have been loaded.
+     */
+    public ChatPageDTO recent(Long eventId, long version) {
+        Recent recent;
+        synchronized (events) {
+            recent = events.computeIfAbsent(eventId, id -> new Recent());
+        }
+        synchronized (recent) {
+            if (!recent.loaded || recent.version < version) {
+                load(eventId, recent);
+                recent.version = Math.max(recent.version, version);
+            }
+            List<ChatMessageDTO> messages = List.copyOf(recent.messages.values());
+            String olderCursor = recent.olderExist ? recent.messages.firstKey().toString() : null;
+            return new ChatPageDTO(messages, olderCursor);
+        }
+    }
+
+    /**
+     * Up to {@code limit} messages of the event sent before the cursor, read
+     * from the database.
+     */
+    public ChatPageDTO older(Long eventId, String before, int limit) {
+        Cursor cursor = Cursor.parse(before);
+        int size = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        List<DinnerEventMessage> page = dinnerEventMessageRepository.findBeforeByEventId(eventId,
+                cursor.timestamp(), cursor.id(), Limit.of(size + 1));
+        List<ChatMessageDTO> messages = new ArrayList<>(size);
+        for (DinnerEventMessage message : page.subList(0, Math.min(size, page.size()))) {
+            messages.add(toDTO(message));
+        }
+        Collections.reverse(messages);
+        return new ChatPageDTO(messages, page.size() > size ? messages.get(0).getCursor() : null);
+    }
+
+    /**
+     * Adds a committed message to the event's buffer, if it has one; otherwise
+     * the message is read with the rest on the next load. Its write moved the
+     * event to {@code version}; a buffer that has not seen the version before
+     * is reloaded on the next read instead.
+     */
+    public void messageAdded(Long eventId, ChatMessageDTO message, long version) {
+        Recent recent;
+        synchronized (events) {
+            recent = events.get(eventId);
+        }
+        if (recent == null) {
+            return;
+        }
+        synchronized (recent) {
+            if (version > recent.version + 1) {
+                recent.loaded = false;
+                return;
+            }
+            // A buffer loaded after the commit already has it; the same key keeps one copy
+            recent.messages.put(Cursor.parse(message.getCursor()), message);
+            trim(recent);
+            recent.version = Math.max(recent.version, version);
+        }
+    }
+
+    public void forget(Long eventId) {
+        synchronized (events) {
+            events.remove(eventId);
+        }
+    }
+
+    /**
+     * Drops every buffer, e.g. after a backup import.
+     */
+    public void clear() {
+        synchronized (events) {
+            events.clear();
+        }
+    }
+
+    private void load(Long eventId, Recent recent) {
+        recent.messages.clear();
+        List<DinnerEventMessage> latest = dinnerEventMessageRepository.findLatestByEventId(eventId,
+                Limit.of(recentSize + 1));
+        for (DinnerEventMessage message : latest.subList(0, Math.min(recentSize, latest.size()))) {
+            recent.messages.put(Cursor.of(message), toDTO(message));
+        }
+        recent.olderExist = latest.size() > recentSize;
+        trim(recent);
+        recent.loaded = true;
+    }
+
+    private void trim(Recent recent) {
+        while (recent.messages.size() > recentSize) {
+            recent.messages.pollFirstEntry();
+            recent.olderExist = true;
+        }
+    }
+}
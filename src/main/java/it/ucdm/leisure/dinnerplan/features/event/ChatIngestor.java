@@ -0,0 +1,236 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatMessageDTO;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for chat messages, enabled by a positive
+ * {@code app.chat.commit-ms}. Messages are queued, and every
+ * {@code app.chat.commit-ms} the queued messages of all events are inserted in
+ * one transaction, so a busy chat pays one commit per batch rather than one
+ * per message. Each sender is checked against the event's organizer and
+ * participants in that transaction, so a membership change made through any
+ * node applies to the next batch. Once the batch has committed its messages
+ * are added to the chat history and broadcast in the order they were queued,
+ * and only then do their senders' calls return.
+ * <p>
+ * A message whose sender is not a member fails without affecting the rest. A
+ * batch that fails is written again one message per transaction, so a message
+ * that cannot be stored fails alone.
+ */
+@Service
+public class ChatIngestor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatIngestor.class);
+    private static final int MAX_BATCH = 500;
+
+    private final DinnerEventMessageRepository dinnerEventMessageRepository;
+    private final DinnerEventRepository dinnerEventRepository;
+    private final UserRepository userRepository;
+    private final EventViewService eventViewService;
+    private final ChangeJournal changeJournal;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService writer;
+
+    private record Pending(Long eventId, String sender, String content, CompletableFuture<ChatMessageDTO> result) {
+    }
+
+    private record Member(Long eventId, String username) {
+    }
+
+    // The stored messages in batch order, null for a sender who is not a member, and the new event versions
+    private record Written(List<DinnerEventMessage> messages, Map<Long, Long> versions) {
+    }
+
+    public ChatIngestor(DinnerEventMessageRepository dinnerEventMessageRepository,
+            DinnerEventRepository dinnerEventRepository, UserRepository userRepository,
+            EventViewService eventViewService, ChangeJournal changeJournal, SimpMessagingTemplate messagingTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.chat.commit-ms:5}") long commitMillis) {
+        this.dinnerEventMessageRepository = dinnerEventMessageRepository;
+        this.dinnerEventRepository = dinnerEventRepository;
+        this.userRepository = userRepository;
+        this.eventViewService = eventViewService;
+        this.changeJournal = changeJournal;
+        this.messagingTemplate = messagingTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = commitMillis > 0;
+        if (enabled) {
+            this.writer = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("chat-writer").daemon(true).factory());
+            writer.scheduleWithFixedDelay(this::flushQuietly, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.writer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the message and waits until its batch has committed. Returns the
+     * message as broadcast.
+     */
+    public ChatMessageDTO addMessage(Long eventId, String username, String content) {
+        Pending pending = new Pending(eventId, username, content, new CompletableFuture<>());
+        queue.add(pending);
+        if (writer == null || writer.isShutdown()) {
+            flush();
+        }
+        try {
+            return pending.result().join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Writes the queued messages now. Called by the writer thread, and by the
+     * sender itself once the writer has stopped.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Pending> batch = new ArrayList<>();
+            while (queue.drainTo(batch, MAX_BATCH) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending> batch) {
+        Written written;
+        try {
+            written = transactionTemplate.execute(status -> insert(batch));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).result().completeExceptionally(e);
+                return;
+            }
+            logger.warn("Failed to write a batch of {} chat messages, writing them one by one", batch.size(), e);
+            for (Pending pending : batch) {
+                write(List.of(pending));
+            }
+            return;
+        }
+        List<ChatMessageDTO> dtos = new ArrayList<>(batch.size());
+        Map<Long, List<ChatMessageDTO>> byEvent = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            DinnerEventMessage saved = written.messages().get(i);
+            ChatMessageDTO dto = saved != null ? ChatHistory.toDTO(saved, batch.get(i).sender()) : null;
+            dtos.add(dto);
+            if (dto != null) {
+                byEvent.computeIfAbsent(batch.get(i).eventId(), id -> new ArrayList<>()).add(dto);
+            }
+        }
+        byEvent.forEach((eventId, messages) -> {
+            try {
+                eventViewService.messagesAdded(eventId, messages, written.versions().get(eventId));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to add {} chat messages to the view of event {}", messages.size(), eventId, e);
+            }
+        });
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            ChatMessageDTO dto = dtos.get(i);
+            if (dto == null) {
+                pending.result().completeExceptionally(
+                        new SecurityException("User is not a participant of this event"));
+                continue;
+            }
+            try {
+                messagingTemplate.convertAndSend("/topic/events/" + pending.eventId() + "/chat", dto);
+            } catch (RuntimeException e) {
+                // The message is stored: the sender still gets it acknowledged
+                logger.warn("Failed to publish chat message {}", dto.getId(), e);
+            }
+            pending.result().complete(dto);
+        }
+        logger.debug("Wrote {} chat messages", batch.size());
+    }
+
+    // One timestamp for the batch: the ids, assigned in queue order, keep (timestamp, id) in that order.
+    // Each event's version moves once, which moves its ETags and the views of other nodes.
+    private Written insert(List<Pending> batch) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Member, Optional<Long>> senders = new HashMap<>();
+        List<DinnerEventMessage> messages = new ArrayList<>(batch.size());
+        Set<Long> eventIds = new LinkedHashSet<>();
+        for (Pending pending : batch) {
+            Optional<Long> senderId = senders.computeIfAbsent(new Member(pending.eventId(), pending.sender()),
+                    member -> dinnerEventRepository.findMemberId(member.eventId(), member.username()));
+            if (senderId.isEmpty()) {
+                messages.add(null);
+                continue;
+            }
+            messages.add(new DinnerEventMessage(dinnerEventRepository.getReferenceById(pending.eventId()),
+                    userRepository.getReferenceById(senderId.get()), pending.content(), now));
+            eventIds.add(pending.eventId());
+        }
+        List<DinnerEventMessage> stored = messages.stream().filter(Objects::nonNull).toList();
+        if (!stored.isEmpty()) {
+            dinnerEventMessageRepository.saveAll(stored);
+        }
+        Map<Long, Long> versions = new HashMap<>();
+        if (!eventIds.isEmpty()) {
+            eventIds.forEach(changeJournal::eventChanged);
+            dinnerEventRepository.incrementVersions(eventIds);
+            for (DinnerEventVersion version : dinnerEventRepository.findVersionsByIdIn(eventIds)) {
+                versions.put(version.getId(), version.getVersion());
+            }
+        }
+        return new Written(messages, versions);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Failed to write {} queued chat messages", queue.size(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer != null) {
+            writer.shutdownNow();
+            flushQuietly();
+        }
+    }
+}
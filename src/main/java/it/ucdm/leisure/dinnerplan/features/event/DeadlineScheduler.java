@@ -0,0 +1,227 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes undecided events when their deadline passes. Open events wait in a
+ * {@link DelayQueue}; one thread takes each as it falls due, together with
+ * whatever else is due by then, and closes them with a single bulk update.
+ * <p>
+ * The event service reschedules an event after committing a new deadline.
+ * {@link #reload()} queues every open event from the database at startup and
+ * again every {@code app.events.deadline-sweep-ms}, which also picks up
+ * events whose deadline was set on another node.
+ */
+@Component
+public class DeadlineScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadlineScheduler.class);
+
+    private final DinnerEventRepository dinnerEventRepository;
+    private final EventViewService eventViewService;
+    private final EventUpdatePublisher eventUpdatePublisher;
+    private final ChangeJournal changeJournal;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+    // Latest deadline per event; queued entries that no longer match are skipped
+    private final Map<Long, Deadline> deadlines = new ConcurrentHashMap<>();
+    private final ExecutorService worker;
+
+    record Deadline(Long eventId, long dueMillis) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueMillis, ((Deadline) other).dueMillis);
+        }
+    }
+
+    public DeadlineScheduler(DinnerEventRepository dinnerEventRepository, EventViewService eventViewService,
+            EventUpdatePublisher eventUpdatePublisher, ChangeJournal changeJournal,
+            SimpMessagingTemplate messagingTemplate, PlatformTransactionManager transactionManager) {
+        this.dinnerEventRepository = dinnerEventRepository;
+        this.eventViewService = eventViewService;
+        this.eventUpdatePublisher = eventUpdatePublisher;
+        this.changeJournal = changeJournal;
+        this.messagingTemplate = messagingTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.worker = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("event-deadlines").daemon(true).factory());
+        worker.execute(this::run);
+    }
+
+    /**
+     * Closes the event at {@code deadline}, replacing any earlier deadline.
+     * When called inside a transaction this only happens after commit.
+     */
+    public void schedule(Long eventId, LocalDateTime deadline) {
+        if (eventId == null || deadline == null) {
+            return;
+        }
+        afterCommit(() -> enqueue(eventId, deadline));
+    }
+
+    public void cancel(Long eventId) {
+        afterCommit(() -> deadlines.remove(eventId));
+    }
+
+    public int getScheduledCount() {
+        return deadlines.size();
+    }
+
+    /**
+     * Queues every open event from the database and forgets the rest.
+     * Deadlines already queued unchanged are left alone, and so are those
+     * scheduled or cancelled while the query ran: the query may predate them.
+     */
+    @Scheduled(fixedDelayString = "${app.events.deadline-sweep-ms:600000}")
+    public void reload() {
+        Map<Long, Deadline> before = new HashMap<>(deadlines);
+        List<DinnerEventDeadline> open = dinnerEventRepository.findDeadlinesByStatus(DinnerEvent.EventStatus.OPEN);
+        Set<Long> openIds = new HashSet<>();
+        for (DinnerEventDeadline event : open) {
+            if (event.getDeadline() != null) {
+                openIds.add(event.getId());
+                Deadline captured = before.get(event.getId());
+                if (captured == null || captured.dueMillis() != dueMillis(event.getDeadline())) {
+                    enqueueIfUnchanged(event.getId(), event.getDeadline(), captured);
+                }
+            }
+        }
+        before.forEach((eventId, captured) -> {
+            if (!openIds.contains(eventId)) {
+                deadlines.remove(eventId, captured);
+            }
+        });
+        logger.debug("{} event deadlines scheduled", deadlines.size());
+    }
+
+    private void enqueue(Long eventId, LocalDateTime deadline) {
+        Deadline entry = new Deadline(eventId, dueMillis(deadline));
+        deadlines.put(eventId, entry);
+        queue.add(entry);
+    }
+
+    // Replaces the entry seen before the reload's query, or adds one if there was none
+    private void enqueueIfUnchanged(Long eventId, LocalDateTime deadline, Deadline captured) {
+        Deadline entry = new Deadline(eventId, dueMillis(deadline));
+        boolean unchanged = captured != null
+                ? deadlines.replace(eventId, captured, entry)
+                : deadlines.putIfAbsent(eventId, entry) == null;
+        if (unchanged) {
+            queue.add(entry);
+        }
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<Deadline> due = new ArrayList<>();
+                due.add(queue.take());
+                queue.drainTo(due);
+                List<Long> eventIds = due.stream()
+                        .filter(entry -> deadlines.remove(entry.eventId(), entry))
+                        .map(Deadline::eventId)
+                        .toList();
+                if (!eventIds.isEmpty()) {
+                    close(eventIds);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // The next reload queues the events again
+                logger.error("Could not close events at their deadline", e);
+            }
+        }
+    }
+
+    /**
+     * Closes the events among {@code eventIds} that are still due, then tells
+     * their members once the update has committed.
+     */
+    void close(List<Long> eventIds) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (dinnerEventRepository.closeDue(eventIds, LocalDateTime.now()) == 0) {
+                return;
+            }
+            List<DinnerEvent> closed = dinnerEventRepository.findWithOrganizerByIdInAndStatus(eventIds,
+                    DinnerEvent.EventStatus.CLOSED);
+            List<Long> closedIds = closed.stream().map(DinnerEvent::getId).toList();
+            closedIds.forEach(changeJournal::eventChanged);
+            eventViewService.eventsChanged(closedIds);
+
+            Map<Long, LocalDateTime> closedDeadlines = new HashMap<>();
+            Set<String> members = new HashSet<>();
+            for (DinnerEvent event : closed) {
+                closedDeadlines.put(event.getId(), event.getDeadline());
+                members.add(event.getOrganizer().getUsername());
+                event.getParticipants().stream().map(User::getUsername).forEach(members::add);
+            }
+            afterCommit(() -> {
+                closedDeadlines.forEach(eventUpdatePublisher::closed);
+                for (String username : members) {
+                    messagingTemplate.convertAndSendToUser(Objects.requireNonNull(username),
+                            "/topic/dashboard-updates", "REFRESH");
+                }
+            });
+            logger.info("Closed {} events at their deadline", closedIds.size());
+        });
+    }
+
+    // Rounded up, so the event is never taken before its deadline has passed
+    private static long dueMillis(LocalDateTime deadline) {
+        Instant instant = deadline.atZone(ZoneId.systemDefault()).toInstant();
+        return instant.toEpochMilli() + (instant.getNano() % 1_000_000 != 0 ? 1 : 0);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+}
@@ -2,23 +2,29 @@ package it.ucdm.leisure.dinnerplan.features.event;
 
 import it.ucdm.leisure.dinnerplan.features.event.dto.CalendarEventDTO;
 import it.ucdm.leisure.dinnerplan.features.event.dto.SmartEventRequest;
-import it.ucdm.leisure.dinnerplan.features.proposal.AffinityService;
-import it.ucdm.leisure.dinnerplan.features.proposal.Proposal;
 import it.ucdm.leisure.dinnerplan.features.proposal.ProposalCatalogService;
 import it.ucdm.leisure.dinnerplan.features.proposal.ProposalService;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalSpatialIndex;
 import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalDTO;
 import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalView;
 import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
 import it.ucdm.leisure.dinnerplan.features.user.Role;
 import it.ucdm.leisure.dinnerplan.features.user.User;
 import it.ucdm.leisure.dinnerplan.features.user.UserService;
 import it.ucdm.leisure.dinnerplan.utils.UserAgentUtils;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -34,18 +40,29 @@ public class DinnerController {
     private final InteractionService interactionService;
     private final UserService userService;
     private final UserAgentUtils userAgentUtils;
-    private final AffinityService affinityService;
+    private final ProposalSpatialIndex proposalSpatialIndex;
+    private final EventViewService eventViewService;
+    private final EventUpdatePublisher eventUpdatePublisher;
+    private final VoteTally voteTally;
+
+    @Value("${app.geo.suggestion-radius-km:50.0}")
+    private double suggestionRadiusKm;
 
     public DinnerController(DinnerEventService dinnerEventService, ProposalService proposalService,
             ProposalCatalogService proposalCatalogService, InteractionService interactionService,
-            UserService userService, UserAgentUtils userAgentUtils, AffinityService affinityService) {
+            UserService userService, UserAgentUtils userAgentUtils,
+            ProposalSpatialIndex proposalSpatialIndex, EventViewService eventViewService,
+            EventUpdatePublisher eventUpdatePublisher, VoteTally voteTally) {
         this.dinnerEventService = dinnerEventService;
         this.proposalService = proposalService;
         this.proposalCatalogService = proposalCatalogService;
         this.interactionService = interactionService;
         this.userService = userService;
         this.userAgentUtils = userAgentUtils;
-        this.affinityService = affinityService;
+        this.proposalSpatialIndex = proposalSpatialIndex;
+        this.eventViewService = eventViewService;
+        this.eventUpdatePublisher = eventUpdatePublisher;
+        this.voteTally = voteTally;
     }
 
     @GetMapping("/manual")
@@ -81,9 +98,20 @@ public class DinnerController {
 
     @GetMapping("/fragments/dashboard")
     public String getDashboardFragment(Model model, @AuthenticationPrincipal UserDetails userDetails,
-            @RequestHeader(value = "User-Agent", required = false) String userAgent) {
+            @RequestHeader(value = "User-Agent", required = false) String userAgent, WebRequest webRequest,
+            HttpServletResponse response) {
         if (userDetails != null) {
             User user = userService.findByUsername(userDetails.getUsername());
+
+            // Events by version, suggestions by catalog generation, distances by the user's position
+            String etag = EventETags.forEvents(dinnerEventService.getEventVersionsForUser(user.getUsername()),
+                    user.getUsername(), templateVariant(userAgent), proposalCatalogService.getGeneration(),
+                    user.getRole(), user.getLatitude(), user.getLongitude());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, EventETags.CACHE_CONTROL.getHeaderValue());
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
+
             model.addAttribute("events", dinnerEventService.getEventsForUser(userDetails.getUsername()));
             
             List<ProposalSuggestionDTO> suggestions = proposalCatalogService.getProposalSuggestions();
@@ -105,10 +133,15 @@ public class DinnerController {
 
     private void calculateDistancesForSuggestions(List<ProposalSuggestionDTO> suggestions, User user) {
         if (user != null && user.getLatitude() != null && user.getLongitude() != null) {
+            // Only proposals near the user get a distance; the index skips the rest
+            Map<String, Double> distances = new HashMap<>();
+            for (ProposalSpatialIndex.Hit hit : proposalSpatialIndex.withinRadius(user.getLatitude(),
+                    user.getLongitude(), suggestionRadiusKm)) {
+                distances.merge(hit.catalogKey(), hit.distanceKm(), Math::min);
+            }
             for (ProposalSuggestionDTO dto : suggestions) {
-                if (dto.getLatitude() != null && dto.getLongitude() != null) {
-                    double distance = calculateHaversineDistance(user.getLatitude(), user.getLongitude(),
-                            dto.getLatitude(), dto.getLongitude());
+                Double distance = distances.get(ProposalSuggestionDTO.catalogKey(dto.getLocation(), dto.getAddress()));
+                if (distance != null) {
                     dto.setDistanceFromUser(distance);
                 }
             }
@@ -144,6 +177,31 @@ public class DinnerController {
         return "redirect:/events/" + id;
     }
 
+    // Conditional GET on an event fragment, answered from the event's version before anything is loaded.
+    // The viewer's role is part of the tag: what a fragment offers depends on it, not on the event.
+    // So are the vote engine's votes not written yet, which fragments show but the version does not count.
+    private boolean eventNotModified(Long id, UserDetails userDetails, String userAgent, WebRequest webRequest,
+            HttpServletResponse response) {
+        if (userDetails == null) {
+            return false;
+        }
+        Optional<Long> version = dinnerEventService.findEventVersion(id);
+        if (version.isEmpty()) {
+            return false;
+        }
+        String roles = userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).sorted()
+                .collect(Collectors.joining(","));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, EventETags.CACHE_CONTROL.getHeaderValue());
+        return webRequest.checkNotModified(EventETags.forEvent(id, version.get(), voteTally.changeStamp(id),
+                userDetails.getUsername(), templateVariant(userAgent) + "-" + roles));
+    }
+
+    // The same data renders differently per template and language
+    private String templateVariant(String userAgent) {
+        return (userAgentUtils.isMobile(userAgent) ? "mobile-" : "desktop-")
+                + LocaleContextHolder.getLocale().toLanguageTag();
+    }
+
     // Base population for common event data (User access, basic event info)
     private DinnerEvent populateBaseEventModel(Long id, Model model, UserDetails userDetails) {
         DinnerEvent event = dinnerEventService.getEventById(id);
@@ -181,100 +239,76 @@ public class DinnerController {
 
     // Heavy population for full page load
     private boolean populateFullEventModel(Long id, Model model, UserDetails userDetails) {
+        // Read before the page state: deltas numbered after this are patched on top of it
+        model.addAttribute("eventSeq", eventUpdatePublisher.currentSeq(id));
+        model.addAttribute("eventSeqOrigin", eventUpdatePublisher.getNodeId());
         DinnerEvent event = populateBaseEventModel(id, model, userDetails);
         if (event == null)
             return false;
 
-        List<it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO> allSuggestions = proposalCatalogService
-                .getProposalSuggestions();
-        java.util.Set<String> existingKeys = event.getProposals().stream()
-                .map(p -> (p.getLocation() + "|" + (p.getAddress() != null ? p.getAddress() : "")).toLowerCase())
-                .collect(java.util.stream.Collectors.toSet());
-
-        List<it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO> filteredSuggestions = allSuggestions
-                .stream()
-                .filter(dto -> {
-                    String key = (dto.getLocation() + "|" + (dto.getAddress() != null ? dto.getAddress() : ""))
-                            .toLowerCase();
-                    return !existingKeys.contains(key);
-                })
-                .toList();
+        EventView view = populateProposalModel(event, model);
 
+        List<ProposalSuggestionDTO> filteredSuggestions = proposalCatalogService.getProposalSuggestions().stream()
+                .filter(dto -> !view.proposalKeys().contains(
+                        ProposalSuggestionDTO.catalogKey(dto.getLocation(), dto.getAddress())))
+                .toList();
         model.addAttribute("recentProposals", filteredSuggestions);
 
-        List<Proposal> sortedProposals = new ArrayList<>(proposalService.getProposalsForEvent(id));
-        Long selectedProposalId = event.getSelectedProposalDate() != null
-                ? event.getSelectedProposalDate().getProposal().getId()
-                : -1L;
-        sortedProposals.sort((p1, p2) -> {
-            if (p1.getId().equals(selectedProposalId))
-                return -1;
-            if (p2.getId().equals(selectedProposalId))
-                return 1;
-            int v1 = p1.getDates().stream()
-                    .filter(d -> d.getDinnerEvent().getId().equals(id))
-                    .mapToInt(d -> d.getVotes().size()).max().orElse(0);
-            int v2 = p2.getDates().stream()
-                    .filter(d -> d.getDinnerEvent().getId().equals(id))
-                    .mapToInt(d -> d.getVotes().size()).max().orElse(0);
-            return Integer.compare(v2, v1);
-        });
-        
-        // Convert to DTOs and calculate distance AND Affinity Score
-        User currentUser = (User) model.getAttribute("currentUser");
-        List<ProposalDTO> proposalDTOs = new ArrayList<>();
-        for (Proposal p : sortedProposals) {
+        if (model.getAttribute("currentUser") == null) {
+            return false;
+        }
+
+        Boolean isOrganizerObj = (Boolean) model.getAttribute("isOrganizer");
+        boolean isOrganizer = Boolean.TRUE.equals(isOrganizerObj);
+        if (isOrganizer) {
+            model.addAttribute("allUsers", userService.getAllUsers());
+        }
+
+        model.addAttribute("chatMessages", view.chatMessages());
+        model.addAttribute("olderChatCursor", view.olderChatCursor());
+
+        return true;
+    }
+
+    // Proposal list from the event's materialized view; only the per-user parts are computed here
+    private EventView populateProposalModel(DinnerEvent event, Model model) {
+        // At least as new as the event just loaded, which is at least as new as the ETag
+        EventView view = eventViewService.getView(event.getId(), event.getVersion());
+        User user = (User) model.getAttribute("currentUser");
+        boolean canSeeAffinity = user != null && (user.getRole() == Role.ORGANIZER || user.getRole() == Role.ADMIN);
+
+        List<ProposalDTO> proposalDTOs = new ArrayList<>(view.proposals().size());
+        for (ProposalView p : view.proposals()) {
             ProposalDTO dto = new ProposalDTO(p);
-            
+
             // Distance
-            if (currentUser != null && currentUser.getLatitude() != null && currentUser.getLongitude() != null 
+            if (user != null && user.getLatitude() != null && user.getLongitude() != null
                     && p.getLatitude() != null && p.getLongitude() != null) {
-                double distance = calculateHaversineDistance(currentUser.getLatitude(), currentUser.getLongitude(), 
+                double distance = ProposalSpatialIndex.haversineKm(user.getLatitude(), user.getLongitude(),
                         p.getLatitude(), p.getLongitude());
                 dto.setDistanceFromUser(distance);
             }
-            
+
             // Affinity Score
-            if (currentUser != null && (currentUser.getRole() == Role.ORGANIZER || currentUser.getRole() == Role.ADMIN)) {
-                 dto.setAffinityScore(affinityService.calculateAffinity(p, event));
+            if (canSeeAffinity) {
+                dto.setAffinityScore(p.getAffinityScore());
             }
-            
+
             proposalDTOs.add(dto);
         }
-        
         model.addAttribute("sortedProposals", proposalDTOs);
-        
-        // Pre-calculate incompatible users map
-        Map<Long, List<User>> incompatibleUsersMap = new HashMap<>();
-        for (Proposal p : sortedProposals) {
-            incompatibleUsersMap.put(p.getId(), p.getIncompatibleParticipants(event));
-        }
-        model.addAttribute("incompatibleUsersMap", incompatibleUsersMap);
 
-        User user = (User) model.getAttribute("currentUser");
-        if (user == null) {
-            return false;
-        }
-
-        var votes = interactionService.getUserVotesForEvent(id, user.getId());
-        var votedProposalDateIds = votes.stream().map(v -> v.getProposalDate().getId()).toList();
-        model.addAttribute("votedProposalDateIds", votedProposalDateIds);
-
-        if (event.getStatus() == DinnerEvent.EventStatus.DECIDED && event.getSelectedProposalDate() != null) {
-            interactionService
-                    .getUserRatingForProposal(event.getSelectedProposalDate().getProposal().getId(), user.getId())
-                    .ifPresent(rating -> model.addAttribute("userRating", rating));
-        }
+        if (user != null) {
+            var votedProposalDateIds = interactionService.getVotedProposalDateIds(event.getId(), user.getId());
+            model.addAttribute("votedProposalDateIds", votedProposalDateIds);
 
-        Boolean isOrganizerObj = (Boolean) model.getAttribute("isOrganizer");
-        boolean isOrganizer = Boolean.TRUE.equals(isOrganizerObj);
-        if (isOrganizer) {
-            model.addAttribute("allUsers", userService.getAllUsers());
+            if (event.getStatus() == DinnerEvent.EventStatus.DECIDED && event.getSelectedProposalDate() != null) {
+                interactionService
+                        .getUserRatingForProposal(event.getSelectedProposalDate().getProposal().getId(), user.getId())
+                        .ifPresent(rating -> model.addAttribute("userRating", rating));
+            }
         }
-
-        model.addAttribute("chatMessages", interactionService.getEventMessages(id));
-
-        return true;
+        return view;
     }
 
     @GetMapping("/events/{id}")
@@ -292,7 +326,10 @@ public class DinnerController {
     @GetMapping("/events/{id}/fragments/header")
     public String getEventHeaderFragment(@PathVariable Long id, Model model,
             @AuthenticationPrincipal UserDetails userDetails,
-            @RequestHeader(value = "User-Agent", required = false) String userAgent) {
+            @RequestHeader(value = "User-Agent", required = false) String userAgent, WebRequest webRequest,
+            HttpServletResponse response) {
+        if (eventNotModified(id, userDetails, userAgent, webRequest, response))
+            return null;
         if (populateBaseEventModel(id, model, userDetails) == null)
             return "redirect:/";
         if (userAgentUtils.isMobile(userAgent)) {
@@ -304,7 +341,10 @@ public class DinnerController {
     @GetMapping("/events/{id}/fragments/actions")
     public String getEventActionsFragment(@PathVariable Long id, Model model,
             @AuthenticationPrincipal UserDetails userDetails,
-            @RequestHeader(value = "User-Agent", required = false) String userAgent) {
+            @RequestHeader(value = "User-Agent", required = false) String userAgent, WebRequest webRequest,
+            HttpServletResponse response) {
+        if (eventNotModified(id, userDetails, userAgent, webRequest, response))
+            return null;
         if (populateBaseEventModel(id, model, userDetails) == null)
             return "redirect:/";
         if (userAgentUtils.isMobile(userAgent)) {
@@ -316,72 +356,15 @@ public class DinnerController {
     @GetMapping("/events/{id}/fragments/proposals")
     public String getProposalListFragment(@PathVariable Long id, Model model,
             @AuthenticationPrincipal UserDetails userDetails,
-            @RequestHeader(value = "User-Agent", required = false) String userAgent) {
+            @RequestHeader(value = "User-Agent", required = false) String userAgent, WebRequest webRequest,
+            HttpServletResponse response) {
+        if (eventNotModified(id, userDetails, userAgent, webRequest, response))
+            return null;
         DinnerEvent event = populateBaseEventModel(id, model, userDetails);
         if (event == null)
             return "redirect:/";
 
-        List<Proposal> sortedProposals = new ArrayList<>(proposalService.getProposalsForEvent(id));
-        Long selectedProposalId = event.getSelectedProposalDate() != null
-                ? event.getSelectedProposalDate().getProposal().getId()
-                : -1L;
-        sortedProposals.sort((p1, p2) -> {
-            if (p1.getId().equals(selectedProposalId))
-                return -1;
-            if (p2.getId().equals(selectedProposalId))
-                return 1;
-            int v1 = p1.getDates().stream()
-                    .filter(d -> d.getDinnerEvent().getId().equals(id))
-                    .mapToInt(d -> d.getVotes().size()).max().orElse(0);
-            int v2 = p2.getDates().stream()
-                    .filter(d -> d.getDinnerEvent().getId().equals(id))
-                    .mapToInt(d -> d.getVotes().size()).max().orElse(0);
-            return Integer.compare(v2, v1);
-        });
-        
-        // Convert to DTOs and calculate distance AND Affinity Score
-        User currentUser = (User) model.getAttribute("currentUser");
-        List<ProposalDTO> proposalDTOs = new ArrayList<>();
-        for (Proposal p : sortedProposals) {
-            ProposalDTO dto = new ProposalDTO(p);
-            
-            // Distance
-            if (currentUser != null && currentUser.getLatitude() != null && currentUser.getLongitude() != null 
-                    && p.getLatitude() != null && p.getLongitude() != null) {
-                double distance = calculateHaversineDistance(currentUser.getLatitude(), currentUser.getLongitude(), 
-                        p.getLatitude(), p.getLongitude());
-                dto.setDistanceFromUser(distance);
-            }
-            
-            // Affinity Score
-            if (currentUser != null && (currentUser.getRole() == Role.ORGANIZER || currentUser.getRole() == Role.ADMIN)) {
-                 dto.setAffinityScore(affinityService.calculateAffinity(p, event));
-            }
-
-            proposalDTOs.add(dto);
-        }
-        model.addAttribute("sortedProposals", proposalDTOs);
-        
-        // Pre-calculate incompatible users map
-        Map<Long, List<User>> incompatibleUsersMap = new HashMap<>();
-        for (Proposal p : sortedProposals) {
-            incompatibleUsersMap.put(p.getId(), p.getIncompatibleParticipants(event));
-        }
-        model.addAttribute("incompatibleUsersMap", incompatibleUsersMap);
-
-        User user = (User) model.getAttribute("currentUser");
-        if (user != null) {
-            var votes = interactionService.getUserVotesForEvent(id, user.getId());
-            var votedProposalDateIds = votes.stream().map(v -> v.getProposalDate().getId()).toList();
-            model.addAttribute("votedProposalDateIds", votedProposalDateIds);
-        }
-
-        if (event.getStatus() == DinnerEvent.EventStatus.DECIDED && event.getSelectedProposalDate() != null
-                && user != null) {
-            interactionService
-                    .getUserRatingForProposal(event.getSelectedProposalDate().getProposal().getId(), user.getId())
-                    .ifPresent(rating -> model.addAttribute("userRating", rating));
-        }
+        populateProposalModel(event, model);
 
         if (userAgentUtils.isMobile(userAgent)) {
             return "mobile/fragments/event-proposals :: proposalList";
@@ -392,7 +375,13 @@ public class DinnerController {
     @GetMapping("/events/{id}/fragments/participants")
     public String getParticipantListFragment(@PathVariable Long id, Model model,
             @AuthenticationPrincipal UserDetails userDetails,
-            @RequestHeader(value = "User-Agent", required = false) String userAgent) {
+            @RequestHeader(value = "User-Agent", required = false) String userAgent, WebRequest webRequest,
+            HttpServletResponse response) {
+        // The organizer's lists include every user, which the event's version does not cover
+        boolean organizerView = userDetails != null
+                && dinnerEventService.isOrganizedBy(id, userDetails.getUsername());
+        if (!organizerView && eventNotModified(id, userDetails, userAgent, webRequest, response))
+            return null;
         DinnerEvent event = populateBaseEventModel(id, model, userDetails);
         if (event == null)
             return "redirect:/";
@@ -596,15 +585,4 @@ public class DinnerController {
         proposalService.addProposal(id, List.of(LocalDateTime.parse(dateOption)), location, address, description, preferences);
         return "redirect:/events/" + id;
     }
-
-    private double calculateHaversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Radius of the earth in km
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
-    }
 }
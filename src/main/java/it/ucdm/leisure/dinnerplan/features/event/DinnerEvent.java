@@ -50,6 +50,12 @@ public class DinnerEvent {
     @Enumerated(EnumType.STRING)
     private EventStatus status;
 
+    // Bumped in bulk by DinnerEventRepository.incrementVersions whenever proposals, votes,
+    // participants or status change; never written from the entity so a stale copy cannot roll it back
+    @Column(nullable = false, updatable = false)
+    @org.hibernate.annotations.ColumnDefault("0")
+    private long version;
+
     public enum EventStatus {
         OPEN,
         CLOSED,
@@ -166,6 +172,14 @@ public class DinnerEvent {
         this.status = status;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public static class DinnerEventBuilder {
         private Long id;
         private String title;
@@ -0,0 +1,15 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * Id and deadline of an event, as returned by
+ * {@link DinnerEventRepository#findDeadlinesByStatus}; what
+ * {@link DeadlineScheduler} needs to queue it.
+ */
+public interface DinnerEventDeadline {
+
+    Long getId();
+
+    LocalDateTime getDeadline();
+}
@@ -6,7 +6,9 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "dinner_event_messages")
+// Serves the keyset pages of an event's chat, newest first
+@Table(name = "dinner_event_messages", indexes = @Index(name = "idx_event_messages_event_time",
+        columnList = "event_id, timestamp, id"))
 public class DinnerEventMessage {
 
     @Id
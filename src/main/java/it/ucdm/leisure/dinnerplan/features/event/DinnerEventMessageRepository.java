@@ -1,8 +1,27 @@
 package it.ucdm.leisure.dinnerplan.features.event;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface DinnerEventMessageRepository extends JpaRepository<DinnerEventMessage, Long> {
     List<DinnerEventMessage> findByEventIdOrderByTimestampAsc(Long eventId);
+
+    List<DinnerEventMessage> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<DinnerEventMessage> findByEvent_IdInOrderByIdAsc(Collection<Long> eventIds);
+
+    // Keyset pages on (timestamp, id), newest first: no offset to skip, whatever the page
+    @Query("SELECT m FROM DinnerEventMessage m JOIN FETCH m.sender WHERE m.event.id = :eventId "
+            + "ORDER BY m.timestamp DESC, m.id DESC")
+    List<DinnerEventMessage> findLatestByEventId(Long eventId, Limit limit);
+
+    @Query("SELECT m FROM DinnerEventMessage m JOIN FETCH m.sender WHERE m.event.id = :eventId "
+            + "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id)) "
+            + "ORDER BY m.timestamp DESC, m.id DESC")
+    List<DinnerEventMessage> findBeforeByEventId(Long eventId, LocalDateTime timestamp, Long id, Limit limit);
 }
@@ -1,11 +1,17 @@
 package it.ucdm.leisure.dinnerplan.features.event;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import it.ucdm.leisure.dinnerplan.features.user.User;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface DinnerEventRepository extends JpaRepository<DinnerEvent, Long> {
@@ -14,5 +20,51 @@ public interface DinnerEventRepository extends JpaRepository<DinnerEvent, Long>
     List<DinnerEvent> findDistinctByOrganizerOrParticipantsContainsOrderByDeadlineDesc(User organizer,
             User participant);
 
-    List<DinnerEvent> findByStatusAndDeadlineBefore(DinnerEvent.EventStatus status, LocalDateTime deadline);
+    @Query("SELECT e.id AS id, e.deadline AS deadline FROM DinnerEvent e WHERE e.status = :status")
+    List<DinnerEventDeadline> findDeadlinesByStatus(DinnerEvent.EventStatus status);
+
+    /**
+     * Closes those of the events that are still open and undecided with their
+     * deadline reached, in one statement.
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE DinnerEvent e SET e.status = it.ucdm.leisure.dinnerplan.features.event.DinnerEvent.EventStatus.CLOSED "
+            + "WHERE e.id IN :ids AND e.status = it.ucdm.leisure.dinnerplan.features.event.DinnerEvent.EventStatus.OPEN "
+            + "AND e.deadline <= :now AND e.selectedProposalDate IS NULL")
+    int closeDue(Collection<Long> ids, LocalDateTime now);
+
+    @Query("SELECT e FROM DinnerEvent e JOIN FETCH e.organizer WHERE e.id IN :ids AND e.status = :status")
+    List<DinnerEvent> findWithOrganizerByIdInAndStatus(Collection<Long> ids, DinnerEvent.EventStatus status);
+
+    @Query("SELECT u.id FROM User u WHERE u.username = :username AND EXISTS (SELECT 1 FROM DinnerEvent e"
+            + " LEFT JOIN e.participants p WHERE e.id = :eventId AND (e.organizer = u OR p = u))")
+    Optional<Long> findMemberId(Long eventId, String username);
+
+    boolean existsByIdAndOrganizerUsername(Long id, String username);
+
+    @Query("SELECT e.version FROM DinnerEvent e WHERE e.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    @Query("SELECT DISTINCT e.id AS id, e.version AS version FROM DinnerEvent e LEFT JOIN e.participants p "
+            + "WHERE e.organizer.username = :username OR p.username = :username ORDER BY e.id")
+    List<DinnerEventVersion> findVersionsByMember(String username);
+
+    @Query("SELECT e.id AS id, e.version AS version FROM DinnerEvent e WHERE e.id IN :ids")
+    List<DinnerEventVersion> findVersionsByIdIn(Collection<Long> ids);
+
+    @Query("SELECT e.id AS id, e.version AS version FROM DinnerEvent e ORDER BY e.id")
+    List<DinnerEventVersion> findAllVersions();
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE DinnerEvent e SET e.version = e.version + 1 WHERE e.id IN :ids")
+    int incrementVersions(Collection<Long> ids);
+
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE DinnerEvent e SET e.version = e.version + 1")
+    int incrementAllVersions();
+
+    List<DinnerEvent> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 }
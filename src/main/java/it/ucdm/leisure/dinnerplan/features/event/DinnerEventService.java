@@ -1,13 +1,15 @@
 package it.ucdm.leisure.dinnerplan.features.event;
 
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalCatalogService;
 import it.ucdm.leisure.dinnerplan.features.user.Role;
 import it.ucdm.leisure.dinnerplan.features.user.User;
 import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
 import it.ucdm.leisure.dinnerplan.features.user.UserService;
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
 import it.ucdm.leisure.dinnerplan.service.EmailService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,17 +24,63 @@ public class DinnerEventService {
     private final SimpMessagingTemplate messagingTemplate;
     private final UserService userService;
     private final EmailService emailService;
+    private final ProposalCatalogService proposalCatalogService;
+    private final EventViewService eventViewService;
+    private final BroadcastCoalescer broadcastCoalescer;
+    private final EventUpdatePublisher eventUpdatePublisher;
+    private final ChangeJournal changeJournal;
+    private final DeadlineScheduler deadlineScheduler;
 
     @Value("${app.base-url:http://localhost:8080}")
     private String baseUrl;
 
     public DinnerEventService(DinnerEventRepository dinnerEventRepository, UserRepository userRepository,
-            SimpMessagingTemplate messagingTemplate, UserService userService, EmailService emailService) {
+            SimpMessagingTemplate messagingTemplate, UserService userService, EmailService emailService,
+            ProposalCatalogService proposalCatalogService, EventViewService eventViewService,
+            BroadcastCoalescer broadcastCoalescer, EventUpdatePublisher eventUpdatePublisher,
+            ChangeJournal changeJournal, DeadlineScheduler deadlineScheduler) {
         this.dinnerEventRepository = dinnerEventRepository;
         this.userRepository = userRepository;
         this.messagingTemplate = messagingTemplate;
         this.userService = userService;
         this.emailService = emailService;
+        this.proposalCatalogService = proposalCatalogService;
+        this.eventViewService = eventViewService;
+        this.broadcastCoalescer = broadcastCoalescer;
+        this.eventUpdatePublisher = eventUpdatePublisher;
+        this.changeJournal = changeJournal;
+        this.deadlineScheduler = deadlineScheduler;
+    }
+
+    /**
+     * Version of the event without loading it; empty if the event does not exist.
+     */
+    public Optional<Long> findEventVersion(Long eventId) {
+        return dinnerEventRepository.findVersionById(eventId);
+    }
+
+    /**
+     * Whether the user organizes the event, without loading it.
+     */
+    public boolean isOrganizedBy(Long eventId, String username) {
+        return dinnerEventRepository.existsByIdAndOrganizerUsername(eventId, username);
+    }
+
+    /**
+     * Ids and versions of the events {@link #getEventsForUser(String)} would return.
+     */
+    public List<DinnerEventVersion> getEventVersionsForUser(String username) {
+        if (username == null) {
+            return new ArrayList<>();
+        }
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        if (user.getRole() == Role.ADMIN) {
+            return dinnerEventRepository.findAllVersions();
+        }
+
+        return dinnerEventRepository.findVersionsByMember(username);
     }
 
     public List<DinnerEvent> getEventsForUser(String username) {
@@ -87,6 +135,8 @@ public class DinnerEventService {
                 .build();
 
         DinnerEvent saved = dinnerEventRepository.save(Objects.requireNonNull(event));
+        changeJournal.eventChanged(saved.getId());
+        deadlineScheduler.schedule(saved.getId(), saved.getDeadline());
 
         messagingTemplate.convertAndSendToUser(Objects.requireNonNull(organizer.getUsername()),
                 "/topic/dashboard-updates", "REFRESH");
@@ -133,7 +183,10 @@ public class DinnerEventService {
 
         event.setParticipants(newParticipants);
         dinnerEventRepository.save(event);
+        List<String> participantNames = newParticipants.stream().map(User::getUsername).toList();
 
+        changeJournal.eventChanged(eventId);
+        eventViewService.eventChanged(eventId);
         org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
                 new org.springframework.transaction.support.TransactionSynchronization() {
                     @Override
@@ -148,7 +201,7 @@ public class DinnerEventService {
                                     "/topic/dashboard-updates",
                                     "REFRESH");
                         }
-                        messagingTemplate.convertAndSend("/topic/events/" + eventId, "update-participants");
+                        eventUpdatePublisher.participantsChanged(eventId, participantNames);
                     }
                 });
     }
@@ -163,6 +216,8 @@ public class DinnerEventService {
             throw new SecurityException("Only organizer or admin can delete event");
         }
 
+        proposalCatalogService.proposalsUnlinked(new ArrayList<>(event.getProposals()));
+
         // Manually clear associations that might cause FK constraints if not handled by cascade
         event.getProposals().clear();
         event.getParticipants().clear();
@@ -171,34 +226,19 @@ public class DinnerEventService {
         dinnerEventRepository.save(event);
         dinnerEventRepository.delete(event);
 
+        changeJournal.eventDeleted(eventId);
+        deadlineScheduler.cancel(eventId);
+        eventViewService.eventDeleted(eventId);
         org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
                 new org.springframework.transaction.support.TransactionSynchronization() {
                     @Override
                     public void afterCommit() {
-                        messagingTemplate.convertAndSend("/topic/events/" + eventId, "DELETED");
-                        messagingTemplate.convertAndSend("/topic/dashboard-updates", "REFRESH");
+                        eventUpdatePublisher.deleted(eventId);
+                        broadcastCoalescer.send("/topic/dashboard-updates", "REFRESH");
                     }
                 });
     }
 
-    @Scheduled(fixedRate = 60000)
-    @Transactional
-    public void closeExpiredEvents() {
-        List<DinnerEvent> expiredEvents = dinnerEventRepository.findByStatusAndDeadlineBefore(
-                DinnerEvent.EventStatus.OPEN, LocalDateTime.now());
-
-        for (DinnerEvent event : expiredEvents) {
-            if (event.getSelectedProposalDate() == null) {
-                event.setStatus(DinnerEvent.EventStatus.CLOSED);
-                dinnerEventRepository.save(event);
-                messagingTemplate.convertAndSend("/topic/events/" + event.getId(), "update");
-            }
-        }
-        if (!expiredEvents.isEmpty()) {
-            messagingTemplate.convertAndSend("/topic/dashboard-updates", "REFRESH");
-        }
-    }
-
     @Transactional
     public void extendDeadline(Long eventId, LocalDateTime newDeadline, String username) {
         DinnerEvent event = getEventById(Objects.requireNonNull(eventId));
@@ -216,13 +256,16 @@ public class DinnerEventService {
             event.setStatus(DinnerEvent.EventStatus.OPEN);
         }
         dinnerEventRepository.save(event);
+        deadlineScheduler.schedule(eventId, newDeadline);
 
+        changeJournal.eventChanged(eventId);
+        eventViewService.eventChanged(eventId);
         org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
                 new org.springframework.transaction.support.TransactionSynchronization() {
                     @Override
                     public void afterCommit() {
-                        messagingTemplate.convertAndSend("/topic/events/" + eventId, "update");
-                        messagingTemplate.convertAndSend("/topic/dashboard-updates", "REFRESH");
+                        eventUpdatePublisher.statusChanged(event);
+                        broadcastCoalescer.send("/topic/dashboard-updates", "REFRESH");
                     }
                 });
     }
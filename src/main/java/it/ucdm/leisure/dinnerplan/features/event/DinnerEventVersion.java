@@ -0,0 +1,13 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+/**
+ * Id and version of an event, as returned by
+ * {@link DinnerEventRepository#findVersionsByMember(String)}; enough to tell
+ * whether a page listing the events has changed without loading them.
+ */
+public interface DinnerEventVersion {
+
+    Long getId();
+
+    long getVersion();
+}
@@ -9,15 +9,19 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/events")
 @Tag(name = "Dinner Events", description = "Operations related to dinner events")
 public class DinnerRestController {
 
+    private static final String JSON_VARIANT = "json";
+
     private final DinnerEventService dinnerEventService;
     private final ProposalCatalogService proposalCatalogService;
 
@@ -29,14 +33,27 @@ public class DinnerRestController {
 
     @GetMapping
     @Operation(summary = "Get all events for the current user")
-    public ResponseEntity<List<DinnerEvent>> getEvents(@AuthenticationPrincipal UserDetails userDetails) {
-        return ResponseEntity.ok(dinnerEventService.getEventsForUser(userDetails.getUsername()));
+    public ResponseEntity<List<DinnerEvent>> getEvents(@AuthenticationPrincipal UserDetails userDetails,
+            WebRequest webRequest) {
+        String etag = EventETags.forEvents(dinnerEventService.getEventVersionsForUser(userDetails.getUsername()),
+                userDetails.getUsername(), JSON_VARIANT);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(EventETags.CACHE_CONTROL)
+                .body(dinnerEventService.getEventsForUser(userDetails.getUsername()));
     }
 
     @GetMapping("/{id}")
     @Operation(summary = "Get a specific event by ID")
-    public ResponseEntity<DinnerEvent> getEvent(@PathVariable Long id) {
-        return ResponseEntity.ok(dinnerEventService.getEventById(id));
+    public ResponseEntity<DinnerEvent> getEvent(@PathVariable Long id,
+            @AuthenticationPrincipal UserDetails userDetails, WebRequest webRequest) {
+        Optional<Long> version = dinnerEventService.findEventVersion(id);
+        if (version.isPresent() && webRequest.checkNotModified(
+                EventETags.forEvent(id, version.get(), userDetails.getUsername(), JSON_VARIANT))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(EventETags.CACHE_CONTROL).body(dinnerEventService.getEventById(id));
     }
 
     @PostMapping
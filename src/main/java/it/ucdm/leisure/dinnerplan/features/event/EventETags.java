@@ -0,0 +1,53 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import org.springframework.http.CacheControl;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * ETags for event pages and resources, derived from {@link DinnerEvent#getVersion()}
+ * and whatever else the response depends on (current user, mobile or desktop
+ * template, locale). They can be computed from a version query alone, so a
+ * matching {@code If-None-Match} is answered before the event is loaded.
+ */
+final class EventETags {
+
+    /**
+     * Responses are per user and must be revalidated on every use.
+     */
+    static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
+    private EventETags() {
+    }
+
+    static String forEvent(Long eventId, long version, String username, String variant) {
+        return forEvent(eventId, version, 0L, username, variant);
+    }
+
+    /**
+     * ETag for a response that also shows the votes held by the {@link VoteTally},
+     * which move the version only once written: {@code voteStamp} is the
+     * event's {@link VoteTally#changeStamp(Long) change stamp}.
+     */
+    static String forEvent(Long eventId, long version, long voteStamp, String username, String variant) {
+        return "\"e" + eventId + "v" + version + (voteStamp != 0 ? "t" + voteStamp : "") + "-"
+                + Integer.toHexString(Objects.hash(username, variant)) + "\"";
+    }
+
+    /**
+     * ETag for a listing of events; {@code extra} covers anything else it shows.
+     */
+    static String forEvents(List<DinnerEventVersion> versions, String username, String variant, Object... extra) {
+        long hash = 1;
+        for (DinnerEventVersion v : versions) {
+            hash = 31 * hash + v.getId();
+            hash = 31 * hash + v.getVersion();
+        }
+        for (Object o : extra) {
+            hash = 31 * hash + Objects.hashCode(o);
+        }
+        return "\"l" + versions.size() + "-" + Long.toHexString(hash) + "-"
+                + Integer.toHexString(Objects.hash(username, variant)) + "\"";
+    }
+}
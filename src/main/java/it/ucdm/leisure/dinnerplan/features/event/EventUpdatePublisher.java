@@ -0,0 +1,162 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.event.dto.EventDeltaDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.VoteRepository;
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Publishes typed {@link EventDeltaDTO} changes on {@code /topic/events/{id}}
+ * so that open event pages can patch themselves instead of reloading every
+ * fragment. Callers invoke it after commit, like the plain broadcasts.
+ * <p>
+ * Deltas go through the {@link BroadcastCoalescer}; a burst of votes on one
+ * date collapses into one trailing message with the latest count. Sequence
+ * numbers are assigned when a message actually goes out, so merged messages
+ * leave no gaps for the client to mistake for lost ones. The state a delta
+ * carries is read before the event's lock is taken; if another change was
+ * published meanwhile it is read again, so a higher seq never carries older
+ * state and a slow read does not hold up the event's other deltas.
+ * <p>
+ * With the broker relay every node publishes on the same topic with its own
+ * counter, so each delta carries the id of the publishing process and the
+ * client tracks one sequence per origin.
+ */
+@Service
+public class EventUpdatePublisher {
+
+    // Reads that may be outdated by a concurrent change before the state is read under the lock
+    private static final int MAX_UNLOCKED_READS = 2;
+
+    private final BroadcastCoalescer broadcastCoalescer;
+    private final VoteRepository voteRepository;
+    private final VoteTally voteTally;
+    // Counters restart with the process, so a restarted node must not reuse an origin
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<Long, Sequence> sequences = new ConcurrentHashMap<>();
+
+    // Seq of the last delta sent for an event, written under the instance's monitor,
+    // and the number of changes published for it
+    private static final class Sequence {
+        final AtomicLong changes = new AtomicLong();
+        volatile long seq;
+    }
+
+    public EventUpdatePublisher(BroadcastCoalescer broadcastCoalescer, VoteRepository voteRepository,
+            VoteTally voteTally) {
+        this.broadcastCoalescer = broadcastCoalescer;
+        this.voteRepository = voteRepository;
+        this.voteTally = voteTally;
+    }
+
+    /**
+     * Origin of the deltas this node publishes; rendered next to the sequence.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Sequence number of the last delta sent for the event; rendered into the
+     * page so the client knows which delta to expect next.
+     */
+    public long currentSeq(Long eventId) {
+        Sequence sequence = sequences.get(eventId);
+        return sequence != null ? sequence.seq : 0L;
+    }
+
+    /**
+     * A vote on the date was cast or withdrawn. The count and voters are read
+     * when the message goes out, so a merged message carries the final state;
+     * from the {@link VoteTally} if it tracks the event.
+     */
+    public void votesChanged(Long eventId, Long proposalDateId) {
+        publish(eventId, List.of(EventDeltaDTO.Type.VOTES, proposalDateId), () -> {
+            List<String> voters = voteTally.isTracked(eventId)
+                    ? voteTally.voters(eventId, proposalDateId)
+                    : voteRepository.findVoterUsernamesByProposalDateId(proposalDateId);
+            return EventDeltaDTO.votes(eventId, proposalDateId, voters.size(), voters);
+        });
+    }
+
+    public void proposalsChanged(Long eventId) {
+        publish(eventId, EventDeltaDTO.Type.PROPOSALS, () -> EventDeltaDTO.proposals(eventId));
+    }
+
+    public void statusChanged(DinnerEvent event) {
+        Long eventId = event.getId();
+        String status = event.getStatus() != null ? event.getStatus().name() : null;
+        String deadline = event.getDeadline() != null ? event.getDeadline().toString() : null;
+        Long selectedProposalDateId = event.getSelectedProposalDate() != null
+                ? event.getSelectedProposalDate().getId()
+                : null;
+        publish(eventId, EventDeltaDTO.Type.STATUS,
+                () -> EventDeltaDTO.status(eventId, status, deadline, selectedProposalDateId));
+    }
+
+    /**
+     * The event reached its deadline undecided and was closed by the
+     * {@link DeadlineScheduler}, which does not load the entities it closes.
+     */
+    public void closed(Long eventId, LocalDateTime deadline) {
+        String status = DinnerEvent.EventStatus.CLOSED.name();
+        String deadlineText = deadline != null ? deadline.toString() : null;
+        publish(eventId, EventDeltaDTO.Type.STATUS, () -> EventDeltaDTO.status(eventId, status, deadlineText, null));
+    }
+
+    public void participantsChanged(Long eventId, List<String> participants) {
+        List<String> usernames = List.copyOf(participants);
+        publish(eventId, EventDeltaDTO.Type.PARTICIPANTS, () -> EventDeltaDTO.participants(eventId, usernames));
+    }
+
+    /**
+     * The event no longer exists; its sequence is dropped once the delta is sent.
+     */
+    public void deleted(Long eventId) {
+        publish(eventId, EventDeltaDTO.Type.DELETED, () -> EventDeltaDTO.deleted(eventId));
+    }
+
+    private void publish(Long eventId, Object mergeKey, Supplier<EventDeltaDTO> delta) {
+        Sequence sequence = sequences.computeIfAbsent(eventId, id -> new Sequence());
+        sequence.changes.incrementAndGet();
+        broadcastCoalescer.send("/topic/events/" + eventId, mergeKey,
+                send -> emit(eventId, sequence, delta, send));
+    }
+
+    // Numbers and sends under the event's lock, so deltas go out in seq order. A delta read
+    // while another change was published may be older than one already sent: it is read again.
+    private void emit(Long eventId, Sequence sequence, Supplier<EventDeltaDTO> delta, Consumer<Object> send) {
+        for (int read = 0; read < MAX_UNLOCKED_READS; read++) {
+            long changes = sequence.changes.get();
+            EventDeltaDTO built = delta.get();
+            synchronized (sequence) {
+                if (sequence.changes.get() == changes) {
+                    number(eventId, sequence, built, send);
+                    return;
+                }
+            }
+        }
+        synchronized (sequence) {
+            number(eventId, sequence, delta.get(), send);
+        }
+    }
+
+    // Callers hold the sequence's monitor
+    private void number(Long eventId, Sequence sequence, EventDeltaDTO built, Consumer<Object> send) {
+        built.setOrigin(nodeId);
+        built.setSeq(++sequence.seq);
+        send.accept(built);
+        if (built.getType() == EventDeltaDTO.Type.DELETED) {
+            sequences.remove(eventId, sequence);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatMessageDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Materialized, user-independent part of an event page: the proposals in
+ * display order with their dates, vote counts, incompatible participants and
+ * affinity scores, plus the last chat messages. Maintained by {@link EventViewService}.
+ *
+ * @param sourceVersion {@link DinnerEvent#getVersion() version} of the event the view was built from
+ * @param proposalKeys catalog keys of the event's proposals, used to hide them from the suggestions
+ * @param olderChatCursor cursor to load the messages before {@code chatMessages}, null if there are none
+ */
+public record EventView(Long eventId, long sourceVersion, List<ProposalView> proposals, Set<String> proposalKeys,
+        List<ChatMessageDTO> chatMessages, String olderChatCursor) {
+
+    public EventView {
+        proposals = List.copyOf(proposals);
+        proposalKeys = Set.copyOf(proposalKeys);
+        chatMessages = List.copyOf(chatMessages);
+    }
+
+    /**
+     * Appends the messages, keeping the last {@code limit} messages as the {@link ChatHistory} does,
+     * as the view of {@code version}.
+     */
+    EventView withMessages(List<ChatMessageDTO> added, int limit, long version) {
+        List<ChatMessageDTO> messages = new ArrayList<>(chatMessages.size() + added.size());
+        messages.addAll(chatMessages);
+        messages.addAll(added);
+        String olderCursor = olderChatCursor;
+        if (messages.size() > limit) {
+            messages = messages.subList(messages.size() - limit, messages.size());
+            olderCursor = messages.get(0).getCursor();
+        }
+        return new EventView(eventId, version, proposals, proposalKeys, messages, olderCursor);
+    }
+}
@@ -0,0 +1,343 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.exception.ResourceNotFoundException;
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatMessageDTO;
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatPageDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.AffinityService;
+import it.ucdm.leisure.dinnerplan.features.proposal.Proposal;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateVoteCount;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.Vote;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.AffinityScoreDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalView;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a materialized {@link EventView} per event so that page loads and
+ * fragment refreshes do not rebuild proposals, votes, scores and chat from the
+ * entities every time. A view is built on the first read and then served as is
+ * until one of the write paths reports a change through the hooks below; like
+ * the proposal catalog, changes are applied once the transaction commits.
+ * The hooks also bump the persisted {@link DinnerEvent#getVersion() version}
+ * within the caller's transaction, which the controllers turn into ETags.
+ * <p>
+ * Every change bumps the event's version. A build only publishes its result if
+ * the version did not move while it was running, so a view that raced with a
+ * write is never kept. Concurrent readers of a missing view share one build.
+ * At most {@code app.events.cached-views} views are kept, the least recently
+ * read are dropped first, and a deleted event's view goes with it.
+ * <p>
+ * Votes of the events tracked by the {@link VoteTally} are read from it rather
+ * than from the database, which may not have them yet. The chat comes from the
+ * {@link ChatHistory}, whose buffers outlive the views.
+ */
+@Service
+public class EventViewService {
+
+    private final DinnerEventRepository dinnerEventRepository;
+    private final ProposalRepository proposalRepository;
+    private final ProposalDateRepository proposalDateRepository;
+    private final AffinityService affinityService;
+    private final VoteTally voteTally;
+    private final ChatHistory chatHistory;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${app.events.cached-views:1000}")
+    private int maxViews = 1000;
+
+    // Access order, so that the views read least recently are dropped first
+    private final Map<Long, EventView> views = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, EventView> eldest) {
+            return size() > maxViews;
+        }
+    });
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final Map<Long, Build> builds = new ConcurrentHashMap<>();
+
+    private record Build(long version, CompletableFuture<EventView> result) {
+    }
+
+    public EventViewService(DinnerEventRepository dinnerEventRepository, ProposalRepository proposalRepository,
+            ProposalDateRepository proposalDateRepository, AffinityService affinityService,
+            VoteTally voteTally, ChatHistory chatHistory, PlatformTransactionManager transactionManager) {
+        this.dinnerEventRepository = dinnerEventRepository;
+        this.proposalRepository = proposalRepository;
+        this.proposalDateRepository = proposalDateRepository;
+        this.affinityService = affinityService;
+        this.voteTally = voteTally;
+        this.chatHistory = chatHistory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Returns the current view of the event, building it if needed.
+     */
+    public EventView getView(Long eventId) {
+        return getView(eventId, 0L);
+    }
+
+    /**
+     * Returns a view of the event built from at least {@code minVersion}. A
+     * caller that has already seen a newer version in the database (e.g. for
+     * its ETag) would otherwise get the cached view between the commit of a
+     * change and the invalidation that follows it.
+     */
+    public EventView getView(Long eventId, long minVersion) {
+        EventView view = views.get(eventId);
+        if (view != null && view.sourceVersion() >= minVersion) {
+            return view;
+        }
+
+        long version = versions.getOrDefault(eventId, 0L);
+        Build mine = new Build(version, new CompletableFuture<>());
+        // Join a build that started after the last change; an older one may miss it
+        Build running = builds.compute(eventId,
+                (id, current) -> current != null && current.version() == version ? current : mine);
+        if (running != mine) {
+            EventView joined;
+            try {
+                joined = running.result().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+            if (joined.sourceVersion() >= minVersion) {
+                return joined;
+            }
+            // That build read the event before the change the caller has seen
+            return readOnlyTransaction.execute(status -> build(eventId));
+        }
+
+        try {
+            EventView built = readOnlyTransaction.execute(status -> build(eventId));
+            versions.compute(eventId, (id, current) -> {
+                if ((current != null ? current : 0L) == version) {
+                    views.put(eventId, built);
+                }
+                return current;
+            });
+            mine.result().complete(built);
+            return built;
+        } catch (RuntimeException e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            builds.remove(eventId, mine);
+        }
+    }
+
+    /**
+     * Records a change to the event (votes, proposals, participants, status, selection).
+     */
+    public void eventChanged(Long eventId) {
+        dinnerEventRepository.incrementVersions(List.of(eventId));
+        afterCommit(() -> invalidate(eventId));
+    }
+
+    /**
+     * Forgets everything kept for a deleted event once the deletion commits.
+     */
+    public void eventDeleted(Long eventId) {
+        afterCommit(() -> {
+            versions.compute(eventId, (id, version) -> {
+                views.remove(eventId);
+                return null;
+            });
+            voteTally.forget(eventId);
+            chatHistory.forget(eventId);
+        });
+    }
+
+    /**
+     * Records a change that affects several events, e.g. a proposal shared by them.
+     */
+    public void eventsChanged(Collection<Long> eventIds) {
+        List<Long> ids = List.copyOf(eventIds);
+        if (ids.isEmpty()) {
+            return;
+        }
+        dinnerEventRepository.incrementVersions(ids);
+        afterCommit(() -> ids.forEach(this::invalidate));
+    }
+
+    /**
+     * Drops every view after changes that cannot be traced to single events (e.g. a backup import).
+     */
+    public void invalidateAll() {
+        dinnerEventRepository.incrementAllVersions();
+        afterCommit(() -> {
+            versions.replaceAll((id, version) -> version + 1);
+            views.clear();
+            voteTally.clear();
+            chatHistory.clear();
+        });
+    }
+
+    /**
+     * Drops the event's view after a vote taken by the {@link VoteEngine}. The
+     * persisted version moves when the engine writes the vote.
+     */
+    public void votesChanged(Long eventId) {
+        dropView(eventId);
+    }
+
+    /**
+     * Appends chat messages written in one transaction to the event's chat
+     * history and view instead of rebuilding it. Writing them moved the
+     * persisted version to {@code version}, so other nodes revalidate; the view
+     * is only patched if it was built from the version just before, i.e. no
+     * other change came in between, and dropped otherwise.
+     */
+    public void messagesAdded(Long eventId, List<ChatMessageDTO> messages, long version) {
+        afterCommit(() -> {
+            messages.forEach(message -> chatHistory.messageAdded(eventId, message, version));
+            versions.compute(eventId, (id, current) -> {
+                views.computeIfPresent(eventId, (k, view) -> {
+                    if (view.sourceVersion() >= version) {
+                        return view;
+                    }
+                    return view.sourceVersion() == version - 1
+                            ? view.withMessages(messages, chatHistory.recentSize(), version)
+                            : null;
+                });
+                return current != null ? current + 1 : 1L;
+            });
+        });
+    }
+
+    /**
+     * Vote count per proposal date of the event, from a single grouped query.
+     * Dates without votes are included with a count of zero.
+     */
+    Map<Long, Long> getVoteCountsForEvent(Long eventId) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (ProposalDateVoteCount row : proposalDateRepository.countVotesByEventId(eventId)) {
+            counts.put(row.getProposalDateId(), row.getVoteCount());
+        }
+        return counts;
+    }
+
+    /**
+     * Orders the event's proposals for display: the selected proposal first,
+     * then by the most-voted of each proposal's dates in this event. Uses the
+     * precomputed {@code voteCounts} so no vote collection is loaded.
+     */
+    List<Proposal> sortProposalsByVotes(List<Proposal> proposals, Long eventId, Long selectedProposalId,
+            Map<Long, Long> voteCounts) {
+        Map<Long, Long> maxVotes = new HashMap<>();
+        for (Proposal p : proposals) {
+            long max = 0;
+            for (ProposalDate d : p.getDates()) {
+                if (d.getDinnerEvent() != null && eventId.equals(d.getDinnerEvent().getId())) {
+                    max = Math.max(max, voteCounts.getOrDefault(d.getId(), 0L));
+                }
+            }
+            maxVotes.put(p.getId(), max);
+        }
+
+        List<Proposal> sorted = new ArrayList<>(proposals);
+        sorted.sort((p1, p2) -> {
+            if (p1.getId().equals(selectedProposalId))
+                return -1;
+            if (p2.getId().equals(selectedProposalId))
+                return 1;
+            return Long.compare(maxVotes.get(p2.getId()), maxVotes.get(p1.getId()));
+        });
+        return sorted;
+    }
+
+    private EventView build(Long eventId) {
+        DinnerEvent event = dinnerEventRepository.findById(eventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Invalid event Id:" + eventId));
+
+        Long selectedProposalId = event.getSelectedProposalDate() != null
+                ? event.getSelectedProposalDate().getProposal().getId()
+                : -1L;
+        boolean tallied = voteTally.isTracked(eventId);
+        Map<Long, Long> voteCounts = tallied ? voteTally.counts(eventId) : getVoteCountsForEvent(eventId);
+        List<Proposal> sorted = sortProposalsByVotes(proposalRepository.findAllByDinnerEventsId(eventId), eventId,
+                selectedProposalId, voteCounts);
+        List<AffinityScoreDTO> scores = affinityService.calculateAffinities(sorted, event);
+
+        List<ProposalView> proposals = new ArrayList<>(sorted.size());
+        Set<String> proposalKeys = new HashSet<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            Proposal p = sorted.get(i);
+            List<ProposalView.DateView> dates = new ArrayList<>();
+            for (ProposalDate d : p.getDates()) {
+                if (d.getDinnerEvent() == null || !eventId.equals(d.getDinnerEvent().getId())) {
+                    continue;
+                }
+                List<String> voters = tallied ? voteTally.voters(eventId, d.getId()) : new ArrayList<>();
+                long count = tallied ? voters.size() : voteCounts.getOrDefault(d.getId(), 0L);
+                if (!tallied && count > 0) {
+                    for (Vote vote : d.getVotes()) {
+                        voters.add(vote.getUser().getUsername());
+                    }
+                }
+                dates.add(new ProposalView.DateView(d.getId(), d.getDate(), count, voters));
+            }
+            List<String> incompatible = p.getIncompatibleParticipants(event).stream()
+                    .map(User::getUsername)
+                    .toList();
+            proposals.add(new ProposalView(p.getId(), p.getLocation(), p.getAddress(), p.getDescription(),
+                    p.getEmail(), p.getPhoneNumber(), p.getWebsite(), p.getLatitude(), p.getLongitude(),
+                    p.getDietaryPreferences() != null ? p.getDietaryPreferences() : Set.of(),
+                    dates, p.getDates().size(), incompatible, scores.get(i)));
+            proposalKeys.add(ProposalSuggestionDTO.catalogKey(p.getLocation(), p.getAddress()));
+        }
+
+        ChatPageDTO chat = chatHistory.recent(eventId, event.getVersion());
+
+        return new EventView(eventId, event.getVersion(), proposals, proposalKeys, chat.getMessages(),
+                chat.getOlderCursor());
+    }
+
+    private void invalidate(Long eventId) {
+        dropView(eventId);
+        voteTally.eventChanged(eventId);
+    }
+
+    private void dropView(Long eventId) {
+        versions.compute(eventId, (id, version) -> {
+            views.remove(eventId);
+            return version != null ? version + 1 : 1L;
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
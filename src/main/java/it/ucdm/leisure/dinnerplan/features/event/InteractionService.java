@@ -1,9 +1,12 @@
 package it.ucdm.leisure.dinnerplan.features.event;
 
 import it.ucdm.leisure.dinnerplan.features.event.dto.ChatMessageDTO;
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatPageDTO;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
 import it.ucdm.leisure.dinnerplan.features.user.User;
 import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
 import it.ucdm.leisure.dinnerplan.features.proposal.Proposal;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalCatalogService;
 import it.ucdm.leisure.dinnerplan.features.proposal.Vote;
 import it.ucdm.leisure.dinnerplan.features.proposal.VoteRepository;
 import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRating;
@@ -12,13 +15,18 @@ import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
 import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
 import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRepository;
 
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -33,13 +41,28 @@ public class InteractionService {
     private final DinnerEventMessageRepository dinnerEventMessageRepository;
     private final ProposalDateRepository proposalDateRepository;
     private final SimpMessagingTemplate messagingTemplate;
+    private final ProposalCatalogService proposalCatalogService;
+    private final EventViewService eventViewService;
+    private final BroadcastCoalescer broadcastCoalescer;
+    private final EventUpdatePublisher eventUpdatePublisher;
+    private final ChangeJournal changeJournal;
+    private final VoteEngine voteEngine;
+    private final VoteTally voteTally;
+    private final ChatHistory chatHistory;
+    private final ChatIngestor chatIngestor;
+    private final TransactionTemplate transactionTemplate;
 
     public InteractionService(VoteRepository voteRepository, ProposalRepository proposalRepository,
             UserRepository userRepository, DinnerEventRepository dinnerEventRepository,
             ProposalRatingRepository proposalRatingRepository,
             DinnerEventMessageRepository dinnerEventMessageRepository,
             ProposalDateRepository proposalDateRepository,
-            SimpMessagingTemplate messagingTemplate) {
+            SimpMessagingTemplate messagingTemplate,
+            ProposalCatalogService proposalCatalogService,
+            EventViewService eventViewService, BroadcastCoalescer broadcastCoalescer,
+            EventUpdatePublisher eventUpdatePublisher, ChangeJournal changeJournal, VoteEngine voteEngine,
+            VoteTally voteTally, ChatHistory chatHistory, ChatIngestor chatIngestor,
+            PlatformTransactionManager transactionManager) {
         this.voteRepository = voteRepository;
         this.proposalRepository = proposalRepository;
         this.userRepository = userRepository;
@@ -48,22 +71,40 @@ public class InteractionService {
         this.dinnerEventMessageRepository = dinnerEventMessageRepository;
         this.proposalDateRepository = proposalDateRepository;
         this.messagingTemplate = messagingTemplate;
+        this.proposalCatalogService = proposalCatalogService;
+        this.eventViewService = eventViewService;
+        this.broadcastCoalescer = broadcastCoalescer;
+        this.eventUpdatePublisher = eventUpdatePublisher;
+        this.changeJournal = changeJournal;
+        this.voteEngine = voteEngine;
+        this.voteTally = voteTally;
+        this.chatHistory = chatHistory;
+        this.chatIngestor = chatIngestor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
+    /**
+     * Casts the user's vote on the date, or withdraws it if already cast. With
+     * the {@link VoteEngine} enabled the vote is taken in memory and written
+     * later, otherwise within a transaction of its own.
+     */
     public void castVote(Long proposalDateId, String username) {
+        if (voteEngine.isEnabled()) {
+            Long eventId = voteEngine.castVote(proposalDateId, username);
+            eventViewService.votesChanged(eventId);
+            eventUpdatePublisher.votesChanged(eventId, proposalDateId);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> castVoteInDatabase(proposalDateId, username));
+    }
+
+    private void castVoteInDatabase(Long proposalDateId, String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
         ProposalDate proposalDate = proposalDateRepository.findById(proposalDateId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid proposal date Id"));
 
-        if (LocalDateTime.now().isAfter(proposalDate.getDinnerEvent().getDeadline())) {
-            throw new IllegalStateException("Voting is closed");
-        }
-
-        if (proposalDate.getDinnerEvent().getStatus() == DinnerEvent.EventStatus.DECIDED || proposalDate.getDinnerEvent().getStatus() == DinnerEvent.EventStatus.CLOSED) {
-            throw new IllegalStateException("Event is already decided or closed");
-        }
+        checkVotingOpen(proposalDate.getDinnerEvent());
 
         Optional<Vote> existingVote = voteRepository.findByUserAndProposalDate(user, proposalDate);
 
@@ -77,16 +118,110 @@ public class InteractionService {
             voteRepository.save(Objects.requireNonNull(vote));
         }
 
+        changeJournal.eventChanged(proposalDate.getDinnerEvent().getId());
+        eventViewService.eventChanged(proposalDate.getDinnerEvent().getId());
         org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
                 new org.springframework.transaction.support.TransactionSynchronization() {
                     @Override
                     public void afterCommit() {
-                        messagingTemplate.convertAndSend("/topic/events/" + proposalDate.getDinnerEvent().getId(),
-                                "update");
+                        eventUpdatePublisher.votesChanged(proposalDate.getDinnerEvent().getId(), proposalDateId);
                     }
                 });
     }
 
+    /**
+     * Casts ({@code voted}) or withdraws the user's vote on the date. Unlike
+     * {@link #castVote} this can be repeated: a vote already in that state is
+     * left alone.
+     */
+    public void setVote(Long proposalDateId, String username, boolean voted) {
+        setVotes(voteEngine.eventOf(proposalDateId), Map.of(proposalDateId, voted), username);
+    }
+
+    /**
+     * Sets the user's votes on several dates of the event at once: cast for
+     * {@code true}, withdrawn for {@code false}. Either all of them are applied
+     * or, if a date cannot be voted on, none.
+     * <p>
+     * Each vote is one conditional insert or delete that also checks the date
+     * and the event. Only a vote that changes nothing is looked into, to tell
+     * a repeated request from one that must be rejected.
+     */
+    public void setVotes(Long eventId, Map<Long, Boolean> votes, String username) {
+        if (votes.values().stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Each vote must be true or false");
+        }
+        if (votes.isEmpty()) {
+            return;
+        }
+        if (voteEngine.isEnabled()) {
+            List<Long> changed = voteEngine.setVotes(eventId, votes, username);
+            if (!changed.isEmpty()) {
+                eventViewService.votesChanged(eventId);
+                changed.forEach(proposalDateId -> eventUpdatePublisher.votesChanged(eventId, proposalDateId));
+            }
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> setVotesInDatabase(eventId, votes, username));
+        } catch (DataIntegrityViolationException e) {
+            // The same vote was inserted concurrently; once it is committed the retry finds it
+            transactionTemplate.executeWithoutResult(status -> setVotesInDatabase(eventId, votes, username));
+        }
+    }
+
+    private void setVotesInDatabase(Long eventId, Map<Long, Boolean> votes, String username) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> changed = new ArrayList<>();
+        votes.forEach((proposalDateId, voted) -> {
+            int rows = voted
+                    ? voteRepository.insertIfOpen(username, proposalDateId, eventId, now)
+                    : voteRepository.deleteIfOpen(username, proposalDateId, eventId, now);
+            if (rows > 0) {
+                changed.add(proposalDateId);
+            } else {
+                checkVotable(eventId, proposalDateId, now);
+            }
+        });
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        changeJournal.eventChanged(eventId);
+        eventViewService.eventChanged(eventId);
+        org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
+                new org.springframework.transaction.support.TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        changed.forEach(proposalDateId -> eventUpdatePublisher.votesChanged(eventId, proposalDateId));
+                    }
+                });
+    }
+
+    // Throws if the date could not be voted on; otherwise the vote was already in the requested state
+    private void checkVotable(Long eventId, Long proposalDateId, LocalDateTime now) {
+        ProposalDate proposalDate = proposalDateRepository.findById(proposalDateId)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid proposal date Id"));
+        if (!proposalDate.getDinnerEvent().getId().equals(eventId)) {
+            throw new IllegalArgumentException("Proposal does not belong to this event");
+        }
+        checkVotingOpen(proposalDate.getDinnerEvent(), now);
+    }
+
+    private void checkVotingOpen(DinnerEvent event) {
+        checkVotingOpen(event, LocalDateTime.now());
+    }
+
+    private void checkVotingOpen(DinnerEvent event, LocalDateTime now) {
+        if (now.isAfter(event.getDeadline())) {
+            throw new IllegalStateException("Voting is closed");
+        }
+
+        if (event.getStatus() == DinnerEvent.EventStatus.DECIDED || event.getStatus() == DinnerEvent.EventStatus.CLOSED) {
+            throw new IllegalStateException("Event is already decided or closed");
+        }
+    }
+
     @Transactional
     public void selectProposal(Long eventId, Long proposalDateId, String username) {
         DinnerEvent event = dinnerEventRepository.findById(Objects.requireNonNull(eventId))
@@ -107,12 +242,14 @@ public class InteractionService {
         event.setStatus(DinnerEvent.EventStatus.DECIDED);
         dinnerEventRepository.save(event);
 
+        changeJournal.eventChanged(eventId);
+        eventViewService.eventChanged(eventId);
         org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
                 new org.springframework.transaction.support.TransactionSynchronization() {
                     @Override
                     public void afterCommit() {
-                        messagingTemplate.convertAndSend("/topic/events/" + eventId, "update");
-                        messagingTemplate.convertAndSend("/topic/events", "update");
+                        eventUpdatePublisher.statusChanged(event);
+                        broadcastCoalescer.send("/topic/events", "update");
                     }
                 });
     }
@@ -143,9 +280,11 @@ public class InteractionService {
             ProposalRating rating = existingRating.get();
             if (rating.isLiked() == isLiked) {
                 proposalRatingRepository.delete(rating);
+                proposalCatalogService.ratingChanged(proposal, isLiked ? -1 : 0, isLiked ? 0 : -1);
             } else {
                 rating.setLiked(isLiked);
                 proposalRatingRepository.save(Objects.requireNonNull(rating));
+                proposalCatalogService.ratingChanged(proposal, isLiked ? 1 : -1, isLiked ? -1 : 1);
             }
         } else {
             ProposalRating rating = ProposalRating.builder()
@@ -154,19 +293,31 @@ public class InteractionService {
                     .isLiked(isLiked)
                     .build();
             proposalRatingRepository.save(Objects.requireNonNull(rating));
+            proposalCatalogService.ratingChanged(proposal, isLiked ? 1 : 0, isLiked ? 0 : 1);
         }
+        changeJournal.proposalChanged(proposalId);
+        // Ratings feed the affinity score of the proposal in every event it is part of
+        eventViewService.eventsChanged(proposal.getDinnerEvents().stream().map(DinnerEvent::getId).toList());
         org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
                 new org.springframework.transaction.support.TransactionSynchronization() {
                     @Override
                     public void afterCommit() {
-                        messagingTemplate.convertAndSend("/topic/events/" + eventId, "update");
+                        eventUpdatePublisher.proposalsChanged(eventId);
                     }
                 });
     }
 
-    public List<Vote> getUserVotesForEvent(Long eventId, Long userId) {
+    /**
+     * Ids of the event's proposal dates the user has voted for.
+     */
+    public List<Long> getVotedProposalDateIds(Long eventId, Long userId) {
+        if (voteTally.isTracked(eventId)) {
+            return voteTally.votedDateIds(eventId, userId);
+        }
         return voteRepository.findByProposalDate_DinnerEvent_IdAndUser_Id(Objects.requireNonNull(eventId),
-                Objects.requireNonNull(userId));
+                Objects.requireNonNull(userId)).stream()
+                .map(v -> v.getProposalDate().getId())
+                .toList();
     }
 
     public Optional<Boolean> getUserRatingForProposal(Long proposalId, Long userId) {
@@ -176,8 +327,20 @@ public class InteractionService {
                 .map(ProposalRating::isLiked);
     }
 
-    @Transactional
+    /**
+     * Stores the message and broadcasts it to the event's chat. With the
+     * {@link ChatIngestor} enabled the message is written with the others of
+     * its batch, otherwise within a transaction of its own.
+     */
     public void addMessage(Long eventId, String username, String content) {
+        if (chatIngestor.isEnabled()) {
+            chatIngestor.addMessage(eventId, username, content);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> addMessageInDatabase(eventId, username, content));
+    }
+
+    private void addMessageInDatabase(Long eventId, String username, String content) {
         DinnerEvent event = dinnerEventRepository.findById(Objects.requireNonNull(eventId))
                 .orElseThrow(() -> new IllegalArgumentException("Invalid event Id"));
 
@@ -198,16 +361,25 @@ public class InteractionService {
         message.setTimestamp(LocalDateTime.now());
 
         DinnerEventMessage saved = dinnerEventMessageRepository.save(Objects.requireNonNull(message));
+        changeJournal.eventChanged(eventId);
+        // Moves the ETags, and the views of other nodes
+        dinnerEventRepository.incrementVersions(List.of(eventId));
+        long version = dinnerEventRepository.findVersionById(eventId).orElseThrow();
 
-        ChatMessageDTO dto = new ChatMessageDTO(
-                saved.getId(),
-                saved.getSender().getUsername(),
-                saved.getContent(),
-                saved.getTimestamp().format(DateTimeFormatter.ofPattern("dd MMM HH:mm")));
+        ChatMessageDTO dto = ChatHistory.toDTO(saved);
+        eventViewService.messagesAdded(eventId, List.of(dto), version);
         messagingTemplate.convertAndSend("/topic/events/" + eventId + "/chat", dto);
     }
 
     public List<DinnerEventMessage> getEventMessages(Long eventId) {
         return dinnerEventMessageRepository.findByEventIdOrderByTimestampAsc(eventId);
     }
+
+    /**
+     * The chat messages of the event sent before {@code before}, a cursor taken
+     * from a message or from the previous page.
+     */
+    public ChatPageDTO getOlderMessages(Long eventId, String before, int limit) {
+        return chatHistory.older(eventId, before, limit);
+    }
 }
@@ -0,0 +1,306 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.VoteRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.VoteTallyRow;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional write-behind engine for votes, enabled with
+ * {@code app.votes.engine=memory}. A vote is checked against the cached
+ * deadline and status of its event and applied to the {@link VoteTally}
+ * without touching the database; every {@code app.votes.flush-ms} the
+ * changes made since are written in one transaction, as batched deletes and
+ * inserts, together with the version bump and journal entry of each event
+ * they touched. Event ETags therefore move when the batch is written, while
+ * the event view and the vote deltas are served from the tally right away.
+ * <p>
+ * Open events are loaded from the {@code votes} table at startup; any other
+ * event is loaded on its first vote, after writing what is still pending so
+ * the read sees it. The tally lives in this process only, so the engine is
+ * meant for a single node.
+ * <p>
+ * No votes are taken or written while a backup import replaces the data.
+ */
+@Service
+public class VoteEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteEngine.class);
+
+    // Joins users and dates so that a vote whose user or date is gone by now inserts nothing
+    private static final String INSERT_VOTE = "INSERT INTO votes (user_id, proposal_date_id) "
+            + "SELECT u.id, pd.id FROM users u, proposal_dates pd WHERE u.id = ? AND pd.id = ? "
+            + "AND NOT EXISTS (SELECT 1 FROM votes v WHERE v.user_id = u.id AND v.proposal_date_id = pd.id)";
+    private static final String DELETE_VOTE = "DELETE FROM votes WHERE user_id = ? AND proposal_date_id = ?";
+
+    private final VoteTally voteTally;
+    private final VoteRepository voteRepository;
+    private final ProposalDateRepository proposalDateRepository;
+    private final UserRepository userRepository;
+    private final DinnerEventRepository dinnerEventRepository;
+    private final ChangeJournal changeJournal;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService writer;
+    // Set under the flush lock
+    private volatile boolean importing;
+
+    public VoteEngine(VoteTally voteTally, VoteRepository voteRepository,
+            ProposalDateRepository proposalDateRepository, UserRepository userRepository,
+            DinnerEventRepository dinnerEventRepository, ChangeJournal changeJournal, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.votes.engine:database}") String engine,
+            @Value("${app.votes.flush-ms:200}") long flushMillis) {
+        this.voteTally = voteTally;
+        this.voteRepository = voteRepository;
+        this.proposalDateRepository = proposalDateRepository;
+        this.userRepository = userRepository;
+        this.dinnerEventRepository = dinnerEventRepository;
+        this.changeJournal = changeJournal;
+        this.jdbcTemplate = jdbcTemplate;
+        // Never joins the caller's transaction, e.g. a backup import flushing before it starts
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = "memory".equalsIgnoreCase(engine);
+        if (enabled) {
+            this.writer = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("vote-writer").daemon(true).factory());
+            writer.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.writer = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Casts or withdraws the user's vote on the date, with the same checks as
+     * the database path. Returns the id of the date's event.
+     */
+    public Long castVote(Long proposalDateId, String username) {
+        checkNotImporting();
+        Long eventId = eventOf(proposalDateId);
+        Long userId = userIdOf(username);
+        checkOpen(eventId);
+        voteTally.toggle(eventId, proposalDateId, userId, username);
+        return eventId;
+    }
+
+    /**
+     * Sets the user's votes on dates of the event: cast for {@code true},
+     * withdrawn for {@code false}. Votes already in that state are left alone.
+     * Returns the dates whose vote changed.
+     */
+    public List<Long> setVotes(Long eventId, Map<Long, Boolean> votes, String username) {
+        checkNotImporting();
+        for (Long proposalDateId : votes.keySet()) {
+            if (!eventId.equals(eventOf(proposalDateId))) {
+                throw new IllegalArgumentException("Proposal does not belong to this event");
+            }
+        }
+        Long userId = userIdOf(username);
+        checkOpen(eventId);
+        List<Long> changed = new ArrayList<>();
+        votes.forEach((proposalDateId, voted) -> {
+            if (voteTally.set(eventId, proposalDateId, userId, username, voted)) {
+                changed.add(proposalDateId);
+            }
+        });
+        return changed;
+    }
+
+    /**
+     * Id of the date's event, cached.
+     */
+    public Long eventOf(Long proposalDateId) {
+        return voteTally.eventOf(proposalDateId, id -> proposalDateRepository.findEventIdById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid proposal date Id")));
+    }
+
+    private Long userIdOf(String username) {
+        return voteTally.userId(username, name -> userRepository.findByUsername(name)
+                .map(User::getId)
+                .orElseThrow(() -> new RuntimeException("User not found")));
+    }
+
+    private void checkNotImporting() {
+        if (importing) {
+            throw new IllegalStateException("Voting is paused while a backup is imported");
+        }
+    }
+
+    // Checks the cached deadline and status, then makes sure the event's votes are in the tally
+    private void checkOpen(Long eventId) {
+        VoteTally.Gate gate = voteTally.gate(eventId, id -> dinnerEventRepository.findById(id)
+                .map(event -> new VoteTally.Gate(event.getDeadline(), event.getStatus()))
+                .orElse(null));
+        if (gate == null) {
+            voteTally.forget(eventId);
+            throw new IllegalArgumentException("Invalid proposal date Id");
+        }
+
+        if (LocalDateTime.now().isAfter(gate.deadline())) {
+            throw new IllegalStateException("Voting is closed");
+        }
+
+        if (gate.status() == DinnerEvent.EventStatus.DECIDED || gate.status() == DinnerEvent.EventStatus.CLOSED) {
+            throw new IllegalStateException("Event is already decided or closed");
+        }
+
+        track(eventId);
+    }
+
+    /**
+     * Rebuilds the tally of every open event from the database. Events already
+     * tracked keep their state.
+     */
+    public void reload() {
+        synchronized (flushLock) {
+            flush();
+            List<Long> openIds = dinnerEventRepository.findDeadlinesByStatus(DinnerEvent.EventStatus.OPEN).stream()
+                    .map(DinnerEventDeadline::getId)
+                    .filter(id -> !voteTally.isTracked(id))
+                    .toList();
+            Map<Long, List<VoteTallyRow>> rows = new HashMap<>();
+            if (!openIds.isEmpty()) {
+                for (VoteTallyRow row : voteRepository.findTallyRowsByEventIds(openIds)) {
+                    rows.computeIfAbsent(row.getEventId(), id -> new ArrayList<>()).add(row);
+                }
+            }
+            openIds.forEach(id -> voteTally.track(id, rows.getOrDefault(id, List.of())));
+        }
+    }
+
+    /**
+     * Prepares for a backup import running in the caller's transaction: the
+     * pending changes are written, then no vote is taken or written until the
+     * transaction completes. If the import commits, whatever is still pending
+     * was cast against the replaced data, whose ids now belong to other users
+     * and dates, so it is dropped along with the tally.
+     */
+    public void beginImport() {
+        if (!enabled) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (flushLock) {
+                    if (status == STATUS_COMMITTED) {
+                        voteTally.clear();
+                        int dropped = voteTally.drain().size();
+                        if (dropped > 0) {
+                            logger.warn("Dropped {} vote changes made during a backup import", dropped);
+                        }
+                    }
+                    importing = false;
+                }
+            }
+        });
+        synchronized (flushLock) {
+            flush();
+            importing = true;
+        }
+    }
+
+    /**
+     * Writes the pending changes now. Called by the writer thread, and before
+     * anything that reads the votes from the database. Does nothing during a
+     * backup import.
+     */
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (importing) {
+                return;
+            }
+            List<VoteTally.VoteChange> batch = voteTally.drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Object[]> deletes = new ArrayList<>();
+            List<Object[]> inserts = new ArrayList<>();
+            Set<Long> eventIds = new TreeSet<>();
+            for (VoteTally.VoteChange change : batch) {
+                Object[] args = { change.userId(), change.proposalDateId() };
+                (change.present() ? inserts : deletes).add(args);
+                eventIds.add(change.eventId());
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (!deletes.isEmpty()) {
+                        jdbcTemplate.batchUpdate(DELETE_VOTE, deletes);
+                    }
+                    if (!inserts.isEmpty()) {
+                        jdbcTemplate.batchUpdate(INSERT_VOTE, inserts);
+                    }
+                    dinnerEventRepository.incrementVersions(eventIds);
+                    eventIds.forEach(changeJournal::eventChanged);
+                });
+            } catch (RuntimeException e) {
+                voteTally.requeue(batch);
+                throw e;
+            }
+            logger.debug("Wrote {} vote changes for {} events", batch.size(), eventIds.size());
+        }
+    }
+
+    private void track(Long eventId) {
+        if (voteTally.isTracked(eventId)) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (voteTally.isTracked(eventId)) {
+                return;
+            }
+            flush();
+            voteTally.track(eventId, voteRepository.findTallyRowsByEventIds(List.of(eventId)));
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Failed to write {} pending vote changes", voteTally.pendingCount(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer != null) {
+            writer.shutdownNow();
+            flushQuietly();
+        }
+    }
+}
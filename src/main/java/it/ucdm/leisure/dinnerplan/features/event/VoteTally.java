@@ -0,0 +1,255 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.proposal.VoteTallyRow;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The votes of the events tracked by the {@link VoteEngine}, held in memory:
+ * per proposal date the voters in the order they voted, plus the changes not
+ * yet written to the database. A date's voters are only touched under the
+ * lock of its stripe, so votes on different dates do not contend and a vote
+ * and its pending change are recorded together.
+ * <p>
+ * Also caches what the engine checks on every vote: the event of each date,
+ * the deadline and status of each event, and the id of each username.
+ * {@link EventViewService} drops an event's cached state after any other
+ * change to it, and everything after changes it cannot trace to events.
+ * <p>
+ * Nothing is tracked while the engine is off, and readers fall back to the
+ * database for events that are not tracked.
+ * <p>
+ * Votes reach the event's version only when they are written, so each event
+ * also carries a stamp of its last vote change; conditional requests use it
+ * to tell the votes held here apart.
+ */
+@Component
+public class VoteTally {
+
+    private static final int STRIPES = 64;
+
+    private final Object[] stripes = new Object[STRIPES];
+    private final Map<Long, Map<Long, Map<Long, String>>> events = new ConcurrentHashMap<>();
+    private final Map<Long, Long> dateEvents = new ConcurrentHashMap<>();
+    private final Map<Long, Gate> gates = new ConcurrentHashMap<>();
+    private final Map<String, Long> userIds = new ConcurrentHashMap<>();
+    private final Map<VoteKey, VoteChange> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Long> stamps = new ConcurrentHashMap<>();
+    // Starts from the clock, so no stamp is given again after a restart
+    private final AtomicLong lastStamp = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * What decides whether an event still takes votes.
+     */
+    public record Gate(LocalDateTime deadline, DinnerEvent.EventStatus status) {
+    }
+
+    /**
+     * A vote to insert ({@code present}) or delete.
+     */
+    public record VoteChange(Long eventId, Long proposalDateId, Long userId, boolean present) {
+    }
+
+    private record VoteKey(Long userId, Long proposalDateId) {
+    }
+
+    public VoteTally() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    public boolean isTracked(Long eventId) {
+        return events.containsKey(eventId);
+    }
+
+    /**
+     * Starts tracking the event with the votes read from the database, in vote
+     * order. An event already tracked is left as it is.
+     */
+    public void track(Long eventId, List<VoteTallyRow> rows) {
+        Map<Long, Map<Long, String>> dates = new ConcurrentHashMap<>();
+        for (VoteTallyRow row : rows) {
+            dates.computeIfAbsent(row.getProposalDateId(), id -> new LinkedHashMap<>())
+                    .put(row.getUserId(), row.getUsername());
+            dateEvents.putIfAbsent(row.getProposalDateId(), eventId);
+        }
+        events.putIfAbsent(eventId, dates);
+    }
+
+    public Long eventOf(Long proposalDateId, Function<Long, Long> loader) {
+        return dateEvents.computeIfAbsent(proposalDateId, loader);
+    }
+
+    public Long userId(String username, Function<String, Long> loader) {
+        return userIds.computeIfAbsent(username, loader);
+    }
+
+    /**
+     * The event's gate, loaded on first use; {@code null} if the loader finds
+     * no such event.
+     */
+    public Gate gate(Long eventId, Function<Long, Gate> loader) {
+        return gates.computeIfAbsent(eventId, loader);
+    }
+
+    /**
+     * Adds the user's vote on the date, or withdraws it if there is one, and
+     * records the change for the next write. Returns whether the vote is now cast.
+     */
+    public boolean toggle(Long eventId, Long proposalDateId, Long userId, String username) {
+        synchronized (stripe(proposalDateId)) {
+            boolean present = !votersOf(eventId, proposalDateId).containsKey(userId);
+            set(eventId, proposalDateId, userId, username, present);
+            return present;
+        }
+    }
+
+    /**
+     * Casts or withdraws the user's vote on the date and records the change
+     * for the next write. Returns false, recording nothing, if the vote was
+     * already in that state.
+     */
+    public boolean set(Long eventId, Long proposalDateId, Long userId, String username, boolean voted) {
+        synchronized (stripe(proposalDateId)) {
+            Map<Long, String> voters = votersOf(eventId, proposalDateId);
+            if (voted == voters.containsKey(userId)) {
+                return false;
+            }
+            if (voted) {
+                voters.put(userId, username);
+            } else {
+                voters.remove(userId);
+            }
+            pending.put(new VoteKey(userId, proposalDateId),
+                    new VoteChange(eventId, proposalDateId, userId, voted));
+            stamps.put(eventId, lastStamp.incrementAndGet());
+            return true;
+        }
+    }
+
+    /**
+     * Stamp of the event's last vote change made here, different after every
+     * change; 0 if there has been none.
+     */
+    public long changeStamp(Long eventId) {
+        return stamps.getOrDefault(eventId, 0L);
+    }
+
+    public List<String> voters(Long eventId, Long proposalDateId) {
+        Map<Long, Map<Long, String>> dates = events.getOrDefault(eventId, Map.of());
+        synchronized (stripe(proposalDateId)) {
+            Map<Long, String> voters = dates.get(proposalDateId);
+            return voters != null ? new ArrayList<>(voters.values()) : new ArrayList<>();
+        }
+    }
+
+    /**
+     * Vote count per date of the event; dates without votes may be missing.
+     */
+    public Map<Long, Long> counts(Long eventId) {
+        Map<Long, Long> counts = new HashMap<>();
+        events.getOrDefault(eventId, Map.of()).forEach((dateId, voters) -> {
+            synchronized (stripe(dateId)) {
+                counts.put(dateId, (long) voters.size());
+            }
+        });
+        return counts;
+    }
+
+    public List<Long> votedDateIds(Long eventId, Long userId) {
+        List<Long> voted = new ArrayList<>();
+        events.getOrDefault(eventId, Map.of()).forEach((dateId, voters) -> {
+            synchronized (stripe(dateId)) {
+                if (voters.containsKey(userId)) {
+                    voted.add(dateId);
+                }
+            }
+        });
+        return voted;
+    }
+
+    /**
+     * Takes the pending changes, the latest per user and date. A change made
+     * while draining either comes with this batch or stays for the next.
+     */
+    public List<VoteChange> drain() {
+        List<VoteChange> batch = new ArrayList<>();
+        for (Map.Entry<VoteKey, VoteChange> entry : pending.entrySet()) {
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                batch.add(entry.getValue());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Puts back changes that could not be written, unless a newer change to
+     * the same vote has been made since.
+     */
+    public void requeue(Collection<VoteChange> changes) {
+        for (VoteChange change : changes) {
+            pending.putIfAbsent(new VoteKey(change.userId(), change.proposalDateId()), change);
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    public int trackedCount() {
+        return events.size();
+    }
+
+    /**
+     * The event's deadline, status or dates may have changed: they are loaded
+     * again on the next vote. Its votes stay, as only the engine changes them.
+     */
+    public void eventChanged(Long eventId) {
+        gates.remove(eventId);
+        dateEvents.values().removeIf(eventId::equals);
+    }
+
+    /**
+     * The event no longer exists.
+     */
+    public void forget(Long eventId) {
+        eventChanged(eventId);
+        events.remove(eventId);
+        stamps.remove(eventId);
+    }
+
+    /**
+     * Forgets every event and user; they are read again from the database.
+     * Pending changes are kept for the next write, and the stamps with them.
+     */
+    public void clear() {
+        gates.clear();
+        dateEvents.clear();
+        userIds.clear();
+        events.clear();
+    }
+
+    // Callers hold the date's stripe
+    private Map<Long, String> votersOf(Long eventId, Long proposalDateId) {
+        Map<Long, Map<Long, String>> dates = events.get(eventId);
+        if (dates == null) {
+            throw new IllegalStateException("Event " + eventId + " is not tracked");
+        }
+        return dates.computeIfAbsent(proposalDateId, id -> new LinkedHashMap<>());
+    }
+
+    private Object stripe(Long proposalDateId) {
+        return stripes[Math.floorMod(proposalDateId.hashCode(), STRIPES)];
+    }
+}
@@ -3,6 +3,8 @@ package it.ucdm.leisure.dinnerplan.features.event.api;
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEventMessage;
 
 import it.ucdm.leisure.dinnerplan.features.event.InteractionService;
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatPageDTO;
+import it.ucdm.leisure.dinnerplan.features.event.dto.VoteBatchRequest;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
@@ -11,6 +13,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/interactions")
@@ -31,6 +34,31 @@ public class InteractionRestController {
         return ResponseEntity.ok().build();
     }
 
+    @PutMapping("/proposals/{proposalDateId}/vote")
+    @Operation(summary = "Vote for a proposal date; repeating the request has no further effect")
+    public ResponseEntity<Void> addVote(@PathVariable Long proposalDateId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        interactionService.setVote(proposalDateId, userDetails.getUsername(), true);
+        return ResponseEntity.ok().build();
+    }
+
+    @DeleteMapping("/proposals/{proposalDateId}/vote")
+    @Operation(summary = "Remove the vote for a proposal date; repeating the request has no further effect")
+    public ResponseEntity<Void> removeVote(@PathVariable Long proposalDateId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        interactionService.setVote(proposalDateId, userDetails.getUsername(), false);
+        return ResponseEntity.ok().build();
+    }
+
+    @PutMapping("/events/{eventId}/votes")
+    @Operation(summary = "Set or remove votes on several proposal dates of an event at once")
+    public ResponseEntity<Void> setVotes(@PathVariable Long eventId, @RequestBody VoteBatchRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) {
+        interactionService.setVotes(eventId, request.getVotes() != null ? request.getVotes() : Map.of(),
+                userDetails.getUsername());
+        return ResponseEntity.ok().build();
+    }
+
     @PostMapping("/events/{eventId}/decide/{proposalDateId}")
     @Operation(summary = "Decide the final proposal for the event (Organizer only)")
     public ResponseEntity<Void> decideEvent(@PathVariable Long eventId, @PathVariable Long proposalDateId,
@@ -61,4 +89,11 @@ public class InteractionRestController {
     public ResponseEntity<List<DinnerEventMessage>> getMessages(@PathVariable Long eventId) {
         return ResponseEntity.ok(interactionService.getEventMessages(eventId));
     }
+
+    @GetMapping("/events/{eventId}/messages/older")
+    @Operation(summary = "Get the chat messages sent before a cursor, oldest first")
+    public ResponseEntity<ChatPageDTO> getOlderMessages(@PathVariable Long eventId, @RequestParam String before,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(interactionService.getOlderMessages(eventId, before, limit));
+    }
 }
@@ -5,6 +5,8 @@ public class ChatMessageDTO {
     private String sender;
     private String content;
     private String time;
+    // Position of the message in the history, to load the messages before it
+    private String cursor;
 
     public ChatMessageDTO(Long id, String sender, String content, String time) {
         this.id = id;
@@ -13,6 +15,11 @@ public class ChatMessageDTO {
         this.time = time;
     }
 
+    public ChatMessageDTO(Long id, String sender, String content, String time, String cursor) {
+        this(id, sender, content, time);
+        this.cursor = cursor;
+    }
+
     public Long getId() {
         return id;
     }
@@ -44,4 +51,12 @@ public class ChatMessageDTO {
     public void setTime(String time) {
         this.time = time;
     }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
 }
@@ -0,0 +1,33 @@
+package it.ucdm.leisure.dinnerplan.features.event.dto;
+
+import java.util.List;
+
+/**
+ * A page of an event's chat history, oldest message first.
+ */
+public class ChatPageDTO {
+    private List<ChatMessageDTO> messages;
+    // Cursor of the first message if there are older ones, otherwise null
+    private String olderCursor;
+
+    public ChatPageDTO(List<ChatMessageDTO> messages, String olderCursor) {
+        this.messages = messages;
+        this.olderCursor = olderCursor;
+    }
+
+    public List<ChatMessageDTO> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatMessageDTO> messages) {
+        this.messages = messages;
+    }
+
+    public String getOlderCursor() {
+        return olderCursor;
+    }
+
+    public void setOlderCursor(String olderCursor) {
+        this.olderCursor = olderCursor;
+    }
+}
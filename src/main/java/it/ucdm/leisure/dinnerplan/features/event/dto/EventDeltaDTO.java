@@ -0,0 +1,130 @@
+package it.ucdm.leisure.dinnerplan.features.event.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * A change to an event, pushed on {@code /topic/events/{id}}. Only the fields
+ * of the given {@link Type} are set. {@code seq} increases by one per message
+ * of the event, so a client that sees a gap knows it missed something and
+ * reloads the page fragments instead of patching. Sequences are kept per
+ * node, so {@code origin} names the node that numbered the delta.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EventDeltaDTO {
+
+    public enum Type {
+        /** Vote count and voters of one proposal date; patched in place. */
+        VOTES,
+        /** Proposals added, removed or changed; the proposal list is reloaded. */
+        PROPOSALS,
+        /** Status, deadline or selected date changed. */
+        STATUS,
+        /** The participant list changed. */
+        PARTICIPANTS,
+        DELETED
+    }
+
+    private final Type type;
+    private final Long eventId;
+    private String origin;
+    private long seq;
+
+    private Long proposalDateId;
+    private Long voteCount;
+    private List<String> voters;
+
+    private String status;
+    private String deadline;
+    private Long selectedProposalDateId;
+
+    private List<String> participants;
+
+    private EventDeltaDTO(Type type, Long eventId) {
+        this.type = type;
+        this.eventId = eventId;
+    }
+
+    public static EventDeltaDTO votes(Long eventId, Long proposalDateId, long voteCount, List<String> voters) {
+        EventDeltaDTO delta = new EventDeltaDTO(Type.VOTES, eventId);
+        delta.proposalDateId = proposalDateId;
+        delta.voteCount = voteCount;
+        delta.voters = List.copyOf(voters);
+        return delta;
+    }
+
+    public static EventDeltaDTO proposals(Long eventId) {
+        return new EventDeltaDTO(Type.PROPOSALS, eventId);
+    }
+
+    public static EventDeltaDTO status(Long eventId, String status, String deadline, Long selectedProposalDateId) {
+        EventDeltaDTO delta = new EventDeltaDTO(Type.STATUS, eventId);
+        delta.status = status;
+        delta.deadline = deadline;
+        delta.selectedProposalDateId = selectedProposalDateId;
+        return delta;
+    }
+
+    public static EventDeltaDTO participants(Long eventId, List<String> participants) {
+        EventDeltaDTO delta = new EventDeltaDTO(Type.PARTICIPANTS, eventId);
+        delta.participants = List.copyOf(participants);
+        return delta;
+    }
+
+    public static EventDeltaDTO deleted(Long eventId) {
+        return new EventDeltaDTO(Type.DELETED, eventId);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public Long getProposalDateId() {
+        return proposalDateId;
+    }
+
+    public Long getVoteCount() {
+        return voteCount;
+    }
+
+    public List<String> getVoters() {
+        return voters;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getDeadline() {
+        return deadline;
+    }
+
+    public Long getSelectedProposalDateId() {
+        return selectedProposalDateId;
+    }
+
+    public List<String> getParticipants() {
+        return participants;
+    }
+}
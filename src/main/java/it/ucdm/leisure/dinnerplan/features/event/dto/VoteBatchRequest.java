@@ -0,0 +1,19 @@
+package it.ucdm.leisure.dinnerplan.features.event.dto;
+
+import java.util.Map;
+
+/**
+ * Votes to set on dates of one event, by proposal date id: {@code true} to
+ * vote, {@code false} to remove the vote.
+ */
+public class VoteBatchRequest {
+    private Map<Long, Boolean> votes;
+
+    public Map<Long, Boolean> getVotes() {
+        return votes;
+    }
+
+    public void setVotes(Map<Long, Boolean> votes) {
+        this.votes = votes;
+    }
+}
@@ -0,0 +1,108 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Persistent geocoding result keyed by normalized address. Entries without
+ * coordinates record a lookup that no provider could resolve.
+ */
+@Entity
+@Table(name = "geocode_cache")
+public class GeocodeCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "address_key", nullable = false, unique = true, length = 512)
+    private String addressKey;
+
+    @Column(nullable = true)
+    private Double latitude;
+
+    @Column(nullable = true)
+    private Double longitude;
+
+    @Column(nullable = true, length = 50)
+    private String provider;
+
+    @Column(nullable = false)
+    private LocalDateTime resolvedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    public GeocodeCacheEntry() {
+    }
+
+    public GeocodeCacheEntry(String addressKey, Double latitude, Double longitude, String provider,
+            LocalDateTime resolvedAt, LocalDateTime expiresAt) {
+        this.addressKey = addressKey;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.provider = provider;
+        this.resolvedAt = resolvedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isNegative() {
+        return latitude == null || longitude == null;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getAddressKey() {
+        return addressKey;
+    }
+
+    public void setAddressKey(String addressKey) {
+        this.addressKey = addressKey;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public void setProvider(String provider) {
+        this.provider = provider;
+    }
+
+    public LocalDateTime getResolvedAt() {
+        return resolvedAt;
+    }
+
+    public void setResolvedAt(LocalDateTime resolvedAt) {
+        this.resolvedAt = resolvedAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,19 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface GeocodeCacheRepository extends JpaRepository<GeocodeCacheEntry, Long> {
+
+    Optional<GeocodeCacheEntry> findByAddressKey(String addressKey);
+
+    @Modifying
+    @Query("DELETE FROM GeocodeCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(LocalDateTime now);
+}
@@ -0,0 +1,181 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache in front of the geocoding providers: a bounded in-memory LRU
+ * backed by the {@code geocode_cache} table. Both successful and failed
+ * lookups are cached, with separate TTLs, so a known address never triggers a
+ * second round of provider calls before it expires.
+ */
+@Component
+public class GeocodingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeocodingCache.class);
+
+    private final GeocodeCacheRepository geocodeCacheRepository;
+
+    @Value("${geocoding.cache.max-size:1000}")
+    private int maxSize = 1000;
+
+    @Value("${geocoding.cache.ttl-hours:720}")
+    private long ttlHours = 720;
+
+    @Value("${geocoding.cache.negative-ttl-hours:6}")
+    private long negativeTtlHours = 6;
+
+    private final Map<String, GeocodeCacheEntry> memory = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GeocodeCacheEntry> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong databaseHits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * A cached lookup. {@code coordinates} is null when no provider could
+     * resolve the address.
+     */
+    public record Lookup(Coordinates coordinates, String provider) {
+    }
+
+    public record Stats(long memoryHits, long databaseHits, long negativeHits, long misses, int memorySize,
+            double hitRate) {
+    }
+
+    public GeocodingCache(GeocodeCacheRepository geocodeCacheRepository) {
+        this.geocodeCacheRepository = geocodeCacheRepository;
+    }
+
+    /**
+     * Canonical form of an address used as cache key: Unicode-normalized,
+     * lower case, with uniform spacing and comma separation.
+     */
+    public static String normalize(String address) {
+        if (address == null) {
+            return "";
+        }
+        String key = Normalizer.normalize(address, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        key = key.replaceAll("\\s+", " ")
+                .replaceAll("\\s*,\\s*", ", ")
+                .replaceAll("(, )+", ", ")
+                .replaceAll("^[\\s,.]+|[\\s,.]+$", "");
+        return key;
+    }
+
+    public Optional<Lookup> get(String key) {
+        LocalDateTime now = LocalDateTime.now();
+        GeocodeCacheEntry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+            if (entry != null && entry.getExpiresAt().isBefore(now)) {
+                memory.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            memoryHits.incrementAndGet();
+            return Optional.of(toLookup(entry));
+        }
+
+        try {
+            entry = geocodeCacheRepository.findByAddressKey(key)
+                    .filter(e -> !e.getExpiresAt().isBefore(now))
+                    .orElse(null);
+        } catch (Exception e) {
+            logger.warn("Geocoding cache lookup failed for '{}': {}", key, e.getMessage());
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        databaseHits.incrementAndGet();
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        return Optional.of(toLookup(entry));
+    }
+
+    /**
+     * Stores a lookup result in both tiers. Runs in its own transaction so the
+     * result survives a rollback of the caller.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void put(String key, Coordinates coordinates, String provider) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusHours(coordinates != null ? ttlHours : negativeTtlHours);
+        Double latitude = coordinates != null ? coordinates.getLatitude() : null;
+        Double longitude = coordinates != null ? coordinates.getLongitude() : null;
+
+        GeocodeCacheEntry entry = new GeocodeCacheEntry(key, latitude, longitude, provider, now, expiresAt);
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+
+        try {
+            GeocodeCacheEntry persistent = geocodeCacheRepository.findByAddressKey(key).orElse(null);
+            if (persistent == null) {
+                persistent = new GeocodeCacheEntry(key, latitude, longitude, provider, now, expiresAt);
+            } else {
+                persistent.setLatitude(latitude);
+                persistent.setLongitude(longitude);
+                persistent.setProvider(provider);
+                persistent.setResolvedAt(now);
+                persistent.setExpiresAt(expiresAt);
+            }
+            geocodeCacheRepository.save(persistent);
+        } catch (Exception e) {
+            // A concurrent lookup may have stored the same key first
+            logger.warn("Could not persist geocoding result for '{}': {}", key, e.getMessage());
+        }
+    }
+
+    public Stats getStats() {
+        long memory = memoryHits.get();
+        long database = databaseHits.get();
+        long missed = misses.get();
+        long total = memory + database + missed;
+        int size;
+        synchronized (this.memory) {
+            size = this.memory.size();
+        }
+        return new Stats(memory, database, negativeHits.get(), missed, size,
+                total == 0 ? 0.0 : (double) (memory + database) / total);
+    }
+
+    @Scheduled(cron = "${geocoding.cache.cleanup-cron:0 30 3 * * *}")
+    @Transactional
+    public void removeExpiredEntries() {
+        int removed = geocodeCacheRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) {
+            logger.info("Removed {} expired geocoding cache entries", removed);
+        }
+    }
+
+    private Lookup toLookup(GeocodeCacheEntry entry) {
+        if (entry.isNegative()) {
+            negativeHits.incrementAndGet();
+            return new Lookup(null, entry.getProvider());
+        }
+        return new Lookup(new Coordinates(entry.getLatitude(), entry.getLongitude()), entry.getProvider());
+    }
+}
@@ -0,0 +1,24 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes geocoding cache hit-rate statistics at {@code /actuator/geocodingcache}.
+ */
+@Component
+@Endpoint(id = "geocodingcache")
+public class GeocodingCacheEndpoint {
+
+    private final GeocodingCache geocodingCache;
+
+    public GeocodingCacheEndpoint(GeocodingCache geocodingCache) {
+        this.geocodingCache = geocodingCache;
+    }
+
+    @ReadOperation
+    public GeocodingCache.Stats stats() {
+        return geocodingCache.getStats();
+    }
+}
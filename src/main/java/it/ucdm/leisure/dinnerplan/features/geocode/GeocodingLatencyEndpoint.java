@@ -0,0 +1,29 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Exposes per-provider geocoding latency histograms and the current hedge
+ * delay at {@code /actuator/geocodinglatency}.
+ */
+@Component
+@Endpoint(id = "geocodinglatency")
+public class GeocodingLatencyEndpoint {
+
+    private final GeocodingService geocodingService;
+
+    public GeocodingLatencyEndpoint(GeocodingService geocodingService) {
+        this.geocodingService = geocodingService;
+    }
+
+    @ReadOperation
+    public Map<String, Object> latency() {
+        return Map.of(
+                "hedgeDelayMs", geocodingService.currentHedgeDelayMs(GeocodingService.PHOTON),
+                "providers", geocodingService.getLatencySnapshots());
+    }
+}
@@ -0,0 +1,113 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Background geocoding pipeline. Callers save their entity with coordinates
+ * pending and submit the address here; once a provider resolves it, the
+ * callback runs in its own transaction to patch the entity. Requests for the
+ * same normalized address are coalesced into a single lookup.
+ */
+@Component
+public class GeocodingQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(GeocodingQueue.class);
+
+    private final GeocodingService geocodingService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final Map<String, List<Consumer<Coordinates>>> pending = new ConcurrentHashMap<>();
+
+    public GeocodingQueue(GeocodingService geocodingService, PlatformTransactionManager transactionManager,
+            @Value("${geocoding.queue.workers:2}") int workers) {
+        this.geocodingService = geocodingService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, workers),
+                Thread.ofPlatform().name("geocoding-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Queues {@code address} for geocoding. When called inside a transaction
+     * the request is only queued after commit, so the callback sees the saved
+     * entity. {@code onResolved} is not called if no provider finds the address.
+     */
+    public void submit(String address, Consumer<Coordinates> onResolved) {
+        if (address == null || address.isBlank()) {
+            return;
+        }
+        if (org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive()) {
+            org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
+                    new org.springframework.transaction.support.TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            enqueue(address, onResolved);
+                        }
+                    });
+        } else {
+            enqueue(address, onResolved);
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void enqueue(String address, Consumer<Coordinates> onResolved) {
+        String key = GeocodingCache.normalize(address);
+        boolean[] first = { false };
+        pending.compute(key, (k, callbacks) -> {
+            if (callbacks == null) {
+                callbacks = new ArrayList<>();
+                first[0] = true;
+            }
+            callbacks.add(onResolved);
+            return callbacks;
+        });
+        if (first[0]) {
+            executor.execute(() -> process(key, address));
+        }
+    }
+
+    private void process(String key, String address) {
+        Coordinates coordinates = null;
+        try {
+            coordinates = geocodingService.getCoordinates(address);
+        } catch (Exception e) {
+            logger.error("Background geocoding failed for '{}'", address, e);
+        }
+
+        List<Consumer<Coordinates>> callbacks = pending.remove(key);
+        if (coordinates == null || callbacks == null) {
+            logger.warn("Geocoding failed for address: {}", address);
+            return;
+        }
+
+        Coordinates resolved = coordinates;
+        for (Consumer<Coordinates> callback : callbacks) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> callback.accept(resolved));
+            } catch (Exception e) {
+                logger.error("Could not apply coordinates for '{}'", address, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
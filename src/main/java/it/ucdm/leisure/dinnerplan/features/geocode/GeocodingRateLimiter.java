@@ -0,0 +1,34 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide throttle for outbound geocoding calls. Permits are handed out
+ * at most once every {@code geocoding.rate-limit.min-interval-ms}, no matter
+ * how many threads are geocoding, so the public providers' fair-use limits
+ * hold under concurrent load.
+ */
+@Component
+public class GeocodingRateLimiter {
+
+    @Value("${geocoding.rate-limit.min-interval-ms:200}")
+    private long minIntervalMs = 200;
+
+    private long nextPermitNanos = System.nanoTime();
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long permit = Math.max(now, nextPermitNanos);
+            nextPermitNanos = permit + TimeUnit.MILLISECONDS.toNanos(minIntervalMs);
+            waitNanos = permit - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
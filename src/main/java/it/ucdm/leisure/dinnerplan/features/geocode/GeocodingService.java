@@ -1,27 +1,52 @@
 package it.ucdm.leisure.dinnerplan.features.geocode;
 
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 @Service
 public class GeocodingService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeocodingService.class);
+    public static final String PHOTON = "Photon";
+    public static final String ARCGIS = "ArcGIS";
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
     private final RestTemplate restTemplate;
+    private final GeocodingCache geocodingCache;
+    private final GeocodingRateLimiter rateLimiter;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final ExecutorService hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public GeocodingService(RestTemplate restTemplate) {
+    public GeocodingService(RestTemplate restTemplate, GeocodingCache geocodingCache,
+            GeocodingRateLimiter rateLimiter) {
         this.restTemplate = restTemplate;
+        this.geocodingCache = geocodingCache;
+        this.rateLimiter = rateLimiter;
     }
 
     @Value("${geocoding.url}")
@@ -30,34 +55,221 @@ public class GeocodingService {
     @Value("${geocoding.arcgis.url}")
     private String arcgisUrl;
 
+    @Value("${geocoding.hedging.enabled:true}")
+    private boolean hedgingEnabled = true;
+
+    @Value("${geocoding.hedging.delay-ms:300}")
+    private long hedgeDelayMs = 300;
+
+    @Value("${geocoding.hedging.min-delay-ms:50}")
+    private long minHedgeDelayMs = 50;
+
+    @Value("${geocoding.hedging.max-delay-ms:2000}")
+    private long maxHedgeDelayMs = 2000;
+
+    @Value("${geocoding.hedging.percentile:0.95}")
+    private double hedgePercentile = 0.95;
+
+    @Value("${geocoding.hedging.timeout-ms:10000}")
+    private long hedgeTimeoutMs = 10000;
+
+    private record Strategy(String provider, String label, Supplier<Outcome> attempt) {
+    }
+
+    private record Attempt(Strategy strategy, Outcome outcome) {
+    }
+
+    /**
+     * Result of one request: coordinates, a provider that answered without a
+     * match, or a request that failed (timeout, connection, error status, bad
+     * body). Only a provider that answered tells us the address is unknown.
+     */
+    private record Outcome(Coordinates coordinates, boolean answered) {
+
+        static final Outcome NO_MATCH = new Outcome(null, true);
+        static final Outcome FAILED = new Outcome(null, false);
+
+        static Outcome found(Coordinates coordinates) {
+            return new Outcome(coordinates, true);
+        }
+    }
+
+    /**
+     * Coordinates already known for {@code address}, without contacting any
+     * provider. Empty when the address is unknown or could not be resolved.
+     */
+    public Optional<Coordinates> getCachedCoordinates(String address) {
+        if (address == null || address.isBlank()) {
+            return Optional.empty();
+        }
+        return geocodingCache.get(GeocodingCache.normalize(address)).map(GeocodingCache.Lookup::coordinates);
+    }
+
     public Coordinates getCoordinates(String address) {
         if (address == null || address.isBlank()) {
             return null;
         }
 
+        String key = GeocodingCache.normalize(address);
+        Optional<GeocodingCache.Lookup> cached = geocodingCache.get(key);
+        if (cached.isPresent()) {
+            logger.debug("Geocoding cache hit for '{}' ({})", key, cached.get().provider());
+            return cached.get().coordinates();
+        }
+
+        GeocodingCache.Lookup lookup = hedgingEnabled ? resolveHedged(address) : resolve(address);
+        if (lookup == null) {
+            // Timed out or no provider answered: nothing is known about the address, so nothing is cached
+            return null;
+        }
+        try {
+            geocodingCache.put(key, lookup.coordinates(), lookup.provider());
+        } catch (Exception e) {
+            logger.warn("Could not cache geocoding result for '{}': {}", key, e.getMessage());
+        }
+        return lookup.coordinates();
+    }
+
+    /**
+     * Tries the strategies in turn. Returns a negative lookup only if at least
+     * one provider answered without a match, and null if every request failed.
+     */
+    private GeocodingCache.Lookup resolve(String address) {
         // Strategy 1: Photon (Primary - Open Data)
-        Coordinates coordinates = tryPhoton(address);
-        if (coordinates != null) return coordinates;
+        Outcome outcome = tryPhoton(address);
+        if (outcome.coordinates() != null) return new GeocodingCache.Lookup(outcome.coordinates(), "Photon");
+        boolean answered = outcome.answered();
 
         // Strategy 2: Photon with relaxed address
         String relaxedAddress = stripHouseNumber(address);
         if (!relaxedAddress.equals(address)) {
-            coordinates = tryPhoton(relaxedAddress);
-            if (coordinates != null) return coordinates;
+            outcome = tryPhoton(relaxedAddress);
+            if (outcome.coordinates() != null) {
+                return new GeocodingCache.Lookup(outcome.coordinates(), "Photon (relaxed)");
+            }
+            answered |= outcome.answered();
         }
 
         // Strategy 3: ArcGIS (Secondary - Commercial but free tier) - Very robust for streets
         logger.info("Photon failed, failing over to ArcGIS for address: '{}'", address);
-        coordinates = tryArcGIS(address);
-        if (coordinates != null) return coordinates;
+        outcome = tryArcGIS(address);
+        if (outcome.coordinates() != null) return new GeocodingCache.Lookup(outcome.coordinates(), "ArcGIS");
+        answered |= outcome.answered();
 
         // Strategy 4: ArcGIS with relaxed address
         if (!relaxedAddress.equals(address)) {
-             coordinates = tryArcGIS(relaxedAddress);
-          return coordinates;
+            outcome = tryArcGIS(relaxedAddress);
+            if (outcome.coordinates() != null) {
+                return new GeocodingCache.Lookup(outcome.coordinates(), "ArcGIS (relaxed)");
+            }
+            answered |= outcome.answered();
         }
 
-        return null;
+        return answered ? new GeocodingCache.Lookup(null, null) : null;
+    }
+
+    /**
+     * Runs the same strategies as {@link #resolve(String)} as hedged requests
+     * on virtual threads: the primary lookup starts at once and each fallback
+     * starts when the previous attempt fails or has not answered within the
+     * hedge delay. The first coordinates win and the remaining attempts are
+     * cancelled. Returns null if nothing answered within the timeout or every
+     * request failed, and a negative lookup only if a provider answered
+     * without a match.
+     */
+    private GeocodingCache.Lookup resolveHedged(String address) {
+        String relaxedAddress = stripHouseNumber(address);
+        boolean relaxed = !relaxedAddress.equals(address);
+        List<Strategy> strategies = new ArrayList<>();
+        strategies.add(new Strategy(PHOTON, "Photon", () -> tryPhoton(address)));
+        if (relaxed) {
+            strategies.add(new Strategy(PHOTON, "Photon (relaxed)", () -> tryPhoton(relaxedAddress)));
+        }
+        strategies.add(new Strategy(ARCGIS, "ArcGIS", () -> tryArcGIS(address)));
+        if (relaxed) {
+            strategies.add(new Strategy(ARCGIS, "ArcGIS (relaxed)", () -> tryArcGIS(relaxedAddress)));
+        }
+
+        CompletionService<Attempt> completion = new ExecutorCompletionService<>(hedgeExecutor);
+        List<Future<Attempt>> started = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgeTimeoutMs);
+        started.add(submit(completion, strategies.get(0)));
+        int next = 1;
+        int failed = 0;
+        boolean answered = false;
+        try {
+            while (failed < strategies.size()) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    logger.warn("Geocoding timed out after {} ms for address: '{}'", hedgeTimeoutMs, address);
+                    return null;
+                }
+                long waitMs = next < strategies.size()
+                        ? Math.min(remainingMs, currentHedgeDelayMs(strategies.get(next - 1).provider()))
+                        : remainingMs;
+
+                Future<Attempt> done = completion.poll(waitMs, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    // Slow response: hedge with the next strategy
+                    if (next < strategies.size()) {
+                        logger.debug("Hedging geocoding request with {}", strategies.get(next).label());
+                        started.add(submit(completion, strategies.get(next++)));
+                    }
+                    continue;
+                }
+                Attempt attempt = done.get();
+                if (attempt.outcome().coordinates() != null) {
+                    return new GeocodingCache.Lookup(attempt.outcome().coordinates(), attempt.strategy().label());
+                }
+                answered |= attempt.outcome().answered();
+                failed++;
+                // Failed response: fall back immediately
+                if (next < strategies.size()) {
+                    started.add(submit(completion, strategies.get(next++)));
+                }
+            }
+            if (!answered) {
+                logger.warn("No geocoding provider answered for address: '{}'", address);
+                return null;
+            }
+            return new GeocodingCache.Lookup(null, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            logger.error("Hedged geocoding failed for address: '{}'", address, e);
+            return null;
+        } finally {
+            started.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private Future<Attempt> submit(CompletionService<Attempt> completion, Strategy strategy) {
+        return completion.submit(() -> new Attempt(strategy, strategy.attempt().get()));
+    }
+
+    /**
+     * Delay before hedging a request to {@code provider}: the configured
+     * percentile of its observed latency once enough samples exist, otherwise
+     * the configured default.
+     */
+    public long currentHedgeDelayMs(String provider) {
+        LatencyHistogram histogram = latencies.get(provider);
+        if (histogram == null || histogram.count() < MIN_LATENCY_SAMPLES) {
+            return hedgeDelayMs;
+        }
+        return Math.max(minHedgeDelayMs, Math.min(maxHedgeDelayMs, histogram.percentile(hedgePercentile)));
+    }
+
+    public Map<String, LatencyHistogram.Snapshot> getLatencySnapshots() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        latencies.forEach((provider, histogram) -> snapshots.put(provider, histogram.snapshot()));
+        return snapshots;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
     }
 
     private String stripHouseNumber(String address) {
@@ -74,9 +286,9 @@ public class GeocodingService {
         return address;
     }
 
-    private Coordinates tryPhoton(String query) {
+    private Outcome tryPhoton(String query) {
         try {
-            Thread.sleep(200);
+            rateLimiter.acquire();
             String fullQuery = query;
             if (!query.toLowerCase().contains("italy") && !query.toLowerCase().contains("italia")) {
                  fullQuery += ", Italy";
@@ -87,16 +299,18 @@ public class GeocodingService {
                     .queryParam("limit", 1);
 
             logger.info("Attempting geocoding with Photon: '{}'", fullQuery);
-            return executeRequest(uriBuilder.toUriString(), "Photon", true);
+            return executeRequest(uriBuilder.toUriString(), PHOTON, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             logger.error("Photon error", e);
         }
-        return null;
+        return Outcome.FAILED;
     }
 
-    private Coordinates tryArcGIS(String query) {
+    private Outcome tryArcGIS(String query) {
         try {
-            Thread.sleep(200);
+            rateLimiter.acquire();
             
             UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(arcgisUrl)
                     .queryParam("SingleLine", query)
@@ -104,24 +318,26 @@ public class GeocodingService {
                     .queryParam("maxLocations", 1);
 
             logger.info("Attempting geocoding with ArcGIS: '{}'", query);
-            return executeRequest(uriBuilder.toUriString(), "ArcGIS", false);
+            return executeRequest(uriBuilder.toUriString(), ARCGIS, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             logger.error("ArcGIS error", e);
         }
-        return null;
+        return Outcome.FAILED;
     }
 
-    private Coordinates executeRequest(String url, String provider, boolean isPhoton) {
+    private Outcome executeRequest(String url, String provider, boolean isPhoton) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set(HttpHeaders.USER_AGENT, "DinnerPlanApp/1.0");
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, entity, String.class);
-            String responseBody = response.getBody();
-            
-            if (responseBody == null) return null;
-            JsonNode root = objectMapper.readTree(responseBody);
+            long start = System.nanoTime();
+            // Parse straight from the response stream instead of buffering the body
+            JsonNode root = restTemplate.execute(url, HttpMethod.GET,
+                    request -> request.getHeaders().set(HttpHeaders.USER_AGENT, "DinnerPlanApp/1.0"),
+                    response -> objectMapper.readTree(response.getBody()));
+            if (root == null || Thread.currentThread().isInterrupted()) return Outcome.FAILED;
+            // Only complete responses count: a cancelled hedge or a failure would pull the percentile down
+            latencies.computeIfAbsent(provider, p -> new LatencyHistogram())
+                    .record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
 
             if (isPhoton) {
                 // Photon Format (GeoJSON)
@@ -131,7 +347,7 @@ public class GeocodingService {
                     double lon = coordinates.get(0).asDouble();
                     double lat = coordinates.get(1).asDouble();
                     logger.info("{} success: {}, {}", provider, lat, lon);
-                    return new Coordinates(lat, lon);
+                    return Outcome.found(new Coordinates(lat, lon));
                 }
             } else {
                 // ArcGIS Format
@@ -141,12 +357,19 @@ public class GeocodingService {
                     double lat = location.get("y").asDouble();
                     double lon = location.get("x").asDouble();
                     logger.info("{} success: {}, {}", provider, lat, lon);
-                    return new Coordinates(lat, lon);
+                    return Outcome.found(new Coordinates(lat, lon));
                 }
             }
+            // Only an empty result list is an answer; anything else (e.g. ArcGIS's {"error": ...}) is a failure
+            JsonNode results = root.get(isPhoton ? "features" : "candidates");
+            return results != null && results.isArray() ? Outcome.NO_MATCH : Outcome.FAILED;
         } catch (Exception e) {
-            logger.warn("{} request failed: {}", provider, e.getMessage());
+            if (Thread.currentThread().isInterrupted()) {
+                logger.debug("{} request cancelled", provider);
+            } else {
+                logger.warn("{} request failed: {}", provider, e.getMessage());
+            }
         }
-        return null;
+        return Outcome.FAILED;
     }
 }
@@ -0,0 +1,68 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed millisecond buckets. Percentiles
+ * are reported as the upper bound of the bucket they fall into, which is
+ * precise enough to tune hedge delays.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS_MS = { 10, 25, 50, 100, 200, 300, 500, 750, 1000, 1500, 2000, 3000, 5000,
+            10000 };
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMs = new AtomicLong();
+    private final AtomicLong maxMs = new AtomicLong();
+
+    public record Snapshot(long count, double meanMs, long p50Ms, long p95Ms, long p99Ms, long maxMs,
+            Map<String, Long> buckets) {
+    }
+
+    public void record(long millis) {
+        int i = 0;
+        while (i < BOUNDS_MS.length && millis > BOUNDS_MS[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        count.incrementAndGet();
+        totalMs.addAndGet(millis);
+        maxMs.accumulateAndGet(millis, Math::max);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long percentile(double p) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(p * total);
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            cumulative += buckets.get(i);
+            if (cumulative >= threshold) {
+                return BOUNDS_MS[i];
+            }
+        }
+        return maxMs.get();
+    }
+
+    public Snapshot snapshot() {
+        long total = count.get();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < BOUNDS_MS.length; i++) {
+            counts.put("le" + BOUNDS_MS[i], buckets.get(i));
+        }
+        counts.put("inf", buckets.get(BOUNDS_MS.length));
+        return new Snapshot(total, total == 0 ? 0.0 : (double) totalMs.get() / total, percentile(0.50),
+                percentile(0.95), percentile(0.99), maxMs.get(), counts);
+    }
+}
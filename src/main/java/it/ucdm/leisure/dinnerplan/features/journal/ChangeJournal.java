@@ -0,0 +1,132 @@
+package it.ucdm.leisure.dinnerplan.features.journal;
+
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournalEntry.Aggregate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only record of which users, events and proposals changed, written by
+ * the service write paths in the same transaction as the change. Differential
+ * backups read it to export only the aggregates changed since a snapshot.
+ */
+@Service
+public class ChangeJournal {
+
+    private final ChangeJournalRepository changeJournalRepository;
+    private final JdbcTemplate jdbcTemplate;
+    // Stands in for the table lock on databases without LOCK TABLE; only valid for a single process
+    private final ReadWriteLock localLock = new ReentrantReadWriteLock();
+
+    @Value("${app.journal.table-lock:true}")
+    private boolean tableLock = true;
+
+    public ChangeJournal(ChangeJournalRepository changeJournalRepository, JdbcTemplate jdbcTemplate) {
+        this.changeJournalRepository = changeJournalRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void userChanged(Long userId) {
+        record(Aggregate.USER, userId, false);
+    }
+
+    public void userDeleted(Long userId) {
+        record(Aggregate.USER, userId, true);
+    }
+
+    public void eventChanged(Long eventId) {
+        record(Aggregate.EVENT, eventId, false);
+    }
+
+    public void eventDeleted(Long eventId) {
+        record(Aggregate.EVENT, eventId, true);
+    }
+
+    public void proposalChanged(Long proposalId) {
+        record(Aggregate.PROPOSAL, proposalId, false);
+    }
+
+    /**
+     * Marks a backup import. It replaces every table without journaling the
+     * rows, so no differential backup can span it.
+     */
+    public void importCompleted() {
+        record(Aggregate.IMPORT, 0L, false);
+    }
+
+    /**
+     * Id of the latest import marker, 0 if there has been no import.
+     */
+    @Transactional(readOnly = true)
+    public long lastImport() {
+        return changeJournalRepository.findLastIdByAggregate(Aggregate.IMPORT);
+    }
+
+    /**
+     * Id of the latest journal entry whose transaction has committed; every
+     * change up to it is visible to a backup started afterwards.
+     * <p>
+     * Identity values are handed out before commit, so a plain {@code MAX(id)}
+     * could be ahead of a slower transaction still holding a lower id. Writers
+     * keep their entries locked until they commit, and the share lock taken
+     * here waits for them. It is released right away by the inner transaction.
+     * With {@code app.journal.table-lock=false} (H2, which has no table locks)
+     * writers hold a read lock in this process until they complete instead.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public long snapshot() {
+        if (tableLock) {
+            jdbcTemplate.execute("LOCK TABLE change_journal IN SHARE MODE");
+            return changeJournalRepository.findLastId();
+        }
+        localLock.writeLock().lock();
+        try {
+            return changeJournalRepository.findLastId();
+        } finally {
+            localLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the aggregates with entries in {@code (after, upTo]}.
+     */
+    @Transactional(readOnly = true)
+    public List<Long> changedSince(Aggregate aggregate, long after, long upTo) {
+        return changeJournalRepository.findChangedIds(aggregate, after, upTo);
+    }
+
+    private void record(Aggregate aggregate, Long id, boolean deleted) {
+        if (id == null) {
+            return;
+        }
+        if (!tableLock) {
+            holdLocalLock();
+        }
+        changeJournalRepository.save(new ChangeJournalEntry(aggregate, id, deleted, LocalDateTime.now()));
+    }
+
+    private void holdLocalLock() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(localLock)) {
+            return;
+        }
+        localLock.readLock().lock();
+        TransactionSynchronizationManager.bindResource(localLock, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(localLock);
+                localLock.readLock().unlock();
+            }
+        });
+    }
+}
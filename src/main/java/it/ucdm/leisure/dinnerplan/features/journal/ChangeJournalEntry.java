@@ -0,0 +1,74 @@
+package it.ucdm.leisure.dinnerplan.features.journal;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One change to an aggregate, appended in the transaction that made it. The
+ * id doubles as the snapshot id of differential backups: a backup taken at
+ * snapshot {@code n} contains every change with {@code id <= n}.
+ */
+@Entity
+@Table(name = "change_journal")
+public class ChangeJournalEntry {
+
+    /**
+     * What a journal entry refers to. An event covers its participants,
+     * proposal dates, votes, messages and proposal links; a proposal covers its
+     * dietary preferences and ratings. An import entry, with aggregate id 0,
+     * marks a backup import that replaced all data.
+     */
+    public enum Aggregate {
+        USER,
+        EVENT,
+        PROPOSAL,
+        IMPORT
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Aggregate aggregate;
+
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    @Column(nullable = false)
+    private boolean deleted;
+
+    @Column(nullable = false)
+    private LocalDateTime recordedAt;
+
+    public ChangeJournalEntry() {
+    }
+
+    public ChangeJournalEntry(Aggregate aggregate, Long aggregateId, boolean deleted, LocalDateTime recordedAt) {
+        this.aggregate = aggregate;
+        this.aggregateId = aggregateId;
+        this.deleted = deleted;
+        this.recordedAt = recordedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    public Long getAggregateId() {
+        return aggregateId;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public LocalDateTime getRecordedAt() {
+        return recordedAt;
+    }
+}
@@ -0,0 +1,21 @@
+package it.ucdm.leisure.dinnerplan.features.journal;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ChangeJournalRepository extends JpaRepository<ChangeJournalEntry, Long> {
+
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM ChangeJournalEntry e")
+    long findLastId();
+
+    @Query("SELECT COALESCE(MAX(e.id), 0) FROM ChangeJournalEntry e WHERE e.aggregate = :aggregate")
+    long findLastIdByAggregate(ChangeJournalEntry.Aggregate aggregate);
+
+    @Query("SELECT DISTINCT e.aggregateId FROM ChangeJournalEntry e"
+            + " WHERE e.aggregate = :aggregate AND e.id > :after AND e.id <= :upTo ORDER BY e.aggregateId")
+    List<Long> findChangedIds(ChangeJournalEntry.Aggregate aggregate, long after, long upTo);
+}
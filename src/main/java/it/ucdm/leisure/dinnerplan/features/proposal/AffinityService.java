@@ -7,12 +7,16 @@ import it.ucdm.leisure.dinnerplan.features.user.User;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 @Service
 public class AffinityService {
 
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
     @Value("${app.scoring.weight.distance:0.40}")
     private double distanceWeight;
 
@@ -25,105 +29,142 @@ public class AffinityService {
     @Value("${app.scoring.max-distance-km:50.0}")
     private double maxDistanceKm;
 
+    @Value("${app.scoring.parallel-threshold:512}")
+    private int parallelThreshold = 512;
+
     public AffinityScoreDTO calculateAffinity(Proposal proposal, DinnerEvent event) {
+        return calculateAffinities(List.of(proposal), event).get(0);
+    }
+
+    /**
+     * Scores all proposals against one event in a single pass. Participant
+     * coordinates and diets are packed into primitive arrays once, proposals
+     * are packed on the calling thread (they may hold lazy collections), and
+     * the arithmetic runs on the common ForkJoin pool for large batches.
+     * Results are in the same order as {@code proposals}.
+     */
+    public List<AffinityScoreDTO> calculateAffinities(List<Proposal> proposals, DinnerEvent event) {
+        int n = proposals.size();
         List<User> participants = event.getParticipants();
         if (participants == null || participants.isEmpty()) {
-            return new AffinityScoreDTO(0, 0, 0, 0, "No participants");
+            AffinityScoreDTO empty = new AffinityScoreDTO(0, 0, 0, 0, "No participants");
+            return java.util.Collections.nCopies(n, empty);
         }
 
-        // 1. Distance Score
-        double distanceScore = calculateDistanceScore(proposal, participants, event.getOrganizer());
-
-        // 2. Diet Score
-        double dietScore = calculateDietScore(proposal, participants, event.getOrganizer());
-
-        // 3. Popularity Score (Historical)
-        double popularityScore = calculatePopularityScore(proposal);
-
-        // Total
-        double total = (distanceScore * distanceWeight) + (dietScore * dietWeight) + (popularityScore * popularityWeight);
-        // Normalize to 0-100 scale for display
-        double finalScore = Math.min(100.0, Math.max(0.0, total * 100));
+        // Users: organizer first, then participants
+        List<User> users = new ArrayList<>(participants.size() + 1);
+        users.add(event.getOrganizer());
+        users.addAll(participants);
+
+        double[] userLatRad = new double[users.size()];
+        double[] userLonRad = new double[users.size()];
+        double[] userCosLat = new double[users.size()];
+        int located = 0;
+        int omnivores = 0;
+        int[] usersByDiet = new int[DietaryPreference.values().length];
+        for (User user : users) {
+            if (user.getLatitude() != null && user.getLongitude() != null) {
+                userLatRad[located] = Math.toRadians(user.getLatitude());
+                userLonRad[located] = Math.toRadians(user.getLongitude());
+                userCosLat[located] = Math.cos(userLatRad[located]);
+                located++;
+            }
+            DietaryPreference diet = user.getDietaryPreference();
+            if (diet == DietaryPreference.OMNIVORE) {
+                omnivores++;
+            } else if (diet != null) {
+                usersByDiet[diet.ordinal()]++;
+            }
+        }
+        int totalUsers = users.size();
+
+        double[] propLatRad = new double[n];
+        double[] propLonRad = new double[n];
+        int[] dietMask = new int[n];
+        int[] likes = new int[n];
+        int[] ratings = new int[n];
+        for (int i = 0; i < n; i++) {
+            Proposal proposal = proposals.get(i);
+            boolean hasCoords = proposal.getLatitude() != null && proposal.getLongitude() != null;
+            propLatRad[i] = hasCoords ? Math.toRadians(proposal.getLatitude()) : Double.NaN;
+            propLonRad[i] = hasCoords ? Math.toRadians(proposal.getLongitude()) : Double.NaN;
+            if (proposal.getDietaryPreferences() != null) {
+                for (DietaryPreference diet : proposal.getDietaryPreferences()) {
+                    if (diet != null) {
+                        dietMask[i] |= 1 << diet.ordinal();
+                    }
+                }
+            }
+            if (proposal.getRatings() != null) {
+                for (ProposalRating rating : proposal.getRatings()) {
+                    if (rating.isLiked()) {
+                        likes[i]++;
+                    }
+                }
+                ratings[i] = proposal.getRatings().size();
+            }
+        }
 
-        String explanation = String.format("Dist: %.0f%%, Diet: %.0f%%, Pop: %.0f%%", 
-                distanceScore * 100, dietScore * 100, popularityScore * 100);
+        double[] distanceScores = new double[n];
+        double[] dietScores = new double[n];
+        double[] popularityScores = new double[n];
+        final int locatedUsers = located;
+        final int satisfiedByDefault = omnivores;
+        IntConsumer scoreOne = i -> {
+            distanceScores[i] = distanceScore(propLatRad[i], propLonRad[i], userLatRad, userLonRad, userCosLat,
+                    locatedUsers);
+            dietScores[i] = dietScore(dietMask[i], satisfiedByDefault, usersByDiet, totalUsers);
+            // Neutral start for new places
+            popularityScores[i] = ratings[i] == 0 ? 0.5 : (double) likes[i] / ratings[i];
+        };
+        if (n >= parallelThreshold) {
+            IntStream.range(0, n).parallel().forEach(scoreOne);
+        } else {
+            for (int i = 0; i < n; i++) {
+                scoreOne.accept(i);
+            }
+        }
 
-        return new AffinityScoreDTO(finalScore, distanceScore, dietScore, popularityScore, explanation);
+        List<AffinityScoreDTO> result = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double total = (distanceScores[i] * distanceWeight) + (dietScores[i] * dietWeight)
+                    + (popularityScores[i] * popularityWeight);
+            // Normalize to 0-100 scale for display
+            double finalScore = Math.min(100.0, Math.max(0.0, total * 100));
+            result.add(new AffinityScoreDTO(finalScore, distanceScores[i], dietScores[i], popularityScores[i]));
+        }
+        return result;
     }
 
-    private double calculateDistanceScore(Proposal proposal, List<User> participants, User organizer) {
-        if (proposal.getLatitude() == null || proposal.getLongitude() == null) {
+    private double distanceScore(double latRad, double lonRad, double[] userLatRad, double[] userLonRad,
+            double[] userCosLat, int located) {
+        if (Double.isNaN(latRad)) {
             return 0.0;
         }
+        if (located == 0) return 0.5; // Neutral if no user locations known
 
+        double cosLat = Math.cos(latRad);
         double totalDist = 0;
-        int count = 0;
-
-        // Include organizer
-        if (organizer.getLatitude() != null && organizer.getLongitude() != null) {
-            totalDist += calculateHaversineDistance(organizer.getLatitude(), organizer.getLongitude(),
-                    proposal.getLatitude(), proposal.getLongitude());
-            count++;
+        for (int u = 0; u < located; u++) {
+            double sinDLat = Math.sin((latRad - userLatRad[u]) / 2);
+            double sinDLon = Math.sin((lonRad - userLonRad[u]) / 2);
+            double a = sinDLat * sinDLat + userCosLat[u] * cosLat * sinDLon * sinDLon;
+            totalDist += EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
         }
+        double avgDist = totalDist / located;
 
-        for (User p : participants) {
-            if (p.getLatitude() != null && p.getLongitude() != null) {
-                totalDist += calculateHaversineDistance(p.getLatitude(), p.getLongitude(),
-                        proposal.getLatitude(), proposal.getLongitude());
-                count++;
-            }
-        }
-
-        if (count == 0) return 0.5; // Neutral if no user locations known
-
-        double avgDist = totalDist / count;
-        
         // Linear decay: 0km = 1.0, maxDistanceKm = 0.0
         if (avgDist >= maxDistanceKm) return 0.0;
         return 1.0 - (avgDist / maxDistanceKm);
     }
 
-    private double calculateDietScore(Proposal proposal, List<User> participants, User organizer) {
-        Set<DietaryPreference> supported = proposal.getDietaryPreferences();
-        int totalUsers = participants.size() + 1; // + organizer
-        int satisfiedUsers = 0;
-
-        // Check organizer
-        if (isDietSatisfied(organizer, supported)) satisfiedUsers++;
-
-        // Check participants
-        for (User p : participants) {
-            if (isDietSatisfied(p, supported)) satisfiedUsers++;
+    private double dietScore(int supportedMask, int omnivores, int[] usersByDiet, int totalUsers) {
+        int satisfiedUsers = omnivores;
+        for (int d = 0; d < usersByDiet.length; d++) {
+            if ((supportedMask & (1 << d)) != 0) {
+                satisfiedUsers += usersByDiet[d];
+            }
         }
-
         return (double) satisfiedUsers / totalUsers;
     }
-
-    private boolean isDietSatisfied(User user, Set<DietaryPreference> supported) {
-        if (user.getDietaryPreference() == DietaryPreference.OMNIVORE) return true;
-        return supported.contains(user.getDietaryPreference());
-    }
-
-    private double calculatePopularityScore(Proposal proposal) {
-        if (proposal.getRatings() == null || proposal.getRatings().isEmpty()) {
-            return 0.5; // Neutral start for new places
-        }
-
-        long likes = proposal.getRatings().stream().filter(ProposalRating::isLiked).count();
-        long total = proposal.getRatings().size();
-
-        // Simple ratio
-        return (double) likes / total;
-    }
-
-    private double calculateHaversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Radius of the earth in km
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
-    }
 }
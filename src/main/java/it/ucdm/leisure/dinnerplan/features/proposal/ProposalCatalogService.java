@@ -1,25 +1,60 @@
 package it.ucdm.leisure.dinnerplan.features.proposal;
 
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.event.EventViewService;
 import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO;
 import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class ProposalCatalogService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ProposalCatalogService.class);
+
+    private static final Comparator<ProposalSuggestionDTO> SUGGESTION_ORDER = (a, b) -> {
+        int likeCompare = Long.compare(b.getTotalLikes(), a.getTotalLikes());
+        if (likeCompare != 0)
+            return likeCompare;
+        return Integer.compare(b.getUsageCount(), a.getUsageCount());
+    };
+
     private final ProposalRepository proposalRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final BroadcastCoalescer broadcastCoalescer;
+    private final EventViewService eventViewService;
+    private final tools.jackson.databind.ObjectMapper mapper = new tools.jackson.databind.ObjectMapper();
 
-    public ProposalCatalogService(ProposalRepository proposalRepository, SimpMessagingTemplate messagingTemplate) {
+    // In-memory suggestion catalog keyed by "location|address" (lower case), guarded by this
+    private final Map<String, ProposalSuggestionDTO> catalog = new HashMap<>();
+    private boolean loaded;
+    // Number of completed loads; written under this, read by write paths to stamp their deltas
+    private volatile long loads;
+    // Sorted, published view of the catalog; null when it has to be rebuilt
+    private volatile List<ProposalSuggestionDTO> snapshot;
+    // Bumped on every change so pages listing suggestions can derive an ETag
+    private final AtomicLong generation = new AtomicLong();
+
+    public ProposalCatalogService(ProposalRepository proposalRepository, BroadcastCoalescer broadcastCoalescer,
+            EventViewService eventViewService) {
         this.proposalRepository = proposalRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.broadcastCoalescer = broadcastCoalescer;
+        this.eventViewService = eventViewService;
     }
 
     @Transactional
@@ -42,6 +77,7 @@ public class ProposalCatalogService {
                 .build();
 
         proposalRepository.save(Objects.requireNonNull(proposal));
+        proposalSaved(proposal);
 
         notifyUpdate();
     }
@@ -63,6 +99,8 @@ public class ProposalCatalogService {
         
         proposal.setDietaryPreferences(dietaryPreferences != null ? dietaryPreferences : new java.util.HashSet<>());
         proposalRepository.save(proposal);
+        proposalSaved(proposal);
+        eventViewService.eventsChanged(proposal.getDinnerEvents().stream().map(DinnerEvent::getId).toList());
 
         notifyUpdate();
     }
@@ -76,33 +114,177 @@ public class ProposalCatalogService {
         proposal.setPhoneNumber(phoneNumber);
         proposal.setWebsite(website);
         proposalRepository.save(proposal);
+        proposalSaved(proposal);
+        eventViewService.eventsChanged(proposal.getDinnerEvents().stream().map(DinnerEvent::getId).toList());
 
         notifyUpdate();
     }
 
     private void notifyUpdate() {
-        if (org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive()) {
-            org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
-                    new org.springframework.transaction.support.TransactionSynchronization() {
-                        @Override
-                        public void afterCommit() {
-                            messagingTemplate.convertAndSend("/topic/events", "update");
-                        }
-                    });
-        } else {
-            messagingTemplate.convertAndSend("/topic/events", "update");
-        }
+        afterCommit(() -> broadcastCoalescer.send("/topic/events", "update"));
     }
 
+    /**
+     * Returns the aggregated suggestion catalog. The catalog is loaded from the database once and then
+     * kept up to date by the write paths (see the {@code proposal*} / {@code ratingChanged} hooks below),
+     * so a read only copies the current snapshot. Callers receive their own copies because the controllers
+     * decorate them with per-user data such as the distance.
+     */
     @Transactional(readOnly = true)
     public List<ProposalSuggestionDTO> getProposalSuggestions() {
+        List<ProposalSuggestionDTO> current = snapshot;
+        if (current == null) {
+            current = rebuildSnapshot();
+        }
+
+        List<ProposalSuggestionDTO> suggestions = new ArrayList<>(current.size());
+        for (ProposalSuggestionDTO suggestion : current) {
+            suggestions.add(suggestion.copy());
+        }
+        return suggestions;
+    }
+
+    /**
+     * Counter that changes whenever the catalog does; cheap to read for conditional requests.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Records new or changed details (address, coordinates, contacts, dietary options) of a proposal.
+     * The values are captured immediately and applied to the catalog once the transaction commits.
+     */
+    public void proposalSaved(Proposal proposal) {
+        String key = ProposalSuggestionDTO.catalogKey(proposal.getLocation(), proposal.getAddress());
+        ProposalSuggestionDTO details = ProposalSuggestionDTO.builder()
+                .location(proposal.getLocation())
+                .address(proposal.getAddress())
+                .latitude(proposal.getLatitude())
+                .longitude(proposal.getLongitude())
+                .description(proposal.getDescription())
+                .email(proposal.getEmail())
+                .phoneNumber(proposal.getPhoneNumber())
+                .website(proposal.getWebsite())
+                .dietaryPreferences(proposal.getDietaryPreferences() != null
+                        ? new HashSet<>(proposal.getDietaryPreferences())
+                        : new HashSet<>())
+                .build();
+
+        afterCommit(() -> apply(key, details, dto -> {
+            dto.setLocation(details.getLocation());
+            dto.setAddress(details.getAddress());
+            dto.setLatitude(details.getLatitude());
+            dto.setLongitude(details.getLongitude());
+            dto.setDescription(details.getDescription());
+            dto.setEmail(details.getEmail());
+            dto.setPhoneNumber(details.getPhoneNumber());
+            dto.setWebsite(details.getWebsite());
+            dto.setDietaryPreferences(new HashSet<>(details.getDietaryPreferences()));
+        }));
+    }
+
+    /**
+     * Records that a proposal has been attached to one more event.
+     */
+    public void proposalLinked(Proposal proposal) {
+        adjustCounters(proposal, 1, 0, 0);
+    }
+
+    /**
+     * Records that the given proposals have been detached from an event (e.g. the event was deleted).
+     */
+    public void proposalsUnlinked(Collection<Proposal> proposals) {
+        for (Proposal proposal : proposals) {
+            adjustCounters(proposal, -1, 0, 0);
+        }
+    }
+
+    /**
+     * Records a change in the like/dislike totals of a proposal.
+     */
+    public void ratingChanged(Proposal proposal, int likesDelta, int dislikesDelta) {
+        adjustCounters(proposal, 0, likesDelta, dislikesDelta);
+    }
+
+    /**
+     * Drops the in-memory catalog after bulk changes (e.g. a backup import); the next read reloads it.
+     */
+    public void invalidate() {
+        afterCommit(this::drop);
+    }
+
+    private synchronized void drop() {
+        catalog.clear();
+        loaded = false;
+        snapshot = null;
+        generation.incrementAndGet();
+    }
+
+    private void adjustCounters(Proposal proposal, int usageDelta, int likesDelta, int dislikesDelta) {
+        String key = ProposalSuggestionDTO.catalogKey(proposal.getLocation(), proposal.getAddress());
+        ProposalSuggestionDTO details = ProposalSuggestionDTO.builder()
+                .location(proposal.getLocation())
+                .address(proposal.getAddress())
+                .dietaryPreferences(new HashSet<>())
+                .build();
+        // Taken before the commit: a load completed since then may already count the change
+        long loadsBefore = loads;
+
+        afterCommit(() -> {
+            synchronized (this) {
+                if (loaded && loads != loadsBefore) {
+                    // Applying the delta could count it twice; the next read loads the committed totals
+                    drop();
+                    return;
+                }
+                apply(key, details, dto -> {
+                    dto.setUsageCount(Math.max(0, dto.getUsageCount() + usageDelta));
+                    dto.setTotalLikes(Math.max(0, dto.getTotalLikes() + likesDelta));
+                    dto.setTotalDislikes(Math.max(0, dto.getTotalDislikes() + dislikesDelta));
+                });
+            }
+        });
+    }
+
+    private synchronized void apply(String key, ProposalSuggestionDTO template,
+            java.util.function.Consumer<ProposalSuggestionDTO> change) {
+        generation.incrementAndGet();
+        if (!loaded) {
+            return; // The first read loads the committed state from the database
+        }
+        // Copy-on-write: the published snapshot may still be read concurrently
+        ProposalSuggestionDTO current = catalog.get(key);
+        ProposalSuggestionDTO updated = current != null ? current.copy() : template.copy();
+        change.accept(updated);
+        updated.setEncodedData(null);
+        updated.setEncodedData(encode(updated));
+        catalog.put(key, updated);
+        snapshot = null;
+    }
+
+    private synchronized List<ProposalSuggestionDTO> rebuildSnapshot() {
+        if (snapshot != null) {
+            return snapshot;
+        }
+        if (!loaded) {
+            loadCatalog();
+            loaded = true;
+            loads++;
+        }
+        List<ProposalSuggestionDTO> sorted = new ArrayList<>(catalog.values());
+        sorted.sort(SUGGESTION_ORDER);
+        snapshot = List.copyOf(sorted);
+        return snapshot;
+    }
+
+    private void loadCatalog() {
         List<Proposal> allProposals = proposalRepository.findAll();
-        List<ProposalSuggestionDTO> suggestions = new ArrayList<>();
-        java.util.Map<String, ProposalSuggestionDTO> map = new java.util.HashMap<>();
+        catalog.clear();
 
         for (Proposal p : allProposals) {
-            String key = (p.getLocation() + "|" + (p.getAddress() != null ? p.getAddress() : "")).toLowerCase();
-            ProposalSuggestionDTO dto = map.getOrDefault(key, ProposalSuggestionDTO.builder()
+            String key = ProposalSuggestionDTO.catalogKey(p.getLocation(), p.getAddress());
+            ProposalSuggestionDTO dto = catalog.getOrDefault(key, ProposalSuggestionDTO.builder()
                     .location(p.getLocation())
                     .address(p.getAddress())
                     .latitude(p.getLatitude())
@@ -114,7 +296,7 @@ public class ProposalCatalogService {
                     .totalLikes(0)
                     .totalDislikes(0)
                     .usageCount(0)
-                    .dietaryPreferences(new java.util.HashSet<>())
+                    .dietaryPreferences(new HashSet<>())
                     .build());
 
             int eventCount = (p.getDinnerEvents() != null) ? p.getDinnerEvents().size() : 0;
@@ -143,28 +325,34 @@ public class ProposalCatalogService {
                 dto.getDietaryPreferences().addAll(p.getDietaryPreferences());
             }
 
-            map.put(key, dto);
+            catalog.put(key, dto);
         }
 
-        suggestions.addAll(map.values());
-        suggestions.sort((a, b) -> {
-            int likeCompare = Long.compare(b.getTotalLikes(), a.getTotalLikes());
-            if (likeCompare != 0)
-                return likeCompare;
-            return Integer.compare(b.getUsageCount(), a.getUsageCount());
-        });
+        for (ProposalSuggestionDTO suggestion : catalog.values()) {
+            suggestion.setEncodedData(encode(suggestion));
+        }
+    }
 
-        tools.jackson.databind.ObjectMapper mapper = new tools.jackson.databind.ObjectMapper();
-        for (ProposalSuggestionDTO suggestion : suggestions) {
-            try {
-                String json = mapper.writeValueAsString(suggestion);
-                String encoded = java.util.Base64.getEncoder().encodeToString(json.getBytes());
-                suggestion.setEncodedData(encoded);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    private String encode(ProposalSuggestionDTO suggestion) {
+        try {
+            String json = mapper.writeValueAsString(suggestion);
+            return java.util.Base64.getEncoder().encodeToString(json.getBytes());
+        } catch (Exception e) {
+            logger.error("Error encoding suggestion {}", suggestion.getLocation(), e);
+            return null;
         }
+    }
 
-        return suggestions;
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 }
@@ -1,8 +1,27 @@
 package it.ucdm.leisure.dinnerplan.features.proposal;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ProposalDateRepository extends JpaRepository<ProposalDate, Long> {
+
+    @Query("SELECT pd.id AS proposalDateId, pd.proposal.id AS proposalId, COUNT(v.id) AS voteCount "
+            + "FROM ProposalDate pd LEFT JOIN pd.votes v "
+            + "WHERE pd.dinnerEvent.id = :eventId "
+            + "GROUP BY pd.id, pd.proposal.id")
+    List<ProposalDateVoteCount> countVotesByEventId(Long eventId);
+
+    @Query("SELECT pd.dinnerEvent.id FROM ProposalDate pd WHERE pd.id = :id")
+    Optional<Long> findEventIdById(Long id);
+
+    List<ProposalDate> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<ProposalDate> findByDinnerEvent_IdInOrderByIdAsc(Collection<Long> eventIds);
 }
@@ -0,0 +1,14 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+/**
+ * Number of votes cast on one proposal date, as returned by
+ * {@link ProposalDateRepository#countVotesByEventId(Long)}.
+ */
+public interface ProposalDateVoteCount {
+
+    Long getProposalDateId();
+
+    Long getProposalId();
+
+    long getVoteCount();
+}
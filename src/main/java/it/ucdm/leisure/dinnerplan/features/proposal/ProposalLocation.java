@@ -0,0 +1,18 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+/**
+ * Lightweight projection of a proposal's coordinates, used to seed the
+ * {@link ProposalSpatialIndex} without loading full entities.
+ */
+public interface ProposalLocation {
+
+    Long getId();
+
+    String getLocation();
+
+    String getAddress();
+
+    Double getLatitude();
+
+    Double getLongitude();
+}
@@ -1,9 +1,12 @@
 package it.ucdm.leisure.dinnerplan.features.proposal;
 
 import it.ucdm.leisure.dinnerplan.features.user.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +16,8 @@ public interface ProposalRatingRepository extends JpaRepository<ProposalRating,
     long countByProposalAndIsLikedTrue(Proposal proposal);
 
     long countByProposalAndIsLikedFalse(Proposal proposal);
+
+    List<ProposalRating> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<ProposalRating> findByProposal_IdInOrderByIdAsc(Collection<Long> proposalIds);
 }
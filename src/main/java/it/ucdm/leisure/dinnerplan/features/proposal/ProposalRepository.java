@@ -1,5 +1,6 @@
 package it.ucdm.leisure.dinnerplan.features.proposal;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -14,4 +15,8 @@ public interface ProposalRepository extends JpaRepository<Proposal, Long> {
     java.util.Optional<Proposal> findByLocationIgnoreCaseAndAddressIgnoreCase(String location, String address);
 
     List<Proposal> findByDinnerEvents_IdNot(Long eventId);
+
+    List<ProposalLocation> findByLatitudeIsNotNullAndLongitudeIsNotNull();
+
+    List<Proposal> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 }
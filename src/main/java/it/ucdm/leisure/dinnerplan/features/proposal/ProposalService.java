@@ -2,21 +2,27 @@ package it.ucdm.leisure.dinnerplan.features.proposal;
 
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEventRepository;
+import it.ucdm.leisure.dinnerplan.features.event.EventUpdatePublisher;
+import it.ucdm.leisure.dinnerplan.features.event.EventViewService;
 import it.ucdm.leisure.dinnerplan.features.geocode.Coordinates;
+import it.ucdm.leisure.dinnerplan.features.geocode.GeocodingQueue;
 import it.ucdm.leisure.dinnerplan.features.geocode.GeocodingService;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
 import it.ucdm.leisure.dinnerplan.features.proposal.dto.AffinityScoreDTO;
 import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO;
 import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
 import it.ucdm.leisure.dinnerplan.features.user.User;
 import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
+import it.ucdm.leisure.dinnerplan.features.user.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -29,18 +35,39 @@ public class ProposalService {
     private final DinnerEventRepository dinnerEventRepository;
     private final UserRepository userRepository; // Needed to save user coordinates
     private final GeocodingService geocodingService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final GeocodingQueue geocodingQueue;
+    private final UserService userService;
+    private final EventUpdatePublisher eventUpdatePublisher;
     private final AffinityService affinityService;
+    private final ProposalCatalogService proposalCatalogService;
+    private final ProposalSpatialIndex proposalSpatialIndex;
+    private final EventViewService eventViewService;
+    private final ChangeJournal changeJournal;
     private final tools.jackson.databind.ObjectMapper mapper = new tools.jackson.databind.ObjectMapper();
 
+    @Value("${app.scoring.max-distance-km:50.0}")
+    private double maxDistanceKm = 50.0;
+
+    @Value("${app.geo.central-candidates:50}")
+    private int centralCandidateLimit = 50;
+
     public ProposalService(ProposalRepository proposalRepository, DinnerEventRepository dinnerEventRepository,
-                           UserRepository userRepository, GeocodingService geocodingService, SimpMessagingTemplate messagingTemplate, AffinityService affinityService) {
+                           UserRepository userRepository, GeocodingService geocodingService, EventUpdatePublisher eventUpdatePublisher, AffinityService affinityService,
+                           ProposalCatalogService proposalCatalogService, ProposalSpatialIndex proposalSpatialIndex,
+                           GeocodingQueue geocodingQueue, UserService userService,
+                           EventViewService eventViewService, ChangeJournal changeJournal) {
         this.proposalRepository = proposalRepository;
         this.dinnerEventRepository = dinnerEventRepository;
         this.userRepository = userRepository;
         this.geocodingService = geocodingService;
-        this.messagingTemplate = messagingTemplate;
+        this.eventUpdatePublisher = eventUpdatePublisher;
         this.affinityService = affinityService;
+        this.proposalCatalogService = proposalCatalogService;
+        this.proposalSpatialIndex = proposalSpatialIndex;
+        this.geocodingQueue = geocodingQueue;
+        this.userService = userService;
+        this.eventViewService = eventViewService;
+        this.changeJournal = changeJournal;
     }
 
     public List<Proposal> getProposalsForEvent(Long eventId) {
@@ -56,62 +83,52 @@ public class ProposalService {
             throw new IllegalStateException("Event is already decided");
         }
 
-        // Ensure user coordinates are up to date for accurate scoring
+        // Use known user coordinates; unknown ones are geocoded in the background
+        // and the event is refreshed once they arrive
         List<User> usersToConsider = new ArrayList<>(event.getParticipants());
         usersToConsider.add(event.getOrganizer());
         
         for (User user : usersToConsider) {
             if (user.getAddress() != null && !user.getAddress().isBlank() && (user.getLatitude() == null || user.getLongitude() == null)) {
-                 try {
-                    Coordinates userCoordinates = geocodingService.getCoordinates(user.getAddress());
-                    if (userCoordinates != null) {
-                        User persistentUser = userRepository.findById(user.getId()).orElse(user);
-                        persistentUser.setLatitude(userCoordinates.getLatitude());
-                        persistentUser.setLongitude(userCoordinates.getLongitude());
-                        userRepository.save(persistentUser);
-                    }
-                } catch (Exception e) {
-                    logger.error("Error geocoding user {}", user.getUsername(), e);
+                Coordinates userCoordinates = geocodingService.getCachedCoordinates(user.getAddress()).orElse(null);
+                if (userCoordinates != null) {
+                    User persistentUser = userRepository.findById(user.getId()).orElse(user);
+                    persistentUser.setLatitude(userCoordinates.getLatitude());
+                    persistentUser.setLongitude(userCoordinates.getLongitude());
+                    userRepository.save(persistentUser);
+                    changeJournal.userChanged(persistentUser.getId());
+                    eventViewService.eventsChanged(eventIdsOf(persistentUser));
+                } else {
+                    userService.geocodeLater(user.getId(), user.getAddress());
                 }
             }
         }
 
         // Find candidate proposals (global proposals not yet in this event)
-        List<Proposal> candidateProposals = proposalRepository.findAll().stream()
-                .filter(p -> p.getDinnerEvents().stream().noneMatch(e -> e.getId().equals(eventId)))
-                .toList();
+        List<Proposal> candidateProposals = findCentralCandidates(event, usersToConsider);
 
         if (candidateProposals.isEmpty()) {
             logger.warn("No candidate proposals found to add to eventId: {}", eventId);
             return;
         }
 
-        Proposal bestProposal = null;
-        double maxScore = -1.0;
-
         for (Proposal proposal : candidateProposals) {
             // Ensure proposal has coordinates for accurate scoring
-            if (proposal.getAddress() != null && !proposal.getAddress().isBlank() && (proposal.getLatitude() == null || proposal.getLongitude() == null)) {
-                 try {
-                    Coordinates coords = geocodingService.getCoordinates(proposal.getAddress());
-                    if (coords != null) {
-                        proposal.setLatitude(coords.getLatitude());
-                        proposal.setLongitude(coords.getLongitude());
-                        proposalRepository.save(proposal);
-                    }
-                } catch (Exception e) {
-                    logger.error("Error geocoding proposal {}", proposal.getLocation(), e);
-                }
+            if (resolveProposalCoordinates(proposal)) {
+                proposalRepository.save(proposal);
+                changeJournal.proposalChanged(proposal.getId());
+                proposalCatalogService.proposalSaved(proposal);
             }
+        }
 
-            AffinityScoreDTO scoreDTO = affinityService.calculateAffinity(proposal, event);
-            double currentScore = scoreDTO.getTotalScore();
-            
-            logger.debug("Proposal '{}' score: {}", proposal.getLocation(), currentScore);
-
+        Proposal bestProposal = null;
+        double maxScore = -1.0;
+        List<AffinityScoreDTO> scores = affinityService.calculateAffinities(candidateProposals, event);
+        for (int i = 0; i < candidateProposals.size(); i++) {
+            double currentScore = scores.get(i).getTotalScore();
             if (currentScore > maxScore) {
                 maxScore = currentScore;
-                bestProposal = proposal;
+                bestProposal = candidateProposals.get(i);
             }
         }
 
@@ -124,15 +141,103 @@ public class ProposalService {
         }
     }
 
-    private double calculateHaversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371;
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+    /**
+     * Fills in the proposal's coordinates from the geocoding cache. On a miss
+     * the proposal keeps its coordinates pending and is patched in the
+     * background. Returns whether coordinates were set.
+     */
+    private boolean resolveProposalCoordinates(Proposal proposal) {
+        if (proposal.getAddress() == null || proposal.getAddress().isBlank()
+                || (proposal.getLatitude() != null && proposal.getLongitude() != null)) {
+            return false;
+        }
+        Coordinates coords = geocodingService.getCachedCoordinates(proposal.getAddress()).orElse(null);
+        if (coords != null) {
+            proposal.setLatitude(coords.getLatitude());
+            proposal.setLongitude(coords.getLongitude());
+            return true;
+        }
+        String location = proposal.getLocation();
+        String address = proposal.getAddress();
+        geocodingQueue.submit(address, resolved -> applyProposalCoordinates(location, address, resolved));
+        return false;
+    }
+
+    private void applyProposalCoordinates(String location, String address, Coordinates coords) {
+        proposalRepository.findByLocationIgnoreCaseAndAddressIgnoreCase(location, address)
+                .filter(p -> p.getLatitude() == null || p.getLongitude() == null)
+                .ifPresent(p -> {
+                    p.setLatitude(coords.getLatitude());
+                    p.setLongitude(coords.getLongitude());
+                    proposalRepository.save(p);
+                    changeJournal.proposalChanged(p.getId());
+                    proposalCatalogService.proposalSaved(p);
+                    notifyEventsAfterCommit(eventIdsOf(p));
+                });
+    }
+
+    private void notifyEventsAfterCommit(List<Long> eventIds) {
+        eventViewService.eventsChanged(eventIds);
+        org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
+                new org.springframework.transaction.support.TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        for (Long id : eventIds) {
+                            eventUpdatePublisher.proposalsChanged(id);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Restricts the central-proposal search to proposals around the centroid of
+     * the located users, using the spatial index. Falls back to the k nearest
+     * proposals when none are within range, and to a full scan when no user
+     * has coordinates.
+     */
+    private List<Proposal> findCentralCandidates(DinnerEvent event, List<User> users) {
+        Set<Long> alreadyInEvent = new HashSet<>();
+        for (Proposal p : event.getProposals()) {
+            alreadyInEvent.add(p.getId());
+        }
+
+        double latSum = 0;
+        double lonSum = 0;
+        int located = 0;
+        for (User user : users) {
+            if (user.getLatitude() != null && user.getLongitude() != null) {
+                latSum += user.getLatitude();
+                lonSum += user.getLongitude();
+                located++;
+            }
+        }
+
+        if (located == 0) {
+            return proposalRepository.findAll().stream()
+                    .filter(p -> !alreadyInEvent.contains(p.getId()))
+                    .toList();
+        }
+
+        double centerLat = latSum / located;
+        double centerLon = lonSum / located;
+        List<Long> ids = candidateIds(proposalSpatialIndex.withinRadius(centerLat, centerLon, maxDistanceKm),
+                alreadyInEvent);
+        if (ids.isEmpty()) {
+            ids = candidateIds(proposalSpatialIndex.nearest(centerLat, centerLon,
+                    centralCandidateLimit + alreadyInEvent.size()), alreadyInEvent);
+        }
+        logger.debug("Central proposal search for eventId {} narrowed to {} candidates", event.getId(), ids.size());
+        return proposalRepository.findAllById(ids);
+    }
+
+    private List<Long> candidateIds(List<ProposalSpatialIndex.Hit> hits, Set<Long> excluded) {
+        List<Long> ids = new ArrayList<>();
+        for (ProposalSpatialIndex.Hit hit : hits) {
+            if (!excluded.contains(hit.proposalId())) {
+                ids.add(hit.proposalId());
+            }
+        }
+        return ids;
     }
 
     @Transactional
@@ -162,37 +267,18 @@ public class ProposalService {
                     .dietaryPreferences(dietaryPreferences != null ? dietaryPreferences : new java.util.HashSet<>())
                     .build();
             
-            if (address != null && !address.isBlank()) {
-                try {
-                    Coordinates coords = geocodingService.getCoordinates(address);
-                    if (coords != null) {
-                        proposal.setLatitude(coords.getLatitude());
-                        proposal.setLongitude(coords.getLongitude());
-                    }
-                } catch (Exception e) {
-                    logger.error("Unexpected error geocoding new proposal {}: {}", location, address, e);
-                }
-            }
+            resolveProposalCoordinates(proposal);
             
             event.getProposals().add(proposal);
+            proposalCatalogService.proposalLinked(proposal);
         } else {
             if (!proposal.getDinnerEvents().contains(event)) {
                 proposal.getDinnerEvents().add(event);
                 event.getProposals().add(proposal);
+                proposalCatalogService.proposalLinked(proposal);
             }
             
-            if (proposal.getAddress() != null && !proposal.getAddress().isBlank() && 
-                (proposal.getLatitude() == null || proposal.getLongitude() == null)) {
-                try {
-                    Coordinates coords = geocodingService.getCoordinates(proposal.getAddress());
-                    if (coords != null) {
-                        proposal.setLatitude(coords.getLatitude());
-                        proposal.setLongitude(coords.getLongitude());
-                    }
-                } catch (Exception e) {
-                    logger.error("Unexpected error geocoding existing proposal {}: {}", location, address, e);
-                }
-            }
+            resolveProposalCoordinates(proposal);
 
             if ((proposal.getDescription() == null || proposal.getDescription().isBlank()) && description != null
                     && !description.isBlank()) {
@@ -212,6 +298,7 @@ public class ProposalService {
                 proposal.setDietaryPreferences(dietaryPreferences);
             }
         }
+        proposalCatalogService.proposalSaved(proposal);
 
         if (dateOptions != null) {
             for (LocalDateTime d : dateOptions) {
@@ -238,12 +325,17 @@ public class ProposalService {
         }
 
         dinnerEventRepository.save(event);
+        changeJournal.eventChanged(eventId);
+        // A new proposal has no id yet; it is covered through its event
+        changeJournal.proposalChanged(proposal.getId());
 
+        // Details of an existing proposal may have changed for the other events sharing it too
+        eventViewService.eventsChanged(eventIdsOf(proposal));
         org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
                 new org.springframework.transaction.support.TransactionSynchronization() {
                     @Override
                     public void afterCommit() {
-                        messagingTemplate.convertAndSend("/topic/events/" + eventId, "update");
+                        eventUpdatePublisher.proposalsChanged(eventId);
                     }
                 });
     }
@@ -338,6 +430,8 @@ public class ProposalService {
 
         proposal.getDates().remove(dateToRemove);
         proposalRepository.save(proposal);
+        changeJournal.eventChanged(dateToRemove.getDinnerEvent().getId());
+        eventViewService.eventsChanged(eventIdsOf(proposal));
     }
     
     @Transactional
@@ -346,5 +440,17 @@ public class ProposalService {
                 .orElseThrow(() -> new IllegalArgumentException("Proposal not found"));
         proposal.setDietaryPreferences(preferences != null ? preferences : new java.util.HashSet<>());
         proposalRepository.save(proposal);
+        changeJournal.proposalChanged(proposalId);
+        proposalCatalogService.proposalSaved(proposal);
+        eventViewService.eventsChanged(eventIdsOf(proposal));
+    }
+
+    private List<Long> eventIdsOf(Proposal proposal) {
+        return proposal.getDinnerEvents().stream().map(DinnerEvent::getId).toList();
+    }
+
+    private List<Long> eventIdsOf(User user) {
+        return dinnerEventRepository.findDistinctByOrganizerOrParticipantsContainsOrderByDeadlineDesc(user, user)
+                .stream().map(DinnerEvent::getId).toList();
     }
 }
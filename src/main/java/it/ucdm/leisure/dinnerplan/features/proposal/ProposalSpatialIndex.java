@@ -0,0 +1,230 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * In-memory uniform grid over proposal coordinates.
+ * <p>
+ * Proposals are bucketed into cells of {@code app.geo.index.cell-size-deg}
+ * degrees, so radius and nearest-neighbour lookups only visit the cells around
+ * the query point instead of every proposal in the database. The index is
+ * seeded at startup and kept current by {@link ProposalSpatialIndexListener}.
+ * Reads are lock-free; writes are serialized.
+ */
+@Component
+public class ProposalSpatialIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = 111.32;
+    private static final Comparator<Hit> BY_DISTANCE = Comparator.comparingDouble(Hit::distanceKm);
+
+    @Value("${app.geo.index.cell-size-deg:0.05}")
+    private double cellSizeDeg = 0.05;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    public record Hit(Long proposalId, String catalogKey, double distanceKm) {
+    }
+
+    private record Entry(String catalogKey, double latitude, double longitude, long cell) {
+    }
+
+    public synchronized void rebuild(Collection<? extends ProposalLocation> locations) {
+        entries.clear();
+        cells.clear();
+        for (ProposalLocation location : locations) {
+            update(location.getId(), location.getLocation(), location.getAddress(),
+                    location.getLatitude(), location.getLongitude());
+        }
+    }
+
+    /**
+     * Inserts or moves a proposal. Proposals without coordinates are removed.
+     */
+    public synchronized void update(Long proposalId, String location, String address, Double latitude,
+            Double longitude) {
+        if (proposalId == null) {
+            return;
+        }
+        if (latitude == null || longitude == null) {
+            remove(proposalId);
+            return;
+        }
+        long cell = cellOf(latitude, longitude);
+        Entry previous = entries.put(proposalId,
+                new Entry(ProposalSuggestionDTO.catalogKey(location, address), latitude, longitude, cell));
+        if (previous != null && previous.cell() != cell) {
+            removeFromCell(previous.cell(), proposalId);
+        }
+        cells.computeIfAbsent(cell, c -> ConcurrentHashMap.newKeySet()).add(proposalId);
+    }
+
+    public synchronized void remove(Long proposalId) {
+        if (proposalId == null) {
+            return;
+        }
+        Entry previous = entries.remove(proposalId);
+        if (previous != null) {
+            removeFromCell(previous.cell(), proposalId);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * All proposals within {@code radiusKm} of the given point, closest first.
+     */
+    public List<Hit> withinRadius(double latitude, double longitude, double radiusKm) {
+        if (entries.isEmpty() || radiusKm < 0) {
+            return List.of();
+        }
+        int latSpan = (int) Math.ceil(radiusKm / KM_PER_DEGREE / cellSizeDeg);
+        double widestLat = Math.min(89.9, Math.abs(latitude) + (latSpan + 1) * cellSizeDeg);
+        int lonSpan = (int) Math.min(lonCells() / 2,
+                Math.ceil(radiusKm / (KM_PER_DEGREE * Math.cos(Math.toRadians(widestLat))) / cellSizeDeg));
+
+        List<Hit> hits = new ArrayList<>();
+        if ((long) (2 * latSpan + 1) * (2 * lonSpan + 1) >= entries.size()) {
+            // Scanning the cells would cost more than scanning the entries
+            entries.forEach((id, entry) -> addIfWithin(hits, id, entry, latitude, longitude, radiusKm));
+        } else {
+            long centerLat = latIndex(latitude);
+            long centerLon = lonIndex(longitude);
+            for (long i = centerLat - latSpan; i <= centerLat + latSpan; i++) {
+                for (long j = centerLon - lonSpan; j <= centerLon + lonSpan; j++) {
+                    visitCell(i, j, (id, entry) -> addIfWithin(hits, id, entry, latitude, longitude, radiusKm));
+                }
+            }
+        }
+        hits.sort(BY_DISTANCE);
+        return hits;
+    }
+
+    /**
+     * The {@code k} proposals closest to the given point, closest first. Rings
+     * of cells are visited outwards until the k-th candidate is provably closer
+     * than anything in the unvisited cells.
+     */
+    public List<Hit> nearest(double latitude, double longitude, int k) {
+        if (k <= 0 || entries.isEmpty()) {
+            return List.of();
+        }
+        long centerLat = latIndex(latitude);
+        long centerLon = lonIndex(longitude);
+        List<Hit> found = new ArrayList<>();
+        long visited = 0;
+        for (int ring = 0;; ring++) {
+            for (long i = centerLat - ring; i <= centerLat + ring; i++) {
+                boolean edgeRow = Math.abs(i - centerLat) == ring;
+                for (long j = centerLon - ring; j <= centerLon + ring; j++) {
+                    if (!edgeRow && Math.abs(j - centerLon) != ring) {
+                        continue;
+                    }
+                    visitCell(i, j, (id, entry) -> found.add(hit(id, entry, latitude, longitude)));
+                    visited++;
+                }
+            }
+            if (found.size() >= k) {
+                found.sort(BY_DISTANCE);
+                double widestLat = Math.min(89.9, Math.abs(latitude) + (ring + 1) * cellSizeDeg);
+                double coveredKm = ring * cellSizeDeg * KM_PER_DEGREE * Math.cos(Math.toRadians(widestLat));
+                if (found.get(k - 1).distanceKm() <= coveredKm) {
+                    return List.copyOf(found.subList(0, k));
+                }
+            }
+            if (visited >= entries.size()) {
+                // Sparse neighbourhood: a linear scan is now cheaper than more rings
+                List<Hit> all = new ArrayList<>(entries.size());
+                entries.forEach((id, entry) -> all.add(hit(id, entry, latitude, longitude)));
+                all.sort(BY_DISTANCE);
+                return List.copyOf(all.subList(0, Math.min(k, all.size())));
+            }
+        }
+    }
+
+    private void visitCell(long latIdx, long lonIdx, BiConsumer<Long, Entry> visitor) {
+        if (latIdx < 0 || latIdx >= latCells()) {
+            return;
+        }
+        Set<Long> ids = cells.get(cellKey(latIdx, Math.floorMod(lonIdx, lonCells())));
+        if (ids == null) {
+            return;
+        }
+        for (Long id : ids) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                visitor.accept(id, entry);
+            }
+        }
+    }
+
+    private void addIfWithin(List<Hit> hits, Long id, Entry entry, double latitude, double longitude,
+            double radiusKm) {
+        Hit hit = hit(id, entry, latitude, longitude);
+        if (hit.distanceKm() <= radiusKm) {
+            hits.add(hit);
+        }
+    }
+
+    private Hit hit(Long id, Entry entry, double latitude, double longitude) {
+        return new Hit(id, entry.catalogKey(),
+                haversineKm(latitude, longitude, entry.latitude(), entry.longitude()));
+    }
+
+    private void removeFromCell(long cell, Long proposalId) {
+        cells.computeIfPresent(cell, (c, ids) -> {
+            ids.remove(proposalId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private long cellOf(double latitude, double longitude) {
+        return cellKey(latIndex(latitude), lonIndex(longitude));
+    }
+
+    private long cellKey(long latIdx, long lonIdx) {
+        return latIdx * lonCells() + lonIdx;
+    }
+
+    private long latIndex(double latitude) {
+        return Math.min(latCells() - 1, (long) Math.floor((Math.max(-90, Math.min(90, latitude)) + 90) / cellSizeDeg));
+    }
+
+    private long lonIndex(double longitude) {
+        return Math.floorMod((long) Math.floor((longitude + 180) / cellSizeDeg), lonCells());
+    }
+
+    private long latCells() {
+        return (long) Math.ceil(180 / cellSizeDeg);
+    }
+
+    private long lonCells() {
+        return (long) Math.ceil(360 / cellSizeDeg);
+    }
+
+    /**
+     * Great-circle distance in km between two points given in degrees.
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                        * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,51 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener that mirrors proposal coordinate changes into the
+ * {@link ProposalSpatialIndex} once the surrounding transaction commits.
+ */
+@Component
+public class ProposalSpatialIndexListener {
+
+    private final ProposalSpatialIndex spatialIndex;
+
+    public ProposalSpatialIndexListener(ProposalSpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void proposalSaved(Proposal proposal) {
+        Long id = proposal.getId();
+        String location = proposal.getLocation();
+        String address = proposal.getAddress();
+        Double latitude = proposal.getLatitude();
+        Double longitude = proposal.getLongitude();
+        afterCommit(() -> spatialIndex.update(id, location, address, latitude, longitude));
+    }
+
+    @PostRemove
+    public void proposalRemoved(Proposal proposal) {
+        Long id = proposal.getId();
+        afterCommit(() -> spatialIndex.remove(id));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (org.springframework.transaction.support.TransactionSynchronizationManager.isSynchronizationActive()) {
+            org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
+                    new org.springframework.transaction.support.TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            action.run();
+                        }
+                    });
+        } else {
+            action.run();
+        }
+    }
+}
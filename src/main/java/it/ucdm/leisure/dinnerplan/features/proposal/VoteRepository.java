@@ -1,8 +1,13 @@
 package it.ucdm.leisure.dinnerplan.features.proposal;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import it.ucdm.leisure.dinnerplan.features.user.User;
@@ -12,4 +17,41 @@ public interface VoteRepository extends JpaRepository<Vote, Long> {
     List<Vote> findByProposalDate_DinnerEvent_IdAndUser_Id(Long eventId, Long userId);
 
     Optional<Vote> findByUserAndProposalDate(User user, ProposalDate proposalDate);
+
+    @Query("SELECT v.user.username FROM Vote v WHERE v.proposalDate.id = :proposalDateId ORDER BY v.id")
+    List<String> findVoterUsernamesByProposalDateId(Long proposalDateId);
+
+    @Query("SELECT v.proposalDate.dinnerEvent.id AS eventId, v.proposalDate.id AS proposalDateId, "
+            + "v.user.id AS userId, v.user.username AS username FROM Vote v WHERE v.proposalDate.dinnerEvent.id IN :eventIds ORDER BY v.id")
+    List<VoteTallyRow> findTallyRowsByEventIds(Collection<Long> eventIds);
+
+    /**
+     * Casts the user's vote on the date unless it is cast already, in one
+     * statement that also requires the date to belong to the event and the
+     * event to be open with its deadline not passed. Returns the rows inserted.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO votes (user_id, proposal_date_id) "
+            + "SELECT u.id, pd.id FROM users u, proposal_dates pd, dinner_events e "
+            + "WHERE u.username = :username AND pd.id = :proposalDateId AND e.id = pd.dinner_event_id "
+            + "AND e.id = :eventId AND e.status = 'OPEN' AND e.deadline >= :now "
+            + "AND NOT EXISTS (SELECT 1 FROM votes v WHERE v.user_id = u.id AND v.proposal_date_id = pd.id)",
+            nativeQuery = true)
+    int insertIfOpen(String username, Long proposalDateId, Long eventId, LocalDateTime now);
+
+    /**
+     * Withdraws the user's vote on the date, with the same conditions as
+     * {@link #insertIfOpen}. Returns the rows deleted.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM votes WHERE proposal_date_id = :proposalDateId "
+            + "AND user_id IN (SELECT u.id FROM users u WHERE u.username = :username) "
+            + "AND EXISTS (SELECT 1 FROM proposal_dates pd, dinner_events e WHERE pd.id = :proposalDateId "
+            + "AND e.id = pd.dinner_event_id AND e.id = :eventId AND e.status = 'OPEN' AND e.deadline >= :now)",
+            nativeQuery = true)
+    int deleteIfOpen(String username, Long proposalDateId, Long eventId, LocalDateTime now);
+
+    List<Vote> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<Vote> findByProposalDate_DinnerEvent_IdInOrderByIdAsc(Collection<Long> eventIds);
 }
@@ -0,0 +1,16 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+/**
+ * One vote as the in-memory tally needs it, as returned by
+ * {@link VoteRepository#findTallyRowsByEventIds}.
+ */
+public interface VoteTallyRow {
+
+    Long getEventId();
+
+    Long getProposalDateId();
+
+    Long getUserId();
+
+    String getUsername();
+}
@@ -15,6 +15,13 @@ public class AffinityScoreDTO {
         this.explanation = explanation;
     }
 
+    /**
+     * Creates a score whose explanation is only formatted if it is rendered.
+     */
+    public AffinityScoreDTO(double totalScore, double distanceScore, double dietScore, double popularityScore) {
+        this(totalScore, distanceScore, dietScore, popularityScore, null);
+    }
+
     public double getTotalScore() {
         return totalScore;
     }
@@ -32,6 +39,10 @@ public class AffinityScoreDTO {
     }
 
     public String getExplanation() {
+        if (explanation == null) {
+            explanation = String.format("Dist: %.0f%%, Diet: %.0f%%, Pop: %.0f%%",
+                    distanceScore * 100, dietScore * 100, popularityScore * 100);
+        }
         return explanation;
     }
 }
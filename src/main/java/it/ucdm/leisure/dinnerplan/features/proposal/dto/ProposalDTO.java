@@ -1,24 +1,25 @@
 package it.ucdm.leisure.dinnerplan.features.proposal.dto;
 
-import it.ucdm.leisure.dinnerplan.features.proposal.Proposal;
-import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
-import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRating;
 import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
 
 import java.util.List;
 import java.util.Set;
 
+/**
+ * A proposal as rendered for one user: the shared {@link ProposalView} plus
+ * the bits that depend on who is looking at it.
+ */
 public class ProposalDTO {
 
-    private final Proposal proposal;
+    private final ProposalView proposal;
     private Double distanceFromUser; // in km
     private AffinityScoreDTO affinityScore;
 
-    public ProposalDTO(Proposal proposal) {
+    public ProposalDTO(ProposalView proposal) {
         this.proposal = proposal;
     }
 
-    public Proposal getProposal() {
+    public ProposalView getProposal() {
         return proposal;
     }
 
@@ -71,15 +72,7 @@ public class ProposalDTO {
         return proposal.getDietaryPreferences();
     }
 
-    public List<ProposalDate> getDates() {
+    public List<ProposalView.DateView> getDates() {
         return proposal.getDates();
     }
-
-    public Set<ProposalRating> getRatings() {
-        return proposal.getRatings();
-    }
-    
-    public boolean hasVotes() {
-        return proposal.hasVotes();
-    }
 }
@@ -40,6 +40,26 @@ public class ProposalSuggestionDTO {
         return new ProposalSuggestionDTOBuilder();
     }
 
+    /**
+     * Key under which proposals are grouped in the suggestion catalog.
+     */
+    public static String catalogKey(String location, String address) {
+        return (location + "|" + (address != null ? address : "")).toLowerCase();
+    }
+
+    public ProposalSuggestionDTO copy() {
+        ProposalSuggestionDTO copy = new ProposalSuggestionDTO(location, address, description, totalLikes,
+                totalDislikes, usageCount, dietaryPreferences != null ? new HashSet<>(dietaryPreferences) : null);
+        copy.setLatitude(latitude);
+        copy.setLongitude(longitude);
+        copy.setDistanceFromUser(distanceFromUser);
+        copy.setEncodedData(encodedData);
+        copy.setEmail(email);
+        copy.setPhoneNumber(phoneNumber);
+        copy.setWebsite(website);
+        return copy;
+    }
+
     public String getEncodedData() {
         return encodedData;
     }
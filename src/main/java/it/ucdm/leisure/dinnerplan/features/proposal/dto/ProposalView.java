@@ -0,0 +1,148 @@
+package it.ucdm.leisure.dinnerplan.features.proposal.dto;
+
+import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of a proposal as shown on one event's page: only the
+ * dates of that event, with their vote counts and voters already resolved.
+ * Instances are shared between requests, so per-user data lives in
+ * {@link ProposalDTO} instead.
+ */
+public class ProposalView {
+
+    private final Long id;
+    private final String location;
+    private final String address;
+    private final String description;
+    private final String email;
+    private final String phoneNumber;
+    private final String website;
+    private final Double latitude;
+    private final Double longitude;
+    private final Set<DietaryPreference> dietaryPreferences;
+    private final List<DateView> dates;
+    private final int dateCount;
+    private final List<String> incompatibleParticipants;
+    private final AffinityScoreDTO affinityScore;
+
+    public ProposalView(Long id, String location, String address, String description, String email,
+            String phoneNumber, String website, Double latitude, Double longitude,
+            Set<DietaryPreference> dietaryPreferences, List<DateView> dates, int dateCount,
+            List<String> incompatibleParticipants, AffinityScoreDTO affinityScore) {
+        this.id = id;
+        this.location = location;
+        this.address = address;
+        this.description = description;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+        this.website = website;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.dietaryPreferences = Set.copyOf(dietaryPreferences);
+        this.dates = List.copyOf(dates);
+        this.dateCount = dateCount;
+        this.incompatibleParticipants = List.copyOf(incompatibleParticipants);
+        this.affinityScore = affinityScore;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public String getWebsite() {
+        return website;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public Set<DietaryPreference> getDietaryPreferences() {
+        return dietaryPreferences;
+    }
+
+    /**
+     * Dates of this proposal that belong to the event.
+     */
+    public List<DateView> getDates() {
+        return dates;
+    }
+
+    /**
+     * Number of dates of the proposal across all events; a date can only be
+     * removed while more than one is left.
+     */
+    public int getDateCount() {
+        return dateCount;
+    }
+
+    /**
+     * Usernames of the event participants whose diet the proposal does not cater for.
+     */
+    public List<String> getIncompatibleParticipants() {
+        return incompatibleParticipants;
+    }
+
+    public AffinityScoreDTO getAffinityScore() {
+        return affinityScore;
+    }
+
+    public static class DateView {
+
+        private final Long id;
+        private final LocalDateTime date;
+        private final long voteCount;
+        private final List<String> voters;
+
+        public DateView(Long id, LocalDateTime date, long voteCount, List<String> voters) {
+            this.id = id;
+            this.date = date;
+            this.voteCount = voteCount;
+            this.voters = List.copyOf(voters);
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public LocalDateTime getDate() {
+            return date;
+        }
+
+        public long getVoteCount() {
+            return voteCount;
+        }
+
+        public List<String> getVoters() {
+            return voters;
+        }
+    }
+}
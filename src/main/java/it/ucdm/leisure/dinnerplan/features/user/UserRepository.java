@@ -1,8 +1,10 @@
 package it.ucdm.leisure.dinnerplan.features.user;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +14,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     java.util.List<User> findByRoleNot(it.ucdm.leisure.dinnerplan.features.user.Role role);
+
+    List<User> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
 }
@@ -1,7 +1,13 @@
 package it.ucdm.leisure.dinnerplan.features.user;
 
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEventRepository;
+import it.ucdm.leisure.dinnerplan.features.event.EventUpdatePublisher;
+import it.ucdm.leisure.dinnerplan.features.event.EventViewService;
 import it.ucdm.leisure.dinnerplan.features.geocode.Coordinates;
+import it.ucdm.leisure.dinnerplan.features.geocode.GeocodingQueue;
 import it.ucdm.leisure.dinnerplan.features.geocode.GeocodingService;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -18,11 +24,24 @@ public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final GeocodingService geocodingService;
-
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, GeocodingService geocodingService) {
+    private final GeocodingQueue geocodingQueue;
+    private final DinnerEventRepository dinnerEventRepository;
+    private final EventUpdatePublisher eventUpdatePublisher;
+    private final EventViewService eventViewService;
+    private final ChangeJournal changeJournal;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, GeocodingService geocodingService,
+            GeocodingQueue geocodingQueue, DinnerEventRepository dinnerEventRepository,
+            EventUpdatePublisher eventUpdatePublisher, EventViewService eventViewService,
+            ChangeJournal changeJournal) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.geocodingService = geocodingService;
+        this.geocodingQueue = geocodingQueue;
+        this.dinnerEventRepository = dinnerEventRepository;
+        this.eventUpdatePublisher = eventUpdatePublisher;
+        this.eventViewService = eventViewService;
+        this.changeJournal = changeJournal;
     }
 
     @Transactional
@@ -39,7 +58,9 @@ public class UserService {
                 .dietaryPreference(dietaryPreference != null ? dietaryPreference : DietaryPreference.OMNIVORE)
                 .build();
 
-        return userRepository.save(Objects.requireNonNull(user));
+        User saved = userRepository.save(Objects.requireNonNull(user));
+        changeJournal.userChanged(saved.getId());
+        return saved;
     }
 
     public User findByUsername(String username) {
@@ -51,6 +72,7 @@ public class UserService {
         User user = findByUsername(username);
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(Objects.requireNonNull(user));
+        changeJournal.userChanged(user.getId());
     }
 
     @Transactional
@@ -64,6 +86,7 @@ public class UserService {
             }
             user.setEmail(processedNewEmail);
             userRepository.save(Objects.requireNonNull(user));
+            changeJournal.userChanged(user.getId());
         }
     }
 
@@ -87,19 +110,13 @@ public class UserService {
             }
 
             if (processedAddress != null) {
-                try {
-                    Coordinates coords = geocodingService.getCoordinates(processedAddress);
-                    if (coords != null) {
-                        user.setLatitude(coords.getLatitude());
-                        user.setLongitude(coords.getLongitude());
-                    } else {
-                        logger.warn("Geocoding failed for address: {}", processedAddress);
-                        // No need to reset here, they are already null if addressChanged was true.
-                        // If address didn't change but coords were missing, they stay missing.
-                    }
-                } catch (Exception e) {
-                    logger.error("Unexpected error during geocoding for user {}", username, e);
-                    // Coordinates remain null (safe state)
+                Coordinates coords = geocodingService.getCachedCoordinates(processedAddress).orElse(null);
+                if (coords != null) {
+                    user.setLatitude(coords.getLatitude());
+                    user.setLongitude(coords.getLongitude());
+                } else {
+                    // Coordinates stay pending (null) until the background lookup patches them
+                    geocodeLater(user.getId(), processedAddress);
                 }
             } else {
                 // Address removed, ensure coords are null
@@ -107,14 +124,56 @@ public class UserService {
                 user.setLongitude(null);
             }
             userRepository.save(Objects.requireNonNull(user));
+            changeJournal.userChanged(user.getId());
+            eventViewService.eventsChanged(eventIdsOf(user));
         }
     }
 
+    /**
+     * Queues a background lookup for the user's address. When it resolves, the
+     * user's coordinates are patched (if the address is unchanged) and every
+     * event they take part in is told to refresh.
+     */
+    public void geocodeLater(Long userId, String address) {
+        logger.debug("Queueing geocoding for user {}", userId);
+        geocodingQueue.submit(address, resolved -> applyCoordinates(userId, address, resolved));
+    }
+
+    private void applyCoordinates(Long userId, String address, Coordinates coords) {
+        userRepository.findById(userId)
+                .filter(u -> Objects.equals(u.getAddress(), address))
+                .ifPresent(u -> {
+                    u.setLatitude(coords.getLatitude());
+                    u.setLongitude(coords.getLongitude());
+                    userRepository.save(u);
+                    changeJournal.userChanged(u.getId());
+                    List<Long> eventIds = eventIdsOf(u);
+                    eventViewService.eventsChanged(eventIds);
+                    org.springframework.transaction.support.TransactionSynchronizationManager.registerSynchronization(
+                            new org.springframework.transaction.support.TransactionSynchronization() {
+                                @Override
+                                public void afterCommit() {
+                                    for (Long id : eventIds) {
+                                        eventUpdatePublisher.proposalsChanged(id);
+                                    }
+                                }
+                            });
+                });
+    }
+
     @Transactional
     public void updateDietaryPreference(String username, DietaryPreference preference) {
         User user = findByUsername(username);
         user.setDietaryPreference(preference != null ? preference : DietaryPreference.OMNIVORE);
         userRepository.save(Objects.requireNonNull(user));
+        changeJournal.userChanged(user.getId());
+        // Diets decide incompatible participants and affinity scores
+        eventViewService.eventsChanged(eventIdsOf(user));
+    }
+
+    private List<Long> eventIdsOf(User user) {
+        return dinnerEventRepository.findDistinctByOrganizerOrParticipantsContainsOrderByDeadlineDesc(user, user)
+                .stream().map(DinnerEvent::getId).toList();
     }
 
     public List<User> getAllUsers() {
@@ -131,6 +190,7 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
         user.setPassword(passwordEncoder.encode(newPassword));
         userRepository.save(Objects.requireNonNull(user));
+        changeJournal.userChanged(user.getId());
     }
 
     @Transactional
@@ -139,11 +199,14 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
         user.setRole(Role.ORGANIZER);
         userRepository.save(Objects.requireNonNull(user));
+        changeJournal.userChanged(user.getId());
     }
 
     @Transactional
     public void deleteUser(Long userId) {
         userRepository.deleteById(Objects.requireNonNull(userId));
+        changeJournal.userDeleted(userId);
+        eventViewService.invalidateAll();
     }
 
     @Transactional
@@ -152,5 +215,6 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
         user.setRole(role);
         userRepository.save(Objects.requireNonNull(user));
+        changeJournal.userChanged(user.getId());
     }
 }
@@ -0,0 +1,167 @@
+package it.ucdm.leisure.dinnerplan.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Sits in front of {@link SimpMessagingTemplate} for topic notifications such
+ * as {@code "update"}. The first message for a destination goes out at once
+ * and opens a window; identical messages arriving within the window are merged
+ * into a single send when it closes. A burst of votes therefore costs
+ * subscribers at most one refresh per window instead of one per vote.
+ * <p>
+ * Only equal payloads are merged, so e.g. {@code "update-participants"} is not
+ * lost behind an {@code "update"} on the same topic. Callers whose payloads
+ * carry state can pass a merge key and a supplier instead; the supplier is
+ * evaluated when the message actually goes out, so the merged send carries
+ * the latest state. Callers that number their payloads pass an {@link Emitter}
+ * instead, which decides what happens around the send, e.g. numbering the
+ * payload and sending it under a lock of its own so the numbers go out in order.
+ */
+@Component
+public class BroadcastCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastCoalescer.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final long windowMs;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Key, Window> windows = new ConcurrentHashMap<>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private record Key(String destination, Object mergeKey) {
+    }
+
+    // Whether another send is owed when the window closes; guarded by the map entry
+    private static final class Window {
+        boolean pending;
+        Emitter emitter;
+
+        Window(Emitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    /**
+     * Produces a message when it actually goes out and hands it to the broker
+     * through {@code send}.
+     */
+    @FunctionalInterface
+    public interface Emitter {
+        void emit(Consumer<Object> send);
+    }
+
+    public record Stats(long windowMs, long received, long sent, long suppressed, int openWindows) {
+    }
+
+    public BroadcastCoalescer(SimpMessagingTemplate messagingTemplate,
+            @Value("${app.broadcast.coalesce-window-ms:250}") long windowMs) {
+        this.messagingTemplate = messagingTemplate;
+        this.windowMs = windowMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("broadcast-coalescer").daemon(true).factory());
+    }
+
+    /**
+     * Sends {@code payload} to {@code destination}, merged with identical
+     * messages sent within the coalescing window.
+     */
+    public void send(String destination, Object payload) {
+        send(destination, payload, () -> payload);
+    }
+
+    /**
+     * Sends the payload produced by {@code payload} to {@code destination},
+     * merged with messages for the same {@code mergeKey} sent within the
+     * coalescing window. The supplier of the last merged call is the one used.
+     */
+    public void send(String destination, Object mergeKey, Supplier<?> payload) {
+        send(destination, mergeKey, (Emitter) send -> send.accept(payload.get()));
+    }
+
+    /**
+     * Like {@link #send(String, Object, Supplier)}, with the message produced
+     * and handed to the broker by {@code emitter}. The emitter of the last
+     * merged call is the one used.
+     */
+    public void send(String destination, Object mergeKey, Emitter emitter) {
+        received.incrementAndGet();
+        if (windowMs <= 0) {
+            deliver(destination, emitter);
+            return;
+        }
+
+        Key key = new Key(destination, mergeKey);
+        boolean[] opened = { false };
+        windows.compute(key, (k, window) -> {
+            if (window == null) {
+                opened[0] = true;
+                return new Window(emitter);
+            }
+            if (window.pending) {
+                suppressed.incrementAndGet();
+            }
+            window.pending = true;
+            window.emitter = emitter;
+            return window;
+        });
+
+        if (opened[0]) {
+            // Schedule first so a failing send cannot leave the window open for good
+            scheduler.schedule(() -> close(key), windowMs, TimeUnit.MILLISECONDS);
+            deliver(destination, emitter);
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(windowMs, received.get(), sent.get(), suppressed.get(), windows.size());
+    }
+
+    private void close(Key key) {
+        Emitter[] flush = { null };
+        windows.computeIfPresent(key, (k, window) -> {
+            if (!window.pending) {
+                return null;
+            }
+            // Keep the window open for whatever arrives while the merged message goes out
+            window.pending = false;
+            flush[0] = window.emitter;
+            return window;
+        });
+
+        if (flush[0] != null) {
+            scheduler.schedule(() -> close(key), windowMs, TimeUnit.MILLISECONDS);
+            try {
+                deliver(key.destination(), flush[0]);
+            } catch (RuntimeException e) {
+                logger.warn("Coalesced broadcast to {} failed", key.destination(), e);
+            }
+        }
+    }
+
+    private void deliver(String destination, Emitter emitter) {
+        sent.incrementAndGet();
+        emitter.emit(payload -> messagingTemplate.convertAndSend(destination, payload));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
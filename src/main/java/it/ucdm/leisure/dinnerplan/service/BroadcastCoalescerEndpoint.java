@@ -0,0 +1,24 @@
+package it.ucdm.leisure.dinnerplan.service;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes how many topic notifications were merged away at {@code /actuator/broadcasts}.
+ */
+@Component
+@Endpoint(id = "broadcasts")
+public class BroadcastCoalescerEndpoint {
+
+    private final BroadcastCoalescer broadcastCoalescer;
+
+    public BroadcastCoalescerEndpoint(BroadcastCoalescer broadcastCoalescer) {
+        this.broadcastCoalescer = broadcastCoalescer;
+    }
+
+    @ReadOperation
+    public BroadcastCoalescer.Stats stats() {
+        return broadcastCoalescer.getStats();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Live updates for the event page (desktop and mobile).
+ *
+ * The server pushes typed deltas on /topic/events/{id} (see EventDeltaDTO),
+ * each with a per-event sequence number. Vote changes are patched into the
+ * page; other changes reload only the fragments they affect. A delta that
+ * does not directly follow the last one seen means messages were missed, so
+ * every fragment is reloaded instead.
+ *
+ * Each server node numbers its own deltas, so sequences are tracked per
+ * origin. The page starts with the sequence of the node that rendered it; the
+ * first delta from any other node cannot be placed and reloads everything.
+ *
+ * options: eventId, lastSeq, origin, username, markSelf(span), hideOverlay(), onDeleted()
+ */
+function createEventUpdates(options) {
+    var lastSeqs = {};
+    lastSeqs[options.origin || ''] = options.lastSeq || 0;
+
+    var fragments = {
+        header: 'event-header-card',
+        actions: 'event-action-bar',
+        proposals: 'proposal-list-container',
+        participants: 'participant-lists-container'
+    };
+
+    function refreshFragments(names) {
+        var fetchFragment = function (name) {
+            return fetch('/events/' + options.eventId + '/fragments/' + name).then(function (response) {
+                if (response.status === 403 || response.redirected) {
+                    window.location.href = '/';
+                    throw new Error('Redirected');
+                }
+                return response.text();
+            });
+        };
+
+        return Promise.all(names.map(fetchFragment)).then(function (values) {
+            names.forEach(function (name, i) {
+                var el = document.getElementById(fragments[name]);
+                if (el) el.outerHTML = values[i];
+            });
+            options.hideOverlay();
+        }).catch(function (e) {
+            if (e.message !== 'Redirected') console.error(e);
+            options.hideOverlay();
+        });
+    }
+
+    function refreshAll() {
+        return refreshFragments(Object.keys(fragments));
+    }
+
+    // Highest vote count first, the selected proposal on top; mirrors the server-side order
+    function reorderProposals(container) {
+        var cards = Array.prototype.filter.call(container.children, function (el) {
+            return el.hasAttribute('data-proposal-id');
+        });
+        var ranked = cards.map(function (card, index) {
+            var max = 0;
+            card.querySelectorAll('[data-vote-count]').forEach(function (el) {
+                max = Math.max(max, parseInt(el.textContent, 10) || 0);
+            });
+            var selected = card.getAttribute('data-selected') === 'true';
+            return { card: card, selected: selected, votes: max, index: index };
+        });
+        ranked.sort(function (a, b) {
+            if (a.selected !== b.selected) return a.selected ? -1 : 1;
+            return (b.votes - a.votes) || (a.index - b.index);
+        });
+        // Moving a card reloads its map, so leave the DOM alone unless the order changed
+        var changed = ranked.some(function (entry, i) { return entry.card !== cards[i]; });
+        if (changed) {
+            ranked.forEach(function (entry) { container.appendChild(entry.card); });
+        }
+    }
+
+    function patchVotes(delta) {
+        var dateEl = document.querySelector('[data-date-id="' + delta.proposalDateId + '"]');
+        if (!dateEl) return false;
+
+        // The user's own vote buttons and highlight are rendered per user by the server
+        var votedByMe = delta.voters.indexOf(options.username) !== -1;
+        if (String(votedByMe) !== dateEl.getAttribute('data-voted')) return false;
+
+        dateEl.querySelector('[data-vote-count]').textContent = delta.voteCount;
+        var votersEl = dateEl.querySelector('[data-voters]');
+        votersEl.textContent = '';
+        if (delta.voters.length > 0) {
+            votersEl.appendChild(document.createTextNode('('));
+            delta.voters.forEach(function (voter, i) {
+                var span = document.createElement('span');
+                span.textContent = voter;
+                if (voter === options.username) options.markSelf(span);
+                votersEl.appendChild(span);
+                if (i < delta.voters.length - 1) votersEl.appendChild(document.createTextNode(', '));
+            });
+            votersEl.appendChild(document.createTextNode(')'));
+        }
+        votersEl.hidden = delta.voters.length === 0;
+
+        var card = dateEl.closest('[data-proposal-id]');
+        if (card) reorderProposals(card.parentNode);
+        options.hideOverlay();
+        return true;
+    }
+
+    function handle(body) {
+        var delta;
+        try {
+            delta = JSON.parse(body);
+        } catch (e) {
+            // Plain notification without a delta
+            refreshAll();
+            return;
+        }
+
+        if (delta.type === 'DELETED') {
+            options.onDeleted();
+            return;
+        }
+        var origin = delta.origin || '';
+        var lastSeq = lastSeqs[origin];
+        if (lastSeq !== undefined && delta.seq <= lastSeq) {
+            return; // Already part of what the page shows
+        }
+        var missed = lastSeq === undefined || delta.seq !== lastSeq + 1;
+        lastSeqs[origin] = delta.seq;
+        if (missed) {
+            refreshAll();
+            return;
+        }
+
+        switch (delta.type) {
+            case 'VOTES':
+                if (!patchVotes(delta)) refreshFragments(['proposals']);
+                break;
+            case 'PROPOSALS':
+                refreshFragments(['proposals']);
+                break;
+            case 'PARTICIPANTS':
+                // Participants also drive the incompatibility warnings and affinity scores
+                refreshFragments(['participants', 'proposals']);
+                break;
+            case 'STATUS':
+                refreshFragments(['header', 'actions', 'proposals']);
+                break;
+            default:
+                refreshAll();
+        }
+    }
+
+    return { handle: handle, refreshAll: refreshAll };
+}
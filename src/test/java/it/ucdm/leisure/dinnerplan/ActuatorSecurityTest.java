@@ -0,0 +1,42 @@
+package it.ucdm.leisure.dinnerplan;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ActuatorSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @WithMockUser(username = "bob", roles = { "PARTICIPANT" })
+    public void testMetricsEndpointsForbiddenToUsers() throws Exception {
+        mockMvc.perform(get("/actuator/broadcasts")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/geocodingcache")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/geocodinglatency")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(username = "admin", roles = { "ADMIN" })
+    public void testMetricsEndpointsOpenToAdmins() throws Exception {
+        mockMvc.perform(get("/actuator/broadcasts")).andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(username = "bob", roles = { "PARTICIPANT" })
+    public void testHealthOpenToUsers() throws Exception {
+        // Up or down depends on the environment; only the access is checked
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(result -> assertNotEquals(403, result.getResponse().getStatus()));
+    }
+}
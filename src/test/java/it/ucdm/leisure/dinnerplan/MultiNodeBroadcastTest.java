@@ -0,0 +1,228 @@
+package it.ucdm.leisure.dinnerplan;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEventService;
+import it.ucdm.leisure.dinnerplan.features.event.EventUpdatePublisher;
+import it.ucdm.leisure.dinnerplan.features.event.InteractionService;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalService;
+import it.ucdm.leisure.dinnerplan.features.user.Role;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+import it.ucdm.leisure.dinnerplan.features.user.UserService;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Two application nodes sharing one database and one embedded Artemis broker
+ * in relay mode: changes made on node A must reach WebSocket clients of node B.
+ */
+class MultiNodeBroadcastTest {
+
+    private static EmbeddedActiveMQ broker;
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    @BeforeAll
+    static void startNodes() throws Exception {
+        int stompPort = freePort();
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+                .setPersistenceEnabled(false)
+                .setSecurityEnabled(false)
+                .setBrokerInstance(Files.createTempDirectory("artemis").toFile())
+                .addAcceptorConfiguration("stomp", "tcp://localhost:" + stompPort
+                        + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/"));
+        broker.start();
+
+        nodeA = startNode(stompPort, "create-drop");
+        nodeB = startNode(stompPort, "none");
+        awaitBrokerAvailable(nodeA);
+        awaitBrokerAvailable(nodeB);
+    }
+
+    @AfterAll
+    static void stopNodes() throws Exception {
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (broker != null) {
+            broker.stop();
+        }
+    }
+
+    @Test
+    void voteOnNodeA_ReachesSubscriberOnNodeB() throws Exception {
+        nodeA.getBean(UserService.class).registerUser("mn-alice", null, "secret", Role.ORGANIZER, null);
+        User bob = nodeA.getBean(UserService.class).registerUser("mn-bob", null, "secret", Role.PARTICIPANT, null);
+        DinnerEvent event = nodeA.getBean(DinnerEventService.class).createEvent("Multi-node dinner", "",
+                LocalDateTime.now().plusDays(7), "mn-alice", List.of(bob.getId()));
+        // No address, so nothing is sent to the geocoders
+        nodeA.getBean(ProposalService.class).addProposal(event.getId(), List.of(LocalDateTime.now().plusDays(10)),
+                "Trattoria", "", "");
+        ProposalDate date = nodeA.getBean(ProposalDateRepository.class).findAll().stream()
+                .filter(d -> d.getDinnerEvent().getId().equals(event.getId()))
+                .findFirst().orElseThrow();
+
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        StompSession session = connect(nodeB, "mn-bob");
+        try {
+            subscribe(session, "/topic/events/" + event.getId(), received);
+
+            nodeA.getBean(InteractionService.class).castVote(date.getId(), "mn-bob");
+
+            JsonNode delta = awaitDelta(received, "VOTES");
+            assertEquals(date.getId().longValue(), delta.get("proposalDateId").asLong());
+            assertEquals(1, delta.get("voteCount").asInt());
+            assertEquals("mn-bob", delta.get("voters").get(0).asString());
+            assertEquals(nodeA.getBean(EventUpdatePublisher.class).getNodeId(), delta.get("origin").asString());
+        } finally {
+            session.disconnect();
+        }
+    }
+
+    @Test
+    void userDestinationOnNodeA_IsResolvedOnNodeB() throws Exception {
+        nodeA.getBean(UserService.class).registerUser("mn-carol", null, "secret", Role.PARTICIPANT, null);
+
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        StompSession session = connect(nodeB, "mn-carol");
+        try {
+            subscribe(session, "/user/topic/dashboard-updates", received);
+
+            // Node A has no session for the user and broadcasts the message for node B to resolve
+            nodeA.getBean(SimpMessagingTemplate.class).convertAndSendToUser("mn-carol", "/topic/dashboard-updates",
+                    "REFRESH");
+
+            assertEquals("REFRESH", received.poll(10, TimeUnit.SECONDS));
+        } finally {
+            session.disconnect();
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode(int stompPort, String ddlAuto) {
+        return new SpringApplicationBuilder(DinnerPlanApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:derby:memory:multinode;create=true",
+                "--spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                "--app.websocket.broker=relay",
+                "--app.websocket.relay.port=" + stompPort);
+    }
+
+    private static void awaitBrokerAvailable(ConfigurableApplicationContext node) throws InterruptedException {
+        StompBrokerRelayMessageHandler relay = node.getBean(StompBrokerRelayMessageHandler.class);
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (!relay.isBrokerAvailable()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Node did not connect to the STOMP broker");
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private StompSession connect(ConfigurableApplicationContext node, String username) throws Exception {
+        String port = node.getEnvironment().getProperty("local.server.port");
+
+        HttpClient http = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+        HttpResponse<Void> login = http.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("username=" + username + "&password=secret"))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        String sessionCookie = login.headers().allValues("Set-Cookie").stream()
+                .filter(c -> c.startsWith("JSESSIONID="))
+                .map(c -> c.split(";", 2)[0])
+                .findFirst().orElseThrow(() -> new IllegalStateException("Login failed for " + username));
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setTaskScheduler(scheduler);
+
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.add("Cookie", sessionCookie);
+        StompSession session = client.connectAsync("ws://localhost:" + port + "/ws", headers,
+                new StompSessionHandlerAdapter() {
+                }).get(10, TimeUnit.SECONDS);
+        session.setAutoReceipt(true);
+        return session;
+    }
+
+    private void subscribe(StompSession session, String destination, BlockingQueue<String> received)
+            throws InterruptedException {
+        CountDownLatch subscribed = new CountDownLatch(1);
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add(new String((byte[]) payload, StandardCharsets.UTF_8));
+            }
+        }).addReceiptTask(subscribed::countDown);
+        assertTrue(subscribed.await(10, TimeUnit.SECONDS), "Broker did not confirm the subscription");
+    }
+
+    private JsonNode awaitDelta(BlockingQueue<String> received, String type) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            String body = received.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+            if (body == null) {
+                break;
+            }
+            JsonNode delta = jsonMapper.readTree(body);
+            if (type.equals(delta.path("type").asString())) {
+                return delta;
+            }
+        }
+        return fail("No " + type + " delta received");
+    }
+}
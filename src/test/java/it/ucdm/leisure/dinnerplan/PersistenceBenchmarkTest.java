@@ -0,0 +1,285 @@
+package it.ucdm.leisure.dinnerplan;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEventService;
+import it.ucdm.leisure.dinnerplan.features.event.InteractionService;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalCatalogService;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalService;
+import it.ucdm.leisure.dinnerplan.features.user.Role;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+import it.ucdm.leisure.dinnerplan.features.user.UserService;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.derby.drda.NetworkServerControl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Runs the same vote, chat and dashboard workload against each persistence
+ * profile and prints throughput and p99 latency per operation. Too slow for the
+ * regular build, so it only runs when asked for:
+ *
+ * <pre>
+ * mvn test -Dtest=PersistenceBenchmarkTest -Dbenchmark=true \
+ *     [-Dbenchmark.threads=8 -Dbenchmark.warmup-seconds=5 -Dbenchmark.seconds=20]
+ * </pre>
+ *
+ * Every profile starts from an empty database in a temporary directory with the
+ * same users, events and proposal dates. Each worker thread acts for its own
+ * users, so votes never race on the same row and the numbers reflect the
+ * database rather than the workload.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PersistenceBenchmarkTest {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 8);
+    private static final int WARMUP_SECONDS = Integer.getInteger("benchmark.warmup-seconds", 5);
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 20);
+    private static final int USERS = 48;
+    private static final int EVENTS = 12;
+    private static final int DATES_PER_EVENT = 3;
+
+    enum Operation {
+        VOTE,
+        CHAT,
+        DASHBOARD
+    }
+
+    private static Path dataDir;
+    private static NetworkServerControl derbyServer;
+    private static int derbyPort;
+    private static final List<String> report = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeAll
+    static void startDerbyServer() throws Exception {
+        dataDir = Files.createTempDirectory("persistence-benchmark");
+        try (ServerSocket socket = new ServerSocket(0)) {
+            derbyPort = socket.getLocalPort();
+        }
+        derbyServer = new NetworkServerControl(InetAddress.getLoopbackAddress(), derbyPort);
+        derbyServer.start(null);
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (true) {
+            try {
+                derbyServer.ping();
+                return;
+            } catch (Exception e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    @AfterAll
+    static void stopDerbyServer() throws Exception {
+        if (derbyServer != null) {
+            derbyServer.shutdown();
+        }
+        System.out.printf("%nPersistence benchmark: %d threads, %d s measured after %d s warm-up%n", THREADS,
+                SECONDS, WARMUP_SECONDS);
+        System.out.printf("%-14s %-10s %12s %12s %12s %8s%n", "profile", "operation", "ops/s", "p50 ms",
+                "p99 ms", "errors");
+        report.forEach(System.out::println);
+    }
+
+    @Test
+    void embeddedDerby() throws Exception {
+        run("derby", new String[0], "jdbc:derby:" + dataDir.resolve("derby") + ";create=true");
+    }
+
+    @Test
+    void derbyNetworkServer() throws Exception {
+        run("derby-server", new String[] { "derby-server" },
+                "jdbc:derby://localhost:" + derbyPort + "/" + dataDir.resolve("derby-server") + ";create=true");
+    }
+
+    @Test
+    void h2File() throws Exception {
+        run("h2", new String[] { "h2" },
+                "jdbc:h2:file:" + dataDir.resolve("h2").resolve("dinnerdb") + ";DB_CLOSE_ON_EXIT=FALSE");
+    }
+
+    private void run(String name, String[] profiles, String url) throws Exception {
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(DinnerPlanApplication.class)
+                .profiles(profiles)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + url,
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.it.ucdm.leisure=WARN")) {
+            Fixture fixture = createFixture(app);
+
+            long measureFrom = System.nanoTime() + WARMUP_SECONDS * 1_000_000_000L;
+            long measureUntil = measureFrom + SECONDS * 1_000_000_000L;
+            ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+            List<Future<Samples>> results = new ArrayList<>();
+            try {
+                for (int t = 0; t < THREADS; t++) {
+                    int thread = t;
+                    results.add(workers.submit(() -> work(app, fixture, thread, measureFrom, measureUntil)));
+                }
+                Samples total = new Samples();
+                for (Future<Samples> result : results) {
+                    total.add(result.get());
+                }
+                report(name, total);
+                assertTrue(total.count() > 0, "No operation completed on " + name);
+            } finally {
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    private record Fixture(List<String> usernames, List<Long> eventIds, Map<Long, List<Long>> dateIds) {
+    }
+
+    private Fixture createFixture(ConfigurableApplicationContext app) {
+        UserService userService = app.getBean(UserService.class);
+        DinnerEventService dinnerEventService = app.getBean(DinnerEventService.class);
+        ProposalService proposalService = app.getBean(ProposalService.class);
+
+        userService.registerUser("bench-organizer", null, "secret", Role.ORGANIZER, null);
+        List<User> members = IntStream.range(0, USERS)
+                .mapToObj(i -> userService.registerUser("bench-user-" + i, null, "secret", Role.PARTICIPANT, null))
+                .toList();
+        List<Long> memberIds = members.stream().map(User::getId).toList();
+
+        LocalDateTime deadline = LocalDateTime.now().plusDays(7);
+        List<LocalDateTime> dates = IntStream.range(0, DATES_PER_EVENT)
+                .mapToObj(i -> deadline.plusDays(i + 1))
+                .toList();
+        List<Long> eventIds = new ArrayList<>();
+        for (int i = 0; i < EVENTS; i++) {
+            DinnerEvent event = dinnerEventService.createEvent("Benchmark dinner " + i, "", deadline,
+                    "bench-organizer", memberIds);
+            // No address, so nothing is sent to the geocoders
+            proposalService.addProposal(event.getId(), dates, "Trattoria " + i, "", "");
+            eventIds.add(event.getId());
+        }
+        Map<Long, List<Long>> dateIds = app.getBean(ProposalDateRepository.class).findAll().stream()
+                .collect(Collectors.groupingBy(d -> d.getDinnerEvent().getId(),
+                        Collectors.mapping(ProposalDate::getId, Collectors.toList())));
+        return new Fixture(members.stream().map(User::getUsername).toList(), eventIds, dateIds);
+    }
+
+    private Samples work(ConfigurableApplicationContext app, Fixture fixture, int thread, long measureFrom,
+            long measureUntil) {
+        InteractionService interactionService = app.getBean(InteractionService.class);
+        DinnerEventService dinnerEventService = app.getBean(DinnerEventService.class);
+        UserService userService = app.getBean(UserService.class);
+        ProposalCatalogService proposalCatalogService = app.getBean(ProposalCatalogService.class);
+
+        List<String> ownUsers = IntStream.range(0, USERS)
+                .filter(i -> i % THREADS == thread)
+                .mapToObj(fixture.usernames()::get)
+                .toList();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Samples samples = new Samples();
+        long now;
+        while ((now = System.nanoTime()) < measureUntil && !ownUsers.isEmpty()) {
+            String username = ownUsers.get(random.nextInt(ownUsers.size()));
+            Long eventId = fixture.eventIds().get(random.nextInt(fixture.eventIds().size()));
+            // Out of ten operations: six votes, two chat messages, two dashboard loads
+            int pick = random.nextInt(10);
+            Operation operation = pick < 6 ? Operation.VOTE : pick < 8 ? Operation.CHAT : Operation.DASHBOARD;
+            boolean ok = true;
+            try {
+                switch (operation) {
+                    case VOTE -> {
+                        List<Long> dates = fixture.dateIds().get(eventId);
+                        interactionService.castVote(dates.get(random.nextInt(dates.size())), username);
+                    }
+                    case CHAT -> interactionService.addMessage(eventId, username, "Benchmark message");
+                    case DASHBOARD -> {
+                        userService.findByUsername(username);
+                        dinnerEventService.getEventsForUser(username);
+                        proposalCatalogService.getProposalSuggestions();
+                    }
+                }
+            } catch (RuntimeException e) {
+                ok = false;
+            }
+            if (now >= measureFrom) {
+                samples.record(operation, System.nanoTime() - now, ok);
+            }
+        }
+        return samples;
+    }
+
+    private static void report(String name, Samples samples) {
+        for (Operation operation : Operation.values()) {
+            List<Long> latencies = samples.latencies.get(operation);
+            Collections.sort(latencies);
+            report.add(String.format("%-14s %-10s %12.1f %12.2f %12.2f %8d", name, operation,
+                    latencies.size() / (double) SECONDS, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    samples.errors.get(operation)));
+        }
+        report.add(String.format("%-14s %-10s %12.1f", name, "total", samples.count() / (double) SECONDS));
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1_000_000.0;
+    }
+
+    private static final class Samples {
+
+        private final Map<Operation, List<Long>> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, Integer> errors = new EnumMap<>(Operation.class);
+
+        Samples() {
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new ArrayList<>());
+                errors.put(operation, 0);
+            }
+        }
+
+        void record(Operation operation, long nanos, boolean ok) {
+            if (ok) {
+                latencies.get(operation).add(nanos);
+            } else {
+                errors.merge(operation, 1, Integer::sum);
+            }
+        }
+
+        void add(Samples other) {
+            for (Operation operation : Operation.values()) {
+                latencies.get(operation).addAll(other.latencies.get(operation));
+                errors.merge(operation, other.errors.get(operation), Integer::sum);
+            }
+        }
+
+        long count() {
+            return latencies.values().stream().mapToLong(List::size).sum();
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package it.ucdm.leisure.dinnerplan;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEventService;
+import it.ucdm.leisure.dinnerplan.features.event.EventUpdatePublisher;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalService;
+import it.ucdm.leisure.dinnerplan.features.user.Role;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Reproduces the "everyone votes just before the deadline" spike against one
+ * node on an in-memory database. Every user keeps the event page open (one
+ * STOMP subscription on {@code /topic/events/{id}} each) and votes once on
+ * every date of the event through {@code POST /api/interactions/proposals/{id}/vote},
+ * all starting within {@code loadtest.spread-ms}. Reported:
+ * <ul>
+ * <li>vote latency: the HTTP round trip of each vote;</li>
+ * <li>delivery lag: from sending a vote to each subscriber receiving a delta
+ * that lists the voter;</li>
+ * <li>fragment refetches per vote: the page logic of {@code event-updates.js}
+ * is replayed for every subscriber, which reloads the proposal list when its
+ * own vote changes and every fragment when it sees a sequence gap.</li>
+ * </ul>
+ * Skipped unless asked for:
+ *
+ * <pre>
+ * mvn test -Dtest=VotingLoadTest -Dloadtest=true \
+ *     [-Dloadtest.users=300 -Dloadtest.events=3 -Dloadtest.dates=4 -Dloadtest.spread-ms=5000 \
+ *      -Dloadtest.fetch-fragments=true]
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class VotingLoadTest {
+
+    private static final int USERS = Integer.getInteger("loadtest.users", 300);
+    private static final int EVENTS = Integer.getInteger("loadtest.events", 3);
+    private static final int DATES = Integer.getInteger("loadtest.dates", 4);
+    private static final int SPREAD_MS = Integer.getInteger("loadtest.spread-ms", 5000);
+    private static final boolean FETCH_FRAGMENTS = Boolean.parseBoolean(
+            System.getProperty("loadtest.fetch-fragments", "true"));
+    // Fragments reloaded by refreshAll() in event-updates.js
+    private static final List<String> ALL_FRAGMENTS = List.of("header", "actions", "proposals", "participants");
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+    private final HttpClient http = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    // Send time of each vote, by "dateId:username"
+    private final Map<String, Long> voteSentAt = new ConcurrentHashMap<>();
+    // Dates each user's votes have been acknowledged on; what a full page reload would render
+    private final Map<String, Set<Long>> acknowledgedVotes = new ConcurrentHashMap<>();
+    private final List<Long> voteLatencies = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> deliveryLags = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger voteErrors = new AtomicInteger();
+    private final AtomicLong deltasReceived = new AtomicLong();
+    private final AtomicLong ownVoteRefetches = new AtomicLong();
+    private final AtomicLong gapReloads = new AtomicLong();
+    private final AtomicLong otherRefetches = new AtomicLong();
+    private final AtomicLong fragmentErrors = new AtomicLong();
+    private final AtomicLong lastDeltaAt = new AtomicLong();
+
+    private String baseUrl;
+
+    @Test
+    void votingSpike() throws Exception {
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(DinnerPlanApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:derby:memory:loadtest;create=true",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.it.ucdm.leisure=WARN")) {
+            baseUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            Map<String, Long> eventOfUser = new HashMap<>();
+            Map<Long, List<Long>> datesOfEvent = seed(app, eventOfUser);
+
+            Map<String, String> cookies = login(eventOfUser.keySet());
+            EventUpdatePublisher publisher = app.getBean(EventUpdatePublisher.class);
+            List<StompSession> sessions = subscribe(eventOfUser, cookies, publisher);
+            try {
+                long started = System.nanoTime();
+                lastDeltaAt.set(started);
+                vote(eventOfUser, datesOfEvent, cookies);
+                long votingNanos = System.nanoTime() - started;
+                awaitQuiet();
+
+                int votes = USERS * DATES;
+                // Every vote is due at every page open on its event
+                long expectedDeliveries = eventOfUser.values().stream()
+                        .collect(Collectors.groupingBy(eventId -> eventId, Collectors.counting()))
+                        .values().stream()
+                        .mapToLong(members -> members * DATES * members)
+                        .sum();
+                report(votes, votingNanos, expectedDeliveries);
+                assertEquals(0, voteErrors.get(), "Votes failed");
+                assertFalse(deliveryLags.isEmpty(), "No vote reached a subscriber");
+            } finally {
+                sessions.forEach(StompSession::disconnect);
+            }
+        }
+    }
+
+    // Users are spread evenly over the events; each event has DATES dates on one proposal
+    private Map<Long, List<Long>> seed(ConfigurableApplicationContext app, Map<String, Long> eventOfUser) {
+        UserRepository userRepository = app.getBean(UserRepository.class);
+        // Hash once; encoding a password per user would dominate the setup
+        String password = app.getBean(PasswordEncoder.class).encode("secret");
+        userRepository.save(User.builder().username("lt-organizer").password(password).role(Role.ORGANIZER).build());
+        List<User> users = userRepository.saveAll(IntStream.range(0, USERS)
+                .mapToObj(i -> User.builder().username("lt-user-" + i).password(password)
+                        .role(Role.PARTICIPANT).build())
+                .toList());
+
+        LocalDateTime deadline = LocalDateTime.now().plusDays(1);
+        List<LocalDateTime> dates = IntStream.range(0, DATES).mapToObj(i -> deadline.plusDays(i + 1)).toList();
+        List<Long> eventIds = new ArrayList<>();
+        for (int e = 0; e < EVENTS; e++) {
+            int event = e;
+            List<User> members = IntStream.range(0, USERS).filter(i -> i % EVENTS == event)
+                    .mapToObj(users::get).toList();
+            DinnerEvent created = app.getBean(DinnerEventService.class).createEvent("Deadline rush " + e, "",
+                    deadline, "lt-organizer", members.stream().map(User::getId).toList());
+            // No address, so nothing is sent to the geocoders
+            app.getBean(ProposalService.class).addProposal(created.getId(), dates, "Trattoria " + e, "", "");
+            members.forEach(member -> eventOfUser.put(member.getUsername(), created.getId()));
+            eventIds.add(created.getId());
+        }
+        return app.getBean(ProposalDateRepository.class).findAll().stream()
+                .filter(d -> eventIds.contains(d.getDinnerEvent().getId()))
+                .collect(Collectors.groupingBy(d -> d.getDinnerEvent().getId(),
+                        Collectors.mapping(ProposalDate::getId, Collectors.toList())));
+    }
+
+    private Map<String, String> login(Set<String> usernames) {
+        Map<String, CompletableFuture<String>> pending = new HashMap<>();
+        for (String username : usernames) {
+            pending.put(username, http.sendAsync(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                    .header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString("username=" + username + "&password=secret"))
+                    .build(), HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> response.headers().allValues("Set-Cookie").stream()
+                            .filter(c -> c.startsWith("JSESSIONID="))
+                            .map(c -> c.split(";", 2)[0])
+                            .findFirst()
+                            .orElseThrow(() -> new IllegalStateException("Login failed for " + username))));
+        }
+        Map<String, String> cookies = new HashMap<>();
+        pending.forEach((username, cookie) -> cookies.put(username, cookie.join()));
+        return cookies;
+    }
+
+    private List<StompSession> subscribe(Map<String, Long> eventOfUser, Map<String, String> cookies,
+            EventUpdatePublisher publisher) throws Exception {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setTaskScheduler(scheduler);
+
+        List<CompletableFuture<StompSession>> connecting = new ArrayList<>();
+        for (String username : eventOfUser.keySet()) {
+            WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+            headers.add("Cookie", cookies.get(username));
+            connecting.add(client.connectAsync(baseUrl.replace("http", "ws") + "/ws", headers,
+                    new StompSessionHandlerAdapter() {
+                    }));
+        }
+        List<StompSession> sessions = new ArrayList<>();
+        CountDownLatch subscribed = new CountDownLatch(eventOfUser.size());
+        int i = 0;
+        for (String username : eventOfUser.keySet()) {
+            StompSession session = connecting.get(i++).get(30, TimeUnit.SECONDS);
+            session.setAutoReceipt(true);
+            Long eventId = eventOfUser.get(username);
+            // Same starting point as a freshly rendered event page
+            Page page = new Page(username, eventId, cookies.get(username), publisher.getNodeId(),
+                    publisher.currentSeq(eventId));
+            session.subscribe("/topic/events/" + eventId, page).addReceiptTask(subscribed::countDown);
+            sessions.add(session);
+        }
+        assertTrue(subscribed.await(30, TimeUnit.SECONDS), "Subscriptions were not confirmed");
+        return sessions;
+    }
+
+    private void vote(Map<String, Long> eventOfUser, Map<Long, List<Long>> datesOfEvent, Map<String, String> cookies)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        try (ExecutorService voters = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String username : eventOfUser.keySet()) {
+                List<Long> dates = new ArrayList<>(datesOfEvent.get(eventOfUser.get(username)));
+                Collections.shuffle(dates);
+                voters.execute(() -> {
+                    try {
+                        start.await();
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(Math.max(1, SPREAD_MS)));
+                        for (Long dateId : dates) {
+                            castVote(username, dateId, cookies.get(username));
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            start.countDown();
+        }
+    }
+
+    private void castVote(String username, Long dateId, String cookie) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create(baseUrl + "/api/interactions/proposals/" + dateId + "/vote"))
+                .header("Cookie", cookie)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        long sent = System.nanoTime();
+        voteSentAt.put(dateId + ":" + username, sent);
+        try {
+            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 200) {
+                voteLatencies.add(System.nanoTime() - sent);
+                acknowledgedVotes.computeIfAbsent(username, u -> ConcurrentHashMap.newKeySet()).add(dateId);
+            } else {
+                voteErrors.incrementAndGet();
+            }
+        } catch (IOException e) {
+            voteErrors.incrementAndGet();
+        }
+    }
+
+    // Coalesced deltas trail the last vote; wait until nothing has arrived for a while
+    private void awaitQuiet() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (System.nanoTime() < deadline
+                && System.nanoTime() - lastDeltaAt.get() < TimeUnit.SECONDS.toNanos(2)) {
+            Thread.sleep(200);
+        }
+    }
+
+    /**
+     * One open event page: the sequence and vote handling of
+     * {@code event-updates.js}, counting the fragments it would reload.
+     */
+    private final class Page implements StompFrameHandler {
+
+        private final String username;
+        private final Long eventId;
+        private final String cookie;
+        private final Map<String, Long> lastSeqs = new HashMap<>();
+        // Whether the rendered page shows the user's own vote on a date (data-voted)
+        private final Map<Long, Boolean> votedOnPage = new HashMap<>();
+        private final Set<String> seenVotes = new HashSet<>();
+
+        Page(String username, Long eventId, String cookie, String origin, long lastSeq) {
+            this.username = username;
+            this.eventId = eventId;
+            this.cookie = cookie;
+            lastSeqs.put(origin, lastSeq);
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public synchronized void handleFrame(StompHeaders headers, Object payload) {
+            long received = System.nanoTime();
+            lastDeltaAt.set(received);
+            deltasReceived.incrementAndGet();
+            JsonNode delta = jsonMapper.readTree(new String((byte[]) payload, StandardCharsets.UTF_8));
+            String type = delta.path("type").asString();
+            if ("VOTES".equals(type)) {
+                recordLag(delta, received);
+            }
+
+            String origin = delta.path("origin").asString("");
+            long seq = delta.path("seq").asLong();
+            Long lastSeq = lastSeqs.get(origin);
+            if (lastSeq != null && seq <= lastSeq) {
+                return;
+            }
+            boolean missed = lastSeq == null || seq != lastSeq + 1;
+            lastSeqs.put(origin, seq);
+            if (missed) {
+                gapReloads.incrementAndGet();
+                Set<Long> acknowledged = acknowledgedVotes.getOrDefault(username, Set.of());
+                votedOnPage.replaceAll((dateId, voted) -> acknowledged.contains(dateId));
+                refetch(ALL_FRAGMENTS);
+                return;
+            }
+            if ("VOTES".equals(type)) {
+                Long dateId = delta.path("proposalDateId").asLong();
+                boolean votedByMe = false;
+                for (JsonNode voter : delta.path("voters")) {
+                    votedByMe |= username.equals(voter.asString());
+                }
+                // The page patches counts in place, but its own vote buttons are rendered by the server
+                if (votedByMe != votedOnPage.getOrDefault(dateId, false)) {
+                    ownVoteRefetches.incrementAndGet();
+                    votedOnPage.put(dateId, votedByMe);
+                    refetch(List.of("proposals"));
+                }
+            } else {
+                otherRefetches.incrementAndGet();
+                refetch(List.of("proposals"));
+            }
+        }
+
+        private void recordLag(JsonNode delta, long received) {
+            long dateId = delta.path("proposalDateId").asLong();
+            for (JsonNode voter : delta.path("voters")) {
+                String key = dateId + ":" + voter.asString();
+                Long sent = voteSentAt.get(key);
+                if (sent != null && seenVotes.add(key)) {
+                    deliveryLags.add(received - sent);
+                }
+            }
+        }
+
+        private void refetch(List<String> fragments) {
+            if (!FETCH_FRAGMENTS) {
+                return;
+            }
+            for (String fragment : fragments) {
+                http.sendAsync(HttpRequest.newBuilder(
+                        URI.create(baseUrl + "/events/" + eventId + "/fragments/" + fragment))
+                        .header("Cookie", cookie)
+                        .GET()
+                        .build(), HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> {
+                            if (error != null || response.statusCode() != 200) {
+                                fragmentErrors.incrementAndGet();
+                            }
+                        });
+            }
+        }
+    }
+
+    private void report(int votes, long votingNanos, long expectedDeliveries) {
+        long ownVote = ownVoteRefetches.get();
+        long gaps = gapReloads.get();
+        long other = otherRefetches.get();
+        long fragments = ownVote + other + gaps * ALL_FRAGMENTS.size();
+        System.out.printf("%nVoting load test: %d users on %d events, %d STOMP subscriptions, %d votes sent within "
+                + "%d ms (voting took %d ms)%n", USERS, EVENTS, USERS, votes, SPREAD_MS, votingNanos / 1_000_000);
+        System.out.printf("Vote latency        %s, %d errors%n", percentiles(voteLatencies), voteErrors.get());
+        System.out.printf("Delivery lag        %s, %d of %d vote notifications delivered%n",
+                percentiles(deliveryLags), deliveryLags.size(), expectedDeliveries);
+        System.out.printf("Deltas per vote     %.2f received by all subscribers%n",
+                deltasReceived.get() / (double) votes);
+        System.out.printf("Fragment refetches  %.2f per vote: %d for the voter's own page, %d full reloads "
+                + "after a sequence gap, %d for other deltas%s%n", fragments / (double) votes, ownVote, gaps,
+                other, FETCH_FRAGMENTS ? ", " + fragmentErrors.get() + " failed" : " (not fetched)");
+    }
+
+    private static String percentiles(List<Long> samples) {
+        List<Long> sorted;
+        synchronized (samples) {
+            sorted = new ArrayList<>(samples);
+        }
+        if (sorted.isEmpty()) {
+            return "no samples";
+        }
+        Collections.sort(sorted);
+        return String.format("p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms", percentile(sorted, 0.50),
+                percentile(sorted, 0.90), percentile(sorted, 0.99), sorted.get(sorted.size() - 1) / 1_000_000.0);
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,99 @@
+package it.ucdm.leisure.dinnerplan.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.ucdm.leisure.dinnerplan.utils.StubHttpServer;
+
+import java.net.http.HttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+class RestTemplateConfigTest {
+
+    private StubHttpServer server;
+    private HttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubHttpServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+        server.close();
+    }
+
+    private RestTemplate restTemplate(RestTemplateConfig config) {
+        httpClient = config.outboundHttpClient();
+        return config.restTemplate(httpClient);
+    }
+
+    @Test
+    void restTemplate_ReturnsResponseBody() {
+        server.json("/ping", "{\"ok\":true}");
+
+        String body = restTemplate(new RestTemplateConfig()).getForObject(server.url("/ping"), String.class);
+
+        assertEquals("{\"ok\":true}", body);
+    }
+
+    @Test
+    void restTemplate_ReusesPooledConnection() {
+        java.util.List<Integer> clientPorts = new java.util.concurrent.CopyOnWriteArrayList<>();
+        server.route("/keepalive", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            StubHttpServer.respond(exchange, 200, "{}");
+        });
+        RestTemplate restTemplate = restTemplate(new RestTemplateConfig());
+
+        restTemplate.getForObject(server.url("/keepalive"), String.class);
+        restTemplate.getForObject(server.url("/keepalive"), String.class);
+
+        assertEquals(2, clientPorts.size());
+        assertEquals(clientPorts.get(0), clientPorts.get(1));
+    }
+
+    @Test
+    void restTemplate_SlowServer_FailsAfterReadTimeout() {
+        server.slowJson("/slow", 5000, "{}");
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "readTimeoutMs", 200L);
+        RestTemplate restTemplate = restTemplate(config);
+
+        long start = System.currentTimeMillis();
+        assertThrows(ResourceAccessException.class, () -> restTemplate.getForObject(server.url("/slow"), String.class));
+        assertTrue(System.currentTimeMillis() - start < 3000);
+    }
+
+    @Test
+    void restTemplate_AuthenticatedProxy_SendsCredentials() {
+        // The stub acts as proxy: it challenges until Proxy-Authorization is present
+        server.route("/", exchange -> {
+            if (exchange.getRequestHeaders().getFirst("Proxy-Authorization") == null) {
+                exchange.getResponseHeaders().set("Proxy-Authenticate", "Basic realm=\"stub\"");
+                StubHttpServer.respond(exchange, 407, "");
+            } else {
+                StubHttpServer.respond(exchange, 200, "{\"proxied\":true}");
+            }
+        });
+        RestTemplateConfig config = new RestTemplateConfig();
+        ReflectionTestUtils.setField(config, "proxyHost", "127.0.0.1");
+        ReflectionTestUtils.setField(config, "proxyPort", server.port());
+        ReflectionTestUtils.setField(config, "proxyUsername", "user");
+        ReflectionTestUtils.setField(config, "proxyPassword", "secret");
+
+        String body = restTemplate(config).getForObject("http://upstream.invalid/resource", String.class);
+
+        assertEquals("{\"proxied\":true}", body);
+        StubHttpServer.RecordedRequest last = server.requests().get(server.requests().size() - 1);
+        assertEquals("upstream.invalid", last.uri().getHost());
+        assertNotNull(last.headers().getFirst("Proxy-Authorization"));
+    }
+}
@@ -1,22 +1,41 @@
 package it.ucdm.leisure.dinnerplan.features.admin;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
+import it.ucdm.leisure.dinnerplan.dto.backup.DinnerEventBackupDTO;
+import it.ucdm.leisure.dinnerplan.dto.backup.UserBackupDTO;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournalEntry.Aggregate;
 import it.ucdm.leisure.dinnerplan.features.user.*;
 import it.ucdm.leisure.dinnerplan.features.event.*;
 import it.ucdm.leisure.dinnerplan.features.proposal.*;
 
+import jakarta.persistence.EntityManager;
+
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
 
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -40,22 +59,44 @@ class AdminDataServiceTest {
     private DinnerEventMessageRepository messageRepository;
     @Mock
     private BackupMapper backupMapper;
+    @Mock
+    private ProposalCatalogService proposalCatalogService;
+    @Mock
+    private EventViewService eventViewService;
+    @Mock
+    private ProposalSpatialIndex proposalSpatialIndex;
+    @Mock
+    private BackupImporter backupImporter;
+    @Mock
+    private ChangeJournal changeJournal;
+    @Mock
+    private DeadlineScheduler deadlineScheduler;
+    @Mock
+    private VoteEngine voteEngine;
+    @Mock
+    private EntityManager entityManager;
 
     @InjectMocks
     private AdminDataService adminDataService;
 
+    @BeforeEach
+    void setUp() {
+        org.springframework.transaction.support.TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        org.springframework.transaction.support.TransactionSynchronizationManager.clearSynchronization();
+    }
+
     @Test
     void exportData_CreatesZipWithEntries() throws IOException {
         // Setup empty data for simplicity, just checking zip structure
-        when(userRepository.findAll()).thenReturn(Collections.emptyList());
-        when(dinnerEventRepository.findAll()).thenReturn(Collections.emptyList());
-        when(proposalRepository.findAll()).thenReturn(Collections.emptyList());
-        when(proposalDateRepository.findAll()).thenReturn(Collections.emptyList());
-        when(proposalRatingRepository.findAll()).thenReturn(Collections.emptyList());
-        when(voteRepository.findAll()).thenReturn(Collections.emptyList());
-        when(messageRepository.findAll()).thenReturn(Collections.emptyList());
+        stubEmptyTables();
 
-        byte[] zipBytes = adminDataService.exportData();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        adminDataService.exportData(out, null, 42L);
+        byte[] zipBytes = out.toByteArray();
 
         assertNotNull(zipBytes);
         assertTrue(zipBytes.length > 0);
@@ -67,8 +108,209 @@ class AdminDataServiceTest {
                 entryCount++;
                 assertTrue(entry.getName().endsWith(".json"));
             }
-            assertEquals(7, entryCount, "Should contain 7 JSON files");
+            assertEquals(8, entryCount, "Should contain 7 JSON files and the manifest");
+        }
+        String manifest = unzip(zipBytes).get(AdminDataService.MANIFEST);
+        assertTrue(manifest.contains("\"type\":\"full\""));
+        assertTrue(manifest.contains("\"snapshotId\":42"));
+    }
+
+    @Test
+    void exportData_WalksTablesInKeysetPagesAndClearsContext() throws IOException {
+        stubEmptyTables();
+        int pageSize = AdminDataService.EXPORT_PAGE_SIZE;
+        List<User> firstPage = LongStream.rangeClosed(1, pageSize)
+                .mapToObj(id -> User.builder().id(id).build()).toList();
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any()))
+                .thenReturn(firstPage);
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(eq((long) pageSize), any()))
+                .thenReturn(List.of(User.builder().id(pageSize + 7L).build()));
+        when(backupMapper.toBackupDTO(any(User.class)))
+                .thenAnswer(inv -> UserBackupDTO.builder().id(((User) inv.getArgument(0)).getId()).build());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        adminDataService.exportData(out, null, 1L);
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry = zis.getNextEntry();
+            assertEquals("users.json", entry.getName());
+            String json = new String(zis.readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(pageSize + 1, json.split("\"username\"", -1).length - 1);
+            assertTrue(json.contains("\"id\":" + (pageSize + 7)));
         }
+        // One clear per page: two for users, one for each of the six empty tables
+        verify(entityManager, times(8)).clear();
+    }
+
+    @Test
+    void snapshot_SinceLaterSnapshot_IsRejected() {
+        when(changeJournal.snapshot()).thenReturn(10L);
+
+        assertEquals(10L, adminDataService.snapshot(4L));
+        assertThrows(IllegalArgumentException.class, () -> adminDataService.snapshot(11L));
+    }
+
+    @Test
+    void snapshot_SinceSnapshotBeforeAnImport_IsRejected() throws IOException {
+        AtomicLong lastImport = new AtomicLong();
+        when(changeJournal.snapshot()).thenReturn(5L, 9L);
+        when(changeJournal.lastImport()).thenAnswer(inv -> lastImport.get());
+        doAnswer(inv -> {
+            lastImport.set(7L);
+            return null;
+        }).when(changeJournal).importCompleted();
+        stubEmptyTables();
+        BackupImporter.Session session = mock(BackupImporter.Session.class);
+        when(backupImporter.begin()).thenReturn(session);
+        when(session.finish()).thenReturn(new BackupImporter.Stats(0, 1));
+
+        long first = adminDataService.snapshot(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        adminDataService.exportData(out, null, first);
+        adminDataService.importData(new ByteArrayInputStream(out.toByteArray()));
+
+        assertThrows(IllegalArgumentException.class, () -> adminDataService.snapshot(first));
+        assertEquals(9L, adminDataService.snapshot(7L));
+    }
+
+    @Test
+    void exportData_Since_WritesChangedAggregatesWithTheirReferences() throws IOException {
+        User organizer = User.builder().id(1L).username("alice").build();
+        DinnerEvent event = DinnerEvent.builder().id(4L).organizer(organizer).participants(new ArrayList<>())
+                .build();
+        when(changeJournal.changedSince(Aggregate.USER, 5L, 9L)).thenReturn(List.of(7L));
+        when(changeJournal.changedSince(Aggregate.EVENT, 5L, 9L)).thenReturn(List.of(4L, 6L));
+        when(changeJournal.changedSince(Aggregate.PROPOSAL, 5L, 9L)).thenReturn(List.of());
+        when(dinnerEventRepository.findAllById(List.of(4L, 6L))).thenReturn(List.of(event));
+        when(proposalDateRepository.findByDinnerEvent_IdInOrderByIdAsc(List.of(4L))).thenReturn(List.of());
+        when(voteRepository.findByProposalDate_DinnerEvent_IdInOrderByIdAsc(List.of(4L))).thenReturn(List.of());
+        when(messageRepository.findByEvent_IdInOrderByIdAsc(List.of(4L))).thenReturn(List.of());
+        when(userRepository.findAllById(List.of(1L, 7L))).thenReturn(List.of(organizer));
+        when(backupMapper.toBackupDTO(any(DinnerEvent.class)))
+                .thenReturn(DinnerEventBackupDTO.builder().id(4L).organizerId(1L).build());
+        when(backupMapper.toBackupDTO(any(User.class)))
+                .thenReturn(UserBackupDTO.builder().id(1L).username("alice").build());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        adminDataService.exportData(out, 5L, 9L);
+
+        Map<String, String> entries = unzip(out.toByteArray());
+        assertTrue(entries.get("events.json").contains("\"id\":4"));
+        // The organizer goes along although only user 7 changed, which is gone
+        assertTrue(entries.get("users.json").contains("\"username\":\"alice\""));
+        assertEquals("[]", entries.get("proposals.json"));
+        String manifest = entries.get(AdminDataService.MANIFEST);
+        assertTrue(manifest.contains("\"type\":\"diff\""));
+        assertTrue(manifest.contains("\"baseSnapshotId\":5"));
+        assertTrue(manifest.contains("\"deletedEventIds\":[6]"));
+        assertTrue(manifest.contains("\"deletedUserIds\":[7]"));
+        verify(userRepository, never()).findByIdGreaterThanOrderByIdAsc(any(), any());
+    }
+
+    @Test
+    void importData_AppliesDifferentialChainOnTheSameSession() throws IOException {
+        BackupImporter.Session session = mock(BackupImporter.Session.class);
+        when(backupImporter.begin()).thenReturn(session);
+        when(session.finish()).thenReturn(new BackupImporter.Stats(3, 10));
+
+        byte[] base = zip("manifest.json", "{\"type\":\"full\",\"snapshotId\":5}",
+                "users.json", "[{\"id\":1,\"username\":\"alice\"}]");
+        byte[] diff = zip("manifest.json", "{\"type\":\"diff\",\"baseSnapshotId\":5,\"snapshotId\":8,"
+                + "\"deletedEventIds\":[3],\"deletedUserIds\":[2]}",
+                "users.json", "[{\"id\":1,\"username\":\"alice2\"}]");
+
+        adminDataService.importData(new ByteArrayInputStream(base), List.of(new ByteArrayInputStream(diff)));
+
+        InOrder order = inOrder(session);
+        order.verify(session).addUser(argThat(u -> "alice".equals(u.getUsername())));
+        order.verify(session).beginDiff(List.of(3L));
+        order.verify(session).addUser(argThat(u -> "alice2".equals(u.getUsername())));
+        order.verify(session).endDiff(List.of(2L));
+        order.verify(session).finish();
+    }
+
+    @Test
+    void importData_DifferentialNotContinuingThePreviousSnapshot_IsRejected() throws IOException {
+        when(backupImporter.begin()).thenReturn(mock(BackupImporter.Session.class));
+        byte[] base = zip("manifest.json", "{\"type\":\"full\",\"snapshotId\":5}");
+        byte[] diff = zip("manifest.json", "{\"type\":\"diff\",\"baseSnapshotId\":6,\"snapshotId\":8}");
+
+        assertThrows(IllegalArgumentException.class, () -> adminDataService.importData(
+                new ByteArrayInputStream(base), List.of(new ByteArrayInputStream(diff))));
+        assertThrows(IllegalArgumentException.class, () -> adminDataService.importData(
+                new ByteArrayInputStream(diff), List.of()));
+    }
+
+    @Test
+    void importData_StreamsEntriesInDependencyOrderWhateverTheArchiveOrder() throws IOException {
+        BackupImporter.Session session = mock(BackupImporter.Session.class);
+        when(backupImporter.begin()).thenReturn(session);
+        when(session.finish()).thenReturn(new BackupImporter.Stats(3, 10));
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(archive)) {
+            zos.putNextEntry(new ZipEntry("votes.json"));
+            zos.write("[{\"id\":5,\"userId\":2,\"proposalDateId\":9}]".getBytes(StandardCharsets.UTF_8));
+            zos.putNextEntry(new ZipEntry("users.json"));
+            zos.write("[{\"id\":1,\"username\":\"alice\"},{\"id\":2,\"username\":\"bob\"}]"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        BackupImporter.Stats stats = adminDataService.importData(new ByteArrayInputStream(archive.toByteArray()));
+
+        InOrder order = inOrder(session);
+        order.verify(session).addUser(argThat(u -> "alice".equals(u.getUsername())));
+        order.verify(session).addUser(argThat(u -> "bob".equals(u.getUsername())));
+        order.verify(session).addVote(argThat(v -> v.getId() == 5L && v.getProposalDateId() == 9L));
+        order.verify(session).finish();
+        verify(session, never()).addEvent(any());
+        assertEquals(3, stats.rows());
+    }
+
+    @Test
+    void importData_EntryThatIsNotAnArray_IsRejected() throws IOException {
+        when(backupImporter.begin()).thenReturn(mock(BackupImporter.Session.class));
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(archive)) {
+            zos.putNextEntry(new ZipEntry("users.json"));
+            zos.write("{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> adminDataService.importData(new ByteArrayInputStream(archive.toByteArray())));
+    }
+
+    private static byte[] zip(String... namesAndContents) throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(archive)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                zos.putNextEntry(new ZipEntry(namesAndContents[i]));
+                zos.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return archive.toByteArray();
+    }
+
+    private static Map<String, String> unzip(byte[] archive) throws IOException {
+        Map<String, String> entries = new HashMap<>();
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zis.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    private void stubEmptyTables() {
+        lenient().when(userRepository.findByIdGreaterThanOrderByIdAsc(any(), any())).thenReturn(Collections.emptyList());
+        when(dinnerEventRepository.findByIdGreaterThanOrderByIdAsc(any(), any())).thenReturn(Collections.emptyList());
+        when(proposalRepository.findByIdGreaterThanOrderByIdAsc(any(), any())).thenReturn(Collections.emptyList());
+        when(proposalDateRepository.findByIdGreaterThanOrderByIdAsc(any(), any())).thenReturn(Collections.emptyList());
+        when(proposalRatingRepository.findByIdGreaterThanOrderByIdAsc(any(), any()))
+                .thenReturn(Collections.emptyList());
+        when(voteRepository.findByIdGreaterThanOrderByIdAsc(any(), any())).thenReturn(Collections.emptyList());
+        when(messageRepository.findByIdGreaterThanOrderByIdAsc(any(), any())).thenReturn(Collections.emptyList());
     }
 
     // Note: detailed import/export content testing would require more complex
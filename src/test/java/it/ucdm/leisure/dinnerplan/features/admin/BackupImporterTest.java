@@ -0,0 +1,169 @@
+package it.ucdm.leisure.dinnerplan.features.admin;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import it.ucdm.leisure.dinnerplan.dto.backup.*;
+import it.ucdm.leisure.dinnerplan.features.user.Role;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class BackupImporterTest {
+
+    private final JdbcTemplate jdbcTemplate = Mockito.mock(JdbcTemplate.class);
+    private final List<String> batchedSql = new ArrayList<>();
+    private final List<List<Object[]>> batchedRows = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    private BackupImporter importer(int batchSize) {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(inv -> {
+            batchedSql.add(inv.getArgument(0));
+            batchedRows.add(List.copyOf((List<Object[]>) inv.getArgument(1)));
+            return new int[0];
+        });
+        return new BackupImporter(jdbcTemplate, batchSize);
+    }
+
+    @Test
+    void begin_ClearsTablesWithBulkStatementsChildrenFirst() {
+        importer(10).begin();
+
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).update("UPDATE dinner_events SET selected_proposal_date_id = NULL");
+        order.verify(jdbcTemplate).update("DELETE FROM votes");
+        order.verify(jdbcTemplate).update("DELETE FROM proposal_dates");
+        order.verify(jdbcTemplate).update("DELETE FROM dinner_events");
+        order.verify(jdbcTemplate).update("DELETE FROM users");
+    }
+
+    @Test
+    void import_RemapsIdsAndResolvesSelectedDateAtTheEnd() {
+        BackupImporter.Session session = importer(10).begin();
+
+        session.addUser(UserBackupDTO.builder().id(40L).username("alice").password("x").role(Role.ORGANIZER).build());
+        session.addUser(UserBackupDTO.builder().id(7L).username("bob").password("x").role(Role.PARTICIPANT).build());
+        session.addEvent(DinnerEventBackupDTO.builder().id(90L).title("Dinner").organizerId(40L)
+                .participantIds(List.of(7L, 999L)).selectedProposalDateId(300L).build());
+        session.addProposal(ProposalBackupDTO.builder().id(55L).location("Trattoria").dinnerEventIds(List.of(90L))
+                .build());
+        session.addProposalDate(ProposalDateBackupDTO.builder().id(300L).date(LocalDateTime.of(2026, 5, 1, 20, 0))
+                .proposalId(55L).dinnerEventId(90L).build());
+        session.addVote(VoteBackupDTO.builder().id(1234L).userId(7L).proposalDateId(300L).build());
+        BackupImporter.Stats stats = session.finish();
+
+        assertEquals(List.of(1L, 2L), ids(rowsOf("INSERT INTO users")));
+        Object[] event = rowsOf("INSERT INTO dinner_events").get(0);
+        assertEquals(1L, event[0]);
+        assertEquals(1L, event[3], "organizer remapped from 40 to 1");
+        // The unknown participant 999 is dropped
+        assertEquals(1, rowsOf("INSERT INTO event_participants").size());
+        assertArrayEquals(new Object[] { 1L, 2L }, rowsOf("INSERT INTO event_participants").get(0));
+        assertArrayEquals(new Object[] { 1L, 1L }, rowsOf("INSERT INTO event_proposals").get(0));
+        assertArrayEquals(new Object[] { 1L, 2L, 1L }, rowsOf("INSERT INTO votes").get(0));
+        assertArrayEquals(new Object[] { 1L, 1L }, rowsOf("UPDATE dinner_events SET selected_proposal_date_id").get(0));
+
+        verify(jdbcTemplate).execute("ALTER TABLE users ALTER COLUMN id RESTART WITH 3");
+        verify(jdbcTemplate).execute("ALTER TABLE votes ALTER COLUMN id RESTART WITH 2");
+        assertEquals(8, stats.rows());
+    }
+
+    @Test
+    void import_WritesEventsWithAVersionAboveTheReplacedOnes() {
+        when(jdbcTemplate.queryForObject("SELECT MAX(version) FROM dinner_events", Long.class)).thenReturn(6L);
+        BackupImporter.Session session = importer(10).begin();
+
+        session.addUser(UserBackupDTO.builder().id(40L).username("alice").password("x").role(Role.ORGANIZER).build());
+        session.addEvent(DinnerEventBackupDTO.builder().id(90L).title("Dinner").organizerId(40L).build());
+        session.finish();
+
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).queryForObject("SELECT MAX(version) FROM dinner_events", Long.class);
+        order.verify(jdbcTemplate).update("DELETE FROM dinner_events");
+        Object[] event = rowsOf("INSERT INTO dinner_events").get(0);
+        assertEquals(7L, event[event.length - 1]);
+    }
+
+    @Test
+    void import_SendsFullBatchesAndParentsBeforeChildren() {
+        BackupImporter.Session session = importer(2).begin();
+
+        for (long id = 1; id <= 5; id++) {
+            session.addUser(UserBackupDTO.builder().id(id).username("u" + id).password("x").role(Role.PARTICIPANT)
+                    .build());
+        }
+        session.addEvent(DinnerEventBackupDTO.builder().id(1L).title("Dinner").organizerId(5L)
+                .participantIds(List.of(1L, 2L)).build());
+        session.finish();
+
+        // Two full user batches while adding; the last user goes out before the event
+        assertEquals(List.of("INSERT INTO users", "INSERT INTO users", "INSERT INTO users",
+                "INSERT INTO dinner_events", "INSERT INTO event_participants"),
+                batchedSql.stream().map(sql -> sql.substring(0, sql.indexOf(" ("))).toList());
+        assertEquals(List.of(2, 2, 1, 1, 2), batchedRows.stream().map(List::size).toList());
+    }
+
+    @Test
+    void diff_UpdatesRestoredRowsAndReplacesWhatBelongsToThem() {
+        BackupImporter.Session session = importer(10).begin();
+        session.addUser(UserBackupDTO.builder().id(40L).username("alice").password("x").role(Role.ORGANIZER).build());
+        session.addEvent(DinnerEventBackupDTO.builder().id(90L).title("Dinner").organizerId(40L).build());
+        session.addProposal(ProposalBackupDTO.builder().id(55L).location("Trattoria").build());
+        session.addProposalDate(ProposalDateBackupDTO.builder().id(300L).date(LocalDateTime.of(2026, 5, 1, 20, 0))
+                .proposalId(55L).dinnerEventId(90L).build());
+
+        session.beginDiff(List.of(91L));
+        session.addUser(UserBackupDTO.builder().id(40L).username("alice2").password("x").role(Role.ORGANIZER).build());
+        session.addUser(UserBackupDTO.builder().id(41L).username("bob").password("x").role(Role.PARTICIPANT).build());
+        session.addEvent(DinnerEventBackupDTO.builder().id(90L).title("Dinner, moved").organizerId(40L)
+                .participantIds(List.of(41L)).build());
+        session.addProposalDate(ProposalDateBackupDTO.builder().id(300L).date(LocalDateTime.of(2026, 5, 2, 20, 0))
+                .proposalId(55L).dinnerEventId(90L).build());
+        session.endDiff(List.of(41L));
+        session.finish();
+
+        verify(jdbcTemplate).update(eq("UPDATE users SET username = ?, email = ?, password = ?, role = ?, address = ?,"
+                + " latitude = ?, longitude = ?, dietary_preference = ? WHERE id = ?"),
+                eq("alice2"), any(), any(), any(), any(), any(), any(), any(), eq(1L));
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).update("DELETE FROM proposal_dates WHERE dinner_event_id = ?", 1L);
+        order.verify(jdbcTemplate).update(startsWith("UPDATE dinner_events SET title = ?"), any(Object[].class));
+        order.verify(jdbcTemplate).update("DELETE FROM users WHERE id = ?", 2L);
+        // Event 91 was never restored, so there is nothing to delete
+        verify(jdbcTemplate, never()).update("DELETE FROM dinner_events WHERE id = ?", 2L);
+        // The date comes back under the id it had; bob is a new user
+        assertEquals(List.of(1L, 1L), ids(rowsOf("INSERT INTO proposal_dates")));
+        assertEquals(List.of(1L, 2L), ids(rowsOf("INSERT INTO users")));
+        assertArrayEquals(new Object[] { 1L, 2L }, rowsOf("INSERT INTO event_participants").get(0));
+    }
+
+    @Test
+    void addVote_UnknownProposalDate_IsRejected() {
+        BackupImporter.Session session = importer(10).begin();
+        session.addUser(UserBackupDTO.builder().id(1L).username("alice").password("x").role(Role.ADMIN).build());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> session.addVote(VoteBackupDTO.builder().id(1L).userId(1L).proposalDateId(8L).build()));
+    }
+
+    private List<Object[]> rowsOf(String sqlPrefix) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < batchedSql.size(); i++) {
+            if (batchedSql.get(i).startsWith(sqlPrefix)) {
+                rows.addAll(batchedRows.get(i));
+            }
+        }
+        return rows;
+    }
+
+    private static List<Object> ids(List<Object[]> rows) {
+        return rows.stream().map(row -> row[0]).toList();
+    }
+}
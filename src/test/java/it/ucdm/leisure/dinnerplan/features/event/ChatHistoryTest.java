@@ -0,0 +1,162 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatMessageDTO;
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatPageDTO;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("null")
+class ChatHistoryTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 20, 0);
+
+    @Mock
+    private DinnerEventMessageRepository dinnerEventMessageRepository;
+
+    private ChatHistory chatHistory;
+    private DinnerEvent event;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        chatHistory = new ChatHistory(dinnerEventMessageRepository, 3, 2);
+        event = DinnerEvent.builder().id(1L).build();
+        bob = User.builder().id(2L).username("bob").build();
+    }
+
+    private DinnerEventMessage message(Long id, int minute) {
+        DinnerEventMessage message = new DinnerEventMessage(event, bob, "m" + id, START.plusMinutes(minute));
+        message.setId(id);
+        return message;
+    }
+
+    private static List<Long> ids(ChatPageDTO page) {
+        return page.getMessages().stream().map(ChatMessageDTO::getId).toList();
+    }
+
+    @Test
+    void recent_LoadsTheLastMessagesOnceOldestFirst() {
+        // Newest first, one more than kept so the history knows there are older ones
+        when(dinnerEventMessageRepository.findLatestByEventId(1L, Limit.of(4)))
+                .thenReturn(List.of(message(4L, 4), message(3L, 3), message(2L, 2), message(1L, 1)));
+
+        ChatPageDTO first = chatHistory.recent(1L, 1L);
+        ChatPageDTO second = chatHistory.recent(1L, 1L);
+
+        assertEquals(List.of(2L, 3L, 4L), ids(first));
+        assertEquals(first.getMessages().get(0).getCursor(), first.getOlderCursor());
+        assertEquals(ids(first), ids(second));
+        verify(dinnerEventMessageRepository, times(1)).findLatestByEventId(eq(1L), any());
+    }
+
+    @Test
+    void recent_AllMessagesFit_HasNoOlderCursor() {
+        when(dinnerEventMessageRepository.findLatestByEventId(1L, Limit.of(4)))
+                .thenReturn(List.of(message(2L, 2), message(1L, 1)));
+
+        ChatPageDTO page = chatHistory.recent(1L, 1L);
+
+        assertEquals(List.of(1L, 2L), ids(page));
+        assertNull(page.getOlderCursor());
+    }
+
+    @Test
+    void messageAdded_AppendsToTheBufferAndDropsTheOldest() {
+        when(dinnerEventMessageRepository.findLatestByEventId(1L, Limit.of(4)))
+                .thenReturn(List.of(message(3L, 3), message(2L, 2), message(1L, 1)));
+        chatHistory.recent(1L, 1L);
+
+        ChatMessageDTO added = ChatHistory.toDTO(message(4L, 4));
+        chatHistory.messageAdded(1L, added, 2L);
+        // Delivered twice, kept once
+        chatHistory.messageAdded(1L, added, 2L);
+        ChatPageDTO page = chatHistory.recent(1L, 1L);
+
+        assertEquals(List.of(2L, 3L, 4L), ids(page));
+        assertEquals(page.getMessages().get(0).getCursor(), page.getOlderCursor());
+        verify(dinnerEventMessageRepository, times(1)).findLatestByEventId(eq(1L), any());
+    }
+
+    @Test
+    void messageAdded_EventNotBuffered_IsLeftToTheNextLoad() {
+        chatHistory.messageAdded(1L, ChatHistory.toDTO(message(1L, 1)), 2L);
+
+        verifyNoInteractions(dinnerEventMessageRepository);
+    }
+
+    @Test
+    void messageAdded_AfterAMessageNotSeenHere_ReloadsOnTheNextRead() {
+        when(dinnerEventMessageRepository.findLatestByEventId(1L, Limit.of(4)))
+                .thenReturn(List.of(message(1L, 1)))
+                .thenReturn(List.of(message(3L, 3), message(2L, 2), message(1L, 1)));
+        chatHistory.recent(1L, 1L);
+
+        // Version 2 was a message committed on another node
+        chatHistory.messageAdded(1L, ChatHistory.toDTO(message(3L, 3)), 3L);
+        ChatPageDTO page = chatHistory.recent(1L, 3L);
+
+        assertEquals(List.of(1L, 2L, 3L), ids(page));
+        verify(dinnerEventMessageRepository, times(2)).findLatestByEventId(eq(1L), any());
+    }
+
+    @Test
+    void recent_ForANewerVersion_ReloadsTheBuffer() {
+        when(dinnerEventMessageRepository.findLatestByEventId(1L, Limit.of(4)))
+                .thenReturn(List.of(message(1L, 1)))
+                .thenReturn(List.of(message(2L, 2), message(1L, 1)));
+        chatHistory.recent(1L, 1L);
+
+        ChatPageDTO page = chatHistory.recent(1L, 2L);
+        chatHistory.recent(1L, 2L);
+
+        assertEquals(List.of(1L, 2L), ids(page));
+        verify(dinnerEventMessageRepository, times(2)).findLatestByEventId(eq(1L), any());
+    }
+
+    @Test
+    void recent_BeyondCachedEvents_DropsTheLeastRecentlyRead() {
+        when(dinnerEventMessageRepository.findLatestByEventId(anyLong(), any())).thenReturn(List.of());
+
+        chatHistory.recent(1L, 1L);
+        chatHistory.recent(2L, 1L);
+        chatHistory.recent(1L, 1L);
+        chatHistory.recent(3L, 1L);
+        chatHistory.recent(1L, 1L);
+        chatHistory.recent(2L, 1L);
+
+        verify(dinnerEventMessageRepository, times(1)).findLatestByEventId(eq(1L), any());
+        verify(dinnerEventMessageRepository, times(2)).findLatestByEventId(eq(2L), any());
+    }
+
+    @Test
+    void older_PagesBackFromTheCursor() {
+        String cursor = ChatHistory.toDTO(message(5L, 5)).getCursor();
+        when(dinnerEventMessageRepository.findBeforeByEventId(1L, START.plusMinutes(5), 5L, Limit.of(3)))
+                .thenReturn(List.of(message(4L, 4), message(3L, 3), message(2L, 2)));
+
+        ChatPageDTO page = chatHistory.older(1L, cursor, 2);
+
+        assertEquals(List.of(3L, 4L), ids(page));
+        assertEquals(page.getMessages().get(0).getCursor(), page.getOlderCursor());
+    }
+
+    @Test
+    void older_InvalidCursor_Throws() {
+        assertThrows(IllegalArgumentException.class, () -> chatHistory.older(1L, "yesterday", 10));
+        assertThrows(IllegalArgumentException.class, () -> chatHistory.older(1L, "2026-01-01T20:00_x", 10));
+        verifyNoInteractions(dinnerEventMessageRepository);
+    }
+}
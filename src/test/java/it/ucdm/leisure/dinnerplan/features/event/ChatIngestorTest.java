@@ -0,0 +1,172 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatMessageDTO;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings({ "null", "unchecked" })
+class ChatIngestorTest {
+
+    @Mock
+    private DinnerEventMessageRepository dinnerEventMessageRepository;
+    @Mock
+    private DinnerEventRepository dinnerEventRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private EventViewService eventViewService;
+    @Mock
+    private ChangeJournal changeJournal;
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ChatIngestor chatIngestor;
+    private final AtomicLong ids = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        // The writer thread never fires during a test; flushes are explicit
+        chatIngestor = new ChatIngestor(dinnerEventMessageRepository, dinnerEventRepository,
+                userRepository, eventViewService, changeJournal, messagingTemplate, transactionManager, 3_600_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatIngestor.shutdown();
+    }
+
+    private void stubSaveAll() {
+        when(dinnerEventMessageRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<DinnerEventMessage> messages = invocation.getArgument(0);
+            if (messages.stream().anyMatch(m -> m.getContent().equals("bad"))) {
+                throw new DataIntegrityViolationException("too long");
+            }
+            messages.forEach(m -> m.setId(ids.incrementAndGet()));
+            return messages;
+        });
+    }
+
+    // Every written event is at version 10 times its id after the batch
+    private void stubVersions() {
+        when(dinnerEventRepository.findVersionsByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> eventIds = invocation.getArgument(0);
+            return eventIds.stream().map(id -> (DinnerEventVersion) new DinnerEventVersion() {
+                @Override
+                public Long getId() {
+                    return id;
+                }
+
+                @Override
+                public long getVersion() {
+                    return id * 10;
+                }
+            }).toList();
+        });
+    }
+
+    // Sends from another thread, as the sender waits for the commit, and returns once the message is queued
+    private CompletableFuture<ChatMessageDTO> send(Long eventId, String username, String content) {
+        int queued = chatIngestor.pendingCount();
+        CompletableFuture<ChatMessageDTO> result = CompletableFuture
+                .supplyAsync(() -> chatIngestor.addMessage(eventId, username, content));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (chatIngestor.pendingCount() == queued) {
+            assertFalse(result.isDone(), "message was not queued");
+            assertTrue(System.currentTimeMillis() < deadline, "message was not queued in time");
+            Thread.onSpinWait();
+        }
+        return result;
+    }
+
+    @Test
+    void addMessage_ConcurrentMessages_AreWrittenInOneTransactionAndBroadcastInOrder() {
+        when(dinnerEventRepository.findMemberId(1L, "alice")).thenReturn(Optional.of(2L));
+        when(dinnerEventRepository.findMemberId(2L, "alice")).thenReturn(Optional.of(2L));
+        when(dinnerEventRepository.findMemberId(1L, "bob")).thenReturn(Optional.of(3L));
+        stubSaveAll();
+        stubVersions();
+
+        CompletableFuture<ChatMessageDTO> first = send(1L, "alice", "first");
+        CompletableFuture<ChatMessageDTO> other = send(2L, "alice", "other");
+        CompletableFuture<ChatMessageDTO> second = send(1L, "bob", "second");
+        assertFalse(first.isDone());
+
+        chatIngestor.flush();
+
+        assertEquals("first", first.join().getContent());
+        assertEquals("bob", second.join().getSender());
+        assertTrue(first.join().getId() < second.join().getId());
+        assertNotNull(other.join().getCursor());
+        verify(dinnerEventMessageRepository, times(1)).saveAll(argThat(list -> ((List<?>) list).size() == 3));
+        verify(transactionManager, times(1)).commit(any());
+        verify(changeJournal, times(1)).eventChanged(1L);
+        verify(changeJournal, times(1)).eventChanged(2L);
+        verify(dinnerEventRepository, times(1)).incrementVersions(Set.of(1L, 2L));
+        InOrder broadcast = inOrder(messagingTemplate);
+        broadcast.verify(messagingTemplate).convertAndSend("/topic/events/1/chat", first.join());
+        broadcast.verify(messagingTemplate).convertAndSend("/topic/events/1/chat", second.join());
+        verify(eventViewService).messagesAdded(1L, List.of(first.join(), second.join()), 10L);
+        verify(eventViewService).messagesAdded(2L, List.of(other.join()), 20L);
+    }
+
+    @Test
+    void flush_SenderNotAMember_FailsAloneWhenTheBatchIsWritten() {
+        when(dinnerEventRepository.findMemberId(1L, "alice")).thenReturn(Optional.empty());
+        when(dinnerEventRepository.findMemberId(1L, "bob")).thenReturn(Optional.of(3L));
+        stubSaveAll();
+        stubVersions();
+
+        CompletableFuture<ChatMessageDTO> rejected = send(1L, "alice", "Hello");
+        CompletableFuture<ChatMessageDTO> accepted = send(1L, "bob", "Hi");
+
+        chatIngestor.flush();
+
+        CompletionException failure = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(SecurityException.class, failure.getCause());
+        assertEquals("bob", accepted.join().getSender());
+        verify(dinnerEventMessageRepository).saveAll(argThat(list -> ((List<?>) list).size() == 1));
+        verify(messagingTemplate, times(1)).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void flush_MessageThatCannotBeStored_FailsAlone() {
+        when(dinnerEventRepository.findMemberId(1L, "alice")).thenReturn(Optional.of(2L));
+        stubSaveAll();
+        stubVersions();
+
+        CompletableFuture<ChatMessageDTO> good = send(1L, "alice", "good");
+        CompletableFuture<ChatMessageDTO> bad = send(1L, "alice", "bad");
+
+        chatIngestor.flush();
+
+        assertEquals("good", good.join().getContent());
+        CompletionException failure = assertThrows(CompletionException.class, bad::join);
+        assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+        verify(messagingTemplate, times(1)).convertAndSend(anyString(), any(Object.class));
+    }
+}
@@ -0,0 +1,140 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class DeadlineSchedulerTest {
+
+    @Mock
+    private DinnerEventRepository dinnerEventRepository;
+    @Mock
+    private EventViewService eventViewService;
+    @Mock
+    private EventUpdatePublisher eventUpdatePublisher;
+    @Mock
+    private ChangeJournal changeJournal;
+    @Mock
+    private SimpMessagingTemplate messagingTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DeadlineScheduler deadlineScheduler;
+
+    @BeforeEach
+    void setUp() {
+        deadlineScheduler = new DeadlineScheduler(dinnerEventRepository, eventViewService, eventUpdatePublisher,
+                changeJournal, messagingTemplate, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deadlineScheduler.shutdown();
+    }
+
+    @Test
+    void close_ClosesInOneUpdateAndTellsOnlyTheMembers() {
+        LocalDateTime deadline = LocalDateTime.now().minusMinutes(1);
+        DinnerEvent event = DinnerEvent.builder().id(4L).deadline(deadline)
+                .organizer(User.builder().username("alice").build())
+                .participants(List.of(User.builder().username("bob").build()))
+                .status(DinnerEvent.EventStatus.CLOSED)
+                .build();
+        when(dinnerEventRepository.closeDue(eq(List.of(4L, 5L)), any())).thenReturn(1);
+        when(dinnerEventRepository.findWithOrganizerByIdInAndStatus(List.of(4L, 5L), DinnerEvent.EventStatus.CLOSED))
+                .thenReturn(List.of(event));
+
+        deadlineScheduler.close(List.of(4L, 5L));
+
+        verify(changeJournal).eventChanged(4L);
+        verify(eventViewService).eventsChanged(List.of(4L));
+        verify(eventUpdatePublisher).closed(4L, deadline);
+        verify(messagingTemplate).convertAndSendToUser("alice", "/topic/dashboard-updates", "REFRESH");
+        verify(messagingTemplate).convertAndSendToUser("bob", "/topic/dashboard-updates", "REFRESH");
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void close_NothingStillDue_NotifiesNobody() {
+        when(dinnerEventRepository.closeDue(eq(List.of(4L)), any())).thenReturn(0);
+
+        deadlineScheduler.close(List.of(4L));
+
+        verify(dinnerEventRepository, never()).findWithOrganizerByIdInAndStatus(any(), any());
+        verifyNoInteractions(eventUpdatePublisher, messagingTemplate);
+    }
+
+    @Test
+    void schedule_ReachedDeadline_ClosesRightAway() {
+        deadlineScheduler.schedule(4L, LocalDateTime.now().minusSeconds(1));
+
+        verify(dinnerEventRepository, timeout(2000)).closeDue(eq(List.of(4L)), any());
+        assertEquals(0, deadlineScheduler.getScheduledCount());
+    }
+
+    @Test
+    void schedule_ExtendedDeadline_ReplacesTheEarlierOne() {
+        deadlineScheduler.schedule(4L, LocalDateTime.now().plusNanos(200_000_000));
+        deadlineScheduler.schedule(4L, LocalDateTime.now().plusHours(1));
+
+        verify(dinnerEventRepository, after(600).never()).closeDue(any(), any());
+        assertEquals(1, deadlineScheduler.getScheduledCount());
+    }
+
+    @Test
+    void reload_QueuesOpenEventsAndForgetsTheRest() {
+        deadlineScheduler.schedule(9L, LocalDateTime.now().plusHours(2));
+        when(dinnerEventRepository.findDeadlinesByStatus(DinnerEvent.EventStatus.OPEN))
+                .thenReturn(List.of(deadline(4L, LocalDateTime.now().plusHours(1)),
+                        deadline(5L, LocalDateTime.now().plusHours(1))));
+
+        deadlineScheduler.reload();
+
+        assertEquals(2, deadlineScheduler.getScheduledCount());
+    }
+
+    @Test
+    void reload_KeepsDeadlinesScheduledWhileTheQueryRuns() {
+        deadlineScheduler.schedule(4L, LocalDateTime.now().plusHours(1));
+        when(dinnerEventRepository.findDeadlinesByStatus(DinnerEvent.EventStatus.OPEN)).thenAnswer(invocation -> {
+            // Committed after the query read the open events
+            deadlineScheduler.schedule(4L, LocalDateTime.now().plusHours(3));
+            deadlineScheduler.schedule(9L, LocalDateTime.now().plusHours(2));
+            return List.of(deadline(4L, LocalDateTime.now().plusHours(2)));
+        });
+
+        deadlineScheduler.reload();
+
+        assertEquals(2, deadlineScheduler.getScheduledCount());
+    }
+
+    private static DinnerEventDeadline deadline(Long id, LocalDateTime deadline) {
+        return new DinnerEventDeadline() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public LocalDateTime getDeadline() {
+                return deadline;
+            }
+        };
+    }
+}
@@ -6,10 +6,13 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
 import it.ucdm.leisure.dinnerplan.features.user.*;
 import it.ucdm.leisure.dinnerplan.features.user.User;
 import it.ucdm.leisure.dinnerplan.features.user.Role;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalCatalogService;
 import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRepository;
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -33,6 +36,20 @@ class DinnerEventServiceTest {
     private ProposalRepository proposalRepository;
     @Mock
     private SimpMessagingTemplate messagingTemplate;
+    @Mock
+    private ProposalCatalogService proposalCatalogService;
+    @Mock
+    private EventViewService eventViewService;
+    @Mock
+    private BroadcastCoalescer broadcastCoalescer;
+    @Mock
+    private EventUpdatePublisher eventUpdatePublisher;
+
+    @Mock
+    private ChangeJournal changeJournal;
+
+    @Mock
+    private DeadlineScheduler deadlineScheduler;
 
     @InjectMocks
     private DinnerEventService dinnerEventService;
@@ -98,6 +115,19 @@ class DinnerEventServiceTest {
         assertEquals(1, result.size());
     }
 
+    @Test
+    void getEventVersionsForUser_AdminSeesAllOthersTheirOwn() {
+        User admin = User.builder().username("admin").role(Role.ADMIN).build();
+        DinnerEventVersion version = mock(DinnerEventVersion.class);
+        when(userRepository.findByUsername("admin")).thenReturn(Optional.of(admin));
+        when(userRepository.findByUsername("participant")).thenReturn(Optional.of(participant));
+        when(dinnerEventRepository.findAllVersions()).thenReturn(List.of(version, version));
+        when(dinnerEventRepository.findVersionsByMember("participant")).thenReturn(List.of(version));
+
+        assertEquals(2, dinnerEventService.getEventVersionsForUser("admin").size());
+        assertEquals(1, dinnerEventService.getEventVersionsForUser("participant").size());
+    }
+
     @Test
     void getEventById_Success() {
         when(dinnerEventRepository.findById(1L)).thenReturn(Optional.of(event));
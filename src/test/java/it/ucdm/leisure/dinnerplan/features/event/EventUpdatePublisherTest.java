@@ -0,0 +1,127 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import it.ucdm.leisure.dinnerplan.features.event.dto.EventDeltaDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
+import it.ucdm.leisure.dinnerplan.features.proposal.VoteRepository;
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("null")
+class EventUpdatePublisherTest {
+
+    @Mock
+    private BroadcastCoalescer broadcastCoalescer;
+    @Mock
+    private VoteRepository voteRepository;
+    @Mock
+    private VoteTally voteTally;
+
+    @InjectMocks
+    private EventUpdatePublisher eventUpdatePublisher;
+
+    @Test
+    void votesChanged_ReadsVotersWhenDeliveredAndMergesPerDate() {
+        when(voteRepository.findVoterUsernamesByProposalDateId(100L)).thenReturn(List.of("alice", "bob"));
+
+        eventUpdatePublisher.votesChanged(1L, 100L);
+
+        BroadcastCoalescer.Emitter payload = capturePayload("/topic/events/1",
+                List.of(EventDeltaDTO.Type.VOTES, 100L));
+        verifyNoInteractions(voteRepository);
+
+        EventDeltaDTO delta = emit(payload);
+        assertEquals(EventDeltaDTO.Type.VOTES, delta.getType());
+        assertEquals(100L, delta.getProposalDateId());
+        assertEquals(2L, delta.getVoteCount());
+        assertEquals(List.of("alice", "bob"), delta.getVoters());
+        assertEquals(1L, delta.getSeq());
+        assertEquals(eventUpdatePublisher.getNodeId(), delta.getOrigin());
+    }
+
+    @Test
+    void sequence_IsPerEventAndAssignedOnDelivery() {
+        eventUpdatePublisher.proposalsChanged(1L);
+        BroadcastCoalescer.Emitter first = capturePayload("/topic/events/1", EventDeltaDTO.Type.PROPOSALS);
+        eventUpdatePublisher.participantsChanged(2L, List.of("bob"));
+        BroadcastCoalescer.Emitter other = capturePayload("/topic/events/2", EventDeltaDTO.Type.PARTICIPANTS);
+
+        assertEquals(0L, eventUpdatePublisher.currentSeq(1L));
+        assertEquals(1L, emit(first).getSeq());
+        assertEquals(2L, emit(first).getSeq());
+        assertEquals(1L, emit(other).getSeq());
+        assertEquals(2L, eventUpdatePublisher.currentSeq(1L));
+        assertEquals(1L, eventUpdatePublisher.currentSeq(2L));
+    }
+
+    @Test
+    void statusChanged_CapturesStatusDeadlineAndSelection() {
+        LocalDateTime deadline = LocalDateTime.of(2026, 1, 10, 20, 0);
+        DinnerEvent event = DinnerEvent.builder().id(1L).status(DinnerEvent.EventStatus.DECIDED)
+                .deadline(deadline).selectedProposalDate(ProposalDate.builder().id(7L).build()).build();
+
+        eventUpdatePublisher.statusChanged(event);
+
+        EventDeltaDTO delta = emit(capturePayload("/topic/events/1", EventDeltaDTO.Type.STATUS));
+        assertEquals("DECIDED", delta.getStatus());
+        assertEquals(deadline.toString(), delta.getDeadline());
+        assertEquals(7L, delta.getSelectedProposalDateId());
+    }
+
+    @Test
+    void votesChanged_ChangePublishedWhileReading_ReadsAgain() {
+        when(voteRepository.findVoterUsernamesByProposalDateId(100L)).thenAnswer(invocation -> {
+            // A vote committed on another thread while the first read runs
+            eventUpdatePublisher.votesChanged(1L, 100L);
+            return List.of("alice");
+        }).thenReturn(List.of("alice", "bob"));
+
+        eventUpdatePublisher.votesChanged(1L, 100L);
+        ArgumentCaptor<BroadcastCoalescer.Emitter> captor = ArgumentCaptor.forClass(BroadcastCoalescer.Emitter.class);
+        // The second publish merges with the first; the first emitter is the one delivered here
+        verify(broadcastCoalescer, times(2)).send(eq("/topic/events/1"), eq(List.of(EventDeltaDTO.Type.VOTES, 100L)),
+                captor.capture());
+
+        EventDeltaDTO delta = emit(captor.getAllValues().get(0));
+        assertEquals(List.of("alice", "bob"), delta.getVoters());
+        assertEquals(1L, delta.getSeq());
+    }
+
+    @Test
+    void deleted_DropsTheSequenceOnceSent() {
+        eventUpdatePublisher.proposalsChanged(1L);
+        emit(capturePayload("/topic/events/1", EventDeltaDTO.Type.PROPOSALS));
+        eventUpdatePublisher.deleted(1L);
+
+        EventDeltaDTO delta = emit(capturePayload("/topic/events/1", EventDeltaDTO.Type.DELETED));
+
+        assertEquals(2L, delta.getSeq());
+        assertEquals(0L, eventUpdatePublisher.currentSeq(1L));
+    }
+
+    private BroadcastCoalescer.Emitter capturePayload(String destination, Object mergeKey) {
+        ArgumentCaptor<BroadcastCoalescer.Emitter> captor = ArgumentCaptor.forClass(BroadcastCoalescer.Emitter.class);
+        verify(broadcastCoalescer).send(eq(destination), eq(mergeKey), captor.capture());
+        return captor.getValue();
+    }
+
+    private static EventDeltaDTO emit(BroadcastCoalescer.Emitter emitter) {
+        List<Object> sent = new ArrayList<>();
+        emitter.emit(sent::add);
+        assertEquals(1, sent.size());
+        return (EventDeltaDTO) sent.get(0);
+    }
+}
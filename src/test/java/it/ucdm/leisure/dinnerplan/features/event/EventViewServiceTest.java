@@ -0,0 +1,259 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatMessageDTO;
+import it.ucdm.leisure.dinnerplan.features.event.dto.ChatPageDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.AffinityService;
+import it.ucdm.leisure.dinnerplan.features.proposal.Proposal;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDate;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateVoteCount;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.Vote;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.AffinityScoreDTO;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalView;
+import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("null")
+class EventViewServiceTest {
+
+    @Mock
+    private DinnerEventRepository dinnerEventRepository;
+    @Mock
+    private ProposalRepository proposalRepository;
+    @Mock
+    private ProposalDateRepository proposalDateRepository;
+    @Mock
+    private AffinityService affinityService;
+    @Mock
+    private VoteTally voteTally;
+    @Mock
+    private ChatHistory chatHistory;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private EventViewService eventViewService;
+
+    private DinnerEvent event;
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = User.builder().id(1L).username("alice").dietaryPreference(DietaryPreference.OMNIVORE).build();
+        bob = User.builder().id(2L).username("bob").dietaryPreference(DietaryPreference.VEGAN).build();
+        event = DinnerEvent.builder().id(1L).organizer(alice).participants(new ArrayList<>(List.of(bob)))
+                .status(DinnerEvent.EventStatus.OPEN).deadline(LocalDateTime.now()).build();
+    }
+
+    @Test
+    void getView_BuildsOnceAndServesFromCache() {
+        stubEvent(List.of(), List.of());
+
+        EventView first = eventViewService.getView(1L);
+        EventView second = eventViewService.getView(1L);
+
+        assertSame(first, second);
+        verify(proposalRepository, times(1)).findAllByDinnerEventsId(1L);
+    }
+
+    @Test
+    void getView_ResolvesDatesVotersAndIncompatibleParticipants() {
+        DinnerEvent other = DinnerEvent.builder().id(2L).build();
+        Proposal proposal = proposalWithDates(10L, date(100L, event), date(101L, event), date(102L, other));
+        proposal.setDietaryPreferences(new HashSet<>(Set.of(DietaryPreference.OMNIVORE)));
+        proposal.getDates().get(0).getVotes()
+                .add(Vote.builder().user(bob).proposalDate(proposal.getDates().get(0)).build());
+        stubEvent(List.of(proposal), List.of(row(100L, 1L)));
+
+        EventView view = eventViewService.getView(1L);
+
+        ProposalView p = view.proposals().get(0);
+        assertEquals(List.of(100L, 101L), p.getDates().stream().map(ProposalView.DateView::getId).toList());
+        assertEquals(3, p.getDateCount());
+        assertEquals(1L, p.getDates().get(0).getVoteCount());
+        assertEquals(List.of("bob"), p.getDates().get(0).getVoters());
+        assertEquals(List.of(), p.getDates().get(1).getVoters());
+        assertEquals(List.of("bob"), p.getIncompatibleParticipants());
+        assertTrue(view.proposalKeys().contains("loc10|addr"));
+    }
+
+    @Test
+    void eventChanged_OutsideTransaction_RebuildsOnNextRead() {
+        stubEvent(List.of(), List.of());
+
+        eventViewService.getView(1L);
+        eventViewService.eventChanged(1L);
+        eventViewService.getView(1L);
+
+        verify(proposalRepository, times(2)).findAllByDinnerEventsId(1L);
+    }
+
+    @Test
+    void getView_BeyondCachedViews_DropsTheLeastRecentlyRead() {
+        ReflectionTestUtils.setField(eventViewService, "maxViews", 1);
+        DinnerEvent second = DinnerEvent.builder().id(2L).organizer(alice).participants(new ArrayList<>())
+                .status(DinnerEvent.EventStatus.OPEN).deadline(LocalDateTime.now()).build();
+        stubEvent(List.of(), List.of());
+        when(dinnerEventRepository.findById(2L)).thenReturn(Optional.of(second));
+        when(proposalRepository.findAllByDinnerEventsId(2L)).thenReturn(List.of());
+        when(proposalDateRepository.countVotesByEventId(2L)).thenReturn(List.of());
+        when(chatHistory.recent(eq(2L), anyLong())).thenReturn(new ChatPageDTO(List.of(), null));
+        when(affinityService.calculateAffinities(anyList(), eq(second))).thenReturn(List.of());
+
+        eventViewService.getView(1L);
+        eventViewService.getView(2L);
+        eventViewService.getView(1L);
+
+        verify(proposalRepository, times(2)).findAllByDinnerEventsId(1L);
+    }
+
+    @Test
+    void eventDeleted_ForgetsEverythingKeptForTheEvent() {
+        stubEvent(List.of(), List.of());
+
+        eventViewService.getView(1L);
+        eventViewService.eventDeleted(1L);
+        eventViewService.getView(1L);
+
+        verify(proposalRepository, times(2)).findAllByDinnerEventsId(1L);
+        verify(voteTally).forget(1L);
+        verify(chatHistory).forget(1L);
+        verify(dinnerEventRepository, never()).incrementVersions(any());
+    }
+
+    @Test
+    void eventChanged_BumpsPersistedVersion() {
+        eventViewService.eventChanged(1L);
+        eventViewService.eventsChanged(List.of());
+
+        verify(dinnerEventRepository).incrementVersions(List.of(1L));
+        verifyNoMoreInteractions(dinnerEventRepository);
+    }
+
+    @Test
+    void getView_RebuildsWhenCachedViewIsOlderThanRequested() {
+        stubEvent(List.of(), List.of());
+
+        eventViewService.getView(1L);
+        // Committed but not yet invalidated
+        event.setVersion(3L);
+        EventView view = eventViewService.getView(1L, 3L);
+
+        assertEquals(3L, view.sourceVersion());
+        assertSame(view, eventViewService.getView(1L, 3L));
+        verify(proposalRepository, times(2)).findAllByDinnerEventsId(1L);
+    }
+
+    @Test
+    void messagesAdded_AppendsToCachedViewWithoutRebuild() {
+        stubEvent(List.of(), List.of());
+
+        eventViewService.getView(1L);
+        eventViewService.messagesAdded(1L, List.of(new ChatMessageDTO(5L, "bob", "Ciao", "01 Jan 20:00")), 1L);
+        EventView view = eventViewService.getView(1L, 1L);
+
+        assertEquals(1L, view.sourceVersion());
+        assertEquals(1, view.chatMessages().size());
+        assertEquals("Ciao", view.chatMessages().get(0).getContent());
+        verify(proposalRepository, times(1)).findAllByDinnerEventsId(1L);
+        verify(chatHistory).messageAdded(eq(1L), any(ChatMessageDTO.class), anyLong());
+    }
+
+    @Test
+    void messagesAdded_KeepsTheLastMessagesAndPointsToTheOlderOnes() {
+        stubEvent(List.of(), List.of());
+        when(chatHistory.recentSize()).thenReturn(2);
+
+        eventViewService.getView(1L);
+        eventViewService.messagesAdded(1L, List.of(new ChatMessageDTO(5L, "bob", "a", "01 Jan 20:00", "c5"),
+                new ChatMessageDTO(6L, "bob", "b", "01 Jan 20:01", "c6")), 1L);
+        eventViewService.messagesAdded(1L, List.of(new ChatMessageDTO(7L, "bob", "c", "01 Jan 20:02", "c7")), 2L);
+        EventView view = eventViewService.getView(1L);
+
+        assertEquals(List.of(6L, 7L), view.chatMessages().stream().map(ChatMessageDTO::getId).toList());
+        assertEquals("c6", view.olderChatCursor());
+        verify(proposalRepository, times(1)).findAllByDinnerEventsId(1L);
+    }
+
+    @Test
+    void messagesAdded_AfterAChangeNotSeenHere_DropsTheView() {
+        stubEvent(List.of(), List.of());
+
+        eventViewService.getView(1L);
+        // Another node changed the event (version 1) before this message moved it to 2
+        eventViewService.messagesAdded(1L, List.of(new ChatMessageDTO(5L, "bob", "Ciao", "01 Jan 20:00")), 2L);
+        eventViewService.getView(1L);
+
+        verify(proposalRepository, times(2)).findAllByDinnerEventsId(1L);
+        verify(chatHistory).messageAdded(eq(1L), any(ChatMessageDTO.class), anyLong());
+    }
+
+    @Test
+    void sortProposalsByVotes_SelectedFirstThenByMostVotedDate() {
+        DinnerEvent other = DinnerEvent.builder().id(2L).build();
+        Proposal few = proposalWithDates(10L, date(100L, event), date(101L, other));
+        Proposal many = proposalWithDates(11L, date(110L, event));
+        Proposal selected = proposalWithDates(12L, date(120L, event));
+        // Votes on another event's date must not count towards this event's ordering
+        Map<Long, Long> voteCounts = Map.of(100L, 1L, 101L, 9L, 110L, 3L);
+
+        List<Proposal> sorted = eventViewService.sortProposalsByVotes(List.of(few, many, selected), 1L, 12L,
+                voteCounts);
+
+        assertEquals(List.of(selected, many, few), sorted);
+    }
+
+    @Test
+    void getVoteCountsForEvent_MapsRowsByProposalDate() {
+        ProposalDateVoteCount row = row(100L, 4L);
+        when(proposalDateRepository.countVotesByEventId(1L)).thenReturn(List.of(row));
+
+        assertEquals(Map.of(100L, 4L), eventViewService.getVoteCountsForEvent(1L));
+    }
+
+    private void stubEvent(List<Proposal> proposals, List<ProposalDateVoteCount> counts) {
+        when(dinnerEventRepository.findById(1L)).thenReturn(Optional.of(event));
+        when(proposalRepository.findAllByDinnerEventsId(1L)).thenReturn(proposals);
+        when(proposalDateRepository.countVotesByEventId(1L)).thenReturn(counts);
+        when(affinityService.calculateAffinities(anyList(), eq(event))).thenAnswer(invocation -> {
+            List<?> scored = invocation.getArgument(0);
+            return scored.stream().map(p -> new AffinityScoreDTO(50, 50, 50, 50)).toList();
+        });
+        when(chatHistory.recent(eq(1L), anyLong())).thenReturn(new ChatPageDTO(List.of(), null));
+        lenient().when(chatHistory.recentSize()).thenReturn(50);
+    }
+
+    private static ProposalDateVoteCount row(Long proposalDateId, long votes) {
+        ProposalDateVoteCount row = mock(ProposalDateVoteCount.class);
+        when(row.getProposalDateId()).thenReturn(proposalDateId);
+        when(row.getVoteCount()).thenReturn(votes);
+        return row;
+    }
+
+    private static ProposalDate date(Long id, DinnerEvent dinnerEvent) {
+        return ProposalDate.builder().id(id).dinnerEvent(dinnerEvent).date(LocalDateTime.now()).build();
+    }
+
+    private static Proposal proposalWithDates(Long id, ProposalDate... dates) {
+        return Proposal.builder().id(id).location("Loc" + id).address("Addr")
+                .dates(new ArrayList<>(List.of(dates))).build();
+    }
+}
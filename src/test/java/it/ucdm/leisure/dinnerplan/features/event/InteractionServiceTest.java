@@ -11,11 +11,16 @@ import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRepository;
 import it.ucdm.leisure.dinnerplan.features.proposal.ProposalRatingRepository;
 import it.ucdm.leisure.dinnerplan.features.proposal.VoteRepository;
 import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalCatalogService;
 
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
 import it.ucdm.leisure.dinnerplan.features.user.*;
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -26,6 +31,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @ExtendWith(MockitoExtension.class)
 @SuppressWarnings("null")
@@ -47,6 +53,27 @@ class InteractionServiceTest {
     private SimpMessagingTemplate messagingTemplate;
     @Mock
     private ProposalDateRepository proposalDateRepository;
+    @Mock
+    private ProposalCatalogService proposalCatalogService;
+    @Mock
+    private EventViewService eventViewService;
+    @Mock
+    private BroadcastCoalescer broadcastCoalescer;
+    @Mock
+    private EventUpdatePublisher eventUpdatePublisher;
+
+    @Mock
+    private ChangeJournal changeJournal;
+    @Mock
+    private VoteEngine voteEngine;
+    @Mock
+    private VoteTally voteTally;
+    @Mock
+    private ChatHistory chatHistory;
+    @Mock
+    private ChatIngestor chatIngestor;
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @InjectMocks
     private InteractionService interactionService;
@@ -87,6 +114,76 @@ class InteractionServiceTest {
         verify(voteRepository).save(any(Vote.class));
     }
 
+    @Test
+    void castVote_WithVoteEngine_TakesVoteInMemory() {
+        when(voteEngine.isEnabled()).thenReturn(true);
+        when(voteEngine.castVote(10L, "participant")).thenReturn(1L);
+
+        interactionService.castVote(10L, "participant");
+
+        verify(eventViewService).votesChanged(1L);
+        verify(eventUpdatePublisher).votesChanged(1L, 10L);
+        verifyNoInteractions(voteRepository, proposalDateRepository, transactionManager);
+    }
+
+    @Test
+    void setVotes_ChangesVotesWithOneStatementEach() {
+        when(voteRepository.insertIfOpen(eq("participant"), eq(10L), eq(1L), any())).thenReturn(1);
+        when(voteRepository.deleteIfOpen(eq("participant"), eq(11L), eq(1L), any())).thenReturn(1);
+
+        interactionService.setVotes(1L, Map.of(10L, true, 11L, false), "participant");
+
+        verify(changeJournal).eventChanged(1L);
+        verify(eventViewService).eventChanged(1L);
+        verify(proposalDateRepository, never()).findById(any());
+        verify(voteRepository, never()).save(any());
+    }
+
+    @Test
+    void setVote_AlreadyCast_ChangesNothing() {
+        when(voteEngine.eventOf(10L)).thenReturn(1L);
+        when(voteRepository.insertIfOpen(eq("participant"), eq(10L), eq(1L), any())).thenReturn(0);
+        when(proposalDateRepository.findById(10L)).thenReturn(Optional.of(proposal.getDates().get(0)));
+
+        interactionService.setVote(10L, "participant", true);
+
+        verify(eventViewService, never()).eventChanged(any());
+        verifyNoInteractions(changeJournal, eventUpdatePublisher);
+    }
+
+    @Test
+    void setVote_AfterDeadline_Throws() {
+        event.setDeadline(LocalDateTime.now().minusMinutes(1));
+        when(voteEngine.eventOf(10L)).thenReturn(1L);
+        when(voteRepository.deleteIfOpen(eq("participant"), eq(10L), eq(1L), any())).thenReturn(0);
+        when(proposalDateRepository.findById(10L)).thenReturn(Optional.of(proposal.getDates().get(0)));
+
+        assertThrows(IllegalStateException.class, () -> interactionService.setVote(10L, "participant", false));
+        verify(eventViewService, never()).eventChanged(any());
+    }
+
+    @Test
+    void setVotes_DateOfAnotherEvent_Throws() {
+        when(voteRepository.insertIfOpen(eq("participant"), eq(10L), eq(2L), any())).thenReturn(0);
+        when(proposalDateRepository.findById(10L)).thenReturn(Optional.of(proposal.getDates().get(0)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> interactionService.setVotes(2L, Map.of(10L, true), "participant"));
+    }
+
+    @Test
+    void setVotes_WithVoteEngine_PublishesOnlyChangedDates() {
+        when(voteEngine.isEnabled()).thenReturn(true);
+        when(voteEngine.setVotes(1L, Map.of(10L, true, 11L, true), "participant")).thenReturn(List.of(11L));
+
+        interactionService.setVotes(1L, Map.of(10L, true, 11L, true), "participant");
+
+        verify(eventViewService).votesChanged(1L);
+        verify(eventUpdatePublisher).votesChanged(1L, 11L);
+        verify(eventUpdatePublisher, never()).votesChanged(1L, 10L);
+        verifyNoInteractions(voteRepository, transactionManager);
+    }
+
     @Test
     void rateProposal_Success() {
         event.setStatus(DinnerEvent.EventStatus.DECIDED);
@@ -97,6 +194,7 @@ class InteractionServiceTest {
 
         interactionService.rateProposal(1L, 1L, "participant", true);
         verify(proposalRatingRepository).save(any(ProposalRating.class));
+        verify(proposalCatalogService).ratingChanged(proposal, 1, 0);
     }
 
     @Test
@@ -108,8 +206,21 @@ class InteractionServiceTest {
             m.setId(1L);
             return m;
         });
+        when(dinnerEventRepository.findVersionById(1L)).thenReturn(Optional.of(4L));
 
         interactionService.addMessage(1L, "participant", "Hello");
         verify(messagingTemplate).convertAndSend(anyString(), any(Object.class));
+        verify(dinnerEventRepository).incrementVersions(List.of(1L));
+        verify(eventViewService).messagesAdded(eq(1L), anyList(), eq(4L));
+    }
+
+    @Test
+    void addMessage_WithChatIngestor_LeavesTheWriteToIt() {
+        when(chatIngestor.isEnabled()).thenReturn(true);
+
+        interactionService.addMessage(1L, "participant", "Hello");
+
+        verify(chatIngestor).addMessage(1L, "participant", "Hello");
+        verifyNoInteractions(dinnerEventMessageRepository, messagingTemplate, transactionManager);
     }
 }
@@ -0,0 +1,275 @@
+package it.ucdm.leisure.dinnerplan.features.event;
+
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
+import it.ucdm.leisure.dinnerplan.features.proposal.ProposalDateRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.VoteRepository;
+import it.ucdm.leisure.dinnerplan.features.proposal.VoteTallyRow;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+import it.ucdm.leisure.dinnerplan.features.user.UserRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("null")
+class VoteEngineTest {
+
+    @Mock
+    private VoteRepository voteRepository;
+    @Mock
+    private ProposalDateRepository proposalDateRepository;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private DinnerEventRepository dinnerEventRepository;
+    @Mock
+    private ChangeJournal changeJournal;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private VoteTally voteTally;
+    private VoteEngine voteEngine;
+    private DinnerEvent event;
+
+    @BeforeEach
+    void setUp() {
+        voteTally = new VoteTally();
+        // The writer thread never fires during a test; flushes are explicit
+        voteEngine = new VoteEngine(voteTally, voteRepository, proposalDateRepository, userRepository,
+                dinnerEventRepository, changeJournal, jdbcTemplate, transactionManager, "memory", 3_600_000L);
+        event = DinnerEvent.builder()
+                .id(1L)
+                .deadline(LocalDateTime.now().plusDays(1))
+                .status(DinnerEvent.EventStatus.OPEN)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        voteEngine.shutdown();
+    }
+
+    private void stubVote(String username, Long userId) {
+        when(proposalDateRepository.findEventIdById(10L)).thenReturn(Optional.of(1L));
+        when(userRepository.findByUsername(username))
+                .thenReturn(Optional.of(User.builder().id(userId).username(username).build()));
+        when(dinnerEventRepository.findById(1L)).thenReturn(Optional.of(event));
+    }
+
+    private static VoteTallyRow row(Long eventId, Long proposalDateId, Long userId, String username) {
+        return new VoteTallyRow() {
+            @Override
+            public Long getEventId() {
+                return eventId;
+            }
+
+            @Override
+            public Long getProposalDateId() {
+                return proposalDateId;
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+        };
+    }
+
+    @Test
+    void castVote_IsTalliedAndWrittenOnFlush() {
+        stubVote("participant", 2L);
+        when(voteRepository.findTallyRowsByEventIds(List.of(1L))).thenReturn(List.of(row(1L, 10L, 3L, "early")));
+
+        assertEquals(1L, voteEngine.castVote(10L, "participant"));
+
+        assertEquals(List.of("early", "participant"), voteTally.voters(1L, 10L));
+        assertEquals(List.of(10L), voteTally.votedDateIds(1L, 2L));
+        verifyNoInteractions(jdbcTemplate);
+
+        voteEngine.flush();
+
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO votes"), anyList());
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("DELETE FROM votes"), anyList());
+        verify(dinnerEventRepository).incrementVersions(argThat(ids -> ids.size() == 1 && ids.contains(1L)));
+        verify(changeJournal).eventChanged(1L);
+        assertEquals(0, voteTally.pendingCount());
+    }
+
+    @Test
+    void castVote_Twice_WithdrawsAndWritesOnlyTheDelete() {
+        stubVote("participant", 2L);
+        when(voteRepository.findTallyRowsByEventIds(List.of(1L))).thenReturn(List.of());
+
+        voteEngine.castVote(10L, "participant");
+        voteEngine.castVote(10L, "participant");
+
+        assertTrue(voteTally.voters(1L, 10L).isEmpty());
+        // The event, its date and the user are looked up once
+        verify(dinnerEventRepository, times(1)).findById(1L);
+        verify(proposalDateRepository, times(1)).findEventIdById(10L);
+        verify(userRepository, times(1)).findByUsername("participant");
+
+        voteEngine.flush();
+
+        verify(jdbcTemplate).batchUpdate(startsWith("DELETE FROM votes"), anyList());
+        verify(jdbcTemplate, never()).batchUpdate(startsWith("INSERT INTO votes"), anyList());
+    }
+
+    @Test
+    void castVote_MovesTheChangeStampBeforeTheVersion() {
+        stubVote("participant", 2L);
+        when(voteRepository.findTallyRowsByEventIds(List.of(1L))).thenReturn(List.of());
+
+        assertEquals(0L, voteTally.changeStamp(1L));
+        voteEngine.castVote(10L, "participant");
+        long first = voteTally.changeStamp(1L);
+        voteEngine.castVote(10L, "participant");
+        long second = voteTally.changeStamp(1L);
+
+        assertNotEquals(0L, first);
+        assertNotEquals(first, second);
+        assertNotEquals(EventETags.forEvent(1L, 4L, first, "participant", "desktop"),
+                EventETags.forEvent(1L, 4L, second, "participant", "desktop"));
+        assertEquals(EventETags.forEvent(1L, 4L, "participant", "desktop"),
+                EventETags.forEvent(1L, 4L, 0L, "participant", "desktop"));
+    }
+
+    @Test
+    void setVotes_RepeatedRequest_ChangesNothing() {
+        stubVote("participant", 2L);
+        when(voteRepository.findTallyRowsByEventIds(List.of(1L))).thenReturn(List.of());
+
+        assertEquals(List.of(10L), voteEngine.setVotes(1L, Map.of(10L, true), "participant"));
+        assertEquals(List.of(), voteEngine.setVotes(1L, Map.of(10L, true), "participant"));
+
+        assertEquals(List.of("participant"), voteTally.voters(1L, 10L));
+        assertEquals(1, voteTally.pendingCount());
+    }
+
+    @Test
+    void setVotes_DateOfAnotherEvent_Throws() {
+        when(proposalDateRepository.findEventIdById(10L)).thenReturn(Optional.of(1L));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> voteEngine.setVotes(2L, Map.of(10L, true), "participant"));
+        assertEquals(0, voteTally.pendingCount());
+    }
+
+    @Test
+    void castVote_AfterDeadline_ThrowsAndTalliesNothing() {
+        event.setDeadline(LocalDateTime.now().minusMinutes(1));
+        stubVote("participant", 2L);
+
+        assertThrows(IllegalStateException.class, () -> voteEngine.castVote(10L, "participant"));
+
+        assertFalse(voteTally.isTracked(1L));
+        assertEquals(0, voteTally.pendingCount());
+    }
+
+    @Test
+    void castVote_AfterEventChanged_ReloadsItsStatus() {
+        stubVote("participant", 2L);
+        when(voteRepository.findTallyRowsByEventIds(List.of(1L))).thenReturn(List.of());
+        voteEngine.castVote(10L, "participant");
+
+        event.setStatus(DinnerEvent.EventStatus.DECIDED);
+        voteTally.eventChanged(1L);
+
+        assertThrows(IllegalStateException.class, () -> voteEngine.castVote(10L, "participant"));
+        assertEquals(List.of("participant"), voteTally.voters(1L, 10L));
+    }
+
+    @Test
+    void flush_Failure_KeepsChangesForTheNextFlush() {
+        stubVote("participant", 2L);
+        when(voteRepository.findTallyRowsByEventIds(List.of(1L))).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("down"))
+                .thenReturn(new int[] { 1 });
+        voteEngine.castVote(10L, "participant");
+
+        assertThrows(DataAccessResourceFailureException.class, () -> voteEngine.flush());
+        assertEquals(1, voteTally.pendingCount());
+
+        voteEngine.flush();
+        assertEquals(0, voteTally.pendingCount());
+        verify(jdbcTemplate, times(2)).batchUpdate(startsWith("INSERT INTO votes"), anyList());
+    }
+
+    @Test
+    void beginImport_PausesVotesAndDropsThoseLeftPendingOnCommit() {
+        stubVote("participant", 2L);
+        when(voteRepository.findTallyRowsByEventIds(List.of(1L))).thenReturn(List.of());
+        voteEngine.castVote(10L, "participant");
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            voteEngine.beginImport();
+            verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO votes"), anyList());
+
+            assertThrows(IllegalStateException.class, () -> voteEngine.castVote(10L, "participant"));
+            // A vote that got past the check as the import started
+            voteTally.set(1L, 10L, 3L, "late", true);
+            voteEngine.flush();
+            verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(0, voteTally.pendingCount());
+        assertFalse(voteTally.isTracked(1L));
+        assertEquals(1L, voteEngine.castVote(10L, "participant"));
+    }
+
+    @Test
+    void reload_TracksOpenEventsWithTheirVotes() {
+        DinnerEventDeadline open = new DinnerEventDeadline() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+
+            @Override
+            public LocalDateTime getDeadline() {
+                return event.getDeadline();
+            }
+        };
+        when(dinnerEventRepository.findDeadlinesByStatus(DinnerEvent.EventStatus.OPEN)).thenReturn(List.of(open));
+        when(voteRepository.findTallyRowsByEventIds(List.of(1L)))
+                .thenReturn(List.of(row(1L, 10L, 2L, "a"), row(1L, 11L, 3L, "b"), row(1L, 10L, 3L, "b")));
+
+        voteEngine.reload();
+
+        assertTrue(voteTally.isTracked(1L));
+        assertEquals(List.of("a", "b"), voteTally.voters(1L, 10L));
+        assertEquals(2L, voteTally.counts(1L).get(10L));
+        assertEquals(1L, voteTally.counts(1L).get(11L));
+    }
+}
@@ -0,0 +1,75 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("null")
+class GeocodingCacheTest {
+
+    @Mock
+    private GeocodeCacheRepository geocodeCacheRepository;
+
+    @InjectMocks
+    private GeocodingCache geocodingCache;
+
+    @Test
+    void normalize_CollapsesCaseAndSpacing() {
+        assertEquals("via roma 1, milano", GeocodingCache.normalize("  Via  Roma 1 ,Milano. "));
+        assertEquals(GeocodingCache.normalize("VIA ROMA 1, MILANO"), GeocodingCache.normalize("via roma 1,  milano"));
+    }
+
+    @Test
+    void put_ThenGet_ServedFromMemory() {
+        geocodingCache.put("via roma 1, milano", new Coordinates(45.0, 9.0), "Photon");
+
+        Optional<GeocodingCache.Lookup> lookup = geocodingCache.get("via roma 1, milano");
+
+        assertTrue(lookup.isPresent());
+        assertEquals(45.0, lookup.get().coordinates().getLatitude());
+        assertEquals("Photon", lookup.get().provider());
+        verify(geocodeCacheRepository).save(any(GeocodeCacheEntry.class));
+        verify(geocodeCacheRepository, times(1)).findByAddressKey("via roma 1, milano");
+        assertEquals(1, geocodingCache.getStats().memoryHits());
+    }
+
+    @Test
+    void get_LoadsFromDatabaseAndCachesNegativeResults() {
+        GeocodeCacheEntry negative = new GeocodeCacheEntry("nowhere", null, null, null, LocalDateTime.now(),
+                LocalDateTime.now().plusHours(1));
+        when(geocodeCacheRepository.findByAddressKey("nowhere")).thenReturn(Optional.of(negative));
+
+        Optional<GeocodingCache.Lookup> first = geocodingCache.get("nowhere");
+        Optional<GeocodingCache.Lookup> second = geocodingCache.get("nowhere");
+
+        assertTrue(first.isPresent());
+        assertNull(first.get().coordinates());
+        assertTrue(second.isPresent());
+        verify(geocodeCacheRepository, times(1)).findByAddressKey("nowhere");
+
+        GeocodingCache.Stats stats = geocodingCache.getStats();
+        assertEquals(1, stats.databaseHits());
+        assertEquals(1, stats.memoryHits());
+        assertEquals(2, stats.negativeHits());
+        assertEquals(1.0, stats.hitRate());
+    }
+
+    @Test
+    void get_ExpiredEntryIsAMiss() {
+        GeocodeCacheEntry expired = new GeocodeCacheEntry("old", 1.0, 2.0, "ArcGIS", LocalDateTime.now().minusDays(2),
+                LocalDateTime.now().minusDays(1));
+        when(geocodeCacheRepository.findByAddressKey("old")).thenReturn(Optional.of(expired));
+
+        assertTrue(geocodingCache.get("old").isEmpty());
+        assertEquals(1, geocodingCache.getStats().misses());
+    }
+}
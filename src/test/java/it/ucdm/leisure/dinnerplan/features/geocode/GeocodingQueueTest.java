@@ -0,0 +1,69 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@SuppressWarnings("null")
+class GeocodingQueueTest {
+
+    private final GeocodingService geocodingService = mock(GeocodingService.class);
+    private final GeocodingQueue geocodingQueue = new GeocodingQueue(geocodingService,
+            mock(PlatformTransactionManager.class), 1);
+
+    @AfterEach
+    void tearDown() {
+        geocodingQueue.shutdown();
+    }
+
+    @Test
+    void submit_SameAddressTwice_SingleLookupAndBothCallbacksRun() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(geocodingService.getCoordinates("Via Roma 1")).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new Coordinates(45.0, 9.0);
+        });
+
+        List<Coordinates> results = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(2);
+        geocodingQueue.submit("Via Roma 1", c -> {
+            results.add(c);
+            done.countDown();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        geocodingQueue.submit("via  roma 1", c -> {
+            results.add(c);
+            done.countDown();
+        });
+        release.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, results.size());
+        assertEquals(45.0, results.get(0).getLatitude());
+        verify(geocodingService, times(1)).getCoordinates(anyString());
+    }
+
+    @Test
+    void submit_UnresolvableAddress_CallbackNotRun() throws Exception {
+        CountDownLatch looked = new CountDownLatch(1);
+        when(geocodingService.getCoordinates("Nowhere")).thenAnswer(invocation -> {
+            looked.countDown();
+            return null;
+        });
+
+        geocodingQueue.submit("Nowhere", c -> fail("Callback must not run"));
+
+        assertTrue(looked.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(0, geocodingQueue.getPendingCount());
+    }
+}
@@ -0,0 +1,140 @@
+package it.ucdm.leisure.dinnerplan.features.geocode;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import it.ucdm.leisure.dinnerplan.utils.StubHttpServer;
+
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+@SuppressWarnings("null")
+class GeocodingServiceTest {
+
+    private static final String PHOTON_JSON = "{\"features\":[{\"geometry\":{\"coordinates\":[9.19,45.46]}}]}";
+    private static final String ARCGIS_JSON = "{\"candidates\":[{\"location\":{\"x\":9.20,\"y\":45.47}}]}";
+
+    private StubHttpServer server;
+    private GeocodingCache geocodingCache;
+    private GeocodingService geocodingService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubHttpServer();
+        geocodingCache = mock(GeocodingCache.class);
+        GeocodingRateLimiter rateLimiter = new GeocodingRateLimiter();
+        ReflectionTestUtils.setField(rateLimiter, "minIntervalMs", 0L);
+
+        RestTemplate restTemplate = new RestTemplate(new JdkClientHttpRequestFactory());
+        geocodingService = new GeocodingService(restTemplate, geocodingCache, rateLimiter);
+        ReflectionTestUtils.setField(geocodingService, "photonUrl", server.url("/photon"));
+        ReflectionTestUtils.setField(geocodingService, "arcgisUrl", server.url("/arcgis"));
+        ReflectionTestUtils.setField(geocodingService, "hedgeDelayMs", 100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        geocodingService.shutdown();
+        server.close();
+    }
+
+    @Test
+    void getCoordinates_SlowPrimary_HedgedFallbackWins() {
+        server.slowJson("/photon", 5000, PHOTON_JSON);
+        server.json("/arcgis", ARCGIS_JSON);
+
+        long start = System.currentTimeMillis();
+        Coordinates coordinates = geocodingService.getCoordinates("Via Roma, Milano");
+
+        assertNotNull(coordinates);
+        assertEquals(45.47, coordinates.getLatitude(), 1e-9);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        verify(geocodingCache).put(anyString(), eq(coordinates), eq("ArcGIS"));
+    }
+
+    @Test
+    void getCoordinates_CancelledAndFailedAttempts_AreNotRecordedAsLatency() throws InterruptedException {
+        server.slowJson("/photon", 5000, PHOTON_JSON);
+        server.route("/arcgis", exchange -> StubHttpServer.respond(exchange, 500, "{}"));
+        ReflectionTestUtils.setField(geocodingService, "hedgeTimeoutMs", 500L);
+
+        assertNull(geocodingService.getCoordinates("Via Roma, Milano"));
+        // Give the cancelled Photon attempt time to unwind
+        Thread.sleep(200);
+
+        assertNull(geocodingService.getLatencySnapshots().get(GeocodingService.PHOTON));
+        assertNull(geocodingService.getLatencySnapshots().get(GeocodingService.ARCGIS));
+    }
+
+    @Test
+    void getCoordinates_FastPrimary_NoFallback() {
+        ReflectionTestUtils.setField(geocodingService, "hedgeDelayMs", 2000L);
+        server.json("/photon", PHOTON_JSON);
+        server.json("/arcgis", ARCGIS_JSON);
+
+        Coordinates coordinates = geocodingService.getCoordinates("Via Roma, Milano");
+
+        assertEquals(45.46, coordinates.getLatitude(), 1e-9);
+        assertTrue(server.requests().stream().noneMatch(r -> r.uri().getPath().startsWith("/arcgis")));
+        assertEquals("DinnerPlanApp/1.0", server.requests().get(0).headers().getFirst("User-Agent"));
+        assertEquals(1, geocodingService.getLatencySnapshots().get(GeocodingService.PHOTON).count());
+    }
+
+    @Test
+    void getCoordinates_NoProviderFindsAddress_CachesNegativeResult() {
+        server.json("/photon", "{\"features\":[]}");
+        server.json("/arcgis", "{\"candidates\":[]}");
+
+        assertNull(geocodingService.getCoordinates("Via Inesistente 99, Nowhere"));
+        // Photon, Photon relaxed, ArcGIS, ArcGIS relaxed
+        assertEquals(4, server.requests().size());
+        verify(geocodingCache).put(anyString(), isNull(), isNull());
+    }
+
+    @Test
+    void getCoordinates_ProvidersFailing_CachesNothing() {
+        server.route("/photon", exchange -> StubHttpServer.respond(exchange, 500, "{}"));
+        server.route("/arcgis", exchange -> StubHttpServer.respond(exchange, 500, "{}"));
+
+        assertNull(geocodingService.getCoordinates("Via Roma 1, Milano"));
+        assertEquals(4, server.requests().size());
+        verify(geocodingCache, never()).put(anyString(), any(), any());
+    }
+
+    @Test
+    void getCoordinates_ProvidersFailing_WithoutHedging_CachesNothing() {
+        ReflectionTestUtils.setField(geocodingService, "hedgingEnabled", false);
+        server.route("/photon", exchange -> StubHttpServer.respond(exchange, 500, "{}"));
+        server.json("/arcgis", "{\"error\":{\"code\":498}}");
+
+        assertNull(geocodingService.getCoordinates("Via Roma 1, Milano"));
+        verify(geocodingCache, never()).put(anyString(), any(), any());
+    }
+
+    @Test
+    void getCoordinates_OneProviderAnswersWithoutMatch_CachesNegativeResult() {
+        server.route("/photon", exchange -> StubHttpServer.respond(exchange, 500, "{}"));
+        server.json("/arcgis", "{\"candidates\":[]}");
+
+        assertNull(geocodingService.getCoordinates("Via Roma 1, Milano"));
+        verify(geocodingCache).put(anyString(), isNull(), isNull());
+    }
+
+    @Test
+    void getCoordinates_CachedAddress_SkipsProviders() {
+        when(geocodingCache.get("via roma, milano"))
+                .thenReturn(Optional.of(new GeocodingCache.Lookup(new Coordinates(1.0, 2.0), "Photon")));
+
+        Coordinates coordinates = geocodingService.getCoordinates("Via Roma, Milano");
+
+        assertEquals(1.0, coordinates.getLatitude(), 1e-9);
+        assertTrue(server.requests().isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package it.ucdm.leisure.dinnerplan.features.journal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@ExtendWith(MockitoExtension.class)
+class ChangeJournalTest {
+
+    @Mock
+    private ChangeJournalRepository changeJournalRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private ChangeJournal changeJournal;
+
+    @Test
+    void eventDeleted_AppendsEntry() {
+        changeJournal.eventDeleted(12L);
+
+        ArgumentCaptor<ChangeJournalEntry> entry = ArgumentCaptor.forClass(ChangeJournalEntry.class);
+        verify(changeJournalRepository).save(entry.capture());
+        assertEquals(ChangeJournalEntry.Aggregate.EVENT, entry.getValue().getAggregate());
+        assertEquals(12L, entry.getValue().getAggregateId());
+        assertTrue(entry.getValue().isDeleted());
+        assertNotNull(entry.getValue().getRecordedAt());
+    }
+
+    @Test
+    void importCompleted_AppendsMarker() {
+        changeJournal.importCompleted();
+
+        ArgumentCaptor<ChangeJournalEntry> entry = ArgumentCaptor.forClass(ChangeJournalEntry.class);
+        verify(changeJournalRepository).save(entry.capture());
+        assertEquals(ChangeJournalEntry.Aggregate.IMPORT, entry.getValue().getAggregate());
+        assertEquals(0L, entry.getValue().getAggregateId());
+    }
+
+    @Test
+    void proposalChanged_WithoutId_IsSkipped() {
+        changeJournal.proposalChanged(null);
+
+        verify(changeJournalRepository, never()).save(any());
+    }
+
+    @Test
+    void snapshot_WaitsForWritersBeforeReadingTheLastId() {
+        when(changeJournalRepository.findLastId()).thenReturn(41L);
+
+        assertEquals(41L, changeJournal.snapshot());
+
+        InOrder order = inOrder(jdbcTemplate, changeJournalRepository);
+        order.verify(jdbcTemplate).execute("LOCK TABLE change_journal IN SHARE MODE");
+        order.verify(changeJournalRepository).findLastId();
+    }
+
+    @Test
+    void snapshot_WithoutTableLock_WaitsForLocalWritersToComplete() throws Exception {
+        ReflectionTestUtils.setField(changeJournal, "tableLock", false);
+        when(changeJournalRepository.findLastId()).thenReturn(7L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            changeJournal.eventChanged(3L);
+            CompletableFuture<Long> snapshot = CompletableFuture.supplyAsync(changeJournal::snapshot);
+
+            Thread.sleep(200);
+            assertFalse(snapshot.isDone());
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            assertEquals(7L, snapshot.get(2, TimeUnit.SECONDS));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,101 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.proposal.dto.AffinityScoreDTO;
+import it.ucdm.leisure.dinnerplan.features.user.DietaryPreference;
+import it.ucdm.leisure.dinnerplan.features.user.User;
+
+import java.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AffinityServiceTest {
+
+    private AffinityService affinityService;
+    private DinnerEvent event;
+
+    @BeforeEach
+    void setUp() {
+        affinityService = new AffinityService();
+        ReflectionTestUtils.setField(affinityService, "distanceWeight", 0.40);
+        ReflectionTestUtils.setField(affinityService, "dietWeight", 0.40);
+        ReflectionTestUtils.setField(affinityService, "popularityWeight", 0.20);
+        ReflectionTestUtils.setField(affinityService, "maxDistanceKm", 50.0);
+
+        User organizer = User.builder().id(1L).username("org").latitude(45.4642).longitude(9.1900)
+                .dietaryPreference(DietaryPreference.OMNIVORE).build();
+        User vegan = User.builder().id(2L).username("vegan").latitude(45.4700).longitude(9.2000)
+                .dietaryPreference(DietaryPreference.VEGAN).build();
+        User celiac = User.builder().id(3L).username("celiac")
+                .dietaryPreference(DietaryPreference.CELIAC).build();
+        event = DinnerEvent.builder().id(10L).organizer(organizer)
+                .participants(new ArrayList<>(List.of(vegan, celiac))).build();
+    }
+
+    @Test
+    void calculateAffinities_ScoresEachProposalInOrder() {
+        ProposalRating like = new ProposalRating();
+        like.setLiked(true);
+        ProposalRating dislike = new ProposalRating();
+        dislike.setLiked(false);
+
+        Proposal near = Proposal.builder().id(1L).location("Near").latitude(45.4642).longitude(9.1900)
+                .dietaryPreferences(new HashSet<>(Set.of(DietaryPreference.VEGAN)))
+                .ratings(new HashSet<>(Set.of(like, dislike))).build();
+        Proposal unlocated = Proposal.builder().id(2L).location("Unknown")
+                .dietaryPreferences(new HashSet<>(Set.of(DietaryPreference.VEGAN, DietaryPreference.CELIAC)))
+                .ratings(new HashSet<>()).build();
+
+        List<AffinityScoreDTO> scores = affinityService.calculateAffinities(List.of(near, unlocated), event);
+
+        assertEquals(2, scores.size());
+        AffinityScoreDTO first = scores.get(0);
+        assertTrue(first.getDistanceScore() > 0.9);
+        assertEquals(2.0 / 3, first.getDietScore(), 1e-9);
+        assertEquals(0.5, first.getPopularityScore(), 1e-9);
+
+        AffinityScoreDTO second = scores.get(1);
+        assertEquals(0.0, second.getDistanceScore(), 1e-9);
+        assertEquals(1.0, second.getDietScore(), 1e-9);
+        assertEquals(0.5, second.getPopularityScore(), 1e-9);
+        assertEquals(50.0, second.getTotalScore(), 1e-9);
+        assertEquals("Dist: 0%, Diet: 100%, Pop: 50%", second.getExplanation());
+    }
+
+    @Test
+    void calculateAffinities_ParallelMatchesSequential() {
+        List<Proposal> proposals = new ArrayList<>();
+        Random random = new Random(42);
+        for (long i = 0; i < 600; i++) {
+            proposals.add(Proposal.builder().id(i).location("P" + i)
+                    .latitude(45.0 + random.nextDouble()).longitude(9.0 + random.nextDouble())
+                    .dietaryPreferences(new HashSet<>(Set.of(DietaryPreference.values()[random.nextInt(4)])))
+                    .ratings(new HashSet<>()).build());
+        }
+
+        ReflectionTestUtils.setField(affinityService, "parallelThreshold", Integer.MAX_VALUE);
+        List<AffinityScoreDTO> sequential = affinityService.calculateAffinities(proposals, event);
+        ReflectionTestUtils.setField(affinityService, "parallelThreshold", 1);
+        List<AffinityScoreDTO> parallel = affinityService.calculateAffinities(proposals, event);
+
+        for (int i = 0; i < proposals.size(); i++) {
+            assertEquals(sequential.get(i).getTotalScore(), parallel.get(i).getTotalScore());
+            assertEquals(sequential.get(i).getTotalScore(),
+                    affinityService.calculateAffinity(proposals.get(i), event).getTotalScore());
+        }
+    }
+
+    @Test
+    void calculateAffinities_NoParticipants_ReturnsNeutralScores() {
+        event.setParticipants(new ArrayList<>());
+
+        List<AffinityScoreDTO> scores = affinityService.calculateAffinities(
+                List.of(Proposal.builder().id(1L).location("Any").build()), event);
+
+        assertEquals(1, scores.size());
+        assertEquals("No participants", scores.get(0).getExplanation());
+    }
+}
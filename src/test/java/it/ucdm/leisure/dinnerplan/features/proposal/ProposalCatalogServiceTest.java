@@ -1,12 +1,14 @@
 package it.ucdm.leisure.dinnerplan.features.proposal;
 
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
+import it.ucdm.leisure.dinnerplan.features.event.EventViewService;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import it.ucdm.leisure.dinnerplan.features.proposal.dto.ProposalSuggestionDTO;
+import it.ucdm.leisure.dinnerplan.service.BroadcastCoalescer;
 
 import java.util.*;
 import org.junit.jupiter.api.Test;
@@ -14,7 +16,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @ExtendWith(MockitoExtension.class)
 @SuppressWarnings("null")
@@ -23,7 +26,9 @@ class ProposalCatalogServiceTest {
     @Mock
     private ProposalRepository proposalRepository;
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
+    private BroadcastCoalescer broadcastCoalescer;
+    @Mock
+    private EventViewService eventViewService;
 
     @InjectMocks
     private ProposalCatalogService proposalCatalogService;
@@ -57,6 +62,68 @@ class ProposalCatalogServiceTest {
         assertNotNull(result.get(1).getEncodedData());
     }
 
+    @Test
+    void getProposalSuggestions_SecondReadServedFromMemory() {
+        Proposal p1 = Proposal.builder().id(1L).location("Loc1").address("Addr1").build();
+        when(proposalRepository.findAll()).thenReturn(List.of(p1));
+
+        proposalCatalogService.getProposalSuggestions();
+        List<ProposalSuggestionDTO> result = proposalCatalogService.getProposalSuggestions();
+
+        assertEquals(1, result.size());
+        verify(proposalRepository, times(1)).findAll();
+    }
+
+    @Test
+    void ratingChanged_UpdatesCatalogIncrementally() {
+        Proposal p1 = Proposal.builder().id(1L).location("Loc1").address("Addr1").build();
+        Proposal p2 = Proposal.builder().id(2L).location("Loc2").address("Addr2").build();
+        p1.setDinnerEvents(new ArrayList<>(List.of(new DinnerEvent())));
+        when(proposalRepository.findAll()).thenReturn(List.of(p1, p2));
+
+        assertEquals("Loc1", proposalCatalogService.getProposalSuggestions().get(0).getLocation());
+
+        proposalCatalogService.ratingChanged(p2, 1, 0);
+        List<ProposalSuggestionDTO> result = proposalCatalogService.getProposalSuggestions();
+
+        assertEquals("Loc2", result.get(0).getLocation());
+        assertEquals(1, result.get(0).getTotalLikes());
+        assertNotNull(result.get(0).getEncodedData());
+        verify(proposalRepository, times(1)).findAll();
+    }
+
+    @Test
+    void ratingChanged_CatalogLoadedBeforeTheCallback_IsNotCountedTwice() {
+        Proposal p1 = Proposal.builder().id(1L).location("Loc1").address("Addr1").build();
+        ProposalRating like = new ProposalRating();
+        like.setLiked(true);
+        // Committed already when the catalog is read
+        p1.setRatings(new HashSet<>(List.of(like)));
+        when(proposalRepository.findAll()).thenReturn(List.of(p1));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            proposalCatalogService.ratingChanged(p1, 1, 0);
+            proposalCatalogService.getProposalSuggestions();
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, proposalCatalogService.getProposalSuggestions().get(0).getTotalLikes());
+        verify(proposalRepository, times(2)).findAll();
+    }
+
+    @Test
+    void getProposalSuggestions_ReturnsIndependentCopies() {
+        Proposal p1 = Proposal.builder().id(1L).location("Loc1").address("Addr1").build();
+        when(proposalRepository.findAll()).thenReturn(List.of(p1));
+
+        proposalCatalogService.getProposalSuggestions().get(0).setDistanceFromUser(12.0);
+
+        assertNull(proposalCatalogService.getProposalSuggestions().get(0).getDistanceFromUser());
+    }
+
     @Test
     void addGlobalProposal_NewProposal_SavesAndSendsMessage() {
         when(proposalRepository.findByLocationIgnoreCaseAndAddressIgnoreCase("New", "NewAddr"))
@@ -2,10 +2,17 @@ package it.ucdm.leisure.dinnerplan.features.proposal;
 
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEvent;
 import it.ucdm.leisure.dinnerplan.features.event.DinnerEventRepository;
+import it.ucdm.leisure.dinnerplan.features.event.EventUpdatePublisher;
+import it.ucdm.leisure.dinnerplan.features.event.EventViewService;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import it.ucdm.leisure.dinnerplan.features.geocode.Coordinates;
+import it.ucdm.leisure.dinnerplan.features.geocode.GeocodingQueue;
+import it.ucdm.leisure.dinnerplan.features.geocode.GeocodingService;
+import it.ucdm.leisure.dinnerplan.features.journal.ChangeJournal;
 import it.ucdm.leisure.dinnerplan.features.user.*;
 
 import java.time.LocalDateTime;
@@ -16,7 +23,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 @ExtendWith(MockitoExtension.class)
 @SuppressWarnings("null")
@@ -27,7 +33,22 @@ class ProposalServiceTest {
     @Mock
     private DinnerEventRepository dinnerEventRepository;
     @Mock
-    private SimpMessagingTemplate messagingTemplate;
+    private EventUpdatePublisher eventUpdatePublisher;
+    @Mock
+    private ProposalCatalogService proposalCatalogService;
+    @Mock
+    private ProposalSpatialIndex proposalSpatialIndex;
+    @Mock
+    private GeocodingService geocodingService;
+    @Mock
+    private GeocodingQueue geocodingQueue;
+    @Mock
+    private UserService userService;
+    @Mock
+    private EventViewService eventViewService;
+
+    @Mock
+    private ChangeJournal changeJournal;
 
     @InjectMocks
     private ProposalService proposalService;
@@ -59,6 +80,23 @@ class ProposalServiceTest {
         proposalService.addProposal(1L, List.of(LocalDateTime.now().plusDays(1)), "Loc", "Addr", "Desc");
         assertEquals(1, event.getProposals().size());
         verify(dinnerEventRepository).save(event);
+        // Address not cached yet: saved with coordinates pending, geocoded in the background
+        assertNull(event.getProposals().get(0).getLatitude());
+        verify(geocodingQueue).submit(eq("Addr"), any());
+        verify(geocodingService, never()).getCoordinates(anyString());
+    }
+
+    @Test
+    void addProposal_CachedAddress_SetsCoordinatesImmediately() {
+        when(dinnerEventRepository.findById(1L)).thenReturn(Optional.of(event));
+        when(proposalRepository.findByLocationIgnoreCaseAndAddressIgnoreCase(anyString(), anyString()))
+                .thenReturn(Optional.empty());
+        when(geocodingService.getCachedCoordinates("Addr")).thenReturn(Optional.of(new Coordinates(45.0, 9.0)));
+
+        proposalService.addProposal(1L, List.of(LocalDateTime.now().plusDays(1)), "Loc", "Addr", "Desc");
+
+        assertEquals(45.0, event.getProposals().get(0).getLatitude());
+        verify(geocodingQueue, never()).submit(anyString(), any());
     }
 
     @Test
@@ -0,0 +1,57 @@
+package it.ucdm.leisure.dinnerplan.features.proposal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ProposalSpatialIndexTest {
+
+    private static final double MILAN_LAT = 45.4642;
+    private static final double MILAN_LON = 9.1900;
+
+    @Test
+    void withinRadius_ReturnsOnlyNearbyProposalsClosestFirst() {
+        ProposalSpatialIndex index = new ProposalSpatialIndex();
+        index.update(1L, "Duomo", "Piazza del Duomo", 45.4641, 9.1919);
+        index.update(2L, "Navigli", "Ripa di Porta Ticinese", 45.4520, 9.1760);
+        index.update(3L, "Roma", "Piazza Navona", 41.8992, 12.4731);
+
+        List<ProposalSpatialIndex.Hit> hits = index.withinRadius(MILAN_LAT, MILAN_LON, 10.0);
+
+        assertEquals(2, hits.size());
+        assertEquals(1L, hits.get(0).proposalId());
+        assertEquals(2L, hits.get(1).proposalId());
+        assertEquals("duomo|piazza del duomo", hits.get(0).catalogKey());
+        assertTrue(hits.get(0).distanceKm() < hits.get(1).distanceKm());
+    }
+
+    @Test
+    void nearest_FindsClosestEvenOutsideNeighbouringCells() {
+        ProposalSpatialIndex index = new ProposalSpatialIndex();
+        index.update(1L, "Roma", "Piazza Navona", 41.8992, 12.4731);
+        index.update(2L, "Napoli", "Via Toledo", 40.8400, 14.2500);
+        index.update(3L, "Torino", "Piazza Castello", 45.0712, 7.6853);
+
+        List<ProposalSpatialIndex.Hit> hits = index.nearest(MILAN_LAT, MILAN_LON, 2);
+
+        assertEquals(2, hits.size());
+        assertEquals(3L, hits.get(0).proposalId());
+        assertEquals(1L, hits.get(1).proposalId());
+    }
+
+    @Test
+    void update_MovesAndRemovesEntries() {
+        ProposalSpatialIndex index = new ProposalSpatialIndex();
+        index.update(1L, "Moving", "Somewhere", 41.8992, 12.4731);
+        assertTrue(index.withinRadius(MILAN_LAT, MILAN_LON, 10.0).isEmpty());
+
+        index.update(1L, "Moving", "Somewhere", MILAN_LAT, MILAN_LON);
+        assertEquals(1, index.withinRadius(MILAN_LAT, MILAN_LON, 10.0).size());
+        assertEquals(1, index.size());
+
+        index.update(1L, "Moving", "Somewhere", null, null);
+        assertTrue(index.withinRadius(MILAN_LAT, MILAN_LON, 10.0).isEmpty());
+        assertEquals(0, index.size());
+    }
+}
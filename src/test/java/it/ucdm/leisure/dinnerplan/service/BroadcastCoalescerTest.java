@@ -0,0 +1,118 @@
+package it.ucdm.leisure.dinnerplan.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BroadcastCoalescerTest {
+
+    private final SimpMessagingTemplate messagingTemplate = Mockito.mock(SimpMessagingTemplate.class);
+    private BroadcastCoalescer coalescer;
+
+    @AfterEach
+    public void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void testBurstSendsLeadingAndOneTrailingMessage() {
+        coalescer = new BroadcastCoalescer(messagingTemplate, 100);
+
+        for (int i = 0; i < 10; i++) {
+            coalescer.send("/topic/events/1", "update");
+        }
+
+        verify(messagingTemplate, after(400).times(2)).convertAndSend("/topic/events/1", (Object) "update");
+        BroadcastCoalescer.Stats stats = coalescer.getStats();
+        assertEquals(10, stats.received());
+        assertEquals(2, stats.sent());
+        assertEquals(8, stats.suppressed());
+        assertEquals(0, stats.openWindows());
+    }
+
+    @Test
+    public void testDifferentPayloadsAreNotMerged() {
+        coalescer = new BroadcastCoalescer(messagingTemplate, 100);
+
+        coalescer.send("/topic/events/1", "update");
+        coalescer.send("/topic/events/1", "update-participants");
+        coalescer.send("/topic/events/2", "update");
+
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/events/1", (Object) "update");
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/events/1", (Object) "update-participants");
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/events/2", (Object) "update");
+        assertEquals(0, coalescer.getStats().suppressed());
+    }
+
+    @Test
+    public void testMergedSendUsesLatestSupplier() {
+        coalescer = new BroadcastCoalescer(messagingTemplate, 100);
+
+        coalescer.send("/topic/events/1", "votes-100", () -> "1 vote");
+        coalescer.send("/topic/events/1", "votes-100", () -> "2 votes");
+        coalescer.send("/topic/events/1", "votes-100", () -> "3 votes");
+
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/events/1", (Object) "1 vote");
+        verify(messagingTemplate, after(400).times(1)).convertAndSend("/topic/events/1", (Object) "3 votes");
+        verify(messagingTemplate, never()).convertAndSend("/topic/events/1", (Object) "2 votes");
+    }
+
+    @Test
+    public void testZeroWindowPassesEverythingThrough() {
+        coalescer = new BroadcastCoalescer(messagingTemplate, 0);
+
+        coalescer.send("/topic/events/1", "update");
+        coalescer.send("/topic/events/1", "update");
+
+        verify(messagingTemplate, times(2)).convertAndSend("/topic/events/1", (Object) "update");
+        assertEquals(0, coalescer.getStats().openWindows());
+    }
+
+    @Test
+    public void testPayloadsNumberedByTheEmitterGoOutInOrder() {
+        coalescer = new BroadcastCoalescer(messagingTemplate, 0);
+        AtomicLong seq = new AtomicLong();
+        List<Object> delivered = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            // Widen the gap between numbering and sending
+            Thread.yield();
+            delivered.add(invocation.getArgument(1));
+            return null;
+        }).when(messagingTemplate).convertAndSend(anyString(), any(Object.class));
+
+        List<CompletableFuture<Void>> senders = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            senders.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 250; i++) {
+                    coalescer.send("/topic/events/1", "delta", send -> {
+                        synchronized (seq) {
+                            send.accept(seq.incrementAndGet());
+                        }
+                    });
+                }
+            }));
+        }
+        senders.forEach(CompletableFuture::join);
+
+        assertEquals(1000, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals((long) i + 1, delivered.get(i));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package it.ucdm.leisure.dinnerplan.utils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class LongLongHashMapTest {
+
+    @Test
+    void putAndGet_GrowsPastInitialCapacity() {
+        LongLongHashMap map = new LongLongHashMap(2);
+        for (long i = 1; i <= 10_000; i++) {
+            map.put(i * 31, i);
+        }
+
+        assertEquals(10_000, map.size());
+        for (long i = 1; i <= 10_000; i++) {
+            assertEquals(i, map.get(i * 31));
+        }
+        assertEquals(LongLongHashMap.MISSING, map.get(7));
+        assertFalse(map.containsKey(7));
+    }
+
+    @Test
+    void put_OverwritesExistingKey() {
+        LongLongHashMap map = new LongLongHashMap();
+        map.put(0, 1);
+        map.put(0, 2);
+        map.put(-5, 3);
+
+        assertEquals(2, map.size());
+        assertEquals(2, map.get(0));
+        assertEquals(3, map.get(-5));
+    }
+
+    @Test
+    void put_ReservedKey_Throws() {
+        LongLongHashMap map = new LongLongHashMap();
+        assertThrows(IllegalArgumentException.class, () -> map.put(Long.MIN_VALUE, 1));
+        assertEquals(LongLongHashMap.MISSING, map.get(Long.MIN_VALUE));
+    }
+}
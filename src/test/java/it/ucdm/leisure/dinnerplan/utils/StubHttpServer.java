@@ -0,0 +1,112 @@
+package it.ucdm.leisure.dinnerplan.utils;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP server for tests of outbound calls. Routes are matched by path
+ * prefix (longest first) and every request is recorded. Handlers run
+ * concurrently, so a slow route does not block the others.
+ */
+public class StubHttpServer implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    public record RecordedRequest(String method, URI uri, Headers headers) {
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Handler> routes = new ConcurrentHashMap<>();
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<>();
+
+    public StubHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::dispatch);
+        server.start();
+    }
+
+    public StubHttpServer route(String pathPrefix, Handler handler) {
+        routes.put(pathPrefix, handler);
+        return this;
+    }
+
+    public StubHttpServer json(String pathPrefix, String body) {
+        return route(pathPrefix, exchange -> respond(exchange, 200, body));
+    }
+
+    public StubHttpServer slowJson(String pathPrefix, long delayMillis, String body) {
+        return route(pathPrefix, exchange -> {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            respond(exchange, 200, body);
+        });
+    }
+
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + port() + path;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public List<RecordedRequest> requests() {
+        return requests;
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        requests.add(new RecordedRequest(exchange.getRequestMethod(), exchange.getRequestURI(),
+                exchange.getRequestHeaders()));
+        String path = exchange.getRequestURI().getPath();
+        Handler handler = routes.entrySet().stream()
+                .filter(e -> path.startsWith(e.getKey()))
+                .max((a, b) -> Integer.compare(a.getKey().length(), b.getKey().length()))
+                .map(Map.Entry::getValue)
+                .orElse(null);
+        if (handler == null) {
+            respond(exchange, 404, "{}");
+            return;
+        }
+        handler.handle(exchange);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}